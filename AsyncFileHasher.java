@@ -0,0 +1,351 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * A class that hashes the chunks of a file with a pipeline that overlaps
+ * reading and hashing. The chunks are split as in {@link FileHasher}, but are
+ * read with an {@link AsynchronousFileChannel}: up to a given number of reads
+ * are outstanding at the same time, and every chunk that has been read is
+ * hashed on a worker pool while the following ones are still being read.
+ *
+ * <p>
+ * The chunks are read into direct buffers taken from a pool, whose size is the
+ * queue depth of the pipeline, and the buffers are reused across chunks and
+ * files. A chunk is read only when it is less than the queue depth ahead of the
+ * first chunk whose hash has not been delivered yet, so a slow chunk stalls the
+ * reads instead of letting the hashes that follow it pile up: the queue depth
+ * bounds the reads in flight, the hashes waiting to be delivered and the
+ * memory used.
+ *
+ * <p>
+ * The hashes are delivered in the order of the chunks, as soon as all the
+ * previous ones are available, so a tree can be built while the file is still
+ * being read.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class AsyncFileHasher {
+
+    private final int chunkSize;
+
+    private final int queueDepth;
+
+    private final Executor executor;
+
+    private final BlockingQueue<ByteBuffer> buffers;
+
+    private int allocatedBuffers;
+
+    /**
+     * Constructs a hasher with the given chunk size and queue depth, which
+     * hashes chunks on the given executor.
+     *
+     * @param chunkSize  the size of a chunk in bytes.
+     * @param queueDepth  the maximum number of chunks being read or hashed at
+     *                    the same time, and the number of pooled buffers.
+     * @param executor  the executor on which chunks are hashed.
+     * @throws IllegalArgumentException if the sizes are not positive or the
+     *         executor is null.
+     */
+    public AsyncFileHasher(int chunkSize, int queueDepth, Executor executor) {
+    	if (chunkSize < 1 || queueDepth < 1 || executor == null)
+    		throw new IllegalArgumentException();
+
+        this.chunkSize = chunkSize;
+        this.queueDepth = queueDepth;
+        this.executor = executor;
+        this.buffers = new ArrayBlockingQueue<ByteBuffer>(queueDepth);
+        this.allocatedBuffers = 0;
+    }
+
+    /**
+     * Constructs a hasher that hashes chunks on the common fork-join pool.
+     *
+     * @param chunkSize  the size of a chunk in bytes.
+     * @param queueDepth  the maximum number of chunks being read or hashed at
+     *                    the same time.
+     * @throws IllegalArgumentException if the sizes are not positive.
+     */
+    public AsyncFileHasher(int chunkSize, int queueDepth) {
+    	this(chunkSize, queueDepth, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Hashes the chunks of a file and passes their hashes to the given
+     * consumer in the order of the chunks. The consumer is called by one
+     * thread at a time, not necessarily the calling one.
+     *
+     * @param file  the file to hash.
+     * @param consumer  the consumer of the hashes.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if the path or the consumer is null.
+     */
+    public void hashChunks(Path file, Consumer<String> consumer)
+    		throws IOException {
+    	if (file == null || consumer == null)
+    		throw new IllegalArgumentException();
+
+    	try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(
+    			file, StandardOpenOption.READ)) {
+    		long size = channel.size();
+    		long count = Math.max(1, (size + this.chunkSize - 1)
+    				                 / this.chunkSize);
+    		Pipeline pipeline = new Pipeline(channel, size, count, consumer);
+
+    		try {
+    			for (long i = 0; i < count && pipeline.awaitWindow(i); i++)
+    				pipeline.read(i, this.takeBuffer());
+    		} catch (InterruptedException e) {
+    			Thread.currentThread().interrupt();
+    			throw new InterruptedIOException();
+    		}
+
+    		FileHasher.await(pipeline.done);
+    	}
+    }
+
+    /**
+     * Returns the hashes of the chunks of a file, in order.
+     *
+     * @param file  the file to hash.
+     * @return the hashes of the chunks of the file.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if the path is null.
+     */
+    public List<String> hashChunks(Path file) throws IOException {
+    	List<String> hashes = new ArrayList<String>();
+
+    	this.hashChunks(file, hashes::add);
+
+    	return hashes;
+    }
+
+    /**
+     * Returns the root of the tree of a file. The tree is built while the file
+     * is read, keeping only its right frontier, so memory use does not depend
+     * on the size of the file.
+     *
+     * @param file  the file to hash.
+     * @return the root of the tree of the chunks of the file.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if the path is null.
+     */
+    public String hashFile(Path file) throws IOException {
+    	MerkleFrontier frontier = new MerkleFrontier();
+
+    	this.hashChunks(file, frontier::append);
+
+    	return frontier.getRootHash();
+    }
+
+    /**
+     * Builds the Merkle tree of the chunks of a file.
+     *
+     * @param <T>  the type of data on which the tree is built.
+     * @param file  the file to hash.
+     * @return the tree of the chunks of the file.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if the path is null.
+     */
+    public <T> MerkleTree<T> fileTree(Path file) throws IOException {
+        return MerkleTree.fromHashes(this.hashChunks(file));
+    }
+
+    /**
+     * Returns the number of direct buffers allocated so far.
+     *
+     * @return the number of buffers in the pool.
+     */
+    int getAllocatedBuffers() {
+    	synchronized (this.buffers) {
+    		return this.allocatedBuffers;
+    	}
+    }
+
+    /**
+     * Takes a buffer from the pool, allocating it while the pool is not full.
+     */
+    private ByteBuffer takeBuffer() throws InterruptedException {
+    	ByteBuffer buffer = this.buffers.poll();
+
+    	if (buffer == null) {
+    		synchronized (this.buffers) {
+    			if (this.allocatedBuffers < this.queueDepth) {
+    				this.allocatedBuffers++;
+    				return ByteBuffer.allocateDirect(this.chunkSize);
+    			}
+    		}
+
+    		buffer = this.buffers.take();
+    	}
+
+    	return buffer;
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+    	buffer.clear();
+    	this.buffers.add(buffer);
+    }
+
+    /**
+     * The state of the hashing of a file: the chunks hashed out of order wait
+     * in a map until all the previous ones have been delivered. The map holds
+     * fewer entries than the queue depth, because a chunk is read only when
+     * it falls in the window that starts at the next chunk to deliver.
+     */
+    private final class Pipeline {
+    	final CompletableFuture<Void> done;
+
+    	private final AsynchronousFileChannel channel;
+
+    	private final long size;
+
+    	private final long count;
+
+    	private final Consumer<String> consumer;
+
+    	private final Map<Long, String> outOfOrder;
+
+    	private long next;
+
+    	Pipeline(AsynchronousFileChannel channel, long size, long count,
+    			 Consumer<String> consumer) {
+    		this.done = new CompletableFuture<Void>();
+    		this.channel = channel;
+    		this.size = size;
+    		this.count = count;
+    		this.consumer = consumer;
+    		this.outOfOrder = new HashMap<Long, String>();
+    		this.next = 0;
+    	}
+
+    	/**
+    	 * Waits until the chunk with the given index falls in the window of
+    	 * chunks that can be read, and returns whether it should be read, that
+    	 * is whether the pipeline has not failed in the meantime.
+    	 */
+    	synchronized boolean awaitWindow(long index)
+    			throws InterruptedException {
+    		while (index >= this.next + queueDepth && !this.done.isDone())
+    			this.wait();
+
+    		return !this.done.isDone();
+    	}
+
+    	/**
+    	 * Starts the read of a chunk into the given buffer.
+    	 */
+    	void read(long index, ByteBuffer buffer) {
+    		long position = index * chunkSize;
+
+    		buffer.limit((int) Math.min(chunkSize, this.size - position));
+    		this.readRemaining(index, position, buffer);
+    	}
+
+    	private void readRemaining(long index, long position,
+    			ByteBuffer buffer) {
+    		if (!buffer.hasRemaining()) {
+    			this.hash(index, buffer);
+    			return;
+    		}
+
+    		try {
+    			this.channel.read(buffer, position + buffer.position(), null,
+    					          new CompletionHandler<Integer, Void>() {
+    				@Override
+    				public void completed(Integer read, Void attachment) {
+    					if (read < 0) this.failed(new IOException(
+    							"The file was truncated while it was being "
+    							+ "hashed"), null);
+    					else readRemaining(index, position, buffer);
+    				}
+
+    				@Override
+    				public void failed(Throwable e, Void attachment) {
+    					releaseBuffer(buffer);
+    					fail(e);
+    				}
+    			});
+    		} catch (RuntimeException e) {
+    			releaseBuffer(buffer);
+    			this.fail(e);
+    		}
+    	}
+
+    	/**
+    	 * Hashes a chunk that has been read on the executor, then returns its
+    	 * buffer to the pool and delivers the hashes that are now in order.
+    	 */
+    	private void hash(long index, ByteBuffer buffer) {
+    		try {
+    			executor.execute(() -> {
+    				String hash;
+
+    				try {
+    					buffer.flip();
+    					hash = HashUtil.bufferToHash(buffer);
+    				} catch (RuntimeException e) {
+    					this.fail(e);
+    					return;
+    				} finally {
+    					releaseBuffer(buffer);
+    				}
+
+    				this.deliver(index, hash);
+    			});
+    		} catch (RuntimeException e) {
+    			releaseBuffer(buffer);
+    			this.fail(e);
+    		}
+    	}
+
+    	/**
+    	 * Delivers the hashes that are now in order and wakes the thread that
+    	 * issues the reads, since the window may have moved.
+    	 */
+
+    	private synchronized void deliver(long index, String hash) {
+    		if (this.done.isDone()) return;
+
+    		this.outOfOrder.put(index, hash);
+
+    		try {
+    			while ((hash = this.outOfOrder.remove(this.next)) != null) {
+    				this.consumer.accept(hash);
+    				this.next++;
+    			}
+    		} catch (RuntimeException e) {
+    			this.fail(e);
+    			return;
+    		}
+
+    		if (this.next == this.count) this.done.complete(null);
+    		this.notifyAll();
+    	}
+
+    	/**
+    	 * Fails the hashing and wakes the thread that issues the reads.
+    	 */
+    	private synchronized void fail(Throwable e) {
+    		this.done.completeExceptionally(e);
+    		this.notifyAll();
+    	}
+    }
+}
\ No newline at end of file
@@ -0,0 +1,364 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A thread-safe linked list with MD5 hashes computed for each element, meant
+ * to be fed by many producer threads at the same time.
+ *
+ * <p>
+ * Insertions at the tail are lock-free and follow the Michael-Scott queue
+ * algorithm: the new node is linked to the last node with a compare-and-set,
+ * and the reference to the tail is advanced, possibly by another thread. The
+ * hash of an element is computed by the producer before the node is linked,
+ * so producers hash in parallel. The size is kept in a {@link LongAdder}, so
+ * that producers do not contend on a single counter.
+ *
+ * <p>
+ * Insertions at the head and removals are rarer and are serialized by a lock,
+ * which tail insertions never take. Removed nodes are first marked as deleted
+ * and then unlinked when this can be done without interfering with tail
+ * insertions.
+ *
+ * <p>
+ * The iterator and the bulk methods such as {@link #getAllHashes()} are weakly
+ * consistent: they never throw {@code ConcurrentModificationException} and
+ * reflect the state of the list at some point during the traversal, possibly
+ * including some of the concurrent changes. When a coherent view is needed,
+ * for example to build a Merkle tree, {@link #snapshot()} returns the content
+ * of the list at a single point in time.
+ *
+ * @param <T> the generic type of data contained in the nodes of the list.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class ConcurrentHashLinkedList<T> implements Iterable<T> {
+
+    private final Node<T> head;
+    private final AtomicReference<Node<T>> tail;
+    private final LongAdder size;
+    private final ReentrantReadWriteLock structureLock;
+
+    public ConcurrentHashLinkedList() {
+        this.head = new Node<T>(null, null);
+        this.tail = new AtomicReference<Node<T>>(this.head);
+        this.size = new LongAdder();
+        this.structureLock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Returns the current number of elements in the list. While other threads
+     * are modifying the list the value is an estimate.
+     *
+     * @return the number of elements in the list.
+     */
+    public int getSize() {
+        return this.size.intValue();
+    }
+
+    /**
+     * Represents a node in the linked list. The first node of the list is a
+     * sentinel without data.
+     *
+     * @param <T> the type of data of the node.
+     */
+    private static class Node<T> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+        		AtomicReferenceFieldUpdater.newUpdater(
+        		Node.class, Node.class, "next");
+
+        final String hash;
+
+        final T data;
+
+        volatile Node<T> next;
+
+        volatile boolean deleted;
+
+        Node(T data, String hash) {
+            this.data = data;
+            this.hash = hash;
+            this.next = null;
+            this.deleted = false;
+        }
+
+        boolean casNext(Node<T> expected, Node<T> update) {
+            return NEXT.compareAndSet(this, expected, update);
+        }
+    }
+
+    /**
+     * Adds a new item to the head of the list.
+     *
+     * @param data  the data to be added.
+     */
+    public void addAtHead(T data) {
+    	if (data == null) throw new NullPointerException();
+
+    	Node<T> newNode = new Node<T>(data, HashUtil.dataToHash(data));
+
+    	this.structureLock.writeLock().lock();
+
+    	try {
+    		Node<T> first;
+
+    		do {
+    			first = this.head.next;
+    			newNode.next = first;
+    		} while (!this.head.casNext(first, newNode));
+    	} finally {
+    		this.structureLock.writeLock().unlock();
+    	}
+
+    	this.size.increment();
+    }
+
+    /**
+     * Adds a new item to the tail of the list, without taking any lock.
+     *
+     * @param data  the data to be added.
+     */
+    public void addAtTail(T data) {
+    	if (data == null) throw new NullPointerException();
+
+    	Node<T> newNode = new Node<T>(data, HashUtil.dataToHash(data));
+
+    	while (true) {
+    		Node<T> last = this.tail.get();
+    		Node<T> next = last.next;
+
+    		if (last != this.tail.get()) continue;
+
+    		if (next != null) {
+    			this.tail.compareAndSet(last, next);
+    			continue;
+    		}
+
+    		if (last.casNext(null, newNode)) {
+    			this.tail.compareAndSet(last, newNode);
+    			break;
+    		}
+    	}
+
+    	this.size.increment();
+    }
+
+    /**
+     * Removes the first element in the list that contains the specified data.
+     *
+     * @param data  the data to be removed.
+     * @return true if the item was found and removed, false otherwise.
+     */
+	public boolean remove(T data) {
+		if (data == null) throw new NullPointerException();
+
+		this.structureLock.writeLock().lock();
+
+		try {
+			Node<T> precedent = this.head;
+			Node<T> current = this.head.next;
+
+			while (current != null) {
+				if (!current.deleted && current.data.equals(data)) {
+					current.deleted = true;
+					this.size.decrement();
+
+					Node<T> next = current.next;
+
+					// The last node is left in place as a tombstone, since
+					// producers may be linking a new node after it.
+					if (next != null) precedent.casNext(current, next);
+
+					return true;
+				}
+
+				if (!current.deleted || current.next == null)
+					precedent = current;
+				else precedent.casNext(current, current.next);
+
+				current = current.next;
+			}
+
+			return false;
+		} finally {
+			this.structureLock.writeLock().unlock();
+		}
+    }
+
+    /**
+     * Returns an ArrayList containing all the hashes in the list in sorted
+     * order. The traversal is weakly consistent.
+     *
+     * @return a list with all the hashes of the list.
+     */
+    public ArrayList<String> getAllHashes() {
+    	ArrayList<String> hashList = new ArrayList<String>();
+
+    	for (Node<T> current = this.head.next; current != null;
+    		 current = current.next) {
+    		if (!current.deleted) hashList.add(current.hash);
+    	}
+
+    	return hashList;
+    }
+
+    /**
+     * Returns the content of the list at a single point in time, as if no
+     * other thread were modifying it. Tail insertions are not blocked while
+     * the snapshot is taken; the ones that complete after it started are
+     * simply not part of it.
+     *
+     * @return a snapshot of the current content of the list.
+     */
+    public Snapshot<T> snapshot() {
+    	List<T> data = new ArrayList<T>();
+    	List<String> hashes = new ArrayList<String>();
+
+    	this.structureLock.readLock().lock();
+
+    	try {
+    		Node<T> last = this.tail.get();
+
+    		while (last.next != null) last = last.next;
+
+    		for (Node<T> current = this.head; current != last;) {
+    			current = current.next;
+
+    			if (!current.deleted) {
+    				data.add(current.data);
+    				hashes.add(current.hash);
+    			}
+    		}
+    	} finally {
+    		this.structureLock.readLock().unlock();
+    	}
+
+    	return new Snapshot<T>(data, hashes);
+    }
+
+    /**
+     * An immutable view of the content of a {@link ConcurrentHashLinkedList}
+     * at a single point in time.
+     *
+     * @param <T> the type of data contained in the snapshot.
+     */
+    public static class Snapshot<T> implements Iterable<T> {
+
+        private final List<T> data;
+        private final List<String> hashes;
+
+        private Snapshot(List<T> data, List<String> hashes) {
+            this.data = data;
+            this.hashes = hashes;
+        }
+
+        /**
+         * Returns the number of elements in the snapshot.
+         *
+         * @return the number of elements in the snapshot.
+         */
+        public int getSize() {
+            return this.data.size();
+        }
+
+        /**
+         * Returns an ArrayList containing the hashes of the elements of the
+         * snapshot, in list order.
+         *
+         * @return a list with all the hashes of the snapshot.
+         */
+        public ArrayList<String> getAllHashes() {
+            return new ArrayList<String>(this.hashes);
+        }
+
+        /**
+         * Returns the raw MD5 digests of the elements of the snapshot, in list
+         * order, packed in the same format as
+         * {@link HashLinkedList#getAllDigests()}.
+         *
+         * @return a contiguous array with the digests of all the elements.
+         * @throws IllegalStateException if the digests do not fit in an
+         *         array, that is with more than {@code Integer.MAX_VALUE / 16}
+         *         elements.
+         */
+        public byte[] getAllDigests() {
+            byte[] digests = HashUtil.newDigestArray(this.hashes.size());
+
+            for (int i = 0; i < this.hashes.size(); i++) {
+            	HashUtil.hexToDigest(this.hashes.get(i), digests,
+            			             i * HashUtil.MD5_LENGTH);
+            }
+
+            return digests;
+        }
+
+        /**
+         * Builds the Merkle tree of the elements of the snapshot, using the
+         * hashes computed when the elements were inserted.
+         *
+         * @return the Merkle tree of the snapshot.
+         * @throws IllegalArgumentException if the snapshot is empty.
+         */
+        public MerkleTree<T> toMerkleTree() {
+            return MerkleTree.fromHashes(this.hashes);
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return Collections.unmodifiableList(this.data).iterator();
+        }
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the elements of the list.
+     *
+     * @return an iterator over the elements of the list.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Itr();
+    }
+
+    /**
+     * A class that implements a weakly consistent iterator for
+     * ConcurrentHashLinkedList. The next element is determined ahead, so that
+     * {@code hasNext} and {@code next} agree even if the list changes.
+     */
+    private class Itr implements Iterator<T> {
+    	private Node<T> nextNode;
+
+        private Itr() {
+        	this.nextNode = this.firstLiveFrom(head.next);
+        }
+
+        private Node<T> firstLiveFrom(Node<T> node) {
+        	while (node != null && node.deleted) node = node.next;
+
+        	return node;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.nextNode != null;
+        }
+
+        @Override
+        public T next() {
+        	if(!hasNext()) throw new NoSuchElementException();
+
+            T data = this.nextNode.data;
+            this.nextNode = this.firstLiveFrom(this.nextNode.next);
+            return data;
+        }
+    }
+}
\ No newline at end of file
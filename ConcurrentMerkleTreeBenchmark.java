@@ -0,0 +1,121 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A benchmark of {@link ConcurrentMerkleTree} under mixed read and write load:
+ * a number of reader threads request the proofs of random leaves, first
+ * alone and then while one writer thread replaces random leaves in batches of
+ * the given sizes. After a run that warms up the JVM, each run reports the
+ * proofs read and the leaves updated per second.
+ *
+ * <p>
+ * Run it with
+ * {@code java it.unicam.cs.asdl2425.mp1.ConcurrentMerkleTreeBenchmark
+ * [leaves] [readers] [seconds] [batch sizes...]}; the defaults are 65536
+ * leaves, 4 readers, 2 seconds per run and batches of 1 and 64 leaves. The
+ * results are documented in {@link ConcurrentMerkleTree}.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+final class ConcurrentMerkleTreeBenchmark {
+
+    private ConcurrentMerkleTreeBenchmark() { }
+
+    /**
+     * Runs the benchmark and prints one line per run.
+     *
+     * @param args  the number of leaves, of readers, the seconds per run and
+     *              the sizes of the batches of the writer.
+     * @throws InterruptedException if the benchmark is interrupted.
+     */
+    public static void main(String[] args) throws InterruptedException {
+    	int width = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 16;
+    	int readers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    	long seconds = args.length > 2 ? Long.parseLong(args[2]) : 2;
+    	List<Integer> batchSizes = new ArrayList<Integer>();
+
+    	for (int i = 3; i < args.length; i++)
+    		batchSizes.add(Integer.parseInt(args[i]));
+
+    	if (batchSizes.isEmpty()) batchSizes.addAll(List.of(1, 64));
+
+    	List<String> hashes = new ArrayList<String>(width);
+    	for (int i = 0; i < width; i++) hashes.add(HashUtil.dataToHash(i));
+
+    	ConcurrentMerkleTree<Integer> tree =
+    			ConcurrentMerkleTree.fromHashes(hashes);
+
+    	System.out.printf("%d leaves, %d readers, %d s per run, %d CPUs%n",
+    			          width, readers, seconds,
+    			          Runtime.getRuntime().availableProcessors());
+
+    	ConcurrentMerkleTreeBenchmark.run(tree, readers, 0, seconds);
+    	System.out.println(
+    			ConcurrentMerkleTreeBenchmark.run(tree, readers, 0, seconds));
+
+    	for (int batchSize : batchSizes) {
+    		System.out.println(ConcurrentMerkleTreeBenchmark.run(
+    				tree, readers, batchSize, seconds));
+    	}
+    }
+
+    /**
+     * Runs the readers, and the writer if the batch size is positive, for the
+     * given time and returns a description of the throughput.
+     */
+    private static String run(ConcurrentMerkleTree<Integer> tree, int readers,
+    		                  int batchSize, long seconds)
+    		throws InterruptedException {
+    	LongAdder proofs = new LongAdder();
+    	LongAdder updates = new LongAdder();
+    	long end = System.nanoTime() + seconds * 1_000_000_000L;
+    	List<Thread> threads = new ArrayList<Thread>();
+
+    	for (int i = 0; i < readers; i++) {
+    		threads.add(new Thread(() -> {
+    			ThreadLocalRandom random = ThreadLocalRandom.current();
+
+    			while (System.nanoTime() < end) {
+    				tree.getMerkleProof(random.nextInt(tree.getWidth()));
+    				proofs.increment();
+    			}
+    		}));
+    	}
+
+    	if (batchSize > 0) {
+    		threads.add(new Thread(() -> {
+    			ThreadLocalRandom random = ThreadLocalRandom.current();
+
+    			while (System.nanoTime() < end) {
+    				Map<Integer, String> batch = new HashMap<Integer, String>();
+
+    				while (batch.size() < batchSize) {
+    					batch.put(random.nextInt(tree.getWidth()),
+    							  HashUtil.dataToHash(random.nextInt()));
+    				}
+
+    				tree.setLeafHashes(batch);
+    				updates.add(batchSize);
+    			}
+    		}));
+    	}
+
+    	long start = System.nanoTime();
+
+    	for (Thread thread : threads) thread.start();
+    	for (Thread thread : threads) thread.join();
+
+    	double elapsed = (System.nanoTime() - start) / 1e9;
+
+    	return String.format("writer batch %s: %.0f proofs/s, %.0f leaf "
+    			             + "updates/s",
+    			             batchSize > 0 ? String.valueOf(batchSize) : "none",
+    			             proofs.sum() / elapsed, updates.sum() / elapsed);
+    }
+}
\ No newline at end of file
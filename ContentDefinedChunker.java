@@ -0,0 +1,183 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A content-defined chunker, which splits data in chunks whose boundaries
+ * depend on the content around them rather than on their position. Inserting
+ * or removing a few bytes only changes the chunks near the edit, while the
+ * following boundaries move along with the content, so the Merkle tree of the
+ * chunks of a slightly changed file keeps almost all of its leaves.
+ *
+ * <p>
+ * The boundaries are found with the FastCDC algorithm: a Gear rolling hash is
+ * updated for each byte with a shift and the addition of a random value taken
+ * from a fixed table, and a boundary is placed where some of the most
+ * significant bits of the hash are all zero. The first bytes of a chunk are
+ * skipped up to the minimum size, a stricter mask is used until the average
+ * size and a looser one after it, which narrows the distribution of the sizes
+ * around the average, and a chunk is cut in any case at the maximum size.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class ContentDefinedChunker {
+
+    // The table is generated from a fixed seed, so that the boundaries are
+    // the same on every run.
+    private static final long[] GEAR = new long[256];
+
+    static {
+    	Random random = new Random(0x4d524b4cL);
+
+    	for (int i = 0; i < GEAR.length; i++) GEAR[i] = random.nextLong();
+    }
+
+    private final int minSize;
+
+    private final int averageSize;
+
+    private final int maxSize;
+
+    private final long strictMask;
+
+    private final long looseMask;
+
+    /**
+     * Constructs a chunker with the given sizes.
+     *
+     * @param minSize  the minimum size of a chunk, except the last one.
+     * @param averageSize  the expected size of a chunk.
+     * @param maxSize  the maximum size of a chunk.
+     * @throws IllegalArgumentException if the sizes are not positive and in
+     *         increasing order, or the average size is less than 4.
+     */
+    public ContentDefinedChunker(int minSize, int averageSize, int maxSize) {
+    	if (minSize < 1 || averageSize < 4 || minSize > averageSize
+    		|| averageSize > maxSize)
+    		throw new IllegalArgumentException();
+
+        this.minSize = minSize;
+        this.averageSize = averageSize;
+        this.maxSize = maxSize;
+
+        int bits = 31 - Integer.numberOfLeadingZeros(averageSize);
+        this.strictMask = -1L << (64 - (bits + 1));
+        this.looseMask = -1L << (64 - (bits - 1));
+    }
+
+    /**
+     * Constructs a chunker with the given average size, a minimum size of a
+     * quarter of it and a maximum size of eight times it.
+     *
+     * @param averageSize  the expected size of a chunk.
+     * @throws IllegalArgumentException if the size is less than 4.
+     */
+    public ContentDefinedChunker(int averageSize) {
+    	this(averageSize / 4, averageSize, averageSize * 8);
+    }
+
+    /**
+     * Returns the length of the chunk that starts at the given position.
+     *
+     * @param data  the data to split.
+     * @param offset  the start of the chunk.
+     * @param length  the number of bytes available from the offset; if it is
+     *                less than the maximum size, the data must end there.
+     * @return the length of the chunk.
+     */
+    public int nextChunkLength(byte[] data, int offset, int length) {
+    	if (length <= this.minSize) return length;
+
+    	int limit = Math.min(length, this.maxSize);
+    	int normal = Math.min(limit, this.averageSize);
+    	long hash = 0;
+    	int i = this.minSize;
+
+    	for (; i < normal; i++) {
+    		hash = (hash << 1) + GEAR[data[offset + i] & 0xff];
+
+    		if ((hash & this.strictMask) == 0) return i + 1;
+    	}
+
+    	for (; i < limit; i++) {
+    		hash = (hash << 1) + GEAR[data[offset + i] & 0xff];
+
+    		if ((hash & this.looseMask) == 0) return i + 1;
+    	}
+
+    	return limit;
+    }
+
+    /**
+     * Returns the hashes of the chunks of a stream, in order. The stream is
+     * read until its end but not closed. Empty data has a single empty chunk.
+     *
+     * @param in  the stream to split.
+     * @return the MD5 hashes of the bytes of the chunks.
+     * @throws IOException if the stream cannot be read.
+     * @throws IllegalArgumentException if the stream is null.
+     */
+    public List<String> hashChunks(InputStream in) throws IOException {
+    	if (in == null) throw new IllegalArgumentException();
+
+    	List<String> hashes = new ArrayList<String>();
+    	byte[] buffer = new byte[Math.max(this.maxSize * 2, 1 << 16)];
+    	int start = 0;
+    	int end = 0;
+    	boolean eof = false;
+
+    	while (true) {
+    		if (!eof && end - start < this.maxSize) {
+    			// Moves the remaining bytes to the front and refills.
+    			System.arraycopy(buffer, start, buffer, 0, end - start);
+    			end -= start;
+    			start = 0;
+
+    			int read;
+
+    			while (end < buffer.length
+    				   && (read = in.read(buffer, end, buffer.length - end))
+    				      != -1) {
+    				end += read;
+    			}
+
+    			eof = end < buffer.length;
+    		}
+
+    		if (start == end) break;
+
+    		int length = this.nextChunkLength(buffer, start, end - start);
+
+    		hashes.add(HashUtil.computeMD5(
+    				   Arrays.copyOfRange(buffer, start, start + length)));
+    		start += length;
+    	}
+
+    	if (hashes.isEmpty()) hashes.add(HashUtil.computeMD5(new byte[0]));
+
+    	return hashes;
+    }
+
+    /**
+     * Returns the hashes of the chunks of a file, in order.
+     *
+     * @param file  the file to split.
+     * @return the MD5 hashes of the bytes of the chunks.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if the path is null.
+     */
+    public List<String> hashChunks(Path file) throws IOException {
+    	if (file == null) throw new IllegalArgumentException();
+
+        try (InputStream in = Files.newInputStream(file)) {
+        	return this.hashChunks(in);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,256 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A scheduler that groups the leaf updates of a {@link ConcurrentMerkleTree}
+ * in epochs, so that the upper levels of the tree, which every update
+ * changes, are rehashed once per epoch rather than once per update.
+ *
+ * <p>
+ * Updates are buffered as they are submitted; an update of a leaf replaces a
+ * previous update of the same leaf in the same epoch. An epoch ends every
+ * given number of milliseconds, or as soon as the given number of updates is
+ * buffered, and all its updates are then applied to the tree as a single
+ * batch with {@link ConcurrentMerkleTree#setLeafHashes(Map)}. Each epoch
+ * publishes a {@link Commit} with the new root and the version of the tree,
+ * and completes the futures of all its updates with it, so every submitter
+ * learns the first root that contains its change.
+ *
+ * <p>
+ * Epochs are committed by a single background thread, in order.
+ *
+ * @param <T> the type of data on which the tree is built.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class EpochCommitScheduler<T> implements AutoCloseable {
+
+    private final ConcurrentMerkleTree<T> tree;
+
+    private final int maxUpdatesPerEpoch;
+
+    private final ScheduledExecutorService executor;
+
+    // The following fields are guarded by this object.
+
+    private Map<Integer, String> pendingUpdates;
+
+    private List<CompletableFuture<Commit>> pendingFutures;
+
+    private boolean commitRequested;
+
+    private boolean closed;
+
+    private volatile Commit lastCommit;
+
+    /**
+     * The result of an epoch: the root of the tree after its updates.
+     */
+    public static final class Commit {
+
+        private final String rootHash;
+
+        private final long version;
+
+        private final int updates;
+
+        private Commit(String rootHash, long version, int updates) {
+            this.rootHash = rootHash;
+            this.version = version;
+            this.updates = updates;
+        }
+
+        /**
+         * Returns the root of the tree after the epoch.
+         *
+         * @return the hash of the root.
+         */
+        public String getRootHash() {
+            return this.rootHash;
+        }
+
+        /**
+         * Returns the version of the tree after the epoch, as returned by
+         * {@link ConcurrentMerkleTree#getVersion()}.
+         *
+         * @return the version of the tree.
+         */
+        public long getVersion() {
+            return this.version;
+        }
+
+        /**
+         * Returns the number of leaves updated by the epoch.
+         *
+         * @return the number of updated leaves.
+         */
+        public int getUpdates() {
+            return this.updates;
+        }
+    }
+
+    /**
+     * Constructs a scheduler for the given tree.
+     *
+     * @param tree  the tree to update.
+     * @param epochMillis  the maximum duration of an epoch in milliseconds.
+     * @param maxUpdatesPerEpoch  the number of buffered updates that ends an
+     *                            epoch early.
+     * @throws IllegalArgumentException if the tree is null or the limits are
+     *         not positive.
+     */
+    public EpochCommitScheduler(ConcurrentMerkleTree<T> tree, long epochMillis,
+    		int maxUpdatesPerEpoch) {
+    	if (tree == null || epochMillis < 1 || maxUpdatesPerEpoch < 1)
+    		throw new IllegalArgumentException();
+
+        this.tree = tree;
+        this.maxUpdatesPerEpoch = maxUpdatesPerEpoch;
+        this.pendingUpdates = new HashMap<Integer, String>();
+        this.pendingFutures = new ArrayList<CompletableFuture<Commit>>();
+        this.commitRequested = false;
+        this.closed = false;
+        ConcurrentMerkleTree.VersionedRoot root = tree.getVersionedRoot();
+        this.lastCommit = new Commit(root.getRootHash(), root.getVersion(), 0);
+        this.executor = Executors.newSingleThreadScheduledExecutor(task -> {
+        	Thread thread = new Thread(task, "merkle-epoch-commit");
+        	thread.setDaemon(true);
+        	return thread;
+        });
+        this.executor.scheduleAtFixedRate(this::commitEpoch, epochMillis,
+        		                          epochMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Submits the update of a leaf with the hash of the given data.
+     *
+     * @param index  the position of the leaf.
+     * @param data  the new data of the leaf.
+     * @return a future completed with the commit of the epoch that contains
+     *         the update.
+     * @throws IllegalArgumentException if the data is null.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     * @throws IllegalStateException if the scheduler is closed.
+     */
+    public CompletableFuture<Commit> submit(int index, T data) {
+    	if (data == null) throw new IllegalArgumentException();
+
+        return this.submitHash(index, HashUtil.dataToHash(data));
+    }
+
+    /**
+     * Submits the update of a leaf with the given hash.
+     *
+     * @param index  the position of the leaf.
+     * @param hash  the new hash of the leaf.
+     * @return a future completed with the commit of the epoch that contains
+     *         the update.
+     * @throws IllegalArgumentException if the hash is not a valid MD5 hash.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     * @throws IllegalStateException if the scheduler is closed.
+     */
+    public CompletableFuture<Commit> submitHash(int index, String hash) {
+    	if (index < 0 || index >= this.tree.getWidth())
+    		throw new IndexOutOfBoundsException(index);
+
+    	HashUtil.hexToDigest(hash, new byte[HashUtil.MD5_LENGTH], 0);
+
+    	CompletableFuture<Commit> future = new CompletableFuture<Commit>();
+
+    	synchronized (this) {
+    		if (this.closed) throw new IllegalStateException();
+
+    		this.pendingUpdates.put(index, hash);
+    		this.pendingFutures.add(future);
+
+    		if (this.pendingUpdates.size() >= this.maxUpdatesPerEpoch
+    			&& !this.commitRequested) {
+    			this.commitRequested = true;
+    			this.executor.execute(this::commitEpoch);
+    		}
+    	}
+
+    	return future;
+    }
+
+    /**
+     * Returns the commit of the last epoch, or the state of the tree when the
+     * scheduler was created if no epoch has been committed yet.
+     *
+     * @return the last commit.
+     */
+    public Commit getLastCommit() {
+        return this.lastCommit;
+    }
+
+    /**
+     * Commits the buffered updates, waiting for the commit, and stops the
+     * scheduler. Further updates are rejected. If the calling thread is
+     * interrupted while waiting, its interrupt status is restored and the
+     * last commit completes in the background.
+     */
+    @Override
+    public void close() {
+    	synchronized (this) {
+    		if (this.closed) return;
+
+    		this.closed = true;
+    	}
+
+    	try {
+    		this.executor.submit(this::commitEpoch).get();
+    	} catch (InterruptedException e) {
+    		Thread.currentThread().interrupt();
+    	} catch (ExecutionException e) {
+    		throw new IllegalStateException(e.getCause());
+    	} finally {
+    		this.executor.shutdown();
+    	}
+    }
+
+    /**
+     * Ends the current epoch, applying its updates to the tree as one batch.
+     */
+    private void commitEpoch() {
+    	Map<Integer, String> updates;
+    	List<CompletableFuture<Commit>> futures;
+
+    	synchronized (this) {
+    		this.commitRequested = false;
+
+    		if (this.pendingFutures.isEmpty()) return;
+
+    		updates = this.pendingUpdates;
+    		futures = this.pendingFutures;
+    		this.pendingUpdates = new HashMap<Integer, String>();
+    		this.pendingFutures = new ArrayList<CompletableFuture<Commit>>();
+    	}
+
+    	Commit commit;
+
+    	try {
+    		ConcurrentMerkleTree.VersionedRoot root =
+    				this.tree.updateLeafHashes(updates);
+    		commit = new Commit(root.getRootHash(), root.getVersion(),
+    				            updates.size());
+    	} catch (RuntimeException e) {
+    		for (CompletableFuture<Commit> future : futures)
+    			future.completeExceptionally(e);
+    		return;
+    	}
+
+    	this.lastCommit = commit;
+
+    	for (CompletableFuture<Commit> future : futures)
+    		future.complete(commit);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,345 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A class that builds Merkle trees over the content of files and directories.
+ *
+ * <p>
+ * A file is split into chunks of a fixed size, the last one possibly shorter,
+ * and each chunk is a leaf whose hash is the MD5 of its bytes. An empty file
+ * has a single empty chunk. The chunks are read with positional reads on a
+ * {@link FileChannel} and hashed in parallel on an executor; a semaphore
+ * bounds the number of chunks in flight, so memory use does not depend on the
+ * size of the files.
+ *
+ * <p>
+ * The tree of a directory has a leaf for each regular file under it, in the
+ * order of their relative paths, which use {@code /} as separator. The hash of
+ * a leaf combines the hash of the relative path with the root of the tree of
+ * the file, so that renaming a file changes the root of the directory.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class FileHasher {
+
+    /**
+     * The default size of a chunk, 1 MB.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final int chunkSize;
+
+    private final Semaphore chunksInFlight;
+
+    private final Executor executor;
+
+    /**
+     * Constructs a hasher that hashes chunks on the given executor.
+     *
+     * @param chunkSize  the size of a chunk in bytes.
+     * @param maxChunksInFlight  the maximum number of chunks read or hashed
+     *                           at the same time.
+     * @param executor  the executor on which chunks are read and hashed.
+     * @throws IllegalArgumentException if the sizes are not positive or the
+     *         executor is null.
+     */
+    public FileHasher(int chunkSize, int maxChunksInFlight, Executor executor) {
+    	if (chunkSize < 1 || maxChunksInFlight < 1 || executor == null)
+    		throw new IllegalArgumentException();
+
+        this.chunkSize = chunkSize;
+        this.chunksInFlight = new Semaphore(maxChunksInFlight);
+        this.executor = executor;
+    }
+
+    /**
+     * Constructs a hasher that hashes chunks on the common fork-join pool,
+     * with two chunks in flight for each of its threads.
+     *
+     * @param chunkSize  the size of a chunk in bytes.
+     * @throws IllegalArgumentException if the size is not positive.
+     */
+    public FileHasher(int chunkSize) {
+    	this(chunkSize, 2 * ForkJoinPool.getCommonPoolParallelism(),
+    		 ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns the hashes of the chunks of a file, in order.
+     *
+     * @param file  the file to hash.
+     * @return the hashes of the chunks of the file.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if the path is null or the file has
+     *         too many chunks.
+     */
+    public List<String> hashChunks(Path file) throws IOException {
+    	if (file == null) throw new IllegalArgumentException();
+
+        return Arrays.asList(FileHasher.await(this.submit(file)));
+    }
+
+    /**
+     * Returns the root of the tree of a file.
+     *
+     * @param file  the file to hash.
+     * @return the root of the tree of the chunks of the file.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if the path is null.
+     */
+    public String hashFile(Path file) throws IOException {
+        return new MerkleLevels(this.hashChunks(file)).getRootHash();
+    }
+
+    /**
+     * Returns the roots of the trees of all the regular files under a
+     * directory, by relative path. The chunks of all the files share the same
+     * bound on the chunks in flight.
+     *
+     * @param directory  the directory to hash.
+     * @return the root of each file, sorted by relative path.
+     * @throws IOException if the directory or one of its files cannot be
+     *         read.
+     * @throws IllegalArgumentException if the path is null.
+     */
+    public SortedMap<String, String> hashFiles(Path directory)
+    		throws IOException {
+    	if (directory == null) throw new IllegalArgumentException();
+
+    	List<Path> files;
+
+    	try (Stream<Path> paths = Files.walk(directory)) {
+    		files = paths.filter(Files::isRegularFile)
+    				     .collect(Collectors.toList());
+    	}
+
+    	SortedMap<String, CompletableFuture<String[]>> pending =
+    			new TreeMap<String, CompletableFuture<String[]>>();
+
+    	try {
+    		for (Path file : files)
+    			pending.put(FileHasher.relativeName(directory, file),
+    					    this.submit(file));
+    	} finally {
+    		// Waits for what was submitted even if a submission failed, so
+    		// that no file is left open.
+    		CompletableFuture.allOf(pending.values()
+    				         .toArray(new CompletableFuture<?>[0]))
+    		                 .exceptionally(e -> null).join();
+    	}
+
+    	SortedMap<String, String> roots = new TreeMap<String, String>();
+
+    	for (Map.Entry<String, CompletableFuture<String[]>> entry
+    		 : pending.entrySet()) {
+    		roots.put(entry.getKey(), new MerkleLevels(Arrays.asList(
+    				  FileHasher.await(entry.getValue()))).getRootHash());
+    	}
+
+    	return roots;
+    }
+
+    /**
+     * Returns the root of the tree of a directory.
+     *
+     * @param directory  the directory to hash.
+     * @return the root of the tree of the directory.
+     * @throws IOException if the directory or one of its files cannot be
+     *         read.
+     * @throws IllegalArgumentException if the path is null or the directory
+     *         contains no file.
+     */
+    public String hashDirectory(Path directory) throws IOException {
+        return this.<Object>directoryTree(directory).getRoot().getHash();
+    }
+
+    /**
+     * Builds the Merkle tree of the chunks of a file.
+     *
+     * @param <T>  the type of data on which the tree is built.
+     * @param file  the file to hash.
+     * @return the tree of the chunks of the file.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if the path is null.
+     */
+    public <T> MerkleTree<T> fileTree(Path file) throws IOException {
+        return MerkleTree.fromHashes(this.hashChunks(file));
+    }
+
+    /**
+     * Builds the Merkle tree of a directory, with a leaf for each regular file
+     * under it.
+     *
+     * @param <T>  the type of data on which the tree is built.
+     * @param directory  the directory to hash.
+     * @return the tree of the directory.
+     * @throws IOException if the directory or one of its files cannot be
+     *         read.
+     * @throws IllegalArgumentException if the path is null or the directory
+     *         contains no file.
+     */
+    public <T> MerkleTree<T> directoryTree(Path directory) throws IOException {
+    	List<String> leafHashes = new ArrayList<String>();
+
+    	for (Map.Entry<String, String> entry
+    		 : this.hashFiles(directory).entrySet()) {
+    		leafHashes.add(FileHasher.fileLeafHash(entry.getKey(),
+    				                               entry.getValue()));
+    	}
+
+        return MerkleTree.fromHashes(leafHashes);
+    }
+
+    /**
+     * Returns the hash of the leaf of a file in the tree of a directory.
+     *
+     * @param relativeName  the path of the file relative to the directory,
+     *                      with {@code /} as separator.
+     * @param fileRoot  the root of the tree of the file.
+     * @return the hash of the leaf of the file.
+     */
+    public static String fileLeafHash(String relativeName, String fileRoot) {
+        return HashUtil.combineHashes(HashUtil.computeMD5(
+        		relativeName.getBytes(StandardCharsets.UTF_8)), fileRoot);
+    }
+
+    private static String relativeName(Path directory, Path file) {
+    	List<String> names = new ArrayList<String>();
+
+    	for (Path name : directory.relativize(file)) names.add(name.toString());
+
+        return String.join("/", names);
+    }
+
+    /**
+     * Submits the chunks of a file, blocking while the maximum number of
+     * chunks is in flight. The file is closed once all its chunks are hashed.
+     */
+    private CompletableFuture<String[]> submit(Path file) throws IOException {
+    	FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    	List<CompletableFuture<Void>> futures =
+    			new ArrayList<CompletableFuture<Void>>();
+    	String[] hashes;
+
+    	try {
+    		long size = channel.size();
+    		long chunks = Math.max(1, (size + this.chunkSize - 1)
+    				                  / this.chunkSize);
+
+    		if (chunks > Integer.MAX_VALUE)
+    			throw new IllegalArgumentException();
+
+    		hashes = new String[(int) chunks];
+
+    		for (int i = 0; i < hashes.length; i++) {
+    			int index = i;
+    			long position = (long) i * this.chunkSize;
+    			int length = (int) Math.min(this.chunkSize, size - position);
+
+    			this.chunksInFlight.acquire();
+
+    			try {
+    				futures.add(CompletableFuture.runAsync(() -> {
+    					try {
+    						hashes[index] =
+    								FileHasher.hashChunk(channel, position,
+    										             length);
+    					} finally {
+    						this.chunksInFlight.release();
+    					}
+    				}, this.executor));
+    			} catch (RuntimeException e) {
+    				this.chunksInFlight.release();
+    				throw e;
+    			}
+    		}
+    	} catch (InterruptedException e) {
+    		Thread.currentThread().interrupt();
+    		FileHasher.closeWhenDone(channel, futures);
+    		throw new InterruptedIOException();
+    	} catch (IOException | RuntimeException e) {
+    		FileHasher.closeWhenDone(channel, futures);
+    		throw e;
+    	}
+
+    	return FileHasher.closeWhenDone(channel, futures)
+    			         .thenApply(done -> hashes);
+    }
+
+    private static CompletableFuture<Void> closeWhenDone(FileChannel channel,
+    		List<CompletableFuture<Void>> futures) {
+    	return CompletableFuture.allOf(futures.toArray(
+    			                       new CompletableFuture<?>[0]))
+    			                .whenComplete((done, e) -> {
+    		try {
+    			channel.close();
+    		} catch (IOException closeFailure) {
+    			throw new UncheckedIOException(closeFailure);
+    		}
+    	});
+    }
+
+    /**
+     * Reads and hashes the chunk of the given length at the given position,
+     * rethrowing I/O errors as unchecked exceptions.
+     */
+    static String hashChunk(FileChannel channel, long position,
+    		int length) {
+    	ByteBuffer buffer = ByteBuffer.allocate(Math.max(length, 0));
+
+    	try {
+    		while (buffer.hasRemaining()) {
+    			if (channel.read(buffer, position + buffer.position()) < 0)
+    				throw new IOException("The file was truncated while it "
+    						              + "was being hashed");
+    		}
+    	} catch (IOException e) {
+    		throw new UncheckedIOException(e);
+    	}
+
+    	return HashUtil.computeMD5(buffer.array());
+    }
+
+    /**
+     * Waits for a future, rethrowing the I/O errors of its tasks as checked
+     * exceptions.
+     */
+    static <V> V await(CompletableFuture<V> future)
+    		throws IOException {
+    	try {
+    		return future.join();
+    	} catch (CompletionException e) {
+    		if (e.getCause() instanceof UncheckedIOException)
+    			throw ((UncheckedIOException) e.getCause()).getCause();
+
+    		if (e.getCause() instanceof RuntimeException)
+    			throw (RuntimeException) e.getCause();
+
+    		if (e.getCause() instanceof Error) throw (Error) e.getCause();
+
+    		throw e;
+    	}
+    }
+}
\ No newline at end of file
@@ -2,9 +2,18 @@ package it.unicam.cs.asdl2425.mp1;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
 
 import java.util.NoSuchElementException;
 import java.util.ConcurrentModificationException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A class representing a linked list with MD5 hashes computed for each element.
@@ -17,14 +26,25 @@ import java.util.ConcurrentModificationException;
  * <li>Add an item to the head of the list</li>
  * <li>Add an item to the tail of the list</li>
  * <li>Remove an item from the list based on data</li>
+ * <li>Access or remove an item based on its position</li>
  * <li>Retrieve a sorted list of all hashes contained in the list</li>
+ * <li>Export the raw digests of all the elements into a contiguous array</li>
  * <li>Building a textual representation of the list</li>
+ * <li>Process the elements through sequential or parallel streams</li>
+ * <li>Notify registered listeners of every change</li>
  * </ul>
  *
  * <p>
  * This implementation includes optimizations such as maintaining a reference to
  * the last node in the list (tail), which makes inserting into the tail an O(1)
- * operation.
+ * operation. Removing or accessing an element based on data or position walks
+ * the list from the head; {@link IndexedHashLinkedList} spends some memory on
+ * every element to make these operations constant or logarithmic time.
+ *
+ * <p>
+ * By default the hash of an element is computed when it is inserted. A list
+ * created in deferred hashing mode only stores the data on insertion and
+ * computes the pending hashes in bulk, in parallel, when they are first read.
  *
  * <p>
  * The class uses the HashUtil class to calculate the MD5 hash of the data.
@@ -36,16 +56,66 @@ import java.util.ConcurrentModificationException;
  */
 public class HashLinkedList<T> implements Iterable<T> {
 	
+    /**
+     * The number of pending nodes below which deferred hashes are computed
+     * sequentially, since splitting the work would cost more than it saves.
+     */
+    private static final int PARALLEL_HASHING_THRESHOLD = 1024;
+
+    /**
+     * The increment of the size of the batches split from the spliterator.
+     */
+    private static final int BATCH_UNIT = 1024;
+
+    /**
+     * The maximum size of a batch split from the spliterator.
+     */
+    private static final int MAX_BATCH = 1 << 25;
+
     private Node head;
     private Node tail;
     private int size;
     private int numberChanges;
+    private ArrayList<Node> pendingNodes;
+    private boolean rescanPending;
+    private CompletableFuture<Void> hashing;
+    private final ArrayList<ChangeListener<? super T>> listeners;
 
     public HashLinkedList() {
+        this(false);
+    }
+
+    /**
+     * Constructs an empty list, specifying whether the hashes of the elements
+     * are computed at insertion time or deferred. In deferred mode inserting
+     * an element only links a new node, and the hashes of the nodes inserted
+     * since the last computation are calculated in bulk, in parallel, the
+     * first time they are needed (for example by {@link #getAllHashes()} or
+     * when a Merkle tree is built from the list), or in the background through
+     * {@link #hashPendingAsync(Executor)}.
+     *
+     * @param deferredHashing  true if the hashes should be computed lazily,
+     *                         false if they should be computed on insertion.
+     */
+    public HashLinkedList(boolean deferredHashing) {
         this.head = null;
         this.tail = null;
         this.size = 0;
         this.numberChanges = 0;
+        this.pendingNodes = deferredHashing ? new ArrayList<Node>() : null;
+        this.rescanPending = false;
+        this.hashing = CompletableFuture.completedFuture(null);
+        this.listeners = new ArrayList<ChangeListener<? super T>>();
+    }
+
+    /**
+     * Returns true if the hashes of the elements are computed lazily, false if
+     * they are computed on insertion.
+     *
+     * @return true if the list is in deferred hashing mode.
+     */
+    public boolean isHashingDeferred() {
+        return this.pendingNodes != null;
     }
 
     /**
@@ -57,6 +127,75 @@ public class HashLinkedList<T> implements Iterable<T> {
         return this.size;
     }
 
+    /**
+     * A listener notified of every change of a HashLinkedList, right after the
+     * change is applied and in the order in which the changes happen.
+     *
+     * @param <T> the type of data contained in the list.
+     */
+    public interface ChangeListener<T> {
+
+        /**
+         * Called when an element is added to the list.
+         *
+         * @param index  the position of the new element.
+         * @param data  the new element.
+         * @param hash  the hash of the new element.
+         */
+        void elementAdded(int index, T data, String hash);
+
+        /**
+         * Called when an element is removed from the list.
+         *
+         * @param index  the position the element had before the removal.
+         * @param data  the removed element.
+         */
+        void elementRemoved(int index, T data);
+    }
+
+    /**
+     * Registers a listener to be notified of the changes of the list. In
+     * deferred hashing mode the hashes of the elements added while a listener
+     * is registered are computed on insertion, since they are passed to the
+     * listener.
+     *
+     * @param listener  the listener to register.
+     * @throws NullPointerException if the listener is null.
+     */
+    public void addChangeListener(ChangeListener<? super T> listener) {
+    	if (listener == null) throw new NullPointerException();
+
+    	this.listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener previously registered with
+     * {@link #addChangeListener(ChangeListener)}.
+     *
+     * @param listener  the listener to unregister.
+     * @return true if the listener was registered, false otherwise.
+     */
+    public boolean removeChangeListener(ChangeListener<? super T> listener) {
+    	return this.listeners.remove(listener);
+    }
+
+    /**
+     * Notifies the listeners that the given node has been added in the given
+     * position.
+     *
+     * @param index  the position of the node.
+     * @param node  the new node.
+     */
+    private void fireAdded(int index, Node node) {
+    	if (this.listeners.isEmpty()) return;
+
+    	if (node.hash == null) node.hash = HashUtil.dataToHash(node.data);
+
+    	for (ChangeListener<? super T> listener : this.listeners) {
+    		listener.elementAdded(index, node.data, node.hash);
+    	}
+    }
+
     /**
      * Represents a node in the linked list.
      */
@@ -67,13 +206,141 @@ public class HashLinkedList<T> implements Iterable<T> {
 
         Node next;
 
-        Node(T data) {
+        Node(T data, boolean computeHash) {
             this.data = data;
-            this.hash = HashUtil.dataToHash(data);
+            this.hash = computeHash ? HashUtil.dataToHash(data) : null;
             this.next = null;
         }
     }
 
+    /**
+     * Creates the node for a new element, computing its hash right away or
+     * queueing it for deferred hashing depending on the mode of the list.
+     *
+     * @param data  the data of the node.
+     * @return the new node.
+     */
+    private Node newNode(T data) {
+    	if (this.pendingNodes == null) return new Node(data, true);
+
+    	Node node = new Node(data, false);
+    	this.pendingNodes.add(node);
+
+    	return node;
+    }
+
+    /**
+     * Computes the hashes of all the nodes inserted since the last computation,
+     * waiting for any batch handed to {@link #hashPendingAsync(Executor)} to
+     * complete. Large batches are hashed in parallel. Once this method returns
+     * every node of the list has its hash.
+     *
+     * <p>
+     * If hashing a batch failed, the failure is thrown once, by the call that
+     * computed the batch or by the first call that waits for it. The next
+     * computation then hashes the nodes still in the list whose hash is
+     * missing, so it succeeds once the element that caused the failure has
+     * been removed.
+     *
+     * @throws CompletionException if hashing a batch in the background failed.
+     */
+    public void hashPending() {
+    	try {
+    		this.hashing.join();
+    	}
+    	catch (CompletionException | CancellationException e) {
+    		this.hashing = CompletableFuture.completedFuture(null);
+    		this.rescanPending = true;
+
+    		throw e;
+    	}
+
+    	ArrayList<Node> batch = this.takePendingNodes();
+
+    	if (batch == null || batch.isEmpty()) return;
+
+    	try {
+    		this.hashNodes(batch);
+    	}
+    	catch (RuntimeException e) {
+    		this.rescanPending = true;
+
+    		throw e;
+    	}
+    }
+
+    /**
+     * Returns the nodes waiting for their hash and starts a new batch. After a
+     * failure the nodes are found by walking the list, which leaves out the
+     * nodes removed since.
+     *
+     * @return the nodes waiting for their hash, or null if the hashes are not
+     *         deferred.
+     */
+    private ArrayList<Node> takePendingNodes() {
+    	if (this.pendingNodes == null) return null;
+
+    	ArrayList<Node> batch = this.pendingNodes;
+
+    	if (this.rescanPending) {
+    		batch = new ArrayList<Node>();
+
+    		for (Node current = this.head; current != null;
+    			 current = current.next) {
+    			if (current.hash == null) batch.add(current);
+    		}
+
+    		this.rescanPending = false;
+    	}
+
+    	this.pendingNodes = new ArrayList<Node>();
+
+    	return batch;
+    }
+
+    /**
+     * Hands the nodes inserted since the last computation to the given
+     * executor, which computes their hashes in the background while the list
+     * keeps accepting new elements. Reading the hashes of the list, through
+     * {@link #getAllHashes()} or the other methods that need them, waits for
+     * the batch to complete.
+     *
+     * @param executor  the executor on which the hashes are computed.
+     * @return a future completed when every batch handed to an executor so far
+     *         has been hashed.
+     * @throws NullPointerException if the executor is null.
+     */
+    public CompletableFuture<Void> hashPendingAsync(Executor executor) {
+    	if (executor == null) throw new NullPointerException();
+
+    	ArrayList<Node> batch = this.takePendingNodes();
+
+    	if (batch != null && !batch.isEmpty()) {
+    		this.hashing = CompletableFuture.allOf(this.hashing,
+    				       CompletableFuture.runAsync(
+    				       () -> this.hashNodes(batch), executor));
+    	}
+
+    	return this.hashing;
+    }
+
+    /**
+     * Computes the hash of each of the given nodes, in parallel when the batch
+     * is large enough.
+     *
+     * @param batch  the nodes to hash.
+     */
+    private void hashNodes(ArrayList<Node> batch) {
+    	if (batch.size() < PARALLEL_HASHING_THRESHOLD) {
+    		for (Node node : batch) {
+    			if (node.hash == null)
+    				node.hash = HashUtil.dataToHash(node.data);
+    		}
+    	}
+    	else batch.parallelStream().filter(node -> node.hash == null).forEach(
+    			node -> node.hash = HashUtil.dataToHash(node.data));
+    }
+
     /**
      * Adds a new item to the head of the list.
      *
@@ -82,7 +349,7 @@ public class HashLinkedList<T> implements Iterable<T> {
     public void addAtHead(T data) {
     	if (data == null) throw new NullPointerException();
 
-    	Node newNode = new Node(data);
+    	Node newNode = this.newNode(data);
 
     	newNode.next = this.head;
         this.head = newNode;
@@ -90,6 +357,8 @@ public class HashLinkedList<T> implements Iterable<T> {
 
         this.size++;
         this.numberChanges++;
+
+        this.fireAdded(0, newNode);
     }
 
     /**
@@ -100,7 +369,7 @@ public class HashLinkedList<T> implements Iterable<T> {
     public void addAtTail(T data) {
     	if (data == null) throw new NullPointerException();
 
-    	Node newNode = new Node(data);
+    	Node newNode = this.newNode(data);
 
         if (this.tail != null) this.tail.next = newNode;
         this.tail = newNode;
@@ -108,37 +377,60 @@ public class HashLinkedList<T> implements Iterable<T> {
 
         this.size++;
         this.numberChanges++;
+
+        this.fireAdded(this.size - 1, newNode);
     }
 
     /**
      * Returns an ArrayList containing all the hashes in the list in sorted
-     * order.
+     * order. The nodes are visited in a single pass, so the cost is linear in
+     * the size of the list.
      *
      * @return a list with all the hashes of the list.
      */
     public ArrayList<String> getAllHashes() {
-    	ArrayList<String> hashList = new ArrayList<String>();
+    	this.hashPending();
+
+    	ArrayList<String> hashList = new ArrayList<String>(this.size);
 
-        Iterator<T> iterator = this.iterator();
-        
         Node current = this.head;
 
-        while (iterator.hasNext()) {
-            T data = iterator.next();
-
-            while (current != null) {
-                if (current.data.equals(data)) {
-                	hashList.add(current.hash);
-                    break;
-                }
-                
-                current = current.next;
-            }
+        while (current != null) {
+        	hashList.add(current.hash);
+        	current = current.next;
         }
 
         return hashList;
     }
 
+    /**
+     * Returns the raw MD5 digests of all the elements of the list, in list
+     * order, packed into a single array of {@code getSize() * 16} bytes: the
+     * digest of the i-th element occupies the bytes from {@code i * 16} to
+     * {@code i * 16 + 15}. The digests are the ones cached in the nodes, so no
+     * element is hashed again.
+     *
+     * @return a contiguous array with the digests of all the elements.
+     * @throws IllegalStateException if the digests do not fit in an array,
+     *         that is with more than {@code Integer.MAX_VALUE / 16} elements.
+     */
+    public byte[] getAllDigests() {
+    	this.hashPending();
+
+        byte[] digests = HashUtil.newDigestArray(this.size);
+
+        Node current = this.head;
+        int offset = 0;
+
+        while (current != null) {
+        	HashUtil.hexToDigest(current.hash, digests, offset);
+        	offset += HashUtil.MD5_LENGTH;
+        	current = current.next;
+        }
+
+        return digests;
+    }
+
     /**
      * Builds a string containing all the nodes in the list, including data and
      * hashes. The string should be formatted as in the following example:
@@ -153,25 +445,17 @@ public class HashLinkedList<T> implements Iterable<T> {
      * @return a text representation of all the nodes in the list.
      */
     public String buildNodesString() {
-    	StringBuilder sb = new StringBuilder();
+    	this.hashPending();
 
-        Iterator<T> iterator = this.iterator();
+    	StringBuilder sb = new StringBuilder();
 
         Node current = this.head;
 
-        while (iterator.hasNext()) {
-            T data = iterator.next();
-
-            while (current != null) {
-                if (current.data.equals(data)) {
-                    sb.append("Dato: ").append(current.data)
-                      .append(", Hash: ").append(current.hash)
-                      .append("\n");
-                    break;
-                }
-
-                current = current.next;
-            }
+        while (current != null) {
+            sb.append("Dato: ").append(current.data)
+              .append(", Hash: ").append(current.hash)
+              .append("\n");
+            current = current.next;
         }
 
         return sb.toString();
@@ -179,6 +463,8 @@ public class HashLinkedList<T> implements Iterable<T> {
 
     /**
      * Removes the first element in the list that contains the specified data.
+     * The list is walked once from the head, so the cost is linear in the
+     * position of the element.
      *
      * @param data  the data to be removed.
      * @return true if the item was found and removed, false otherwise.
@@ -186,42 +472,218 @@ public class HashLinkedList<T> implements Iterable<T> {
 	public boolean remove(T data) {
 		if (data == null) throw new NullPointerException();
 
-	    Iterator<T> iterator = this.iterator();
-
 	    Node current = this.head;
 	    Node precedent = null;
+	    int position = 0;
 
-	    while (iterator.hasNext()) {
-	        T dataCorrente = iterator.next();
-
-	        if (dataCorrente.equals(data)) {
-	            while (current != null) {
-	                if (current.data.equals(data)) {
-	                    if (precedent == null) this.head = current.next;
-	                    else precedent.next = current.next;	                    
+	    while (current != null) {
+	    	if (current.data.equals(data)) {
+	    		this.unlink(precedent, current, position);
 
-	                    if (current == this.tail) this.tail = precedent;
+	    		return true;
+	    	}
 
-	                    this.size--;
-	                    this.numberChanges++;
-
-	                    return true;
-	                }
-	                
-	                precedent = current;
-	                current = current.next;
-	            }
-	        }
+	    	precedent = current;
+	    	current = current.next;
+	    	position++;
 	    }
 
 	    return false;
     }
 
+    /**
+     * Returns the element at the given position of the list, walking the list
+     * from the head.
+     *
+     * @param index  the position of the element, starting from 0.
+     * @return the element at the given position.
+     * @throws IndexOutOfBoundsException if the index is negative or not less
+     *         than the size of the list.
+     */
+    public T get(int index) {
+    	if (index < 0 || index >= this.size)
+    		throw new IndexOutOfBoundsException(index);
+
+    	Node current = this.head;
+
+    	for (int i = 0; i < index; i++) current = current.next;
+
+    	return current.data;
+    }
+
+    /**
+     * Removes the element at the given position of the list, walking the list
+     * from the head.
+     *
+     * @param index  the position of the element, starting from 0.
+     * @return the removed element.
+     * @throws IndexOutOfBoundsException if the index is negative or not less
+     *         than the size of the list.
+     */
+    public T removeAt(int index) {
+    	if (index < 0 || index >= this.size)
+    		throw new IndexOutOfBoundsException(index);
+
+    	Node current = this.head;
+    	Node precedent = null;
+
+    	for (int i = 0; i < index; i++) {
+    		precedent = current;
+    		current = current.next;
+    	}
+
+    	this.unlink(precedent, current, index);
+
+    	return current.data;
+    }
+
+    /**
+     * Unlinks a node from the list and notifies the listeners.
+     *
+     * @param precedent  the node before the one to unlink, or null if the node
+     *                   is the head of the list.
+     * @param node  the node to unlink.
+     * @param index  the position of the node.
+     */
+    private void unlink(Node precedent, Node node, int index) {
+    	if (precedent == null) this.head = node.next;
+    	else precedent.next = node.next;
+
+    	if (node == this.tail) this.tail = precedent;
+
+    	node.next = null;
+
+    	this.size--;
+    	this.numberChanges++;
+
+    	for (ChangeListener<? super T> listener : this.listeners) {
+    		listener.elementRemoved(index, node.data);
+    	}
+    }
+
     @Override
     public Iterator<T> iterator() {
         return new Itr();
     }
 
+    /**
+     * Returns a sequential stream over the elements of the list.
+     *
+     * @return a sequential stream over the elements of the list.
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel stream over the elements of the list, which splits
+     * the list into batches processed by different threads.
+     *
+     * @return a parallel stream over the elements of the list.
+     */
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(this.spliterator(), true);
+    }
+
+    /**
+     * Returns a fail-fast spliterator over the elements of the list. Since a
+     * linked list cannot be split in the middle without walking it, splitting
+     * copies a batch of elements from the front into an array, with batches
+     * growing by {@value #BATCH_UNIT} elements at each split, so that parallel
+     * streams get work to share without a full copy of the list.
+     *
+     * @return a spliterator over the elements of the list.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new Split();
+    }
+
+    /**
+     * A class that implements a fail-fast, batch-splitting spliterator for
+     * HashLinkedList.
+     */
+    private class Split implements Spliterator<T> {
+    	private Node current;
+    	private int remaining;
+    	private int batch;
+        private final int numExpectedChanges;
+
+        private Split() {
+        	this.current = head;
+        	this.remaining = size;
+        	this.batch = 0;
+            this.numExpectedChanges = numberChanges;
+        }
+
+        private void checkChanges() {
+        	if(this.numExpectedChanges != numberChanges)
+        		throw new ConcurrentModificationException();
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+        	if (this.remaining <= 1 || this.current == null) return null;
+
+        	int n = Math.min(Math.min(this.batch + BATCH_UNIT, MAX_BATCH),
+        			         this.remaining);
+        	Object[] array = new Object[n];
+
+        	for (int i = 0; i < n; i++) {
+        		array[i] = this.current.data;
+        		this.current = this.current.next;
+        	}
+
+        	this.batch = n;
+        	this.remaining -= n;
+        	this.checkChanges();
+
+        	return Spliterators.spliterator(array, 0, n,
+        			           Spliterator.ORDERED | Spliterator.NONNULL);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+        	if (action == null) throw new NullPointerException();
+
+        	this.checkChanges();
+
+        	if (this.remaining <= 0) return false;
+
+        	T data = this.current.data;
+        	this.current = this.current.next;
+        	this.remaining--;
+        	action.accept(data);
+
+        	return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+        	if (action == null) throw new NullPointerException();
+
+        	while (this.remaining > 0) {
+        		T data = this.current.data;
+        		this.current = this.current.next;
+        		this.remaining--;
+        		action.accept(data);
+        	}
+
+        	this.checkChanges();
+        }
+
+        @Override
+        public long estimateSize() {
+        	return this.remaining;
+        }
+
+        @Override
+        public int characteristics() {
+        	return Spliterator.ORDERED | Spliterator.SIZED
+        		   | Spliterator.SUBSIZED | Spliterator.NONNULL;
+        }
+    }
+
     /**
      * A class that implements a fail-fast iterator for HashLinkedList.
      */
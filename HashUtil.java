@@ -1,5 +1,6 @@
 package it.unicam.cs.asdl2425.mp1;
 
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -10,6 +11,13 @@ import java.security.NoSuchAlgorithmException;
  */
 public class HashUtil {
 
+    /**
+     * The length in bytes of a raw MD5 digest.
+     */
+    public static final int MD5_LENGTH = 16;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     /**
      * Calculate the hash of the provided data using MD5.
      *
@@ -28,21 +36,75 @@ public class HashUtil {
      * @throws RuntimeException if the hashing algorithm is not available.
      */
     public static String computeMD5(byte[] input) {
+        return HashUtil.digestToHex(HashUtil.computeMD5Digest(input), 0);
+    }
+
+    /**
+     * Computes the hash of the remaining bytes of a buffer using MD5, without
+     * copying them, so that direct buffers can be hashed as they are. The
+     * position of the buffer is moved to its limit.
+     *
+     * @param input  the buffer to hash.
+     * @return the hash as a hexadecimal string.
+     * @throws RuntimeException if the hashing algorithm is not available.
+     */
+    public static String bufferToHash(ByteBuffer input) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+
+            md.update(input);
+
+            return HashUtil.digestToHex(md.digest(), 0);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("MD5 algorithm not found", e);
+        }
+    }
+
+    /**
+     * Calculate the raw MD5 digest of the provided data, that is, the bytes
+     * whose hexadecimal representation is returned by
+     * {@link #dataToHash(Object)}.
+     *
+     * @param data  the data to be hashed.
+     * @return the 16 bytes of the digest.
+     */
+    public static byte[] dataToDigest(Object data) {
+        return HashUtil.computeMD5Digest(intToBytes(data.hashCode()));
+    }
+
+    /**
+     * Computes the raw MD5 digest of a supplied byte array.
+     *
+     * @param input  the byte array to hash.
+     * @return the 16 bytes of the digest.
+     * @throws RuntimeException if the hashing algorithm is not available.
+     */
+    public static byte[] computeMD5Digest(byte[] input) {
         try {
             MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] hashBytes = md.digest(input);
-            StringBuilder hashString = new StringBuilder();
-            
-            for (byte b : hashBytes) {
-                hashString.append(String.format("%02x", b));
-            }
             
-            return hashString.toString();
+            return md.digest(input);
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException("MD5 algorithm not found", e);
         }
     }
 
+    /**
+     * Computes the hash of an intermediate node of a Merkle tree, given the
+     * hashes of its children: the two hexadecimal strings are concatenated and
+     * the MD5 hash of the bytes of the result is returned. A node with a single
+     * child is hashed on its own, which is equivalent to concatenating it with
+     * the empty string.
+     *
+     * @param left  the hash of the left child.
+     * @param right  the hash of the right child, or null if there is none.
+     * @return the hash of the parent node.
+     */
+    public static String combineHashes(String left, String right) {
+        return HashUtil.computeMD5(
+        	   (right == null ? left : left + right).getBytes());
+    }
+
     /**
      * Converts an integer (int) value to a byte array.
      *
@@ -59,4 +121,113 @@ public class HashUtil {
         return new byte[] { (byte) (value >> 24), (byte) (value >> 16),
         		   (byte) (value >> 8), (byte) value };
     }
+
+    /**
+     * Allocates an array for the given number of raw MD5 digests packed one
+     * after the other.
+     *
+     * @param count  the number of digests.
+     * @return an array of {@code count * 16} bytes.
+     * @throws IllegalStateException if the digests do not fit in an array.
+     */
+    static byte[] newDigestArray(int count) {
+    	if (count > Integer.MAX_VALUE / MD5_LENGTH)
+    		throw new IllegalStateException(count + " digests do not fit in "
+    				                        + "an array");
+
+        return new byte[count * MD5_LENGTH];
+    }
+
+    /**
+     * Converts the MD5 digest stored at the given offset of a byte array into
+     * its hexadecimal string representation.
+     *
+     * @param digests  the array containing the raw digest.
+     * @param offset  the position of the first byte of the digest.
+     * @return the digest as a 32-character lowercase hexadecimal string.
+     */
+    public static String digestToHex(byte[] digests, int offset) {
+        char[] hex = new char[MD5_LENGTH * 2];
+
+        for (int i = 0; i < MD5_LENGTH; i++) {
+            int b = digests[offset + i] & 0xff;
+            hex[i * 2] = HEX_DIGITS[b >>> 4];
+            hex[i * 2 + 1] = HEX_DIGITS[b & 0x0f];
+        }
+
+        return new String(hex);
+    }
+
+    /**
+     * Decodes a hexadecimal MD5 hash and writes its 16 raw bytes into the given
+     * array, starting at the given offset.
+     *
+     * @param hash  the hash as a 32-character hexadecimal string.
+     * @param digests  the destination array.
+     * @param offset  the position at which the first byte is written.
+     * @throws IllegalArgumentException if the string is not a valid MD5 hash.
+     */
+    public static void hexToDigest(String hash, byte[] digests, int offset) {
+        if (hash == null || hash.length() != MD5_LENGTH * 2)
+            throw new IllegalArgumentException();
+
+        for (int i = 0; i < MD5_LENGTH; i++) {
+            int high = Character.digit(hash.charAt(i * 2), 16);
+            int low = Character.digit(hash.charAt(i * 2 + 1), 16);
+
+            if (high < 0 || low < 0) throw new IllegalArgumentException();
+
+            digests[offset + i] = (byte) ((high << 4) | low);
+        }
+    }
+
+    /**
+     * Converts an MD5 digest stored as two big-endian longs into its
+     * hexadecimal string representation.
+     *
+     * @param high  the eight most significant bytes of the digest.
+     * @param low  the eight least significant bytes of the digest.
+     * @return the digest as a 32-character lowercase hexadecimal string.
+     */
+    public static String digestToHex(long high, long low) {
+        byte[] digest = new byte[MD5_LENGTH];
+
+        HashUtil.longToBytes(high, digest, 0);
+        HashUtil.longToBytes(low, digest, 8);
+
+        return HashUtil.digestToHex(digest, 0);
+    }
+
+    /**
+     * Reads eight bytes of an array, starting at the given offset, as a
+     * big-endian long value.
+     *
+     * @param bytes  the array to read.
+     * @param offset  the position of the most significant byte.
+     * @return the long value represented by the eight bytes.
+     */
+    public static long bytesToLong(byte[] bytes, int offset) {
+        long value = 0;
+
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xff);
+        }
+
+        return value;
+    }
+
+    /**
+     * Writes a long value into eight bytes of an array, starting at the given
+     * offset, in big-endian format.
+     *
+     * @param value  the long value to write.
+     * @param bytes  the destination array.
+     * @param offset  the position at which the most significant byte is
+     *                written.
+     */
+    public static void longToBytes(long value, byte[] bytes, int offset) {
+        for (int i = 0; i < 8; i++) {
+            bytes[offset + i] = (byte) (value >>> (56 - i * 8));
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,570 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A linked list with MD5 hashes computed for each element, offering the same
+ * operations as {@link HashLinkedList} but indexing its nodes so that removals
+ * and positional access do not walk the list.
+ *
+ * <p>
+ * The nodes are doubly linked and a hash map leads from each value to the
+ * first node holding it, while the nodes holding equal data are chained
+ * together in list order: removing an element based on data takes constant
+ * expected time, also when the list contains duplicates.
+ *
+ * <p>
+ * For positional access the nodes are grouped into runs of at most
+ * {@value #CHUNK_CAPACITY} consecutive nodes, called chunks, and the number
+ * of nodes of each chunk is kept in a Fenwick tree. Finding the chunk that
+ * holds a position takes O(log n) and the node is then reached in at most
+ * {@value #CHUNK_CAPACITY} steps, so {@link #get(int)} and
+ * {@link #removeAt(int)} take O(log n). Insertions and removals only record
+ * which chunks changed, and the tree is brought up to date by the next
+ * positional access.
+ *
+ * <p>
+ * The price is three more references per node than {@link HashLinkedList},
+ * a reference to the chunk of the node and an entry of the hash map, so this
+ * variant pays off when the elements are removed by data or by position.
+ *
+ * @param <T> the generic type of data contained in the list.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class IndexedHashLinkedList<T> implements Iterable<T> {
+
+    /**
+     * The maximum number of nodes of a chunk.
+     */
+    public static final int CHUNK_CAPACITY = 64;
+
+    /**
+     * The number of chunk slots allocated by the first insertion.
+     */
+    private static final int INITIAL_SLOTS = 16;
+
+    private Node<T> head;
+    private Node<T> tail;
+    private int size;
+    private int numberChanges;
+    private final HashMap<T, Node<T>> index;
+    private Chunk<T>[] chunks;
+    private int firstSlot;
+    private int endSlot;
+    private int[] counts;
+    private final ArrayList<Chunk<T>> changedChunks;
+
+    public IndexedHashLinkedList() {
+        this.head = null;
+        this.tail = null;
+        this.size = 0;
+        this.numberChanges = 0;
+        this.index = new HashMap<T, Node<T>>();
+        this.chunks = newChunkArray(0);
+        this.firstSlot = 0;
+        this.endSlot = 0;
+        this.counts = new int[1];
+        this.changedChunks = new ArrayList<Chunk<T>>();
+    }
+
+    /**
+     * Returns the current number of nodes in the list.
+     *
+     * @return the number of nodes in the list.
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Represents a node in the linked list. Besides the links to the adjacent
+     * nodes, each node is linked to the previous and next node holding equal
+     * data, so that all the occurrences of a value form a chain in list order.
+     * The first node of a chain links back to the last one through
+     * {@code prevSame}, which allows appending to the chain in constant time.
+     */
+    private static class Node<T> {
+        final String hash;
+
+        final T data;
+
+        Node<T> next;
+
+        Node<T> prev;
+
+        Node<T> nextSame;
+
+        Node<T> prevSame;
+
+        Chunk<T> chunk;
+
+        Node(T data) {
+            this.data = data;
+            this.hash = HashUtil.dataToHash(data);
+            this.next = null;
+            this.prev = null;
+            this.nextSame = null;
+            this.prevSame = this;
+            this.chunk = null;
+        }
+    }
+
+    /**
+     * Represents a run of consecutive nodes of the list, stored in the given
+     * slot of the array of chunks. The chunks follow the order of the list,
+     * and the nodes of a chunk start from {@code first}. The count of nodes
+     * of the chunk is copied into the Fenwick tree when the chunk is indexed.
+     */
+    private static class Chunk<T> {
+        int slot;
+
+        Node<T> first;
+
+        int count;
+
+        int indexedCount;
+
+        boolean changed;
+
+        Chunk(int slot) {
+            this.slot = slot;
+            this.first = null;
+            this.count = 0;
+            this.indexedCount = 0;
+            this.changed = false;
+        }
+    }
+
+    /**
+     * Creates an array of chunks of the given length.
+     *
+     * @param <T> the type of data of the chunks.
+     * @param length  the length of the array.
+     * @return the new array.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Chunk<T>[] newChunkArray(int length) {
+    	return (Chunk<T>[]) new Chunk<?>[length];
+    }
+
+    /**
+     * Adds a new item to the head of the list.
+     *
+     * @param data  the data to be added.
+     */
+    public void addAtHead(T data) {
+    	if (data == null) throw new NullPointerException();
+
+    	Node<T> newNode = new Node<T>(data);
+
+    	newNode.next = this.head;
+    	if (this.head != null) this.head.prev = newNode;
+        this.head = newNode;
+        if (this.tail == null) this.tail = newNode;
+
+        Node<T> first = this.index.put(data, newNode);
+
+        if (first != null) {
+        	newNode.nextSame = first;
+        	newNode.prevSame = first.prevSame;
+        	first.prevSame = newNode;
+        }
+
+        if (this.firstSlot == this.endSlot
+        	|| this.chunks[this.firstSlot].count == CHUNK_CAPACITY) {
+        	if (this.firstSlot == 0) this.reallocate();
+
+        	this.firstSlot--;
+        	this.chunks[this.firstSlot] = new Chunk<T>(this.firstSlot);
+        }
+
+        Chunk<T> chunk = this.chunks[this.firstSlot];
+        chunk.first = newNode;
+        this.addTo(chunk, newNode);
+    }
+
+    /**
+     * Adds a new item to the tail of the list.
+     *
+     * @param data  the data to be added.
+     */
+    public void addAtTail(T data) {
+    	if (data == null) throw new NullPointerException();
+
+    	Node<T> newNode = new Node<T>(data);
+
+    	newNode.prev = this.tail;
+        if (this.tail != null) this.tail.next = newNode;
+        this.tail = newNode;
+        if (this.head == null) this.head = newNode;
+
+        Node<T> first = this.index.putIfAbsent(data, newNode);
+
+        if (first != null) {
+        	Node<T> last = first.prevSame;
+        	last.nextSame = newNode;
+        	newNode.prevSame = last;
+        	first.prevSame = newNode;
+        }
+
+        if (this.firstSlot == this.endSlot
+        	|| this.chunks[this.endSlot - 1].count == CHUNK_CAPACITY) {
+        	if (this.endSlot == this.chunks.length) this.reallocate();
+
+        	this.chunks[this.endSlot] = new Chunk<T>(this.endSlot);
+        	this.endSlot++;
+        }
+
+        Chunk<T> chunk = this.chunks[this.endSlot - 1];
+        if (chunk.first == null) chunk.first = newNode;
+        this.addTo(chunk, newNode);
+    }
+
+    /**
+     * Assigns a new node to the given chunk and records the change.
+     *
+     * @param chunk  the chunk of the node.
+     * @param node  the new node.
+     */
+    private void addTo(Chunk<T> chunk, Node<T> node) {
+    	node.chunk = chunk;
+    	chunk.count++;
+    	this.markChanged(chunk);
+
+        this.size++;
+        this.numberChanges++;
+    }
+
+    /**
+     * Records that the count of nodes of the given chunk is no longer the one
+     * stored in the Fenwick tree.
+     *
+     * @param chunk  the changed chunk.
+     */
+    private void markChanged(Chunk<T> chunk) {
+    	if (chunk.changed) return;
+
+    	chunk.changed = true;
+    	this.changedChunks.add(chunk);
+    }
+
+    /**
+     * Moves the chunks that still hold nodes to a new array with free slots
+     * on both sides, dropping the empty ones, and rebuilds the Fenwick tree
+     * in linear time. Since a new chunk is only created when the one at that
+     * end of the list is full, the cost is amortized over the insertions.
+     */
+    private void reallocate() {
+    	int live = 0;
+
+    	for (int i = this.firstSlot; i < this.endSlot; i++) {
+    		if (this.chunks[i].count > 0) live++;
+    	}
+
+    	int capacity = Math.max(INITIAL_SLOTS, live * 2 + 2);
+    	Chunk<T>[] newChunks = newChunkArray(capacity);
+    	int slot = (capacity - live) / 2;
+    	int first = slot;
+
+    	for (int i = this.firstSlot; i < this.endSlot; i++) {
+    		Chunk<T> chunk = this.chunks[i];
+
+    		if (chunk.count > 0) {
+    			chunk.slot = slot;
+    			newChunks[slot++] = chunk;
+    		}
+    	}
+
+    	this.chunks = newChunks;
+    	this.firstSlot = first;
+    	this.endSlot = slot;
+    	this.counts = new int[capacity + 1];
+
+    	for (int i = 1; i <= capacity; i++) {
+    		Chunk<T> chunk = newChunks[i - 1];
+
+    		if (chunk != null) {
+    			chunk.indexedCount = chunk.count;
+    			chunk.changed = false;
+    			this.counts[i] += chunk.count;
+    		}
+
+    		int parent = i + (i & -i);
+    		if (parent <= capacity) this.counts[parent] += this.counts[i];
+    	}
+
+    	this.changedChunks.clear();
+    }
+
+    /**
+     * Brings the Fenwick tree up to date with the counts of the chunks that
+     * changed since the last positional access.
+     */
+    private void updateCounts() {
+    	for (Chunk<T> chunk : this.changedChunks) {
+    		int delta = chunk.count - chunk.indexedCount;
+
+    		for (int i = chunk.slot + 1; i < this.counts.length;
+    			 i += i & -i) {
+    			this.counts[i] += delta;
+    		}
+
+    		chunk.indexedCount = chunk.count;
+    		chunk.changed = false;
+    	}
+
+    	this.changedChunks.clear();
+    }
+
+    /**
+     * Returns the node at the given position, descending the Fenwick tree to
+     * the chunk that holds it and walking the chunk from its first node.
+     *
+     * @param index  the position of the node.
+     * @return the node at the given position.
+     * @throws IndexOutOfBoundsException if the index is out of bounds.
+     */
+    private Node<T> nodeAt(int index) {
+    	if (index < 0 || index >= this.size)
+    		throw new IndexOutOfBoundsException(index);
+
+    	this.updateCounts();
+
+    	int slot = 0;
+    	int remaining = index;
+
+    	for (int step = Integer.highestOneBit(this.counts.length - 1);
+    		 step > 0; step >>= 1) {
+    		int next = slot + step;
+
+    		if (next < this.counts.length && this.counts[next] <= remaining) {
+    			slot = next;
+    			remaining -= this.counts[next];
+    		}
+    	}
+
+    	Node<T> current = this.chunks[slot].first;
+
+    	for (int i = 0; i < remaining; i++) current = current.next;
+
+    	return current;
+    }
+
+    /**
+     * Returns an ArrayList containing all the hashes in the list in sorted
+     * order.
+     *
+     * @return a list with all the hashes of the list.
+     */
+    public ArrayList<String> getAllHashes() {
+    	ArrayList<String> hashList = new ArrayList<String>(this.size);
+
+        for (Node<T> current = this.head; current != null;
+        	 current = current.next) {
+        	hashList.add(current.hash);
+        }
+
+        return hashList;
+    }
+
+    /**
+     * Returns the raw MD5 digests of all the elements of the list, in list
+     * order, packed into a single array of {@code getSize() * 16} bytes, in the
+     * same format as {@link HashLinkedList#getAllDigests()}.
+     *
+     * @return a contiguous array with the digests of all the elements.
+     * @throws IllegalStateException if the digests do not fit in an array,
+     *         that is with more than {@code Integer.MAX_VALUE / 16} elements.
+     */
+    public byte[] getAllDigests() {
+        byte[] digests = HashUtil.newDigestArray(this.size);
+        int offset = 0;
+
+        for (Node<T> current = this.head; current != null;
+        	 current = current.next) {
+        	HashUtil.hexToDigest(current.hash, digests, offset);
+        	offset += HashUtil.MD5_LENGTH;
+        }
+
+        return digests;
+    }
+
+    /**
+     * Builds a string containing all the nodes in the list, including data and
+     * hashes, in the same format as {@link HashLinkedList#buildNodesString()}.
+     *
+     * @return a text representation of all the nodes in the list.
+     */
+    public String buildNodesString() {
+    	StringBuilder sb = new StringBuilder();
+
+        for (Node<T> current = this.head; current != null;
+        	 current = current.next) {
+            sb.append("Dato: ").append(current.data)
+              .append(", Hash: ").append(current.hash)
+              .append("\n");
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Removes the first element in the list that contains the specified data.
+     * The node is found through the index from the elements to their first
+     * occurrence in the list, so the removal takes constant expected time.
+     *
+     * @param data  the data to be removed.
+     * @return true if the item was found and removed, false otherwise.
+     */
+	public boolean remove(T data) {
+		if (data == null) throw new NullPointerException();
+
+	    Node<T> first = this.index.get(data);
+
+	    if (first == null) return false;
+
+	    this.unlink(first);
+
+	    return true;
+    }
+
+    /**
+     * Returns the element at the given position of the list, in O(log n).
+     *
+     * @param index  the position of the element, starting from 0.
+     * @return the element at the given position.
+     * @throws IndexOutOfBoundsException if the index is negative or not less
+     *         than the size of the list.
+     */
+    public T get(int index) {
+    	return this.nodeAt(index).data;
+    }
+
+    /**
+     * Removes the element at the given position of the list, in O(log n).
+     *
+     * @param index  the position of the element, starting from 0.
+     * @return the removed element.
+     * @throws IndexOutOfBoundsException if the index is negative or not less
+     *         than the size of the list.
+     */
+    public T removeAt(int index) {
+    	Node<T> node = this.nodeAt(index);
+
+    	this.unlink(node);
+
+    	return node.data;
+    }
+
+    /**
+     * Unlinks a node from the list, from its chunk and from the chain of the
+     * nodes holding equal data, updating the index if the node was the first
+     * of its chain.
+     *
+     * @param node  the node to unlink.
+     */
+    private void unlink(Node<T> node) {
+    	Chunk<T> chunk = node.chunk;
+
+    	chunk.count--;
+    	if (chunk.first == node) chunk.first = chunk.count > 0 ? node.next : null;
+    	this.markChanged(chunk);
+
+    	if (node.prev == null) this.head = node.next;
+    	else node.prev.next = node.next;
+
+    	if (node.next == null) this.tail = node.prev;
+    	else node.next.prev = node.prev;
+
+    	Node<T> first = this.index.get(node.data);
+
+    	if (node == first) {
+    		if (node.nextSame == null) this.index.remove(node.data);
+    		else {
+    			node.nextSame.prevSame = node.prevSame;
+    			this.index.put(node.data, node.nextSame);
+    		}
+    	}
+    	else {
+    		node.prevSame.nextSame = node.nextSame;
+
+    		if (node.nextSame == null) first.prevSame = node.prevSame;
+    		else node.nextSame.prevSame = node.prevSame;
+    	}
+
+    	node.next = null;
+    	node.prev = null;
+    	node.nextSame = null;
+    	node.prevSame = node;
+    	node.chunk = null;
+
+    	this.size--;
+    	this.numberChanges++;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Itr();
+    }
+
+    /**
+     * Returns a sequential stream over the elements of the list.
+     *
+     * @return a sequential stream over the elements of the list.
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+
+    /**
+     * Returns a fail-fast spliterator over the elements of the list, which
+     * knows the number of elements it covers.
+     *
+     * @return a spliterator over the elements of the list.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return Spliterators.spliterator(this.iterator(), this.size,
+        		                        Spliterator.ORDERED
+        		                        | Spliterator.NONNULL);
+    }
+
+    /**
+     * A class that implements a fail-fast iterator for IndexedHashLinkedList.
+     */
+    private class Itr implements Iterator<T> {
+    	private Node<T> current;
+        private final int numExpectedChanges;
+
+        private Itr() {
+        	this.current = head;
+            this.numExpectedChanges = numberChanges;
+        }
+
+        @Override
+        public boolean hasNext() {
+        	if(this.numExpectedChanges != numberChanges)
+        		throw new ConcurrentModificationException();
+
+            return this.current != null;
+        }
+
+        @Override
+        public T next() {
+        	if(!hasNext()) throw new NoSuchElementException();
+
+            T data = this.current.data;
+            this.current = this.current.next;
+            return data;
+        }
+    }
+}
\ No newline at end of file
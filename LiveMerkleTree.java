@@ -0,0 +1,118 @@
+package it.unicam.cs.asdl2425.mp1;
+
+/**
+ * A Merkle tree bound to a {@link HashLinkedList}, kept up to date as the list
+ * changes instead of being rebuilt from scratch. The tree registers itself as
+ * a listener of the list and, at every insertion or removal, updates only the
+ * hashes affected by the change, so that the hash of the root of the current
+ * content of the list is always available in constant time.
+ *
+ * <p>
+ * Adding an element at the tail of the list costs O(log n) hashes. Adding an
+ * element at the head or removing one shifts all the following leaves, so it
+ * costs as many hashes as there are elements after it, which is still less
+ * than a full rebuild.
+ *
+ * <p>
+ * The hashes are the same as those of the {@link MerkleTree} built from the
+ * list at any given moment, which can be obtained without hashing anything
+ * through {@link #toMerkleTree()}.
+ *
+ * @author Leonardo Castignani @UNICAM
+ *
+ * @param <T>  the type of data on which the tree is built.
+ */
+public class LiveMerkleTree<T> implements AutoCloseable {
+
+    private final HashLinkedList<T> hashList;
+    private final MerkleLevels levels;
+    private final HashLinkedList.ChangeListener<T> listener;
+
+    /**
+     * Constructs a Merkle tree over the current content of the given list and
+     * binds it to the list, so that it follows its future changes.
+     *
+     * @param hashList  the list to follow.
+     * @throws IllegalArgumentException if the list is null.
+     */
+    public LiveMerkleTree(HashLinkedList<T> hashList) {
+    	if (hashList == null) throw new IllegalArgumentException();
+
+        this.hashList = hashList;
+        this.levels = new MerkleLevels(hashList.getAllHashes());
+        this.listener = new HashLinkedList.ChangeListener<T>() {
+        	@Override
+        	public void elementAdded(int index, T data, String hash) {
+        		LiveMerkleTree.this.levels.insert(index, hash);
+        	}
+
+        	@Override
+        	public void elementRemoved(int index, T data) {
+        		LiveMerkleTree.this.levels.remove(index);
+        	}
+        };
+
+        hashList.addChangeListener(this.listener);
+    }
+
+    /**
+     * Returns the hash of the root of the tree of the current content of the
+     * list, or null if the list is empty.
+     *
+     * @return the hash of the root.
+     */
+    public String getRootHash() {
+        return this.levels.getRootHash();
+    }
+
+    /**
+     * Returns the width of the tree, that is, the current size of the list.
+     *
+     * @return the width of the tree.
+     */
+    public int getWidth() {
+        return this.levels.getWidth();
+    }
+
+    /**
+     * Returns the height of the tree.
+     *
+     * @return the height of the tree.
+     */
+    public int getHeight() {
+        return this.levels.getHeight();
+    }
+
+    /**
+     * Returns the Merkle proof for the element in the given position of the
+     * list, valid against the current root.
+     *
+     * @param index  the position of the element.
+     * @return the Merkle proof for the element.
+     * @throws IndexOutOfBoundsException if there is no element in the given
+     *         position.
+     */
+    public MerkleProof getMerkleProof(int index) {
+        return this.levels.getMerkleProof(index);
+    }
+
+    /**
+     * Returns a {@link MerkleTree} of the current content of the list, built
+     * from the hashes already computed.
+     *
+     * @return the Merkle tree of the current content of the list.
+     * @throws IllegalArgumentException if the list is empty.
+     */
+    public MerkleTree<T> toMerkleTree() {
+        return this.levels.toMerkleTree();
+    }
+
+    /**
+     * Unbinds the tree from the list. After this call the tree no longer
+     * follows the changes of the list.
+     */
+    @Override
+    public void close() {
+        this.hashList.removeChangeListener(this.listener);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,315 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A read-only Merkle tree backed by a file written by {@link MerkleTreeFile}.
+ * The file is mapped in memory through {@link FileChannel#map}, so opening a
+ * tree costs the same regardless of its size: no hash is computed and no
+ * digest is read until it is needed, and then the operating system brings in
+ * only the pages that contain it. The root, the proofs and the comparisons
+ * between trees are therefore available as soon as the tree is opened.
+ *
+ * <p>
+ * Since a single mapping cannot exceed 2 GB, large files are mapped in several
+ * segments; a digest never spans two of them.
+ *
+ * @param <T> the type of data on which the tree was built.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class MappedMerkleTree<T> implements AutoCloseable {
+
+    // The size of every mapped segment, a multiple of the size of a digest.
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+
+    private final MerkleTreeFile.Header header;
+
+    private final MappedByteBuffer[] segments;
+
+    private MappedMerkleTree(FileChannel channel, MerkleTreeFile.Header header)
+    		throws IOException {
+        this.channel = channel;
+        this.header = header;
+
+        long size = header.fileSize();
+        this.segments =
+        		new MappedByteBuffer[(int) ((size - 1) / SEGMENT_SIZE) + 1];
+
+        for (int i = 0; i < this.segments.length; i++) {
+        	long position = i * SEGMENT_SIZE;
+        	this.segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+        			position, Math.min(SEGMENT_SIZE, size - position));
+        }
+    }
+
+    /**
+     * Opens a tree written by {@link MerkleTreeFile#write}.
+     *
+     * @param <T>  the type of data on which the tree was built.
+     * @param path  the file of the tree.
+     * @return the tree stored in the file.
+     * @throws IOException if the file cannot be read or is not a valid Merkle
+     *         tree file.
+     * @throws IllegalArgumentException if the path is null.
+     */
+    public static <T> MappedMerkleTree<T> open(Path path) throws IOException {
+    	if (path == null) throw new IllegalArgumentException();
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        try {
+        	return new MappedMerkleTree<T>(channel,
+        			                       MerkleTreeFile.Header.read(channel));
+        } catch (IOException | RuntimeException e) {
+        	channel.close();
+        	throw e;
+        }
+    }
+
+    /**
+     * Returns the width of the tree, that is the number of leaves.
+     *
+     * @return the width of the tree.
+     */
+    public int getWidth() {
+        return this.header.width;
+    }
+
+    /**
+     * Returns the height of the tree.
+     *
+     * @return the height of the tree.
+     */
+    public int getHeight() {
+        return this.header.height;
+    }
+
+    /**
+     * Returns the hash of the root of the tree.
+     *
+     * @return the hash of the root.
+     */
+    public String getRootHash() {
+        return this.getHash(this.header.height, 0);
+    }
+
+    /**
+     * Returns the root of the tree, as a node without children.
+     *
+     * @return the root of the tree.
+     */
+    public MerkleNode getRoot() {
+        return new MerkleNode(this.getRootHash());
+    }
+
+    /**
+     * Returns the hash of a node of the tree.
+     *
+     * @param level  the level of the node, 0 being the leaves.
+     * @param index  the position of the node in its level, from left to right.
+     * @return the hash of the node.
+     * @throws IndexOutOfBoundsException if the node does not exist.
+     */
+    public String getHash(int level, int index) {
+    	this.checkNode(level, index);
+
+        long offset = this.header.offsetOf(level, index);
+
+        return HashUtil.digestToHex(this.readLong(offset),
+        		                    this.readLong(offset + Long.BYTES));
+    }
+
+    /**
+     * Copies the digest of a node to the given buffer, without converting it
+     * to a string.
+     *
+     * @param level  the level of the node, 0 being the leaves.
+     * @param index  the position of the node in its level.
+     * @param destination  the buffer that receives the 16 bytes.
+     * @throws IndexOutOfBoundsException if the node does not exist.
+     */
+    void readDigest(int level, int index, ByteBuffer destination) {
+    	this.checkNode(level, index);
+
+        long offset = this.header.offsetOf(level, index);
+
+        destination.putLong(this.readLong(offset));
+        destination.putLong(this.readLong(offset + Long.BYTES));
+    }
+
+    /**
+     * Returns the index of the leaf with the hash of the given data, searching
+     * the leaves from left to right.
+     *
+     * @param data  the data to search.
+     * @return the index of the data among the leaves, -1 if it is not there.
+     * @throws IllegalArgumentException if the data is null.
+     */
+    public int getIndexOfData(T data) {
+    	if (data == null) throw new IllegalArgumentException();
+
+        byte[] digest = HashUtil.dataToDigest(data);
+        long high = HashUtil.bytesToLong(digest, 0);
+        long low = HashUtil.bytesToLong(digest, Long.BYTES);
+
+        for (int i = 0; i < this.header.width; i++) {
+        	long offset = this.header.offsetOf(0, i);
+
+        	if (this.readLong(offset) == high
+        		&& this.readLong(offset + Long.BYTES) == low)
+        		return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Checks whether the given data is one of the leaves of the tree.
+     *
+     * @param data  the data to check.
+     * @return true if the data is in the tree, false otherwise.
+     * @throws IllegalArgumentException if the data is null.
+     */
+    public boolean validateData(T data) {
+        return this.getIndexOfData(data) != -1;
+    }
+
+    /**
+     * Returns the proof of the leaf in the given position, in the same format
+     * as the proofs of {@link MerkleTree}.
+     *
+     * @param index  the position of the leaf.
+     * @return the proof of the leaf.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public MerkleProof getMerkleProof(int index) {
+        this.checkNode(0, index);
+
+        MerkleProof proof = new MerkleProof(this.getRootHash(),
+        		                            this.header.height);
+
+        for (int level = 0; level < this.header.height; level++) {
+        	if (index % 2 == 1) proof.addHash(this.getHash(level, index - 1),
+        			                          true);
+        	else if (index + 1 < this.header.levelSize(level))
+        		proof.addHash(this.getHash(level, index + 1), false);
+        	else proof.addHash("", false);
+
+        	index /= 2;
+        }
+
+        return proof;
+    }
+
+    /**
+     * Returns the proof of the given data, or null if the data is not in the
+     * tree.
+     *
+     * @param data  the data to prove.
+     * @return the proof of the data, null if it is not in the tree.
+     * @throws IllegalArgumentException if the data is null.
+     */
+    public MerkleProof getMerkleProof(T data) {
+        int index = this.getIndexOfData(data);
+
+        return index == -1 ? null : this.getMerkleProof(index);
+    }
+
+    /**
+     * Finds the indices of the leaves that differ from those of another tree
+     * with the same width. Only the subtrees whose roots differ are visited,
+     * and digests are compared without converting them to strings.
+     *
+     * @param otherTree  the tree to compare with.
+     * @return the indices of the leaves that differ.
+     * @throws IllegalArgumentException if the other tree is null or has a
+     *         different width.
+     */
+    public Set<Integer> findInvalidDataIndices(MappedMerkleTree<T> otherTree) {
+        if (otherTree == null || otherTree.getWidth() != this.getWidth())
+            throw new IllegalArgumentException();
+
+        Set<Integer> invalidIndices = new HashSet<Integer>();
+
+        this.compareNodes(otherTree, this.header.height, 0, invalidIndices);
+
+        return invalidIndices;
+    }
+
+    private void compareNodes(MappedMerkleTree<T> otherTree, int level,
+    		int index, Set<Integer> invalidIndices) {
+    	long offset = this.header.offsetOf(level, index);
+
+    	if (this.readLong(offset) == otherTree.readLong(offset)
+    		&& this.readLong(offset + Long.BYTES)
+    		   == otherTree.readLong(offset + Long.BYTES))
+    		return;
+
+    	if (level == 0) {
+    		invalidIndices.add(index);
+    		return;
+    	}
+
+    	this.compareNodes(otherTree, level - 1, index * 2, invalidIndices);
+
+    	if (index * 2 + 1 < this.header.levelSize(level - 1))
+    		this.compareNodes(otherTree, level - 1, index * 2 + 1,
+    				          invalidIndices);
+    }
+
+    /**
+     * Loads the whole tree in memory, without computing any hash.
+     *
+     * @return a {@link MerkleTree} with the same nodes.
+     */
+    public MerkleTree<T> toMerkleTree() {
+        List<List<String>> levels = new ArrayList<List<String>>();
+
+        for (int level = 0; level <= this.header.height; level++) {
+        	int size = this.header.levelSize(level);
+        	List<String> hashes = new ArrayList<String>(size);
+
+        	for (int i = 0; i < size; i++) hashes.add(this.getHash(level, i));
+
+        	levels.add(hashes);
+        }
+
+        return MerkleTree.fromLevels(levels);
+    }
+
+    /**
+     * Closes the file of the tree. The mapping is released by the garbage
+     * collector once it is no longer referenced.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    private void checkNode(int level, int index) {
+    	if (level < 0 || level > this.header.height)
+    		throw new IndexOutOfBoundsException(level);
+
+    	if (index < 0 || index >= this.header.levelSize(level))
+    		throw new IndexOutOfBoundsException(index);
+    }
+
+    private long readLong(long offset) {
+        return this.segments[(int) (offset / SEGMENT_SIZE)]
+        		   .getLong((int) (offset % SEGMENT_SIZE));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,507 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The coordinator of a Merkle tree built by several workers, possibly running
+ * in other processes, each connected through a {@link WorkerLink}.
+ *
+ * <p>
+ * The leaves are split in ranges of a power of two size, aligned to their
+ * size, so that each range is a complete subtree of the tree and its root is
+ * a node of the tree at a known level. The ranges are handed out one at a
+ * time to the workers, which hash the leaves with their
+ * {@link MerkleBuildWorker.LeafSource} and send back the root of the range,
+ * and optionally all its levels. The coordinator then builds the levels above
+ * the roots of the ranges. The result is the same as the one of a
+ * {@link MerkleTree} built on all the leaves.
+ *
+ * <p>
+ * When a worker fails, because its connection breaks, times out or it
+ * reports an error, it is dropped and its range is handed out again to the
+ * other workers. The build fails only when no worker is left. A task that
+ * takes longer than the timeout of the coordinator also fails: its link is
+ * closed, which ends the wait for the result whatever the link is made of,
+ * so a worker that hangs in this process is dropped like a remote one.
+ *
+ * <p>
+ * The protocol is a sequence of binary messages: a task carries the range
+ * and the level of its root; a result carries the digest of the root and,
+ * if requested, the digests of each level of the range.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class MerkleBuildCoordinator implements AutoCloseable {
+
+    static final byte TASK = 1;
+
+    static final byte CLOSE = 2;
+
+    static final byte RESULT = 1;
+
+    static final byte FAILURE = 2;
+
+    private final List<WorkerLink> workers;
+
+    private final int rangeSize;
+
+    private final long taskTimeoutMillis;
+
+    /**
+     * A connection to a worker.
+     */
+    public static final class WorkerLink implements Closeable {
+
+        private final DataInputStream in;
+
+        private final DataOutputStream out;
+
+        private final Closeable resource;
+
+        /**
+         * Constructs a link over the given streams.
+         *
+         * @param in  the stream of the messages of the worker.
+         * @param out  the stream of the messages to the worker.
+         * @param resource  the resource to close with the link.
+         * @throws IllegalArgumentException if an argument is null.
+         */
+        public WorkerLink(InputStream in, OutputStream out,
+        		Closeable resource) {
+        	if (in == null || out == null || resource == null)
+        		throw new IllegalArgumentException();
+
+            this.in = new DataInputStream(new BufferedInputStream(in));
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+            this.resource = resource;
+        }
+
+        /**
+         * Connects to a worker listening on the given address.
+         *
+         * @param host  the host of the worker.
+         * @param port  the port of the worker.
+         * @param timeoutMillis  the milliseconds to wait for the connection
+         *                       and for each result, or 0 to wait forever.
+         * @return the link to the worker.
+         * @throws IOException if the connection fails.
+         */
+        public static WorkerLink connect(String host, int port,
+        		int timeoutMillis) throws IOException {
+        	Socket socket = new Socket();
+
+        	try {
+        		socket.connect(new InetSocketAddress(host, port),
+        				       timeoutMillis);
+        		socket.setSoTimeout(timeoutMillis);
+        		socket.setTcpNoDelay(true);
+
+        		return new WorkerLink(socket.getInputStream(),
+        				              socket.getOutputStream(), socket);
+        	} catch (IOException e) {
+        		socket.close();
+        		throw e;
+        	}
+        }
+
+        /**
+         * Sends a task and waits for its result.
+         */
+        private Result run(int range, int from, int to, int level,
+        		boolean withLevels) throws IOException {
+        	this.out.writeByte(TASK);
+        	this.out.writeInt(range);
+        	this.out.writeInt(from);
+        	this.out.writeInt(to);
+        	this.out.writeInt(level);
+        	this.out.writeBoolean(withLevels);
+        	this.out.flush();
+
+        	byte type = this.in.readByte();
+
+        	if (type == FAILURE)
+        		throw new IOException("The worker failed: "
+        				              + this.in.readUTF());
+
+        	if (type != RESULT || this.in.readInt() != range)
+        		throw new IOException("Unexpected message from the worker");
+
+        	String root = readDigest(this.in);
+        	List<List<String>> levels = null;
+
+        	if (this.in.readBoolean()) {
+        		int count = this.in.readInt();
+
+        		if (count != level + 1)
+        			throw new IOException("Unexpected number of levels");
+
+        		levels = new ArrayList<List<String>>(count);
+
+        		for (int i = 0; i < count; i++) {
+        			int size = this.in.readInt();
+
+        			if (size < 1 || size > to - from)
+        				throw new IOException("Unexpected level size");
+
+        			List<String> hashes = new ArrayList<String>(size);
+        			for (int j = 0; j < size; j++)
+        				hashes.add(readDigest(this.in));
+
+        			levels.add(hashes);
+        		}
+        	}
+
+        	return new Result(root, levels);
+        }
+
+        /**
+         * Asks the worker to end the connection and closes the link.
+         */
+        @Override
+        public void close() throws IOException {
+        	try {
+        		this.out.writeByte(CLOSE);
+        		this.out.flush();
+        	} catch (IOException e) {
+        		// The worker is already gone.
+        	} finally {
+        		this.resource.close();
+        	}
+        }
+    }
+
+    /**
+     * The root of a range, and its levels if they were requested.
+     */
+    private static final class Result {
+
+        final String root;
+
+        final List<List<String>> levels;
+
+        Result(String root, List<List<String>> levels) {
+            this.root = root;
+            this.levels = levels;
+        }
+    }
+
+    /**
+     * The ranges still without a result and the workers still alive during a
+     * build, guarded by the object itself.
+     */
+    private static final class Progress {
+
+        int pendingRanges;
+
+        int liveWorkers;
+
+        Progress(int pendingRanges, int liveWorkers) {
+            this.pendingRanges = pendingRanges;
+            this.liveWorkers = liveWorkers;
+        }
+    }
+
+    /**
+     * Constructs a coordinator that waits for the result of each task as long
+     * as its link allows.
+     *
+     * @param workers  the links to the workers.
+     * @param rangeSize  the number of leaves of a range, a power of two.
+     * @throws IllegalArgumentException if there are no workers or the size
+     *         is not a power of two.
+     */
+    public MerkleBuildCoordinator(List<WorkerLink> workers, int rangeSize) {
+        this(workers, rangeSize, 0);
+    }
+
+    /**
+     * Constructs a coordinator that drops the workers that do not send the
+     * result of a task within the given time.
+     *
+     * @param workers  the links to the workers.
+     * @param rangeSize  the number of leaves of a range, a power of two.
+     * @param taskTimeoutMillis  the milliseconds to wait for the result of
+     *                           each task, or 0 to wait as long as the link
+     *                           allows.
+     * @throws IllegalArgumentException if there are no workers, the size is
+     *         not a power of two or the timeout is negative.
+     */
+    public MerkleBuildCoordinator(List<WorkerLink> workers, int rangeSize,
+    		long taskTimeoutMillis) {
+    	if (workers == null || workers.isEmpty() || workers.contains(null)
+    		|| rangeSize < 1 || Integer.bitCount(rangeSize) != 1
+    		|| taskTimeoutMillis < 0)
+    		throw new IllegalArgumentException();
+
+        this.workers = new ArrayList<WorkerLink>(workers);
+        this.rangeSize = rangeSize;
+        this.taskTimeoutMillis = taskTimeoutMillis;
+    }
+
+    /**
+     * Returns the number of workers that have not failed.
+     *
+     * @return the number of live workers.
+     */
+    public synchronized int getWorkerCount() {
+        return this.workers.size();
+    }
+
+    /**
+     * Computes the root of the tree on the given number of leaves, receiving
+     * only the roots of the ranges from the workers.
+     *
+     * @param width  the number of leaves.
+     * @return the hash of the root.
+     * @throws IOException if all the workers fail.
+     * @throws IllegalArgumentException if the width is not positive.
+     */
+    public String buildRoot(int width) throws IOException {
+        return new MerkleLevels(this.roots(this.run(width, false)))
+        		   .getRootHash();
+    }
+
+    /**
+     * Builds the tree on the given number of leaves, receiving all the levels
+     * of the ranges from the workers.
+     *
+     * @param <T>  the type of data on which the tree is built.
+     * @param width  the number of leaves.
+     * @return the Merkle tree.
+     * @throws IOException if all the workers fail.
+     * @throws IllegalArgumentException if the width is not positive.
+     */
+    public <T> MerkleTree<T> buildTree(int width) throws IOException {
+        Result[] results = this.run(width, true);
+        MerkleLevels top = new MerkleLevels(this.roots(results));
+        List<List<String>> levels = new ArrayList<List<String>>();
+
+        for (int level = 0; level < results[0].levels.size(); level++) {
+        	List<String> hashes = new ArrayList<String>();
+
+        	for (Result result : results)
+        		hashes.addAll(result.levels.get(level));
+
+        	levels.add(hashes);
+        }
+
+        for (int level = 1; level <= top.getHeight(); level++)
+        	levels.add(top.getLevel(level));
+
+        return MerkleTree.fromLevels(levels);
+    }
+
+    private List<String> roots(Result[] results) {
+    	List<String> roots = new ArrayList<String>(results.length);
+
+    	for (Result result : results) roots.add(result.root);
+
+    	return roots;
+    }
+
+    /**
+     * Hands out the ranges to the workers, each served by its own thread, and
+     * waits for all the results or for all the workers to fail.
+     */
+    private Result[] run(int width, boolean withLevels) throws IOException {
+    	ScheduledExecutorService watchdog = this.taskTimeoutMillis == 0 ? null
+    			: Executors.newSingleThreadScheduledExecutor(task -> {
+    				Thread thread = new Thread(task, "merkle-build-watchdog");
+    				thread.setDaemon(true);
+    				return thread;
+    			});
+
+    	try {
+    		return this.run(width, withLevels, watchdog);
+    	} finally {
+    		if (watchdog != null) watchdog.shutdownNow();
+    	}
+    }
+
+    /**
+     * Hands out the ranges as described in {@link #run(int, boolean)}, closing
+     * on the given watchdog, if any, the links whose task takes longer than
+     * the timeout.
+     */
+    private Result[] run(int width, boolean withLevels,
+    		ScheduledExecutorService watchdog) throws IOException {
+    	if (width < 1) throw new IllegalArgumentException();
+
+    	// The roots of the ranges are at this level, unless there is a single
+    	// range, whose root is the root of the tree.
+    	int height = width == 1 ? 0
+    			     : 32 - Integer.numberOfLeadingZeros(width - 1);
+    	int level = Math.min(Integer.numberOfTrailingZeros(this.rangeSize),
+    			             height);
+    	int ranges = (int) ((width + (long) this.rangeSize - 1)
+    			            / this.rangeSize);
+    	Result[] results = new Result[ranges];
+    	BlockingQueue<Integer> pending = new LinkedBlockingQueue<Integer>();
+    	IOException failures = new IOException("All the workers failed");
+    	List<WorkerLink> links;
+
+    	for (int range = 0; range < ranges; range++) pending.add(range);
+
+    	synchronized (this) {
+    		links = new ArrayList<WorkerLink>(this.workers);
+    	}
+
+    	Progress progress = new Progress(ranges, links.size());
+
+    	for (WorkerLink link : links) {
+    		Thread thread = new Thread(() -> {
+    			while (true) {
+    				Integer range;
+
+    				synchronized (progress) {
+    					if (progress.pendingRanges == 0) return;
+    				}
+
+    				try {
+    					range = pending.poll(10, TimeUnit.MILLISECONDS);
+    				} catch (InterruptedException e) {
+    					return;
+    				}
+
+    				if (range == null) continue;
+
+    				int from = range * this.rangeSize;
+    				int to = (int) Math.min((long) from + this.rangeSize,
+    						                width);
+
+    				AtomicBoolean expired = new AtomicBoolean();
+    				ScheduledFuture<?> timeout = watchdog == null ? null
+    						: watchdog.schedule(() -> {
+    							expired.set(true);
+
+    							try {
+    								link.resource.close();
+    							} catch (IOException e) {
+    								// The wait for the result ends anyway.
+    							}
+    						}, this.taskTimeoutMillis, TimeUnit.MILLISECONDS);
+
+    				try {
+    					results[range] = link.run(range, from, to, level,
+    							                  withLevels);
+    				} catch (IOException | RuntimeException e) {
+    					Exception cause = e;
+
+    					if (timeout != null) timeout.cancel(false);
+
+    					if (expired.get()) {
+    						cause = new IOException("No result within "
+    								                + this.taskTimeoutMillis
+    								                + " ms", e);
+    					}
+
+    					// The worker is dropped before its range is handed
+    					// out again, so a build that ends never counts it.
+    					this.drop(link, cause, failures);
+    					pending.add(range);
+
+    					synchronized (progress) {
+    						progress.liveWorkers--;
+    						progress.notifyAll();
+    					}
+    					return;
+    				}
+
+    				if (timeout != null) timeout.cancel(false);
+
+    				synchronized (progress) {
+    					progress.pendingRanges--;
+    					progress.notifyAll();
+    				}
+    			}
+    		});
+
+    		thread.setDaemon(true);
+    		thread.start();
+    	}
+
+    	synchronized (progress) {
+    		while (progress.pendingRanges > 0 && progress.liveWorkers > 0) {
+    			try {
+    				progress.wait();
+    			} catch (InterruptedException e) {
+    				Thread.currentThread().interrupt();
+    				throw new IOException("Interrupted while building", e);
+    			}
+    		}
+
+    		if (progress.pendingRanges > 0) throw failures;
+    	}
+
+    	return results;
+    }
+
+    /**
+     * Drops a failed worker, recording the cause of the failure.
+     */
+    private void drop(WorkerLink link, Exception cause,
+    		IOException failures) {
+    	synchronized (this) {
+    		this.workers.remove(link);
+    	}
+
+    	synchronized (failures) {
+    		failures.addSuppressed(cause);
+    	}
+
+    	try {
+    		link.resource.close();
+    	} catch (IOException e) {
+    		// The link is dropped anyway.
+    	}
+    }
+
+    /**
+     * Ends the connections to the live workers.
+     */
+    @Override
+    public void close() throws IOException {
+    	List<WorkerLink> links;
+
+    	synchronized (this) {
+    		links = new ArrayList<WorkerLink>(this.workers);
+    		this.workers.clear();
+    	}
+
+    	for (WorkerLink link : links) link.close();
+    }
+
+    static String readDigest(DataInputStream in) throws IOException {
+    	byte[] digest = new byte[HashUtil.MD5_LENGTH];
+
+    	in.readFully(digest);
+
+    	return HashUtil.digestToHex(digest, 0);
+    }
+
+    static void writeDigest(DataOutputStream out, String hash)
+    		throws IOException {
+    	byte[] digest = new byte[HashUtil.MD5_LENGTH];
+
+    	HashUtil.hexToDigest(hash, digest, 0);
+    	out.write(digest);
+    }
+}
\ No newline at end of file
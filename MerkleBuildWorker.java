@@ -0,0 +1,387 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A worker of a Merkle tree built by a {@link MerkleBuildCoordinator}. The
+ * worker hashes the ranges of leaves it is given with its {@link LeafSource}
+ * and sends back the root of each range, and its levels if requested.
+ *
+ * <p>
+ * A worker serves any number of coordinators, each on its own thread, either
+ * in the same process, through {@link #connectLocal()}, or from other
+ * processes, through {@link #listen(ServerSocket)}. Run as a program, it
+ * listens on a port and hashes the chunks of a file.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class MerkleBuildWorker implements AutoCloseable {
+
+    /**
+     * The leaves that the workers hash, which every worker must be able to
+     * read on its own.
+     */
+    @FunctionalInterface
+    public interface LeafSource {
+
+        /**
+         * Returns the hashes of the leaves in the given range.
+         *
+         * @param from  the position of the first leaf, inclusive.
+         * @param to  the position of the last leaf, exclusive.
+         * @return the hashes of the leaves, in order.
+         * @throws IOException if the leaves cannot be read.
+         */
+        List<String> hashLeaves(int from, int to) throws IOException;
+
+        /**
+         * Returns a source whose leaves are the elements of the given list.
+         *
+         * @param data  the elements.
+         * @return the source of the elements.
+         * @throws IllegalArgumentException if the list is null.
+         */
+        static LeafSource ofList(List<?> data) {
+        	if (data == null) throw new IllegalArgumentException();
+
+        	return (from, to) -> {
+        		List<String> hashes = new ArrayList<String>(to - from);
+
+        		for (Object element : data.subList(from, to))
+        			hashes.add(HashUtil.dataToHash(element));
+
+        		return hashes;
+        	};
+        }
+
+        /**
+         * Returns a source whose leaves are the chunks of the given size of
+         * a file, hashed as {@link FileHasher} does.
+         *
+         * @param file  the file.
+         * @param chunkSize  the size of a chunk in bytes.
+         * @return the source of the chunks of the file.
+         * @throws IllegalArgumentException if the file is null or the size is
+         *         not positive.
+         */
+        static LeafSource ofFile(Path file, int chunkSize) {
+        	if (file == null || chunkSize < 1)
+        		throw new IllegalArgumentException();
+
+        	return (from, to) -> {
+        		List<String> hashes = new ArrayList<String>(to - from);
+
+        		try (FileChannel channel = FileChannel.open(
+        				file, StandardOpenOption.READ)) {
+        			long size = channel.size();
+
+        			for (int i = from; i < to; i++) {
+        				long position = (long) i * chunkSize;
+
+        				if (position >= size && (i > 0 || size > 0))
+        					throw new IOException("Chunk " + i
+        							              + " is beyond the end of "
+        							              + "the file");
+
+        				hashes.add(FileHasher.hashChunk(channel, position,
+        						   (int) Math.min(chunkSize, size - position)));
+        			}
+        		} catch (UncheckedIOException e) {
+        			throw e.getCause();
+        		}
+
+        		return hashes;
+        	};
+        }
+    }
+
+    private final LeafSource source;
+
+    // The sockets and pipes of the connections; guarded by this object.
+    private final List<Closeable> resources;
+
+    private boolean closed;
+
+    /**
+     * Constructs a worker.
+     *
+     * @param source  the leaves that the worker hashes.
+     * @throws IllegalArgumentException if the source is null.
+     */
+    public MerkleBuildWorker(LeafSource source) {
+    	if (source == null) throw new IllegalArgumentException();
+
+        this.source = source;
+        this.resources = new ArrayList<Closeable>();
+        this.closed = false;
+    }
+
+    /**
+     * Serves a coordinator on the given streams until it ends the
+     * connection.
+     *
+     * @param in  the stream of the messages of the coordinator.
+     * @param out  the stream of the messages to the coordinator.
+     * @throws IOException if the connection fails.
+     */
+    public void serve(InputStream in, OutputStream out) throws IOException {
+    	DataInputStream input =
+    			new DataInputStream(new BufferedInputStream(in));
+    	DataOutputStream output =
+    			new DataOutputStream(new BufferedOutputStream(out));
+
+    	while (true) {
+    		byte type;
+
+    		try {
+    			type = input.readByte();
+    		} catch (EOFException e) {
+    			return;
+    		}
+
+    		if (type == MerkleBuildCoordinator.CLOSE) return;
+
+    		if (type != MerkleBuildCoordinator.TASK)
+    			throw new IOException("Unexpected message " + type);
+
+    		int range = input.readInt();
+    		int from = input.readInt();
+    		int to = input.readInt();
+    		int level = input.readInt();
+    		boolean withLevels = input.readBoolean();
+    		List<List<String>> levels;
+
+    		try {
+    			levels = this.build(from, to, level);
+    		} catch (IOException | RuntimeException e) {
+    			output.writeByte(MerkleBuildCoordinator.FAILURE);
+    			output.writeUTF(String.valueOf(e));
+    			output.flush();
+    			continue;
+    		}
+
+    		output.writeByte(MerkleBuildCoordinator.RESULT);
+    		output.writeInt(range);
+    		MerkleBuildCoordinator.writeDigest(
+    				output, levels.get(levels.size() - 1).get(0));
+    		output.writeBoolean(withLevels);
+
+    		if (withLevels) {
+    			output.writeInt(levels.size());
+
+    			for (List<String> hashes : levels) {
+    				output.writeInt(hashes.size());
+
+    				for (String hash : hashes)
+    					MerkleBuildCoordinator.writeDigest(output, hash);
+    			}
+    		}
+
+    		output.flush();
+    	}
+    }
+
+    /**
+     * Builds the levels of a range up to the given level. The last range may
+     * be shorter than the others, and its root is then hashed on its own, as
+     * a node without a sibling, until it reaches the level of the others.
+     */
+    private List<List<String>> build(int from, int to, int level)
+    		throws IOException {
+    	if (from < 0 || to <= from || level < 0
+    		|| (long) to - from > 1L << Math.min(level, 62))
+    		throw new IllegalArgumentException("Invalid range");
+
+    	List<String> leafHashes = this.source.hashLeaves(from, to);
+
+    	if (leafHashes.size() != to - from)
+    		throw new IOException("The source returned the wrong number of "
+    				              + "leaves");
+
+    	MerkleLevels range = new MerkleLevels(leafHashes);
+    	List<List<String>> levels = new ArrayList<List<String>>(level + 1);
+
+    	for (int i = 0; i <= range.getHeight(); i++)
+    		levels.add(range.getLevel(i));
+
+    	for (int i = range.getHeight(); i < level; i++) {
+    		levels.add(List.of(HashUtil.combineHashes(
+    				levels.get(i).get(0), null)));
+    	}
+
+    	return levels;
+    }
+
+    /**
+     * Starts serving a coordinator in this process, on a new thread,
+     * connected through a pair of pipes. Pipes have no read timeout of their
+     * own: a coordinator with a task timeout closes the link of a worker that
+     * hangs.
+     *
+     * @return the link that the coordinator uses to reach this worker.
+     * @throws IOException if the pipes cannot be opened or the worker is
+     *         closed.
+     */
+    public MerkleBuildCoordinator.WorkerLink connectLocal() throws IOException {
+    	Pipe requests = Pipe.open();
+    	Pipe responses = Pipe.open();
+
+    	this.register(requests.source());
+    	this.register(responses.sink());
+
+    	this.start(() -> this.serve(Channels.newInputStream(requests.source()),
+    			                    Channels.newOutputStream(responses.sink())),
+    			   requests.source(), responses.sink());
+
+    	return new MerkleBuildCoordinator.WorkerLink(
+    			Channels.newInputStream(responses.source()),
+    			Channels.newOutputStream(requests.sink()), () -> {
+    				requests.sink().close();
+    				responses.source().close();
+    			});
+    }
+
+    /**
+     * Accepts connections from coordinators on the given socket, serving each
+     * of them on a new thread, until the worker is closed.
+     *
+     * @param server  the socket to accept connections on.
+     * @throws IOException if the worker is closed.
+     */
+    public void listen(ServerSocket server) throws IOException {
+    	this.register(server);
+
+    	Thread acceptor = new Thread(() -> {
+    		while (true) {
+    			Socket socket;
+
+    			try {
+    				socket = server.accept();
+    				socket.setTcpNoDelay(true);
+    				this.register(socket);
+    			} catch (IOException e) {
+    				return;
+    			}
+
+    			this.start(() -> this.serve(socket.getInputStream(),
+    					                    socket.getOutputStream()),
+    					   socket);
+    		}
+    	});
+
+    	acceptor.setDaemon(true);
+    	acceptor.start();
+    }
+
+    private interface Session {
+        void run() throws IOException;
+    }
+
+    /**
+     * Runs a session on a new thread, closing the given resources at its
+     * end.
+     */
+    private void start(Session session, Closeable... resources) {
+    	Thread thread = new Thread(() -> {
+    		try {
+    			session.run();
+    		} catch (IOException e) {
+    			// The coordinator sees the connection break.
+    		} finally {
+    			for (Closeable resource : resources) {
+    				this.unregister(resource);
+
+    				try {
+    					resource.close();
+    				} catch (IOException e) {
+    					// Nothing else to release.
+    				}
+    			}
+    		}
+    	});
+
+    	thread.setDaemon(true);
+    	thread.start();
+    }
+
+    private synchronized void register(Closeable resource) throws IOException {
+    	if (this.closed) {
+    		resource.close();
+    		throw new IOException("The worker is closed");
+    	}
+
+    	this.resources.add(resource);
+    }
+
+    private synchronized void unregister(Closeable resource) {
+    	this.resources.remove(resource);
+    }
+
+    /**
+     * Stops the worker, breaking all its connections, as if its process had
+     * ended.
+     */
+    @Override
+    public void close() {
+    	List<Closeable> open;
+
+    	synchronized (this) {
+    		this.closed = true;
+    		open = new ArrayList<Closeable>(this.resources);
+    		this.resources.clear();
+    	}
+
+    	for (Closeable resource : open) {
+    		try {
+    			resource.close();
+    		} catch (IOException e) {
+    			// The other resources are closed anyway.
+    		}
+    	}
+    }
+
+    /**
+     * Runs a worker that hashes the chunks of a file, listening on a port
+     * until the process is stopped.
+     *
+     * @param args  the port, the file and the size of a chunk in bytes.
+     * @throws IOException if the port cannot be opened.
+     * @throws InterruptedException if the process is interrupted.
+     */
+    public static void main(String[] args)
+    		throws IOException, InterruptedException {
+    	if (args.length != 3) {
+    		System.err.println("Usage: MerkleBuildWorker <port> <file> "
+    				           + "<chunk size>");
+    		System.exit(2);
+    	}
+
+    	MerkleBuildWorker worker = new MerkleBuildWorker(LeafSource.ofFile(
+    			Paths.get(args[1]), Integer.parseInt(args[2])));
+    	ServerSocket server = new ServerSocket(Integer.parseInt(args[0]));
+
+    	worker.listen(server);
+    	System.out.println("Listening on port " + server.getLocalPort());
+
+    	Thread.currentThread().join();
+    }
+}
\ No newline at end of file
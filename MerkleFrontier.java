@@ -0,0 +1,246 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The right frontier of a Merkle tree that only grows by appending leaves:
+ * for every level k, the hash of the complete subtree of 2^k leaves that is
+ * not yet part of a larger complete subtree, if there is one. Such a subtree
+ * exists exactly when bit k of the number of leaves is set, so the frontier
+ * holds at most one hash per level, that is O(log n) hashes.
+ *
+ * <p>
+ * Appending a leaf works like incrementing a binary counter: the new leaf is
+ * combined with the complete subtrees of the levels whose bit is set, until a
+ * free level is found. The root is computed from the frontier alone, and is
+ * the same as the root of the {@link MerkleTree} built on all the leaves.
+ *
+ * <p>
+ * A frontier can also keep the nodes below its complete subtrees, so that the
+ * {@link MerkleTree} itself can be built from it, and so that the leaves of
+ * another frontier can be appended to it without hashing them again: the
+ * complete subtrees of the other frontier are appended whole where they are
+ * aligned to their size, and split into their children otherwise, as the
+ * pairing of the nodes depends on their position in the whole tree.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+final class MerkleFrontier {
+
+    private long size;
+
+    private final boolean keepNodes;
+
+    // The element k is the root of the complete subtree of level k, or null.
+    private final List<MerkleNode> subtrees;
+
+    /**
+     * Constructs the frontier of a tree without leaves, which only keeps the
+     * hashes of its complete subtrees.
+     */
+    MerkleFrontier() {
+        this(false);
+    }
+
+    /**
+     * Constructs the frontier of a tree without leaves.
+     *
+     * @param keepNodes  whether the nodes below the complete subtrees are
+     *                   kept, so that the tree can be built from the frontier.
+     */
+    MerkleFrontier(boolean keepNodes) {
+        this.size = 0;
+        this.keepNodes = keepNodes;
+        this.subtrees = new ArrayList<MerkleNode>();
+    }
+
+    /**
+     * Constructs a copy of the given frontier.
+     *
+     * @param other  the frontier to copy.
+     */
+    MerkleFrontier(MerkleFrontier other) {
+        this.size = other.size;
+        this.keepNodes = other.keepNodes;
+        this.subtrees = new ArrayList<MerkleNode>(other.subtrees);
+    }
+
+    /**
+     * Returns the number of leaves appended so far.
+     *
+     * @return the number of leaves.
+     */
+    long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Appends a leaf to the tree.
+     *
+     * @param hash  the hash of the leaf.
+     */
+    void append(String hash) {
+    	this.append(new MerkleNode(hash), 0);
+    }
+
+    /**
+     * Appends the leaves of another frontier, which must keep its nodes, to
+     * the tree. Its complete subtrees are appended from the largest, that is
+     * from the leftmost: a subtree of 2^k leaves is appended whole if the
+     * number of leaves of this tree is a multiple of 2^k, and its two halves
+     * are appended otherwise. Only the nodes above the levels at which the
+     * subtrees are aligned are hashed again.
+     *
+     * @param other  the frontier whose leaves are appended.
+     * @throws IllegalArgumentException if the other frontier does not keep
+     *         its nodes.
+     */
+    void appendAll(MerkleFrontier other) {
+    	if (!other.keepNodes) throw new IllegalArgumentException();
+
+    	for (int level = other.subtrees.size() - 1; level >= 0; level--) {
+    		MerkleNode subtree = other.subtrees.get(level);
+
+    		if (subtree != null) this.appendAligned(subtree, level);
+    	}
+    }
+
+    /**
+     * Appends a complete subtree of the given level, splitting it into its
+     * halves until they are aligned to the number of leaves of this tree.
+     */
+    private void appendAligned(MerkleNode subtree, int level) {
+    	if ((this.size & (1L << level) - 1) == 0) {
+    		this.append(subtree, level);
+    	}
+    	else {
+    		this.appendAligned(subtree.getLeft(), level - 1);
+    		this.appendAligned(subtree.getRight(), level - 1);
+    	}
+    }
+
+    /**
+     * Appends a complete subtree of the given level, when the number of leaves
+     * is a multiple of its size, combining it with the complete subtrees of
+     * the levels whose bit is set.
+     */
+    private void append(MerkleNode subtree, int level) {
+    	MerkleNode carry = subtree;
+    	long added = 1L << level;
+
+    	while ((this.size >>> level & 1) == 1) {
+    		carry = this.combine(this.subtrees.get(level), carry);
+    		this.subtrees.set(level, null);
+    		level++;
+    	}
+
+    	while (this.subtrees.size() <= level) this.subtrees.add(null);
+
+    	this.subtrees.set(level, carry);
+    	this.size += added;
+    }
+
+    /**
+     * Returns the parent of the given nodes, whose right child may be null,
+     * linked to them only if the frontier keeps its nodes.
+     */
+    private MerkleNode combine(MerkleNode left, MerkleNode right) {
+    	String hash = HashUtil.combineHashes(left.getHash(),
+    			                             right != null ? right.getHash()
+    			                            		       : null);
+
+    	return this.keepNodes ? new MerkleNode(hash, left, right)
+    			              : new MerkleNode(hash);
+    }
+
+    /**
+     * Returns the hash of the root of the tree, or null if the tree has no
+     * leaves. Walking up from the leaves, the partial node at the right end of
+     * each level is combined with the complete subtree on its left, if there
+     * is one, and is otherwise hashed on its own, as {@link MerkleTree} does
+     * with nodes without a sibling.
+     *
+     * @return the hash of the root.
+     */
+    String getRootHash() {
+    	MerkleNode root = this.getRoot();
+
+    	return root != null ? root.getHash() : null;
+    }
+
+    /**
+     * Returns the root of the tree, or null if the tree has no leaves, built
+     * as described in {@link #getRootHash()}. The nodes below the root are
+     * linked only if the frontier keeps its nodes.
+     *
+     * @return the root of the tree.
+     */
+    MerkleNode getRoot() {
+    	if (this.size == 0) return null;
+
+    	MerkleNode carry = null;
+    	int level = 0;
+
+    	while (1L << level < this.size) {
+    		if ((this.size >>> level & 1) == 1)
+    			carry = this.combine(this.subtrees.get(level), carry);
+    		else if (carry != null)
+    			carry = this.combine(carry, null);
+
+    		level++;
+    	}
+
+    	return carry != null ? carry : this.subtrees.get(level);
+    }
+
+    /**
+     * Writes the frontier: the number of leaves, followed by the digests of
+     * the complete subtrees from the lowest level up.
+     *
+     * @param out  the destination.
+     * @throws IOException if the frontier cannot be written.
+     */
+    void writeTo(DataOutput out) throws IOException {
+    	byte[] digest = new byte[HashUtil.MD5_LENGTH];
+
+    	out.writeLong(this.size);
+
+    	for (MerkleNode subtree : this.subtrees) {
+    		if (subtree == null) continue;
+
+    		HashUtil.hexToDigest(subtree.getHash(), digest, 0);
+    		out.write(digest);
+    	}
+    }
+
+    /**
+     * Reads a frontier written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in  the source.
+     * @return the frontier read.
+     * @throws IOException if the frontier cannot be read or is invalid.
+     */
+    static MerkleFrontier readFrom(DataInput in) throws IOException {
+    	MerkleFrontier frontier = new MerkleFrontier();
+    	byte[] digest = new byte[HashUtil.MD5_LENGTH];
+
+    	frontier.size = in.readLong();
+
+    	if (frontier.size < 0) throw new IOException("Invalid frontier size");
+
+    	for (int level = 0; frontier.size >>> level != 0; level++) {
+    		if ((frontier.size >>> level & 1) == 1) {
+    			in.readFully(digest);
+    			frontier.subtrees.add(
+    					new MerkleNode(HashUtil.digestToHex(digest, 0)));
+    		}
+    		else frontier.subtrees.add(null);
+    	}
+
+    	return frontier;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,585 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A durable, append-only log of the leaves of a Merkle tree, used to keep a
+ * running integrity log whose root survives crashes.
+ *
+ * <p>
+ * The log is kept in a directory with two files. The file
+ * {@value #LOG_FILE_NAME} holds the raw digests of the leaves, 16 bytes each,
+ * in the order they were appended, after a header with the format of the
+ * file. The digests are grouped in batches, one for each commit, each
+ * preceded by the number of its leaves and a CRC32 of the number and the
+ * digests. The file {@value #CHECKPOINT_FILE_NAME} holds a checkpoint of the
+ * right frontier of the tree (see {@link MerkleFrontier}), that is O(log n)
+ * digests from which the root can be computed, together with the position in
+ * the log of the first batch after it, and is rewritten every given number of
+ * leaves.
+ *
+ * <p>
+ * Appends are durable when they return, and are committed in groups: the
+ * first thread that needs its leaf on disk writes all the leaves appended so
+ * far with a single write followed by a single {@code fsync}, while the
+ * others wait for it. Under concurrent load the cost of an {@code fsync} is
+ * thus shared by many leaves. The directory is forced to disk as well when the
+ * log is created and whenever the checkpoint is replaced, so that neither
+ * file can disappear after a crash.
+ *
+ * <p>
+ * When the log is opened, the root is recovered from the last checkpoint by
+ * replaying only the leaves appended after it, so recovery reads at most about
+ * a checkpoint interval of leaves regardless of the size of the log. The
+ * replay stops at the first batch that is incomplete or does not match its
+ * CRC32, which is a batch that was never acknowledged because a crash
+ * interrupted its write, and the log is truncated there, so that leaves that
+ * were only partially written, zero-filled or stale never reach the root.
+ *
+ * @param <T> the type of data of the leaves.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class MerkleLeafLog<T> implements AutoCloseable {
+
+    /**
+     * The name of the file with the digests of the leaves.
+     */
+    public static final String LOG_FILE_NAME = "leaves.log";
+
+    /**
+     * The name of the file with the checkpoint of the frontier.
+     */
+    public static final String CHECKPOINT_FILE_NAME = "frontier.checkpoint";
+
+    private static final int CHECKPOINT_MAGIC = 0x4d524b44;
+
+    private static final int LOG_MAGIC = 0x4d524b4c;
+
+    private static final int LOG_VERSION = 2;
+
+    // The magic number and the version of the format of the log.
+    private static final int LOG_HEADER_SIZE = 8;
+
+    // The number of leaves and the CRC32 of a batch.
+    private static final int BATCH_HEADER_SIZE = 8;
+
+    private final Path directory;
+
+    private final FileChannel channel;
+
+    private final int checkpointInterval;
+
+    private final Object lock;
+
+    // The following fields are guarded by the lock.
+
+    private MerkleFrontier frontier;
+
+    private List<String> pending;
+
+    private long appended;
+
+    private long checkpointed;
+
+    // The position in the log after the last batch on disk; written only by
+    // the committing thread.
+    private long end;
+
+    private boolean committing;
+
+    private IOException failure;
+
+    private boolean closed;
+
+    private final long replayed;
+
+    private MerkleLeafLog(Path directory, int checkpointInterval)
+    		throws IOException {
+        this.directory = directory;
+        this.checkpointInterval = checkpointInterval;
+        this.lock = new Object();
+        this.pending = new ArrayList<String>();
+        this.channel = FileChannel.open(directory.resolve(LOG_FILE_NAME),
+        		                        StandardOpenOption.CREATE,
+        		                        StandardOpenOption.READ,
+        		                        StandardOpenOption.WRITE);
+
+        try {
+        	this.readHeader();
+
+        	long offset = this.readCheckpoint();
+        	this.checkpointed = this.frontier.getSize();
+
+        	if (offset > this.channel.size())
+        		throw new IOException("The checkpoint is ahead of the log");
+
+        	// Discards the batches that a crash left incomplete or damaged.
+        	this.end = this.replay(offset);
+        	this.channel.truncate(this.end);
+        	this.channel.force(false);
+        	this.replayed = this.frontier.getSize() - this.checkpointed;
+        	this.appended = this.frontier.getSize();
+
+        	if (this.replayed > 0) {
+        		this.writeCheckpoint(this.frontier, this.end);
+        		this.checkpointed = this.appended;
+        	}
+        } catch (IOException | RuntimeException e) {
+        	this.channel.close();
+        	throw e;
+        }
+    }
+
+    /**
+     * Opens the log in the given directory, creating it if it does not exist,
+     * and recovers the root of its tree.
+     *
+     * @param <T>  the type of data of the leaves.
+     * @param directory  the directory of the log.
+     * @param checkpointInterval  the number of leaves after which the
+     *                            frontier is checkpointed.
+     * @return the log in the directory.
+     * @throws IOException if the log cannot be opened or is corrupted.
+     * @throws IllegalArgumentException if the directory is null or the
+     *         interval is not positive.
+     */
+    public static <T> MerkleLeafLog<T> open(Path directory,
+    		int checkpointInterval) throws IOException {
+    	if (directory == null || checkpointInterval < 1)
+    		throw new IllegalArgumentException();
+
+        Files.createDirectories(directory);
+
+        return new MerkleLeafLog<T>(directory, checkpointInterval);
+    }
+
+    /**
+     * Appends the hash of the given data to the log, and waits until it is on
+     * disk.
+     *
+     * @param data  the data of the leaf.
+     * @return the position of the leaf in the log.
+     * @throws IOException if the log cannot be written.
+     * @throws IllegalArgumentException if the data is null.
+     * @throws IllegalStateException if the log is closed.
+     */
+    public long append(T data) throws IOException {
+    	if (data == null) throw new IllegalArgumentException();
+
+        return this.appendHash(HashUtil.dataToHash(data));
+    }
+
+    /**
+     * Appends a leaf hash to the log, and waits until it is on disk. If the
+     * waiting thread is interrupted, the leaf may still be committed later.
+     *
+     * @param hash  the hash of the leaf.
+     * @return the position of the leaf in the log.
+     * @throws IOException if the log cannot be written.
+     * @throws IllegalArgumentException if the hash is not a valid MD5 hash.
+     * @throws IllegalStateException if the log is closed.
+     */
+    public long appendHash(String hash) throws IOException {
+    	HashUtil.hexToDigest(hash, new byte[HashUtil.MD5_LENGTH], 0);
+
+    	long position;
+
+    	synchronized (this.lock) {
+    		if (this.closed) throw new IllegalStateException();
+
+    		this.pending.add(hash);
+    		position = this.appended++;
+    	}
+
+    	this.commit(position + 1);
+
+    	return position;
+    }
+
+    /**
+     * Returns the number of leaves on disk.
+     *
+     * @return the number of durable leaves.
+     */
+    public long getSize() {
+    	synchronized (this.lock) {
+    		return this.frontier.getSize();
+    	}
+    }
+
+    /**
+     * Returns the root of the tree of the leaves on disk, or null if the log
+     * is empty.
+     *
+     * @return the hash of the root.
+     */
+    public String getRootHash() {
+    	synchronized (this.lock) {
+    		return this.frontier.getRootHash();
+    	}
+    }
+
+    /**
+     * Returns the number of leaves covered by the last checkpoint.
+     *
+     * @return the number of leaves of the last checkpoint.
+     */
+    public long getCheckpointedSize() {
+    	synchronized (this.lock) {
+    		return this.checkpointed;
+    	}
+    }
+
+    /**
+     * Returns the number of leaves that were replayed from the log when it was
+     * opened.
+     *
+     * @return the number of replayed leaves.
+     */
+    long getReplayedLeaves() {
+        return this.replayed;
+    }
+
+    /**
+     * Builds the Merkle tree of all the leaves on disk, reading the whole log.
+     *
+     * @return the Merkle tree of the log.
+     * @throws IOException if the log cannot be read.
+     * @throws IllegalArgumentException if the log is empty.
+     */
+    public MerkleTree<T> toMerkleTree() throws IOException {
+    	long size = this.getSize();
+
+    	if (size > Integer.MAX_VALUE / HashUtil.MD5_LENGTH)
+    		throw new IOException("The log is too large to be loaded");
+
+    	ByteBuffer buffer =
+    			ByteBuffer.allocate((int) size * HashUtil.MD5_LENGTH);
+    	ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER_SIZE);
+    	long offset = LOG_HEADER_SIZE;
+
+    	// The batches on disk are whole, as the size only grows by batches.
+    	while (buffer.hasRemaining()) {
+    		this.readFully(header.clear(), offset);
+
+    		int count = header.getInt(0);
+
+    		if (count < 1 || count > buffer.remaining() / HashUtil.MD5_LENGTH)
+    			throw new IOException("Invalid batch in the leaf log");
+
+    		buffer.limit(buffer.position() + count * HashUtil.MD5_LENGTH);
+    		this.readFully(buffer, offset + BATCH_HEADER_SIZE);
+    		buffer.limit(buffer.capacity());
+    		offset += BATCH_HEADER_SIZE + (long) count * HashUtil.MD5_LENGTH;
+    	}
+
+    	return MerkleTree.fromDigests(buffer.array());
+    }
+
+    /**
+     * Commits the pending leaves and checkpoints the frontier.
+     *
+     * @throws IOException if the log or the checkpoint cannot be written.
+     */
+    public void checkpoint() throws IOException {
+    	long target;
+
+    	synchronized (this.lock) {
+    		target = this.appended;
+    	}
+
+    	this.commit(target);
+    	this.commit(-1);
+    }
+
+    /**
+     * Commits the pending leaves, checkpoints the frontier and closes the log.
+     * Further appends are rejected.
+     *
+     * @throws IOException if the log cannot be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+    	synchronized (this.lock) {
+    		if (this.closed) return;
+
+    		this.closed = true;
+    	}
+
+    	try {
+    		this.checkpoint();
+    	} finally {
+    		this.channel.close();
+    	}
+    }
+
+    /**
+     * Waits until the given number of leaves is on disk. If no other thread is
+     * committing, the calling thread commits all the pending leaves. A
+     * negative target forces a checkpoint of the leaves on disk.
+     */
+    private void commit(long target) throws IOException {
+    	List<String> batch;
+
+    	synchronized (this.lock) {
+    		while (this.committing) {
+    			if (this.failure != null) throw this.failure();
+
+    			try {
+    				this.lock.wait();
+    			} catch (InterruptedException e) {
+    				Thread.currentThread().interrupt();
+    				throw new InterruptedIOException();
+    			}
+    		}
+
+    		if (this.failure != null) throw this.failure();
+
+    		if (target >= 0 && this.frontier.getSize() >= target) return;
+
+    		this.committing = true;
+    		batch = this.pending;
+    		this.pending = new ArrayList<String>();
+    	}
+
+    	MerkleFrontier checkpoint = null;
+
+    	try {
+    		this.write(batch);
+
+    		long offset = this.end;
+
+    		synchronized (this.lock) {
+    			for (String hash : batch) this.frontier.append(hash);
+
+    			if (target < 0 || this.frontier.getSize() - this.checkpointed
+    					          >= this.checkpointInterval)
+    				checkpoint = new MerkleFrontier(this.frontier);
+    		}
+
+    		if (checkpoint != null) this.writeCheckpoint(checkpoint, offset);
+    	} catch (IOException e) {
+    		synchronized (this.lock) {
+    			this.failure = e;
+    		}
+
+    		throw e;
+    	} finally {
+    		synchronized (this.lock) {
+    			if (checkpoint != null && this.failure == null)
+    				this.checkpointed = checkpoint.getSize();
+
+    			this.committing = false;
+    			this.lock.notifyAll();
+    		}
+    	}
+    }
+
+    private IOException failure() {
+        return new IOException("A previous commit failed", this.failure);
+    }
+
+    /**
+     * Writes a batch of leaves at the end of the log with a single write,
+     * preceded by their number and their CRC32, and forces them to disk.
+     */
+    private void write(List<String> batch) throws IOException {
+    	if (batch.isEmpty()) return;
+
+    	int length = batch.size() * HashUtil.MD5_LENGTH;
+    	ByteBuffer buffer = ByteBuffer.allocate(BATCH_HEADER_SIZE + length);
+
+    	buffer.putInt(0, batch.size());
+
+    	for (int i = 0; i < batch.size(); i++)
+    		HashUtil.hexToDigest(batch.get(i), buffer.array(),
+    				             BATCH_HEADER_SIZE + i * HashUtil.MD5_LENGTH);
+
+    	buffer.putInt(Integer.BYTES, batchChecksum(buffer.array(), length));
+
+    	while (buffer.hasRemaining())
+    		this.channel.write(buffer, this.end + buffer.position());
+
+    	this.channel.force(false);
+    	this.end += buffer.capacity();
+    }
+
+    /**
+     * Returns the CRC32 of the number of leaves of a batch, at the start of
+     * the given array, and of its digests, after the header of the batch.
+     */
+    private static int batchChecksum(byte[] batch, int length) {
+    	CRC32 crc = new CRC32();
+
+    	crc.update(batch, 0, Integer.BYTES);
+    	crc.update(batch, BATCH_HEADER_SIZE, length);
+
+    	return (int) crc.getValue();
+    }
+
+    /**
+     * Checks the header of the log, writing it if the log is new. A new log
+     * and its directory entry are forced to disk before anything is appended.
+     */
+    private void readHeader() throws IOException {
+    	ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+
+    	if (this.channel.size() < LOG_HEADER_SIZE) {
+    		if (this.channel.size() > 0
+    			|| Files.exists(this.directory.resolve(CHECKPOINT_FILE_NAME)))
+    			throw new IOException("Truncated leaf log");
+
+    		header.putInt(LOG_MAGIC).putInt(LOG_VERSION).flip();
+
+    		while (header.hasRemaining())
+    			this.channel.write(header, header.position());
+
+    		this.channel.force(true);
+    		MerkleTreeFile.forceDirectory(this.directory);
+    		return;
+    	}
+
+    	this.readFully(header, 0);
+
+    	if (header.getInt(0) != LOG_MAGIC || header.getInt(4) != LOG_VERSION)
+    		throw new IOException("Unsupported leaf log format");
+    }
+
+    /**
+     * Appends to the frontier the leaves of the batches from the given
+     * position of the log, stopping at the end of the log or at the first
+     * batch that is incomplete or does not match its CRC32, and returns the
+     * position after the last valid batch.
+     */
+    private long replay(long offset) throws IOException {
+    	long size = this.channel.size();
+    	ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER_SIZE);
+
+    	while (size - offset >= BATCH_HEADER_SIZE) {
+    		this.readFully(header.clear(), offset);
+
+    		int count = header.getInt(0);
+
+    		if (count < 1 || count > (size - offset - BATCH_HEADER_SIZE)
+    				                 / HashUtil.MD5_LENGTH)
+    			break;
+
+    		int length = count * HashUtil.MD5_LENGTH;
+    		ByteBuffer batch = ByteBuffer.allocate(BATCH_HEADER_SIZE + length);
+
+    		this.readFully(batch, offset);
+
+    		if (batchChecksum(batch.array(), length) != header.getInt(4))
+    			break;
+
+    		for (int i = 0; i < count; i++)
+    			this.frontier.append(HashUtil.digestToHex(batch.array(),
+    					BATCH_HEADER_SIZE + i * HashUtil.MD5_LENGTH));
+
+    		offset += batch.capacity();
+    	}
+
+    	return offset;
+    }
+
+    /**
+     * Fills the remaining bytes of the buffer from the log, reading the byte
+     * at the current position of the buffer from the given position of the
+     * log.
+     */
+    private void readFully(ByteBuffer buffer, long position)
+    		throws IOException {
+    	long start = position - buffer.position();
+
+    	while (buffer.hasRemaining()) {
+    		if (this.channel.read(buffer, start + buffer.position()) < 0)
+    			throw new IOException("Truncated leaf log");
+    	}
+    }
+
+    /**
+     * Reads the last checkpoint into the frontier, or starts from an empty
+     * frontier if there is none, and returns the position in the log of the
+     * first batch after it.
+     */
+    private long readCheckpoint() throws IOException {
+    	Path path = this.directory.resolve(CHECKPOINT_FILE_NAME);
+
+    	if (!Files.exists(path)) {
+    		this.frontier = new MerkleFrontier();
+    		return LOG_HEADER_SIZE;
+    	}
+
+    	byte[] content = Files.readAllBytes(path);
+    	CRC32 crc = new CRC32();
+
+    	if (content.length < 20) throw new IOException("Invalid checkpoint");
+
+    	crc.update(content, 0, content.length - Long.BYTES);
+    	DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+    			content));
+
+    	if (in.readInt() != CHECKPOINT_MAGIC
+    		|| HashUtil.bytesToLong(content, content.length - Long.BYTES)
+    		   != crc.getValue())
+    		throw new IOException("Invalid checkpoint");
+
+    	this.frontier = MerkleFrontier.readFrom(in);
+    	long offset = in.readLong();
+
+    	if (offset < LOG_HEADER_SIZE || in.available() != Long.BYTES)
+    		throw new IOException("Invalid checkpoint");
+
+    	return offset;
+    }
+
+    /**
+     * Writes a checkpoint of the given frontier and of the position in the log
+     * after its leaves under a temporary name, forces it to disk, moves it in
+     * place of the previous one and forces the directory.
+     */
+    private void writeCheckpoint(MerkleFrontier checkpoint, long offset)
+    		throws IOException {
+    	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    	DataOutputStream out = new DataOutputStream(bytes);
+    	CRC32 crc = new CRC32();
+
+    	out.writeInt(CHECKPOINT_MAGIC);
+    	checkpoint.writeTo(out);
+    	out.writeLong(offset);
+    	crc.update(bytes.toByteArray());
+    	out.writeLong(crc.getValue());
+
+    	Path path = this.directory.resolve(CHECKPOINT_FILE_NAME);
+    	Path temporary = this.directory.resolve(CHECKPOINT_FILE_NAME + ".tmp");
+
+    	try (FileChannel file = FileChannel.open(temporary,
+    			StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+    			StandardOpenOption.TRUNCATE_EXISTING)) {
+    		ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+
+    		while (buffer.hasRemaining()) file.write(buffer);
+
+    		file.force(true);
+    	}
+
+    	Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+    			   StandardCopyOption.ATOMIC_MOVE);
+    	MerkleTreeFile.forceDirectory(this.directory);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,240 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The hashes of a Merkle tree stored level by level, from the leaves (level 0)
+ * up to the root, in arrays rather than as linked nodes. The tree has the same
+ * shape and hashes as the one built by {@link MerkleTree}: adjacent hashes are
+ * combined two by two and a node without a sibling is hashed on its own.
+ *
+ * <p>
+ * Storing the levels allows updating the tree incrementally: when the leaves
+ * change from a given position onwards, only the ancestors of those leaves are
+ * recomputed. Appending a leaf or replacing one costs O(log n) hashes, while
+ * inserting or removing a leaf costs as many hashes as there are leaves after
+ * it, since all of them change position.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+final class MerkleLevels {
+
+    private final List<List<String>> levels;
+
+    /**
+     * Constructs the levels of the tree whose leaves are the given hashes.
+     *
+     * @param leafHashes  the hashes of the leaves, from left to right.
+     */
+    MerkleLevels(List<String> leafHashes) {
+        this.levels = new ArrayList<List<String>>();
+        this.levels.add(new ArrayList<String>(leafHashes));
+        this.update(0);
+    }
+
+    /**
+     * Returns the number of leaves.
+     *
+     * @return the number of leaves.
+     */
+    int getWidth() {
+        return this.levels.get(0).size();
+    }
+
+    /**
+     * Returns the height of the tree, that is, the number of levels above the
+     * leaves.
+     *
+     * @return the height of the tree.
+     */
+    int getHeight() {
+        return this.levels.size() - 1;
+    }
+
+    /**
+     * Returns the hash of the root, or null if the tree has no leaves.
+     *
+     * @return the hash of the root.
+     */
+    String getRootHash() {
+        List<String> top = this.levels.get(this.levels.size() - 1);
+
+        return top.isEmpty() ? null : top.get(0);
+    }
+
+    /**
+     * Returns the hashes of a level of the tree, level 0 being the leaves. The
+     * returned list must not be modified.
+     *
+     * @param level  the level.
+     * @return the hashes of the level, from left to right.
+     */
+    List<String> getLevel(int level) {
+        return this.levels.get(level);
+    }
+
+    /**
+     * Returns the hash of the leaf in the given position.
+     *
+     * @param index  the position of the leaf.
+     * @return the hash of the leaf.
+     */
+    String getLeaf(int index) {
+        return this.levels.get(0).get(index);
+    }
+
+    /**
+     * Inserts a leaf in the given position, shifting the following ones.
+     *
+     * @param index  the position of the new leaf.
+     * @param hash  the hash of the new leaf.
+     */
+    void insert(int index, String hash) {
+        this.levels.get(0).add(index, hash);
+        this.update(index);
+    }
+
+    /**
+     * Removes the leaf in the given position, shifting the following ones.
+     *
+     * @param index  the position of the leaf.
+     */
+    void remove(int index) {
+        this.levels.get(0).remove(index);
+        this.update(index);
+    }
+
+    /**
+     * Replaces the hash of the leaf in the given position.
+     *
+     * @param index  the position of the leaf.
+     * @param hash  the new hash of the leaf.
+     */
+    void set(int index, String hash) {
+        this.levels.get(0).set(index, hash);
+        this.updatePath(index);
+    }
+
+    /**
+     * Recomputes the ancestors of all the leaves from the given position
+     * onwards, adapting the size of each level to the one below it.
+     *
+     * @param from  the position of the first changed leaf.
+     */
+    private void update(int from) {
+        int index = from;
+        int level = 0;
+
+        while (this.levels.get(level).size() > 1) {
+            List<String> current = this.levels.get(level);
+
+            if (level + 1 == this.levels.size())
+            	this.levels.add(new ArrayList<String>());
+
+            List<String> parents = this.levels.get(level + 1);
+            int parentsSize = (current.size() + 1) / 2;
+
+            while (parents.size() > parentsSize) {
+            	parents.remove(parents.size() - 1);
+            }
+
+            for (int j = index / 2; j < parentsSize; j++) {
+            	String hash = this.combine(current, j);
+
+            	if (j < parents.size()) parents.set(j, hash);
+            	else parents.add(hash);
+            }
+
+            index /= 2;
+            level++;
+        }
+
+        while (this.levels.size() > level + 1) {
+        	this.levels.remove(this.levels.size() - 1);
+        }
+    }
+
+    /**
+     * Recomputes the ancestors of a single leaf, whose position and the size
+     * of the levels have not changed.
+     *
+     * @param index  the position of the changed leaf.
+     */
+    private void updatePath(int index) {
+        for (int level = 0; level + 1 < this.levels.size(); level++) {
+        	index /= 2;
+        	this.levels.get(level + 1).set(index,
+        			this.combine(this.levels.get(level), index));
+        }
+    }
+
+    /**
+     * Computes the hash of the parent in the given position, given the level
+     * of its children.
+     *
+     * @param children  the level below the parent.
+     * @param parent  the position of the parent.
+     * @return the hash of the parent.
+     */
+    private String combine(List<String> children, int parent) {
+        return HashUtil.combineHashes(children.get(parent * 2),
+        		                      parent * 2 + 1 < children.size()
+        		                      ? children.get(parent * 2 + 1) : null);
+    }
+
+    /**
+     * Returns the Merkle proof for the leaf in the given position: the hashes
+     * of the siblings of the nodes on the path from the leaf to the root, in
+     * the same format as the proofs built by {@link MerkleTree}.
+     *
+     * @param index  the position of the leaf.
+     * @return the Merkle proof for the leaf.
+     * @throws IndexOutOfBoundsException if there is no leaf in the given
+     *         position.
+     */
+    MerkleProof getMerkleProof(int index) {
+        if (index < 0 || index >= this.getWidth())
+        	throw new IndexOutOfBoundsException(index);
+
+        MerkleProof proof = new MerkleProof(this.getRootHash(),
+        		                            this.getHeight());
+
+        this.addPath(proof, index);
+
+        return proof;
+    }
+
+    /**
+     * Adds to a proof the siblings on the path from the leaf in the given
+     * position to the root, from the bottom up, so that the proof can go on
+     * above this tree when its root is a node of a larger one.
+     *
+     * @param proof  the proof to extend.
+     * @param index  the position of the leaf.
+     */
+    void addPath(MerkleProof proof, int index) {
+        for (int level = 0; level < this.getHeight(); level++) {
+        	List<String> current = this.levels.get(level);
+
+        	if (index % 2 == 1) proof.addHash(current.get(index - 1), true);
+        	else if (index + 1 < current.size())
+        		proof.addHash(current.get(index + 1), false);
+        	else proof.addHash("", false);
+
+        	index /= 2;
+        }
+    }
+
+    /**
+     * Builds a {@link MerkleTree} with the hashes of these levels, without
+     * computing any hash.
+     *
+     * @param <T>  the type of data on which the tree is built.
+     * @return the Merkle tree with these levels.
+     * @throws IllegalArgumentException if the tree has no leaves.
+     */
+    <T> MerkleTree<T> toMerkleTree() {
+        return MerkleTree.fromLevels(this.levels);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,98 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntFunction;
+
+/**
+ * A benchmark of {@link MerkleProofBatcher} against requests answered one by
+ * one: bursts of requests for random leaves are sent at once, either each as
+ * a task of the common pool that reads one proof, or to a batcher with the
+ * default settings. After a run that warms up the JVM, each run reports the
+ * time per request and the median and 99th percentile of the time from the
+ * start of a burst to each of its proofs.
+ *
+ * <p>
+ * Run it with
+ * {@code java it.unicam.cs.asdl2425.mp1.MerkleProofBatcherBenchmark
+ * [leaves] [bursts] [requests per burst]}; the defaults are 65536 leaves, 200
+ * bursts and 1000 requests per burst. The results are documented in
+ * {@link MerkleProofBatcher}.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+final class MerkleProofBatcherBenchmark {
+
+    private MerkleProofBatcherBenchmark() { }
+
+    /**
+     * Runs the benchmark and prints one line per run.
+     *
+     * @param args  the number of leaves, of bursts and of requests per burst.
+     */
+    public static void main(String[] args) {
+    	int width = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 16;
+    	int bursts = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    	int requests = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+    	List<String> hashes = new ArrayList<String>(width);
+    	for (int i = 0; i < width; i++) hashes.add(HashUtil.dataToHash(i));
+
+    	ConcurrentMerkleTree<Integer> tree =
+    			ConcurrentMerkleTree.fromHashes(hashes);
+    	MerkleProofBatcher<Integer> batcher =
+    			new MerkleProofBatcher<Integer>(tree);
+    	IntFunction<CompletableFuture<MerkleProof>> direct =
+    			index -> CompletableFuture.supplyAsync(
+    					() -> tree.getMerkleProof(index));
+
+    	System.out.printf("%d leaves, %d bursts of %d requests, %d CPUs%n",
+    			          width, bursts, requests,
+    			          Runtime.getRuntime().availableProcessors());
+
+    	MerkleProofBatcherBenchmark.run(direct, width, bursts / 4, requests);
+    	MerkleProofBatcherBenchmark.run(batcher::getMerkleProofAsync, width,
+    			                        bursts / 4, requests);
+
+    	System.out.println("direct: " + MerkleProofBatcherBenchmark.run(
+    			direct, width, bursts, requests));
+    	System.out.println("batched: " + MerkleProofBatcherBenchmark.run(
+    			batcher::getMerkleProofAsync, width, bursts, requests));
+    }
+
+    /**
+     * Sends the bursts of requests to the given source of proofs and returns
+     * a description of the times measured.
+     */
+    private static String run(IntFunction<CompletableFuture<MerkleProof>> source,
+    		                  int width, int bursts, int requests) {
+    	ThreadLocalRandom random = ThreadLocalRandom.current();
+    	long[] latencies = new long[bursts * requests];
+    	long start = System.nanoTime();
+
+    	for (int burst = 0; burst < bursts; burst++) {
+    		CompletableFuture<?>[] futures = new CompletableFuture<?>[requests];
+    		long sent = System.nanoTime();
+
+    		for (int i = 0; i < requests; i++) {
+    			int slot = burst * requests + i;
+
+    			futures[i] = source.apply(random.nextInt(width)).thenRun(
+    					() -> latencies[slot] = System.nanoTime() - sent);
+    		}
+
+    		CompletableFuture.allOf(futures).join();
+    	}
+
+    	double elapsed = System.nanoTime() - start;
+    	Arrays.sort(latencies);
+
+    	return String.format("%.1f us/request, p50 %.1f ms, p99 %.1f ms",
+    			             elapsed / latencies.length / 1e3,
+    			             latencies[latencies.length / 2] / 1e6,
+    			             latencies[latencies.length * 99 / 100] / 1e6);
+    }
+}
\ No newline at end of file
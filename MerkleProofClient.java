@@ -0,0 +1,508 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * A client of a {@link MerkleProofServer}. The methods of a client send one
+ * request and wait for its response, so a client must not be shared between
+ * threads without synchronization.
+ *
+ * <p>
+ * The class also contains a load generator, {@link #runLoad}, that keeps a
+ * number of proof requests in flight on each of several connections and
+ * measures the throughput and the latency of the server.
+ *
+ * <p>
+ * Run with {@link #main} against {@link MerkleProofServer#main} serving a
+ * tree of 2^20 leaves on the loopback interface, on Java 17 with 1 CPU shared
+ * by the client and the server, each run in a new client process:
+ * <ul>
+ * <li>1 connection with 1 request in flight: about 13000 requests per
+ *     second, with a median of 33 microseconds and a 99th percentile of
+ *     0.4-0.5 milliseconds;</li>
+ * <li>4 connections with 32 requests in flight each: about 33000-35000
+ *     requests per second, with a median of 2 milliseconds and a 99th
+ *     percentile of 13-14 milliseconds; repeated in a client that has
+ *     already run, about 46000-50000 requests per second and a 99th
+ *     percentile of 5-8 milliseconds;</li>
+ * <li>16 connections with 64 requests in flight each: about 25000-29000
+ *     requests per second, with a median of 25-31 milliseconds and a 99th
+ *     percentile of 140 milliseconds, as the 32 threads of the client
+ *     compete with the server for the CPU.</li>
+ * </ul>
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class MerkleProofClient implements AutoCloseable {
+
+    private final Socket socket;
+
+    private final DataInputStream in;
+
+    private final DataOutputStream out;
+
+    private int nextId;
+
+    private MerkleProofClient(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(
+        		new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(
+        		new BufferedOutputStream(socket.getOutputStream()));
+        this.nextId = 0;
+    }
+
+    /**
+     * Connects to a server, waiting for the connection and for each response
+     * as long as it takes.
+     *
+     * @param host  the host of the server.
+     * @param port  the port of the server.
+     * @return the connected client.
+     * @throws IOException if the connection fails.
+     */
+    public static MerkleProofClient connect(String host, int port)
+    		throws IOException {
+    	return MerkleProofClient.connect(host, port, 0);
+    }
+
+    /**
+     * Connects to a server.
+     *
+     * @param host  the host of the server.
+     * @param port  the port of the server.
+     * @param timeoutMillis  the milliseconds to wait for the connection and
+     *                       for each read of a response, or 0 to wait
+     *                       forever.
+     * @return the connected client.
+     * @throws IOException if the connection fails.
+     * @throws IllegalArgumentException if the timeout is negative.
+     */
+    public static MerkleProofClient connect(String host, int port,
+    		int timeoutMillis) throws IOException {
+    	if (timeoutMillis < 0) throw new IllegalArgumentException();
+
+    	Socket socket = new Socket();
+
+    	try {
+    		socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+    		socket.setSoTimeout(timeoutMillis);
+    		socket.setTcpNoDelay(true);
+
+    		return new MerkleProofClient(socket);
+    	} catch (IOException e) {
+    		socket.close();
+    		throw e;
+    	}
+    }
+
+    /**
+     * Returns the hash of the root of the tree of the server.
+     *
+     * @return the hash of the root.
+     * @throws IOException if the request fails.
+     */
+    public String getRootHash() throws IOException {
+    	this.requestRoot();
+
+    	String root = MerkleBuildCoordinator.readDigest(this.in);
+    	this.in.readInt();
+    	this.in.readInt();
+
+        return root;
+    }
+
+    /**
+     * Returns the number of leaves of the tree of the server.
+     *
+     * @return the width of the tree.
+     * @throws IOException if the request fails.
+     */
+    public int getWidth() throws IOException {
+    	this.requestRoot();
+
+    	this.in.readFully(new byte[HashUtil.MD5_LENGTH]);
+    	int width = this.in.readInt();
+    	this.in.readInt();
+
+        return width;
+    }
+
+    private void requestRoot() throws IOException {
+    	int id = this.sendRoot();
+
+    	this.out.flush();
+    	this.readStatus(id);
+    }
+
+    /**
+     * Returns the proof of the leaf in the given position.
+     *
+     * @param index  the position of the leaf.
+     * @return the proof of the leaf.
+     * @throws IOException if the request fails.
+     * @throws IndexOutOfBoundsException if the server has no such leaf.
+     */
+    public MerkleProof getMerkleProof(int index) throws IOException {
+    	int id = this.sendProof(index);
+
+    	this.out.flush();
+
+    	return this.readProof(id, index);
+    }
+
+    /**
+     * Returns the position of the first leaf with the given hash.
+     *
+     * @param leafHash  the hash of the leaf.
+     * @return the position of the leaf, -1 if there is none.
+     * @throws IOException if the request fails.
+     * @throws IllegalArgumentException if the hash is null.
+     */
+    public int getIndexOfHash(String leafHash) throws IOException {
+    	if (leafHash == null) throw new IllegalArgumentException();
+
+    	int id = this.nextId++;
+
+    	this.out.writeByte(MerkleProofServer.VALIDATE);
+    	this.out.writeInt(id);
+    	MerkleBuildCoordinator.writeDigest(this.out, leafHash);
+    	this.out.flush();
+    	this.readStatus(id);
+
+        return this.in.readInt();
+    }
+
+    /**
+     * Checks whether the given data is one of the leaves of the tree.
+     *
+     * @param data  the data to check.
+     * @return true if the data is in the tree, false otherwise.
+     * @throws IOException if the request fails.
+     * @throws IllegalArgumentException if the data is null.
+     */
+    public boolean validateData(Object data) throws IOException {
+    	if (data == null) throw new IllegalArgumentException();
+
+        return this.getIndexOfHash(HashUtil.dataToHash(data)) != -1;
+    }
+
+    private int sendRoot() throws IOException {
+    	int id = this.nextId++;
+
+    	this.out.writeByte(MerkleProofServer.ROOT);
+    	this.out.writeInt(id);
+
+    	return id;
+    }
+
+    private int sendProof(int index) throws IOException {
+    	int id = this.nextId++;
+
+    	this.out.writeByte(MerkleProofServer.PROOF);
+    	this.out.writeInt(id);
+    	this.out.writeInt(index);
+
+    	return id;
+    }
+
+    /**
+     * Reads the header of the response to the given request.
+     *
+     * @return true if the request succeeded, false if the server reported an
+     *         error.
+     */
+    private boolean readStatus(int id, boolean allowError) throws IOException {
+    	byte status = this.in.readByte();
+
+    	if (this.in.readInt() != id)
+    		throw new IOException("Response to an unexpected request");
+
+    	if (status == MerkleProofServer.OK) return true;
+
+    	if (status == MerkleProofServer.ERROR && allowError) return false;
+
+    	throw new IOException("Unexpected status " + status);
+    }
+
+    private void readStatus(int id) throws IOException {
+    	this.readStatus(id, false);
+    }
+
+    private MerkleProof readProof(int id, int index) throws IOException {
+    	if (!this.readStatus(id, true))
+    		throw new IndexOutOfBoundsException(index);
+
+    	String root = MerkleBuildCoordinator.readDigest(this.in);
+    	int length = this.in.readUnsignedByte();
+    	MerkleProof proof = new MerkleProof(root, length);
+
+    	for (int i = 0; i < length; i++) {
+    		byte flag = this.in.readByte();
+    		String hash = MerkleBuildCoordinator.readDigest(this.in);
+
+    		if (flag == MerkleProofServer.MISSING) proof.addHash("", false);
+    		else if (flag == MerkleProofServer.LEFT) proof.addHash(hash, true);
+    		else if (flag == MerkleProofServer.RIGHT) proof.addHash(hash, false);
+    		else throw new IOException("Unexpected flag " + flag);
+    	}
+
+    	return proof;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.socket.close();
+    }
+
+    /**
+     * The outcome of a run of the load generator.
+     */
+    public static final class LoadReport {
+
+        private final long requests;
+
+        private final long nanos;
+
+        private final long[] latencies;
+
+        private LoadReport(long nanos, long[] latencies) {
+            this.requests = latencies.length;
+            this.nanos = nanos;
+            this.latencies = latencies;
+
+            Arrays.sort(this.latencies);
+        }
+
+        /**
+         * Returns the number of requests answered.
+         *
+         * @return the number of requests.
+         */
+        public long getRequests() {
+            return this.requests;
+        }
+
+        /**
+         * Returns the requests answered per second.
+         *
+         * @return the throughput.
+         */
+        public double getThroughput() {
+            return this.requests * 1e9 / Math.max(this.nanos, 1);
+        }
+
+        /**
+         * Returns the latency below which the given fraction of the requests
+         * was answered, in microseconds.
+         *
+         * @param fraction  the fraction of the requests, between 0 and 1.
+         * @return the latency of the percentile.
+         */
+        public double getPercentileMicros(double fraction) {
+        	if (this.latencies.length == 0) return 0;
+
+        	int i = (int) Math.min(this.latencies.length - 1,
+        			               Math.ceil(fraction * this.latencies.length)
+        			               - 1);
+
+            return this.latencies[Math.max(i, 0)] / 1e3;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests, %.0f requests/s, p50 %.0f us, "
+            		             + "p99 %.0f us", this.requests,
+            		             this.getThroughput(),
+            		             this.getPercentileMicros(0.5),
+            		             this.getPercentileMicros(0.99));
+        }
+    }
+
+    /**
+     * Sends proof requests for random leaves on several connections, as
+     * {@link #runLoad(String, int, int, int, int, int)} does, waiting at most
+     * 10 seconds for each read of a response.
+     *
+     * @param host  the host of the server.
+     * @param port  the port of the server.
+     * @param connections  the number of connections.
+     * @param requests  the number of requests per connection.
+     * @param depth  the maximum number of requests in flight per
+     *               connection.
+     * @return the report of the run.
+     * @throws IOException if a connection fails.
+     * @throws InterruptedException if the calling thread is interrupted.
+     * @throws IllegalArgumentException if a number is not positive.
+     */
+    public static LoadReport runLoad(String host, int port, int connections,
+    		int requests, int depth) throws IOException, InterruptedException {
+        return MerkleProofClient.runLoad(host, port, connections, requests,
+        		                         depth, 10000);
+    }
+
+    /**
+     * Sends proof requests for random leaves on several connections, keeping
+     * up to the given number of requests in flight on each of them, and
+     * measures how long the server takes to answer them.
+     *
+     * <p>
+     * Each connection has a thread that sends the requests and one that reads
+     * the responses. When any of them fails, because its connection breaks,
+     * a read times out or the server reports an error, all the connections
+     * are closed and all the threads are interrupted, so that the run ends
+     * with the first failure instead of waiting for responses that will not
+     * arrive.
+     *
+     * @param host  the host of the server.
+     * @param port  the port of the server.
+     * @param connections  the number of connections.
+     * @param requests  the number of requests per connection.
+     * @param depth  the maximum number of requests in flight per
+     *               connection.
+     * @param timeoutMillis  the milliseconds to wait for the connection and
+     *                       for each read of a response, or 0 to wait
+     *                       forever.
+     * @return the report of the run.
+     * @throws IOException if a connection fails, times out or the server
+     *         reports an error.
+     * @throws InterruptedException if the calling thread is interrupted.
+     * @throws IllegalArgumentException if a number is not positive or the
+     *         timeout is negative.
+     */
+    public static LoadReport runLoad(String host, int port, int connections,
+    		int requests, int depth, int timeoutMillis)
+    		throws IOException, InterruptedException {
+    	if (connections < 1 || requests < 1 || depth < 1 || timeoutMillis < 0)
+    		throw new IllegalArgumentException();
+
+    	List<MerkleProofClient> clients = new ArrayList<MerkleProofClient>();
+    	long[] latencies = new long[connections * requests];
+    	IOException[] failure = new IOException[1];
+    	List<Thread> threads = new ArrayList<Thread>();
+
+    	// Records the first failure and stops every connection; the failures
+    	// that the closed connections cause afterwards are not recorded.
+    	Consumer<Exception> abort = e -> {
+    		synchronized (failure) {
+    			if (failure[0] != null) return;
+
+    			failure[0] = e instanceof IOException ? (IOException) e
+    					     : new IOException("The load failed", e);
+    		}
+
+    		for (MerkleProofClient client : clients) {
+    			try {
+    				client.close();
+    			} catch (IOException closeFailure) {
+    				// The connection is unusable anyway.
+    			}
+    		}
+
+    		for (Thread thread : threads) {
+    			if (thread != Thread.currentThread()) thread.interrupt();
+    		}
+    	};
+
+    	try {
+    		for (int i = 0; i < connections; i++) {
+    			clients.add(MerkleProofClient.connect(host, port,
+    					                              timeoutMillis));
+    		}
+
+    		int width = clients.get(0).getWidth();
+    		long start = System.nanoTime();
+
+    		for (int c = 0; c < connections; c++) {
+    			MerkleProofClient client = clients.get(c);
+    			int offset = c * requests;
+    			int firstId = client.nextId;
+    			AtomicLongArray sent = new AtomicLongArray(requests);
+    			Semaphore inFlight = new Semaphore(depth);
+    			Random random = new Random(c);
+
+    			Thread reader = new Thread(() -> {
+    				try {
+    					for (int i = 0; i < requests; i++) {
+    						client.readProof(firstId + i, -1);
+    						latencies[offset + i] =
+    								System.nanoTime() - sent.get(i);
+    						inFlight.release();
+    					}
+    				} catch (IOException | RuntimeException e) {
+    					abort.accept(e);
+    				}
+    			});
+
+    			Thread writer = new Thread(() -> {
+    				try {
+    					for (int i = 0; i < requests; i++) {
+    						if (!inFlight.tryAcquire()) {
+    							client.out.flush();
+    							inFlight.acquire();
+    						}
+
+    						sent.set(i, System.nanoTime());
+    						client.sendProof(random.nextInt(width));
+    					}
+
+    					client.out.flush();
+    				} catch (IOException | RuntimeException e) {
+    					abort.accept(e);
+    				} catch (InterruptedException e) {
+    					// Another thread failed and stopped the run.
+    				}
+    			});
+
+    			threads.add(reader);
+    			threads.add(writer);
+    		}
+
+    		for (Thread thread : threads) thread.start();
+    		for (Thread thread : threads) thread.join();
+
+    		synchronized (failure) {
+    			if (failure[0] != null) throw failure[0];
+    		}
+
+    		return new LoadReport(System.nanoTime() - start, latencies);
+    	} finally {
+    		for (MerkleProofClient client : clients) client.close();
+    	}
+    }
+
+    /**
+     * Runs the load generator against a server and prints its report.
+     *
+     * @param args  the host and the port of the server, the number of
+     *              connections, of requests per connection and of requests
+     *              in flight per connection.
+     * @throws IOException if a connection fails.
+     * @throws InterruptedException if the process is interrupted.
+     */
+    public static void main(String[] args)
+    		throws IOException, InterruptedException {
+    	if (args.length != 5) {
+    		System.err.println("Usage: MerkleProofClient <host> <port> "
+    				           + "<connections> <requests> <depth>");
+    		System.exit(2);
+    	}
+
+    	System.out.println(MerkleProofClient.runLoad(
+    			args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+    			Integer.parseInt(args[3]), Integer.parseInt(args[4])));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,463 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * A server that answers root, proof and validation requests on a tree
+ * persisted by {@link MerkleTreeFile}, so that several applications can share
+ * one copy of the tree instead of holding their own.
+ *
+ * <p>
+ * The tree is opened as a {@link MappedMerkleTree}, and the only memory the
+ * server allocates in proportion to the tree is a sorted index of the leaves,
+ * of 8 bytes per leaf, that lets it validate a leaf in O(log n) digest reads.
+ * All the connections are served by a single thread with a
+ * {@link Selector}.
+ *
+ * <p>
+ * The protocol is binary. A request is an operation code, a request id and
+ * the arguments of the operation; a response is a status, the id of the
+ * request and the result:
+ *
+ * <ul>
+ * <li>{@link #ROOT}: no arguments; the digest of the root, the width and the
+ * height of the tree.</li>
+ * <li>{@link #PROOF}: the position of a leaf; the digest of the root, the
+ * length of the proof and, for each of its hashes, a flag telling whether it
+ * is on the left, on the right or missing, followed by its digest (zeros when
+ * it is missing).</li>
+ * <li>{@link #VALIDATE}: the digest of a leaf; the position of the first leaf
+ * with that digest, or -1.</li>
+ * </ul>
+ *
+ * <p>
+ * Clients may send any number of requests without waiting for the responses,
+ * which are sent in the same order. All the complete requests received by a
+ * read are answered together and their responses are written with as few
+ * writes as possible. When a client does not read its responses, the server
+ * stops reading its requests once a bounded amount of output is pending.
+ * A failure while serving a connection closes only that connection. The
+ * throughput and latency measured with {@link MerkleProofClient#runLoad}
+ * are documented in {@link MerkleProofClient}.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class MerkleProofServer implements AutoCloseable {
+
+    /**
+     * The operation code of a root request.
+     */
+    public static final byte ROOT = 1;
+
+    /**
+     * The operation code of a proof request.
+     */
+    public static final byte PROOF = 2;
+
+    /**
+     * The operation code of a validation request.
+     */
+    public static final byte VALIDATE = 3;
+
+    static final byte OK = 0;
+
+    static final byte ERROR = 1;
+
+    static final byte RIGHT = 0;
+
+    static final byte LEFT = 1;
+
+    static final byte MISSING = 2;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_PENDING_OUTPUT = 1024 * 1024;
+
+    // The largest response: a proof of a tree of 2^31 leaves.
+    private static final int MAX_RESPONSE_SIZE =
+    		1 + 4 + HashUtil.MD5_LENGTH + 1 + 32 * (1 + HashUtil.MD5_LENGTH);
+
+    private static final long PREFIX_MASK = 0xffffffff00000000L;
+
+    private final MappedMerkleTree<?> tree;
+
+    // The first 32 bits of the digest of each leaf followed by its position,
+    // in ascending order.
+    private final long[] leafKeys;
+
+    private final Selector selector;
+
+    private final ServerSocketChannel server;
+
+    private final Thread loop;
+
+    private volatile boolean closed;
+
+    private MerkleProofServer(MappedMerkleTree<?> tree,
+    		InetSocketAddress address) throws IOException {
+        this.tree = tree;
+        this.leafKeys = MerkleProofServer.indexLeaves(tree);
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+
+        try {
+        	this.server.bind(address);
+        	this.server.configureBlocking(false);
+        	this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+        	this.server.close();
+        	this.selector.close();
+        	throw e;
+        }
+
+        this.loop = new Thread(this::serve, "merkle-proof-server");
+        this.loop.setDaemon(true);
+    }
+
+    /**
+     * Opens the tree in the given file and starts serving it on the given
+     * address.
+     *
+     * @param file  the file written by {@link MerkleTreeFile}.
+     * @param address  the address to listen on; port 0 picks a free port.
+     * @return the running server.
+     * @throws IOException if the file is not a valid tree or the address
+     *         cannot be bound.
+     * @throws IllegalArgumentException if an argument is null.
+     */
+    public static MerkleProofServer start(Path file, InetSocketAddress address)
+    		throws IOException {
+    	if (file == null || address == null)
+    		throw new IllegalArgumentException();
+
+    	MappedMerkleTree<?> tree = MappedMerkleTree.open(file);
+    	MerkleProofServer server;
+
+    	try {
+    		server = new MerkleProofServer(tree, address);
+    	} catch (IOException | RuntimeException e) {
+    		tree.close();
+    		throw e;
+    	}
+
+    	server.loop.start();
+
+        return server;
+    }
+
+    /**
+     * Sorts the leaves by the first 32 bits of their digests.
+     */
+    private static long[] indexLeaves(MappedMerkleTree<?> tree) {
+    	long[] keys = new long[tree.getWidth()];
+    	ByteBuffer digest = ByteBuffer.allocate(HashUtil.MD5_LENGTH);
+
+    	for (int i = 0; i < keys.length; i++) {
+    		digest.clear();
+    		tree.readDigest(0, i, digest);
+    		keys[i] = (digest.getLong(0) & PREFIX_MASK) | i;
+    	}
+
+    	Arrays.sort(keys);
+
+    	return keys;
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the local port.
+     * @throws IOException if the server is closed.
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) this.server.getLocalAddress()).getPort();
+    }
+
+    private void serve() {
+    	try {
+    		while (!this.closed) {
+    			this.selector.select();
+
+    			Iterator<SelectionKey> keys =
+    					this.selector.selectedKeys().iterator();
+
+    			while (keys.hasNext()) {
+    				SelectionKey key = keys.next();
+    				keys.remove();
+
+    				try {
+    					if (!key.isValid()) continue;
+
+    					if (key.isAcceptable()) this.accept();
+    					else {
+    						Connection connection =
+    								(Connection) key.attachment();
+
+    						if (key.isWritable()) connection.flush();
+    						if (key.isValid() && key.isReadable())
+    							connection.read();
+    					}
+    				} catch (IOException | RuntimeException e) {
+    					// A broken connection, or a failure while serving it,
+    					// only affects its own client; a failed accept leaves
+    					// the server listening.
+    					if (key.channel() != this.server) {
+    						key.cancel();
+
+    						try {
+    							key.channel().close();
+    						} catch (IOException closeFailure) {
+    							// The key is cancelled anyway.
+    						}
+    					}
+    				}
+    			}
+    		}
+    	} catch (IOException | ClosedSelectorException e) {
+    		// The server is being closed.
+    	}
+    }
+
+    private void accept() throws IOException {
+    	SocketChannel channel = this.server.accept();
+
+    	if (channel == null) return;
+
+    	channel.configureBlocking(false);
+    	channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+    	SelectionKey key = channel.register(this.selector,
+    			                            SelectionKey.OP_READ);
+    	key.attach(new Connection(channel, key));
+    }
+
+    /**
+     * The state of a client connection: the requests received but not yet
+     * complete and the responses not yet written.
+     */
+    private final class Connection {
+
+        private final SocketChannel channel;
+
+        private final SelectionKey key;
+
+        private final ByteBuffer input;
+
+        private ByteBuffer output;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+            this.input = ByteBuffer.allocate(BUFFER_SIZE);
+            this.output = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+
+        /**
+         * Reads what the client has sent and answers all the complete
+         * requests.
+         */
+        void read() throws IOException {
+        	if (this.channel.read(this.input) < 0) {
+        		this.key.cancel();
+        		this.channel.close();
+        		return;
+        	}
+
+        	this.input.flip();
+
+        	while (this.input.remaining() >= 5) {
+        		int length = requestLength(this.input.get(this.input.position()));
+
+        		if (this.input.remaining() < length) break;
+
+        		this.reserve();
+        		answer(this.input, this.output);
+        	}
+
+        	this.input.compact();
+        	this.flush();
+        }
+
+        /**
+         * Writes the pending responses, and reads requests again only while
+         * little output is pending.
+         */
+        void flush() throws IOException {
+        	this.output.flip();
+        	this.channel.write(this.output);
+        	this.output.compact();
+
+        	int interest = this.output.position() < MAX_PENDING_OUTPUT
+        			       ? SelectionKey.OP_READ : 0;
+
+        	if (this.output.position() > 0) interest |= SelectionKey.OP_WRITE;
+
+        	this.key.interestOps(interest);
+        }
+
+        private void reserve() {
+        	if (this.output.remaining() >= MAX_RESPONSE_SIZE) return;
+
+        	ByteBuffer larger = ByteBuffer.allocate(
+        			Math.max(this.output.capacity() * 2,
+        					 this.output.position() + MAX_RESPONSE_SIZE));
+
+        	this.output.flip();
+        	larger.put(this.output);
+        	this.output = larger;
+        }
+    }
+
+    /**
+     * Returns the size of a request with the given operation code.
+     *
+     * @throws IOException if the code is not valid.
+     */
+    private static int requestLength(byte operation) throws IOException {
+    	switch (operation) {
+    		case ROOT:
+    			return 1 + 4;
+    		case PROOF:
+    			return 1 + 4 + 4;
+    		case VALIDATE:
+    			return 1 + 4 + HashUtil.MD5_LENGTH;
+    		default:
+    			throw new IOException("Unknown operation " + operation);
+    	}
+    }
+
+    /**
+     * Answers the request at the position of the input, writing the response
+     * to the output.
+     */
+    private void answer(ByteBuffer input, ByteBuffer output) {
+    	byte operation = input.get();
+    	int id = input.getInt();
+    	int width = this.tree.getWidth();
+    	int height = this.tree.getHeight();
+
+    	if (operation == ROOT) {
+    		output.put(OK).putInt(id);
+    		this.tree.readDigest(height, 0, output);
+    		output.putInt(width).putInt(height);
+    	}
+    	else if (operation == PROOF) {
+    		int index = input.getInt();
+
+    		if (index < 0 || index >= width) {
+    			output.put(ERROR).putInt(id);
+    			return;
+    		}
+
+    		output.put(OK).putInt(id);
+    		this.tree.readDigest(height, 0, output);
+    		output.put((byte) height);
+
+    		for (int level = 0; level < height; level++) {
+    			int sibling = index ^ 1;
+
+    			if (sibling < (width - 1 >> level) + 1) {
+    				output.put(index % 2 == 1 ? LEFT : RIGHT);
+    				this.tree.readDigest(level, sibling, output);
+    			}
+    			else {
+    				output.put(MISSING);
+    				output.putLong(0).putLong(0);
+    			}
+
+    			index /= 2;
+    		}
+    	}
+    	else {
+    		long high = input.getLong();
+    		long low = input.getLong();
+
+    		output.put(OK).putInt(id).putInt(this.indexOf(high, low));
+    	}
+    }
+
+    /**
+     * Returns the position of the first leaf with the given digest, or -1.
+     */
+    private int indexOf(long high, long low) {
+    	long prefix = high & PREFIX_MASK;
+    	int i = Arrays.binarySearch(this.leafKeys, prefix);
+    	ByteBuffer digest = ByteBuffer.allocate(HashUtil.MD5_LENGTH);
+
+    	if (i < 0) i = -i - 1;
+
+    	for (; i < this.leafKeys.length
+    		   && (this.leafKeys[i] & PREFIX_MASK) == prefix; i++) {
+    		int index = (int) this.leafKeys[i];
+
+    		digest.clear();
+    		this.tree.readDigest(0, index, digest);
+
+    		if (digest.getLong(0) == high && digest.getLong(8) == low)
+    			return index;
+    	}
+
+    	return -1;
+    }
+
+    /**
+     * Stops the server, closing all the connections and the tree.
+     *
+     * @throws IOException if the tree cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+    	this.closed = true;
+    	this.selector.wakeup();
+
+    	try {
+    		this.loop.join();
+    	} catch (InterruptedException e) {
+    		Thread.currentThread().interrupt();
+    	}
+
+    	for (SelectionKey key : this.selector.keys()) key.channel().close();
+
+    	this.selector.close();
+    	this.server.close();
+    	this.tree.close();
+    }
+
+    /**
+     * Serves a tree file until the process is stopped.
+     *
+     * @param args  the file of the tree and the port to listen on.
+     * @throws IOException if the tree cannot be opened or the port bound.
+     * @throws InterruptedException if the process is interrupted.
+     */
+    public static void main(String[] args)
+    		throws IOException, InterruptedException {
+    	if (args.length != 2) {
+    		System.err.println("Usage: MerkleProofServer <tree file> <port>");
+    		System.exit(2);
+    	}
+
+    	MerkleProofServer server = MerkleProofServer.start(
+    			Paths.get(args[0]), new InetSocketAddress(
+    					InetAddress.getLoopbackAddress(),
+    					Integer.parseInt(args[1])));
+
+    	System.out.println("Serving " + server.tree.getWidth()
+    			           + " leaves on port " + server.getPort());
+
+    	server.loop.join();
+    }
+}
\ No newline at end of file
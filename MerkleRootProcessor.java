@@ -0,0 +1,390 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Flow.Processor} that turns a stream of data into a stream of
+ * {@link Snapshot}s of the Merkle tree built on the data received so far.
+ *
+ * <p>
+ * The data is hashed in parallel on an executor, and the hashes are appended
+ * to the tree in the order of the data, using a {@link MerkleFrontier}, so the
+ * memory used does not depend on the number of leaves. A snapshot with the
+ * width and the root of the tree is published every given number of leaves,
+ * every given number of milliseconds if the tree has grown in the meantime,
+ * and when the data ends.
+ *
+ * <p>
+ * Demand flows from the subscriber back to the publisher of the data. At most
+ * a given number of data items is requested, and hashed, ahead of the tree;
+ * one more is requested for each leaf appended. When a snapshot is due and the
+ * subscriber has not requested it, the processor stops appending leaves, and
+ * so stops requesting data, until it has. Periodic snapshots are skipped
+ * instead when there is no demand for them.
+ *
+ * <p>
+ * The processor accepts a single subscriber. All the signals are processed by
+ * a serialized drain loop, run by whichever thread signals an event.
+ *
+ * @param <T> the type of the data.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class MerkleRootProcessor<T>
+		implements Flow.Processor<T, MerkleRootProcessor.Snapshot> {
+
+    private final Executor executor;
+
+    private final int maxInFlight;
+
+    private final long snapshotEvery;
+
+    private final long periodMillis;
+
+    // The hashes of the data received, in order, until they are appended.
+    private final Queue<CompletableFuture<String>> hashes;
+
+    private final AtomicInteger wip;
+
+    private final AtomicLong requested;
+
+    private final AtomicBoolean subscribed;
+
+    private volatile Flow.Subscription upstream;
+
+    private volatile Flow.Subscriber<? super Snapshot> downstream;
+
+    private volatile boolean upstreamDone;
+
+    private volatile Throwable upstreamError;
+
+    private volatile boolean cancelled;
+
+    private volatile boolean badRequest;
+
+    private volatile boolean tickDue;
+
+    private volatile boolean terminated;
+
+    // The following fields are only accessed by the drain loop.
+
+    private final MerkleFrontier frontier;
+
+    private Snapshot pending;
+
+    private long lastWidth;
+
+    private boolean started;
+
+    /**
+     * The width and the root of the tree at some point of the stream.
+     */
+    public static final class Snapshot {
+
+        private final long width;
+
+        private final String rootHash;
+
+        private Snapshot(long width, String rootHash) {
+            this.width = width;
+            this.rootHash = rootHash;
+        }
+
+        /**
+         * Returns the number of leaves of the tree.
+         *
+         * @return the width of the tree.
+         */
+        public long getWidth() {
+            return this.width;
+        }
+
+        /**
+         * Returns the root of the tree, the same as the root of the
+         * {@link MerkleTree} built on the first {@link #getWidth()} data.
+         *
+         * @return the hash of the root.
+         */
+        public String getRootHash() {
+            return this.rootHash;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot(" + this.width + ", " + this.rootHash + ")";
+        }
+    }
+
+    /**
+     * Constructs a processor.
+     *
+     * @param executor  the executor that hashes the data.
+     * @param maxInFlight  the maximum number of data requested ahead of the
+     *                     tree.
+     * @param snapshotEvery  the number of leaves between two snapshots.
+     * @param periodMillis  the milliseconds between two periodic snapshots,
+     *                      or 0 for no periodic snapshots.
+     * @throws IllegalArgumentException if the executor is null, if
+     *         {@code maxInFlight} or {@code snapshotEvery} is not positive or
+     *         if the period is negative.
+     */
+    public MerkleRootProcessor(Executor executor, int maxInFlight,
+    		long snapshotEvery, long periodMillis) {
+    	if (executor == null || maxInFlight < 1 || snapshotEvery < 1
+    		|| periodMillis < 0)
+    		throw new IllegalArgumentException();
+
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.snapshotEvery = snapshotEvery;
+        this.periodMillis = periodMillis;
+        this.hashes = new ConcurrentLinkedQueue<CompletableFuture<String>>();
+        this.wip = new AtomicInteger();
+        this.requested = new AtomicLong();
+        this.subscribed = new AtomicBoolean();
+        this.frontier = new MerkleFrontier();
+        this.lastWidth = 0;
+    }
+
+    /**
+     * Constructs a processor that hashes the data on the common pool, with
+     * 256 data requested ahead and no periodic snapshots.
+     *
+     * @param snapshotEvery  the number of leaves between two snapshots.
+     * @throws IllegalArgumentException if {@code snapshotEvery} is not
+     *         positive.
+     */
+    public MerkleRootProcessor(long snapshotEvery) {
+        this(ForkJoinPool.commonPool(), 256, snapshotEvery, 0);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Snapshot> subscriber) {
+    	if (subscriber == null) throw new NullPointerException();
+
+    	if (!this.subscribed.compareAndSet(false, true)) {
+    		subscriber.onSubscribe(new Flow.Subscription() {
+    			@Override
+    			public void request(long n) { }
+
+    			@Override
+    			public void cancel() { }
+    		});
+    		subscriber.onError(new IllegalStateException(
+    				"The processor accepts a single subscriber"));
+    		return;
+    	}
+
+    	subscriber.onSubscribe(new Flow.Subscription() {
+    		@Override
+    		public void request(long n) {
+    			if (n <= 0) badRequest = true;
+    			else requested.getAndUpdate(r -> r + n < 0 ? Long.MAX_VALUE
+    					                                   : r + n);
+    			drain();
+    		}
+
+    		@Override
+    		public void cancel() {
+    			cancelled = true;
+    			drain();
+    		}
+    	});
+
+    	this.downstream = subscriber;
+    	this.drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+    	if (this.upstream != null || this.terminated) {
+    		subscription.cancel();
+    		return;
+    	}
+
+    	this.upstream = subscription;
+    	this.drain();
+    }
+
+    @Override
+    public void onNext(T item) {
+    	if (item == null) throw new NullPointerException();
+
+    	if (this.terminated) return;
+
+    	CompletableFuture<String> hash;
+
+    	try {
+    		hash = CompletableFuture.supplyAsync(
+    				() -> HashUtil.dataToHash(item), this.executor);
+    	} catch (RuntimeException e) {
+    		hash = CompletableFuture.failedFuture(e);
+    	}
+
+    	this.hashes.add(hash);
+    	hash.whenComplete((h, e) -> this.drain());
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+    	this.upstreamError = throwable;
+    	this.upstreamDone = true;
+    	this.drain();
+    }
+
+    @Override
+    public void onComplete() {
+    	this.upstreamDone = true;
+    	this.drain();
+    }
+
+    /**
+     * Runs the drain loop, unless another thread is running it, in which case
+     * that thread runs it once more.
+     */
+    private void drain() {
+    	if (this.wip.getAndIncrement() != 0) return;
+
+    	do {
+    		this.drainOnce();
+    	} while (this.wip.decrementAndGet() != 0);
+    }
+
+    private void drainOnce() {
+    	Flow.Subscriber<? super Snapshot> subscriber = this.downstream;
+    	Flow.Subscription subscription = this.upstream;
+
+    	if (this.terminated) {
+    		this.hashes.clear();
+    		return;
+    	}
+
+    	if (subscriber == null) return;
+
+    	if (this.cancelled) {
+    		this.terminate(subscription);
+    		return;
+    	}
+
+    	if (this.badRequest) {
+    		this.terminate(subscription);
+    		subscriber.onError(new IllegalArgumentException(
+    				"The number of requested snapshots must be positive"));
+    		return;
+    	}
+
+    	if (subscription == null) return;
+
+    	if (this.upstreamError != null) {
+    		this.terminate(null);
+    		subscriber.onError(this.upstreamError);
+    		return;
+    	}
+
+    	if (!this.started) {
+    		this.started = true;
+    		subscription.request(this.maxInFlight);
+    		this.scheduleTick();
+    	}
+
+    	while (true) {
+    		if (this.pending != null) {
+    			if (this.requested.get() == 0) break;
+
+    			this.emit(subscriber, this.pending);
+    			this.pending = null;
+    		}
+
+    		CompletableFuture<String> next = this.hashes.peek();
+
+    		if (next == null || !next.isDone()) {
+    			if (!this.upstreamDone || next != null
+    				|| this.frontier.getSize() == this.lastWidth)
+    				break;
+
+    			// The data has ended and every leaf has been appended.
+    			this.pending = this.snapshot();
+    			continue;
+    		}
+
+    		this.hashes.poll();
+
+    		try {
+    			this.frontier.append(next.join());
+    		} catch (CompletionException e) {
+    			this.terminate(subscription);
+    			subscriber.onError(e.getCause());
+    			return;
+    		}
+
+    		if (this.frontier.getSize() % this.snapshotEvery == 0)
+    			this.pending = this.snapshot();
+
+    		if (!this.upstreamDone) subscription.request(1);
+    	}
+
+    	if (this.tickDue) {
+    		this.tickDue = false;
+
+    		if (this.pending == null && this.requested.get() > 0
+    			&& this.frontier.getSize() > this.lastWidth)
+    			this.emit(subscriber, this.snapshot());
+    	}
+
+    	if (this.upstreamDone && this.pending == null && this.hashes.isEmpty()
+    		&& this.frontier.getSize() == this.lastWidth) {
+    		this.terminate(null);
+    		subscriber.onComplete();
+    	}
+    }
+
+    private Snapshot snapshot() {
+        return new Snapshot(this.frontier.getSize(),
+        		            this.frontier.getRootHash());
+    }
+
+    private void emit(Flow.Subscriber<? super Snapshot> subscriber,
+    		Snapshot snapshot) {
+    	this.requested.getAndUpdate(r -> r == Long.MAX_VALUE ? r : r - 1);
+    	this.lastWidth = snapshot.getWidth();
+    	subscriber.onNext(snapshot);
+    }
+
+    /**
+     * Stops the processor, cancelling the given subscription to the data if
+     * it is not null.
+     */
+    private void terminate(Flow.Subscription subscription) {
+    	this.terminated = true;
+    	this.pending = null;
+    	this.hashes.clear();
+
+    	if (subscription != null) subscription.cancel();
+    }
+
+    /**
+     * Schedules the next periodic snapshot, if they are enabled.
+     */
+    private void scheduleTick() {
+    	if (this.periodMillis == 0 || this.terminated) return;
+
+    	CompletableFuture.runAsync(() -> {
+    		if (this.terminated) return;
+
+    		this.tickDue = true;
+    		this.drain();
+    		this.scheduleTick();
+    	}, CompletableFuture.delayedExecutor(this.periodMillis,
+    			                             TimeUnit.MILLISECONDS));
+    }
+}
\ No newline at end of file
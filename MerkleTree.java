@@ -1,6 +1,12 @@
 package it.unicam.cs.asdl2425.mp1;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.stream.Collector;
 
 /**
  * A Merkle Tree, also known as a binary hash tree, is a data structure for
@@ -30,20 +36,21 @@ public class MerkleTree<T> {
      * @throws IllegalArgumentException if the list is null or empty.
      */
     public MerkleTree(HashLinkedList<T> hashList) {
-    	if(hashList == null || hashList.getSize() == 0)
-    		throw new IllegalArgumentException();
-    	
-        List<MerkleNode> leafNodes = new ArrayList<MerkleNode>();
-        
-        for (T data : hashList) {
-            String hash = HashUtil.dataToHash(data);
-            leafNodes.add(new MerkleNode(hash));
-        }
-        
+    	this(MerkleTree.leavesOf(hashList));
+    }
+
+    /**
+     * Constructs a Merkle tree on top of the given leaves, combining them two
+     * by two level after level until a single root is left.
+     *
+     * @param leafNodes  the non-empty list of leaves, from left to right.
+     */
+    private MerkleTree(List<MerkleNode> leafNodes) {
         List<MerkleNode> nodes = leafNodes;
         
         while (nodes.size() > 1) {
-            List<MerkleNode> parentsNodes = new ArrayList<MerkleNode>();
+            List<MerkleNode> parentsNodes =
+            		new ArrayList<MerkleNode>((nodes.size() + 1) / 2);
             
             for (int i = 0; i < nodes.size(); i += 2) {
                 if (i + 1 < nodes.size()) {
@@ -51,16 +58,16 @@ public class MerkleTree<T> {
                     
                     MerkleNode right = nodes.get(i + 1);
                     
-                    String parent = HashUtil.computeMD5((left.getHash()
-                    		        + right.getHash()).getBytes());
+                    String parent = HashUtil.combineHashes(left.getHash(),
+                    		                               right.getHash());
                     
                     parentsNodes.add(new MerkleNode(parent, left, right));
                 }
                 else {
                     MerkleNode onlyChild = nodes.get(i);
                     
-                    String parent = HashUtil.computeMD5(
-                    		        (onlyChild.getHash() + "").getBytes());
+                    String parent = HashUtil.combineHashes(
+                    		        onlyChild.getHash(), null);
                     
                     parentsNodes.add(new MerkleNode(parent, onlyChild, null));
                 }
@@ -72,6 +79,297 @@ public class MerkleTree<T> {
         this.width = leafNodes.size();
     }
 
+    /**
+     * Builds the leaves of a tree from the hashes that a HashLinkedList has
+     * already cached for its elements, so that no element is hashed again.
+     *
+     * @param hashList  the list providing the leaf hashes.
+     * @return the leaves, in list order.
+     * @throws IllegalArgumentException if the list is null or empty.
+     */
+    private static List<MerkleNode> leavesOf(HashLinkedList<?> hashList) {
+    	if(hashList == null || hashList.getSize() == 0)
+    		throw new IllegalArgumentException();
+
+    	return MerkleTree.leavesOf(hashList.getAllHashes());
+    }
+
+    /**
+     * Builds one leaf for each of the given hashes.
+     *
+     * @param leafHashes  the leaf hashes, from left to right.
+     * @return the leaves, in the order of the hashes.
+     * @throws IllegalArgumentException if the list is null, empty or contains
+     *         a null hash.
+     */
+    private static List<MerkleNode> leavesOf(List<String> leafHashes) {
+    	if (leafHashes == null || leafHashes.isEmpty())
+    		throw new IllegalArgumentException();
+
+        List<MerkleNode> leafNodes =
+        		new ArrayList<MerkleNode>(leafHashes.size());
+
+        for (String hash : leafHashes) {
+        	if (hash == null) throw new IllegalArgumentException();
+
+        	leafNodes.add(new MerkleNode(hash));
+        }
+
+        return leafNodes;
+    }
+
+    /**
+     * Constructs a Merkle tree whose leaves are the given, already computed,
+     * hashes. The tree is the same that would be built from a HashLinkedList
+     * holding elements with those hashes, in the same order.
+     *
+     * @param <T>  the type of data on which the tree is built.
+     * @param leafHashes  the hexadecimal MD5 hashes of the leaves.
+     * @return the Merkle tree built on the given hashes.
+     * @throws IllegalArgumentException if the list is null, empty or contains
+     *         a null hash.
+     */
+    public static <T> MerkleTree<T> fromHashes(List<String> leafHashes) {
+    	return new MerkleTree<T>(MerkleTree.leavesOf(leafHashes));
+    }
+
+    /**
+     * Constructs a Merkle tree whose leaves are the raw MD5 digests packed in
+     * the given array, 16 bytes each, as returned by
+     * {@link HashLinkedList#getAllDigests()}.
+     *
+     * @param <T>  the type of data on which the tree is built.
+     * @param digests  the contiguous leaf digests.
+     * @return the Merkle tree built on the given digests.
+     * @throws IllegalArgumentException if the array is null, empty or its
+     *         length is not a multiple of 16.
+     */
+    public static <T> MerkleTree<T> fromDigests(byte[] digests) {
+    	if (digests == null || digests.length == 0
+    		|| digests.length % HashUtil.MD5_LENGTH != 0)
+    		throw new IllegalArgumentException();
+
+        int count = digests.length / HashUtil.MD5_LENGTH;
+        List<MerkleNode> leafNodes = new ArrayList<MerkleNode>(count);
+
+        for (int i = 0; i < count; i++) {
+        	leafNodes.add(new MerkleNode(HashUtil.digestToHex(
+        			      digests, i * HashUtil.MD5_LENGTH)));
+        }
+
+        return new MerkleTree<T>(leafNodes);
+    }
+
+    /**
+     * Constructs a Merkle tree whose leaves are the MD5 digests packed in the
+     * given array as pairs of longs: the digest of the i-th leaf is made of
+     * the big-endian words at positions {@code 2 * i} (most significant half)
+     * and {@code 2 * i + 1} (least significant half).
+     *
+     * @param <T>  the type of data on which the tree is built.
+     * @param digests  the leaf digests, two longs each.
+     * @return the Merkle tree built on the given digests.
+     * @throws IllegalArgumentException if the array is null, empty or has an
+     *         odd length.
+     */
+    public static <T> MerkleTree<T> fromDigests(long[] digests) {
+    	if (digests == null || digests.length == 0 || digests.length % 2 != 0)
+    		throw new IllegalArgumentException();
+
+        List<MerkleNode> leafNodes =
+        		new ArrayList<MerkleNode>(digests.length / 2);
+
+        for (int i = 0; i < digests.length; i += 2) {
+        	leafNodes.add(new MerkleNode(HashUtil.digestToHex(
+        			      digests[i], digests[i + 1])));
+        }
+
+        return new MerkleTree<T>(leafNodes);
+    }
+
+    /**
+     * Constructs the Merkle tree of the content of a file split in chunks of
+     * the given size, whose leaves are the MD5 hashes of the bytes of the
+     * chunks. The chunks are read and hashed in parallel as described in
+     * {@link FileHasher}.
+     *
+     * @param <T>  the type of data on which the tree is built.
+     * @param path  the file to hash.
+     * @param chunkSize  the size of a chunk in bytes.
+     * @return the Merkle tree of the chunks of the file.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if the path is null or the size is not
+     *         positive.
+     */
+    public static <T> MerkleTree<T> fromFile(Path path, int chunkSize)
+    		throws IOException {
+    	return new FileHasher(chunkSize).fileTree(path);
+    }
+
+    /**
+     * Constructs the Merkle tree of the content of a file split in chunks by
+     * the given content-defined chunker, whose leaves are the MD5 hashes of
+     * the bytes of the chunks. A small edit of the file only changes the
+     * leaves of the chunks around it, while the following chunks keep their
+     * hashes but may move to other positions, so the trees of two versions
+     * are compared with {@link #findMissingLeafIndices(MerkleTree)}, which
+     * matches the leaves by hash and finds only the chunks around the edit.
+     *
+     * @param <T>  the type of data on which the tree is built.
+     * @param path  the file to hash.
+     * @param chunker  the chunker that splits the file.
+     * @return the Merkle tree of the chunks of the file.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if the path or the chunker is null.
+     */
+    public static <T> MerkleTree<T> fromFile(Path path,
+    		ContentDefinedChunker chunker) throws IOException {
+    	if (chunker == null) throw new IllegalArgumentException();
+
+    	return MerkleTree.fromHashes(chunker.hashChunks(path));
+    }
+
+    /**
+     * Constructs the Merkle tree of a directory, with a leaf for each regular
+     * file under it, as described in {@link FileHasher}.
+     *
+     * @param <T>  the type of data on which the tree is built.
+     * @param path  the directory to hash.
+     * @param chunkSize  the size of the chunks of the files in bytes.
+     * @return the Merkle tree of the directory.
+     * @throws IOException if the directory or one of its files cannot be
+     *         read.
+     * @throws IllegalArgumentException if the path is null, the size is not
+     *         positive or the directory contains no file.
+     */
+    public static <T> MerkleTree<T> fromDirectory(Path path, int chunkSize)
+    		throws IOException {
+    	return new FileHasher(chunkSize).directoryTree(path);
+    }
+
+    /**
+     * Constructs a Merkle tree from a file containing nothing but the raw MD5
+     * digests of the leaves, 16 bytes each, one after the other. The file is
+     * read sequentially, so it does not need to fit in memory twice.
+     *
+     * @param <T>  the type of data on which the tree is built.
+     * @param path  the file of digests.
+     * @return the Merkle tree built on the digests in the file.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if the path is null or the file is
+     *         empty or its size is not a multiple of 16.
+     */
+    public static <T> MerkleTree<T> fromDigestFile(Path path)
+    		throws IOException {
+    	if (path == null) throw new IllegalArgumentException();
+
+    	long fileSize = Files.size(path);
+
+    	if (fileSize == 0 || fileSize % HashUtil.MD5_LENGTH != 0)
+    		throw new IllegalArgumentException();
+
+        int count = Math.toIntExact(fileSize / HashUtil.MD5_LENGTH);
+        List<MerkleNode> leafNodes = new ArrayList<MerkleNode>(count);
+        byte[] digest = new byte[HashUtil.MD5_LENGTH];
+
+        try (DataInputStream in = new DataInputStream(
+        		new BufferedInputStream(Files.newInputStream(path)))) {
+        	for (int i = 0; i < count; i++) {
+        		in.readFully(digest);
+        		leafNodes.add(new MerkleNode(HashUtil.digestToHex(digest, 0)));
+        	}
+        }
+
+        return new MerkleTree<T>(leafNodes);
+    }
+
+    /**
+     * Returns a collector that builds the Merkle tree of the elements of a
+     * stream, in encounter order. The tree is the same that would be built
+     * from a HashLinkedList holding the same elements in the same order.
+     *
+     * <p>
+     * Each part of the stream is collected into a {@link MerkleFrontier} that
+     * keeps its nodes: each element is hashed and appended as it is
+     * accumulated, building the complete subtrees of the part on the thread
+     * that collects it. The combiner appends the complete subtrees of the
+     * right part to the left one, reusing them whole where they are aligned
+     * to their position in the tree and splitting them otherwise, so that
+     * only their nodes above the alignment of the left part are hashed again;
+     * the leaves are never hashed again. The finisher only builds the ragged
+     * right edge of the tree, that is O(log n) nodes.
+     *
+     * @param <T>  the type of the elements of the stream.
+     * @return a collector that builds the Merkle tree of the elements.
+     * @throws IllegalArgumentException when the stream is collected, if an
+     *         element is null or the stream is empty.
+     */
+    public static <T> Collector<T, ?, MerkleTree<T>> collector() {
+    	return Collector.<T, MerkleFrontier, MerkleTree<T>>of(
+    			() -> new MerkleFrontier(true),
+    			(frontier, data) -> {
+    				if (data == null) throw new IllegalArgumentException();
+
+    				frontier.append(HashUtil.dataToHash(data));
+    			},
+    			(left, right) -> {
+    				left.appendAll(right);
+    				return left;
+    			},
+    			frontier -> {
+    				if (frontier.getSize() == 0)
+    					throw new IllegalArgumentException();
+
+    				return new MerkleTree<T>(frontier.getRoot(),
+    						Math.toIntExact(frontier.getSize()));
+    			});
+    }
+
+    /**
+     * Constructs a Merkle tree from hashes that have already been computed for
+     * all of its levels, from the leaves (level 0) up to the root, as stored by
+     * {@link MerkleLevels}. No hash is computed: the nodes are only linked to
+     * their children.
+     *
+     * @param <T>  the type of data on which the tree is built.
+     * @param levels  the hashes of each level, from left to right.
+     * @return the Merkle tree with the given hashes.
+     * @throws IllegalArgumentException if there are no leaves.
+     */
+    static <T> MerkleTree<T> fromLevels(List<? extends List<String>> levels) {
+    	if (levels.isEmpty() || levels.get(0).isEmpty())
+    		throw new IllegalArgumentException();
+
+        List<MerkleNode> nodes = MerkleTree.leavesOf(levels.get(0));
+
+        for (int level = 1; level < levels.size(); level++) {
+        	List<String> hashes = levels.get(level);
+            List<MerkleNode> parentsNodes =
+            		new ArrayList<MerkleNode>(hashes.size());
+
+            for (int i = 0; i < hashes.size(); i++) {
+            	parentsNodes.add(new MerkleNode(hashes.get(i),
+            			         nodes.get(i * 2), i * 2 + 1 < nodes.size()
+            			         ? nodes.get(i * 2 + 1) : null));
+            }
+
+            nodes = parentsNodes;
+        }
+
+        return new MerkleTree<T>(nodes.get(0), levels.get(0).size());
+    }
+
+    /**
+     * Constructs a Merkle tree with the given, already linked, root.
+     *
+     * @param root  the root of the tree.
+     * @param width  the number of leaves of the tree.
+     */
+    private MerkleTree(MerkleNode root, int width) {
+        this.root = root;
+        this.width = width;
+    }
+
     /**
      * Returns the root node of the tree.
      *
@@ -348,6 +646,59 @@ public class MerkleTree<T> {
         return invalidIndex;
     }
 
+    /**
+     * Finds the indices of the leaves of this tree whose hash is not the hash
+     * of any leaf of the given tree. Unlike
+     * {@link #findInvalidDataIndices(MerkleTree)} the leaves are matched by
+     * hash rather than by position, so the two trees may have different
+     * widths: this is the comparison to use for trees of content-defined
+     * chunks, where inserting data shifts the following chunks to other
+     * positions without changing them, and the indices found are those of the
+     * chunks that the owner of the other tree is missing. The cost is linear
+     * in the widths of the two trees.
+     *
+     * @param otherTree  the other Merkle Tree.
+     * @return the index set of the leaves missing from the other tree.
+     * @throws IllegalArgumentException if the other tree is null.
+     */
+    public Set<Integer> findMissingLeafIndices(MerkleTree<T> otherTree) {
+        if (otherTree == null) throw new IllegalArgumentException();
+
+        Set<String> otherHashes =
+        		new HashSet<String>(otherTree.getLeafHashes());
+        List<String> leafHashes = this.getLeafHashes();
+        Set<Integer> missingIndices = new HashSet<Integer>();
+
+        for (int i = 0; i < leafHashes.size(); i++) {
+        	if (!otherHashes.contains(leafHashes.get(i))) missingIndices.add(i);
+        }
+
+        return missingIndices;
+    }
+
+    /**
+     * Returns the hashes of the leaves of the tree, from left to right.
+     *
+     * @return the hashes of the leaves of the tree.
+     */
+    private List<String> getLeafHashes() {
+        List<String> leafHashes = new ArrayList<String>(this.width);
+        ArrayDeque<MerkleNode> stack = new ArrayDeque<MerkleNode>();
+        stack.push(this.root);
+
+        while (!stack.isEmpty()) {
+        	MerkleNode node = stack.pop();
+
+        	if (node.isLeaf()) leafHashes.add(node.getHash());
+        	else {
+        		if (node.getRight() != null) stack.push(node.getRight());
+        		if (node.getLeft() != null) stack.push(node.getLeft());
+        	}
+        }
+
+        return leafHashes;
+    }
+
     /**
      * Recursively compares two Merkle nodes and identifies differences in their
      * hashes. This method compares two Merkle nodes and their respective
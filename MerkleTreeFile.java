@@ -0,0 +1,314 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class provided with utilities for persisting Merkle trees in a compact,
+ * versioned binary format, which can be loaded back without computing any
+ * hash through {@link MappedMerkleTree}.
+ *
+ * <p>
+ * A file starts with a header of {@value #HEADER_SIZE} bytes, all numbers
+ * being big-endian:
+ * <ul>
+ * <li>bytes 0-3: the magic number {@code MRKL};</li>
+ * <li>bytes 4-5: the version of the format;</li>
+ * <li>byte 6: the length in bytes of a digest;</li>
+ * <li>byte 7: the length of the name of the hash algorithm;</li>
+ * <li>bytes 8-23: the name of the hash algorithm in ASCII, padded with
+ *     zeros;</li>
+ * <li>bytes 24-27: the width of the tree;</li>
+ * <li>bytes 28-31: the height of the tree.</li>
+ * </ul>
+ * The header is followed by the raw digests of all the nodes, level by level
+ * from the leaves up to the root, each level from left to right. Since the
+ * size of every level only depends on the width, the position of any node can
+ * be computed from the header alone.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class MerkleTreeFile {
+
+    /**
+     * The magic number at the start of every file.
+     */
+    public static final int MAGIC = 0x4d524b4c;
+
+    /**
+     * The version of the format written by this class.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The size in bytes of the header.
+     */
+    public static final int HEADER_SIZE = 32;
+
+    /**
+     * The name of the hash algorithm of the trees.
+     */
+    public static final String ALGORITHM = "MD5";
+
+    private static final int ALGORITHM_FIELD_LENGTH = 16;
+
+    /**
+     * Writes a Merkle tree to the given file, replacing it if it exists. The
+     * file is first written under a temporary name and forced to disk, then
+     * moved in place and the move is forced to disk as well, so that a crash
+     * never leaves a partially written tree behind.
+     *
+     * @param tree  the tree to write.
+     * @param path  the destination file.
+     * @throws IOException if the file cannot be written.
+     * @throws IllegalArgumentException if the tree or the path is null.
+     */
+    public static void write(MerkleTree<?> tree, Path path)
+    		throws IOException {
+    	if (tree == null || path == null) throw new IllegalArgumentException();
+
+        List<List<String>> levels = new ArrayList<List<String>>();
+        List<MerkleNode> nodes = new ArrayList<MerkleNode>();
+        nodes.add(tree.getRoot());
+
+        while (!nodes.isEmpty()) {
+        	List<String> hashes = new ArrayList<String>(nodes.size());
+        	List<MerkleNode> children = new ArrayList<MerkleNode>();
+
+        	for (MerkleNode node : nodes) {
+        		hashes.add(node.getHash());
+        		if (node.getLeft() != null) children.add(node.getLeft());
+        		if (node.getRight() != null) children.add(node.getRight());
+        	}
+
+        	levels.add(0, hashes);
+        	nodes = children;
+        }
+
+        MerkleTreeFile.write(levels, path);
+    }
+
+    /**
+     * Writes the levels of a Merkle tree, from the leaves up to the root, to
+     * the given file, replacing it if it exists.
+     *
+     * @param levels  the hashes of each level, from left to right.
+     * @param path  the destination file.
+     * @throws IOException if the file cannot be written.
+     */
+    static void write(List<? extends List<String>> levels, Path path)
+    		throws IOException {
+    	Header header = new Header(levels.get(0).size(), levels.size() - 1);
+    	Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    	byte[] digest = new byte[HashUtil.MD5_LENGTH];
+
+        try (FileChannel channel = FileChannel.open(temporary,
+        		StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        		StandardOpenOption.TRUNCATE_EXISTING)) {
+        	OutputStream out = new BufferedOutputStream(
+        			Channels.newOutputStream(channel), 1 << 16);
+        	out.write(header.toBytes());
+
+        	for (List<String> level : levels) {
+        		for (String hash : level) {
+        			HashUtil.hexToDigest(hash, digest, 0);
+        			out.write(digest);
+        		}
+        	}
+
+        	out.flush();
+        	channel.force(true);
+        }
+
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+        		   StandardCopyOption.ATOMIC_MOVE);
+
+        MerkleTreeFile.forceDirectory(path.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Forces the entries of the given directory to disk, so that a file moved
+     * into it survives a crash. On platforms that do not allow a directory to
+     * be opened, such as Windows, this is not possible and the method does
+     * nothing.
+     *
+     * @param directory  the directory to force.
+     * @throws IOException if the directory cannot be forced.
+     */
+    static void forceDirectory(Path directory) throws IOException {
+    	try (FileChannel channel = FileChannel.open(directory,
+    			StandardOpenOption.READ)) {
+    		channel.force(true);
+    	}
+    	catch (AccessDeniedException e) {
+    		if (!System.getProperty("os.name").startsWith("Windows")) throw e;
+    	}
+    }
+
+    /**
+     * The header of a file, together with the layout of the levels it
+     * describes.
+     */
+    static final class Header {
+    	final int width;
+
+    	final int height;
+
+    	private final long[] levelOffsets;
+
+    	private final int[] levelSizes;
+
+    	/**
+    	 * Constructs the header of a tree with the given width and height.
+    	 *
+    	 * @param width  the number of leaves.
+    	 * @param height  the height of the tree.
+    	 * @throws IllegalArgumentException if the height does not match the
+    	 *         width.
+    	 */
+    	Header(int width, int height) {
+    		if (width < 1 || height < 0) throw new IllegalArgumentException();
+
+    		List<Integer> sizes = new ArrayList<Integer>();
+    		sizes.add(width);
+
+    		while (sizes.get(sizes.size() - 1) > 1) {
+    			sizes.add((sizes.get(sizes.size() - 1) + 1) / 2);
+    		}
+
+    		if (sizes.size() - 1 != height)
+    			throw new IllegalArgumentException();
+
+    		this.width = width;
+    		this.height = height;
+    		this.levelSizes = new int[sizes.size()];
+    		this.levelOffsets = new long[sizes.size() + 1];
+    		this.levelOffsets[0] = HEADER_SIZE;
+
+    		for (int i = 0; i < sizes.size(); i++) {
+    			this.levelSizes[i] = sizes.get(i);
+    			this.levelOffsets[i + 1] = this.levelOffsets[i]
+    					+ (long) sizes.get(i) * HashUtil.MD5_LENGTH;
+    		}
+    	}
+
+    	/**
+    	 * Returns the number of nodes in the given level.
+    	 *
+    	 * @param level  the level, 0 being the leaves.
+    	 * @return the number of nodes in the level.
+    	 */
+    	int levelSize(int level) {
+    		return this.levelSizes[level];
+    	}
+
+    	/**
+    	 * Returns the position in the file of the digest of the given node.
+    	 *
+    	 * @param level  the level of the node, 0 being the leaves.
+    	 * @param index  the position of the node in its level.
+    	 * @return the offset of the digest from the start of the file.
+    	 */
+    	long offsetOf(int level, int index) {
+    		return this.levelOffsets[level] + (long) index * HashUtil.MD5_LENGTH;
+    	}
+
+    	/**
+    	 * Returns the size in bytes of a file with this header.
+    	 *
+    	 * @return the size of the file.
+    	 */
+    	long fileSize() {
+    		return this.levelOffsets[this.levelOffsets.length - 1];
+    	}
+
+    	/**
+    	 * Encodes the header.
+    	 *
+    	 * @return the bytes of the header.
+    	 */
+    	byte[] toBytes() {
+    		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+    		byte[] algorithm = ALGORITHM.getBytes(StandardCharsets.US_ASCII);
+
+    		buffer.putInt(MAGIC);
+    		buffer.putShort((short) VERSION);
+    		buffer.put((byte) HashUtil.MD5_LENGTH);
+    		buffer.put((byte) algorithm.length);
+    		buffer.put(algorithm);
+    		buffer.position(8 + ALGORITHM_FIELD_LENGTH);
+    		buffer.putInt(this.width);
+    		buffer.putInt(this.height);
+
+    		return buffer.array();
+    	}
+
+    	/**
+    	 * Reads and validates the header of a file.
+    	 *
+    	 * @param channel  the channel of the file.
+    	 * @return the header of the file.
+    	 * @throws IOException if the file cannot be read, or it is not a
+    	 *         Merkle tree file in a supported version, or its size does not
+    	 *         match the header.
+    	 */
+    	static Header read(FileChannel channel) throws IOException {
+    		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+
+    		while (buffer.hasRemaining()) {
+    			if (channel.read(buffer, buffer.position()) < 0)
+    				throw new IOException("Truncated Merkle tree header");
+    		}
+
+    		buffer.flip();
+
+    		if (buffer.getInt() != MAGIC)
+    			throw new IOException("Not a Merkle tree file");
+
+    		int version = buffer.getShort();
+    		int digestLength = buffer.get();
+    		int algorithmLength = buffer.get();
+
+    		if (version != VERSION)
+    			throw new IOException("Unsupported version " + version);
+
+    		if (algorithmLength < 0
+    			|| algorithmLength > ALGORITHM_FIELD_LENGTH)
+    			throw new IOException("Invalid Merkle tree header");
+
+    		byte[] algorithm = new byte[algorithmLength];
+    		buffer.get(algorithm);
+
+    		if (!ALGORITHM.equals(new String(algorithm,
+    				                         StandardCharsets.US_ASCII))
+    			|| digestLength != HashUtil.MD5_LENGTH)
+    			throw new IOException("Unsupported hash algorithm");
+
+    		buffer.position(8 + ALGORITHM_FIELD_LENGTH);
+    		Header header;
+
+    		try {
+    			header = new Header(buffer.getInt(), buffer.getInt());
+    		} catch (IllegalArgumentException e) {
+    			throw new IOException("Invalid Merkle tree header", e);
+    		}
+
+    		if (channel.size() != header.fileSize())
+    			throw new IOException("Merkle tree file size mismatch");
+
+    		return header;
+    	}
+    }
+}
\ No newline at end of file
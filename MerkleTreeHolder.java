@@ -0,0 +1,344 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A holder of the current version of a Merkle tree, which is replaced by new
+ * versions built in the background without ever blocking the readers.
+ *
+ * <p>
+ * New versions are built on an executor, one at a time and in the order they
+ * were requested, while readers keep using the current one: the version being
+ * built is the back buffer and the current one the front buffer. When a new
+ * version is ready it is published with a single atomic swap of the reference
+ * to the current version, so readers see either the old tree or the new one
+ * and never wait for a rebuild, however long it takes.
+ *
+ * <p>
+ * Readers lease the current version, with {@link #acquire()} or
+ * {@link #read(Function)}, and an old version is released only once all its
+ * leases are closed: the release callback given to the holder is then called
+ * with its tree, for example to close the file of a {@link MappedMerkleTree}.
+ * Acquiring and closing a lease only updates a counter.
+ *
+ * @param <T> the type of data on which the trees are built.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class MerkleTreeHolder<T> {
+
+    private final AtomicReference<Version<T>> current;
+
+    private final Executor executor;
+
+    private final Consumer<? super MerkleTree<T>> onRelease;
+
+    private final Object rebuildLock;
+
+    // The last rebuild requested, after which the next one runs.
+    private CompletableFuture<Void> lastRebuild;
+
+    /**
+     * A version of the tree, together with the number of its open leases.
+     */
+    private static final class Version<T> {
+    	final MerkleTree<T> tree;
+
+    	final long number;
+
+    	final AtomicInteger readers;
+
+    	final AtomicBoolean released;
+
+    	volatile boolean retired;
+
+    	Version(MerkleTree<T> tree, long number) {
+    		this.tree = tree;
+    		this.number = number;
+    		this.readers = new AtomicInteger();
+    		this.released = new AtomicBoolean();
+    		this.retired = false;
+    	}
+    }
+
+    /**
+     * A lease on a version of the tree, which keeps the version from being
+     * released until it is closed.
+     *
+     * @param <T> the type of data on which the tree is built.
+     */
+    public static final class Lease<T> implements AutoCloseable {
+
+        private final MerkleTreeHolder<T> holder;
+
+        private final Version<T> version;
+
+        private final AtomicBoolean closed;
+
+        private Lease(MerkleTreeHolder<T> holder, Version<T> version) {
+            this.holder = holder;
+            this.version = version;
+            this.closed = new AtomicBoolean();
+        }
+
+        /**
+         * Returns the tree of the leased version.
+         *
+         * @return the leased tree.
+         */
+        public MerkleTree<T> getTree() {
+            return this.version.tree;
+        }
+
+        /**
+         * Returns the number of the leased version, 0 being the initial tree.
+         *
+         * @return the number of the version.
+         */
+        public long getVersion() {
+            return this.version.number;
+        }
+
+        /**
+         * Closes the lease. Closing it again has no effect.
+         */
+        @Override
+        public void close() {
+        	if (this.closed.compareAndSet(false, true))
+        		this.holder.leave(this.version);
+        }
+    }
+
+    /**
+     * Constructs a holder of the given tree, which builds new versions on the
+     * given executor and calls the given callback on the old versions once
+     * they are released.
+     *
+     * @param initial  the initial tree.
+     * @param executor  the executor on which new versions are built.
+     * @param onRelease  the callback called with the tree of every released
+     *                   version.
+     * @throws IllegalArgumentException if an argument is null.
+     */
+    public MerkleTreeHolder(MerkleTree<T> initial, Executor executor,
+    		Consumer<? super MerkleTree<T>> onRelease) {
+    	if (initial == null || executor == null || onRelease == null)
+    		throw new IllegalArgumentException();
+
+        this.current = new AtomicReference<Version<T>>(
+        		new Version<T>(initial, 0));
+        this.executor = executor;
+        this.onRelease = onRelease;
+        this.rebuildLock = new Object();
+        this.lastRebuild = CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Constructs a holder of the given tree, which builds new versions on the
+     * given executor.
+     *
+     * @param initial  the initial tree.
+     * @param executor  the executor on which new versions are built.
+     * @throws IllegalArgumentException if an argument is null.
+     */
+    public MerkleTreeHolder(MerkleTree<T> initial, Executor executor) {
+    	this(initial, executor, tree -> { });
+    }
+
+    /**
+     * Leases the current version of the tree. The lease must be closed once
+     * the tree is no longer used.
+     *
+     * @return a lease on the current version.
+     */
+    public Lease<T> acquire() {
+    	while (true) {
+    		Version<T> version = this.current.get();
+
+    		version.readers.incrementAndGet();
+
+    		// The version may have been replaced, and even released, before
+    		// the lease was counted.
+    		if (this.current.get() == version)
+    			return new Lease<T>(this, version);
+
+    		this.leave(version);
+    	}
+    }
+
+    /**
+     * Applies the given function to the current version of the tree, holding a
+     * lease on it while the function runs.
+     *
+     * @param <R>  the type of the result.
+     * @param reader  the function to apply to the tree.
+     * @return the result of the function.
+     * @throws IllegalArgumentException if the function is null.
+     */
+    public <R> R read(Function<? super MerkleTree<T>, ? extends R> reader) {
+    	if (reader == null) throw new IllegalArgumentException();
+
+    	try (Lease<T> lease = this.acquire()) {
+    		return reader.apply(lease.getTree());
+    	}
+    }
+
+    /**
+     * Returns the number of the current version, 0 being the initial tree.
+     *
+     * @return the number of the current version.
+     */
+    public long getVersion() {
+        return this.current.get().number;
+    }
+
+    /**
+     * Builds a new version of the tree on the executor, after the rebuilds
+     * already requested, and publishes it.
+     *
+     * @param builder  the function that builds the new tree.
+     * @return a future completed with the number of the new version once it
+     *         is published, or exceptionally if the builder fails, in which
+     *         case the current version is kept.
+     * @throws IllegalArgumentException if the builder is null.
+     */
+    public CompletableFuture<Long> rebuildAsync(
+    		Supplier<? extends MerkleTree<T>> builder) {
+    	if (builder == null) throw new IllegalArgumentException();
+
+    	return this.schedule(previous -> builder.get());
+    }
+
+    /**
+     * Builds a new version of the tree on the hashes that the given list has
+     * now. The hashes are copied by the calling thread, so the list can be
+     * changed as soon as this method returns.
+     *
+     * @param hashList  the list whose elements are the leaves.
+     * @return a future completed with the number of the new version once it
+     *         is published.
+     * @throws IllegalArgumentException if the list is null or empty.
+     */
+    public CompletableFuture<Long> rebuildAsync(HashLinkedList<T> hashList) {
+    	if (hashList == null || hashList.getSize() == 0)
+    		throw new IllegalArgumentException();
+
+    	List<String> leafHashes = hashList.getAllHashes();
+
+    	return this.schedule(previous -> MerkleTree.fromHashes(leafHashes));
+    }
+
+    /**
+     * Builds a new version of the tree in which the given leaves of the
+     * previous version are replaced. The previous version is the one
+     * published by the last rebuild requested before this one.
+     *
+     * @param leafHashes  the new hashes of the leaves, by position.
+     * @return a future completed with the number of the new version once it
+     *         is published, or exceptionally if a position is out of range.
+     * @throws IllegalArgumentException if the map is null.
+     */
+    public CompletableFuture<Long> updateAsync(
+    		Map<Integer, String> leafHashes) {
+    	if (leafHashes == null) throw new IllegalArgumentException();
+
+    	Map<Integer, String> updates = Map.copyOf(leafHashes);
+
+    	return this.schedule(previous -> {
+    		List<String> leaves = MerkleTreeHolder.leafHashesOf(previous);
+
+    		for (Map.Entry<Integer, String> entry : updates.entrySet())
+    			leaves.set(entry.getKey(), entry.getValue());
+
+    		return MerkleTree.fromHashes(leaves);
+    	});
+    }
+
+    /**
+     * Queues a rebuild after the last one requested, whatever its outcome.
+     */
+    private CompletableFuture<Long> schedule(
+    		Function<MerkleTree<T>, ? extends MerkleTree<T>> builder) {
+    	CompletableFuture<Long> result = new CompletableFuture<Long>();
+
+    	synchronized (this.rebuildLock) {
+    		this.lastRebuild = this.lastRebuild.handleAsync((done, e) -> {
+    			try {
+    				MerkleTree<T> tree = builder.apply(this.current.get().tree);
+
+    				if (tree == null) throw new NullPointerException();
+
+    				result.complete(this.publish(tree));
+    			} catch (Throwable failure) {
+    				result.completeExceptionally(failure);
+    			}
+
+    			return null;
+    		}, this.executor);
+    	}
+
+    	return result;
+    }
+
+    /**
+     * Publishes a new version and retires the previous one, which is released
+     * at once if it has no lease.
+     */
+    private long publish(MerkleTree<T> tree) {
+    	Version<T> previous = this.current.get();
+    	Version<T> next = new Version<T>(tree, previous.number + 1);
+
+    	this.current.set(next);
+    	previous.retired = true;
+
+    	if (previous.readers.get() == 0) this.release(previous);
+
+    	return next.number;
+    }
+
+    private void leave(Version<T> version) {
+    	if (version.readers.decrementAndGet() == 0 && version.retired)
+    		this.release(version);
+    }
+
+    private void release(Version<T> version) {
+    	if (version.released.compareAndSet(false, true))
+    		this.onRelease.accept(version.tree);
+    }
+
+    /**
+     * Returns the hashes of the leaves of a tree, from left to right. All the
+     * leaves of a Merkle tree are at the same depth.
+     */
+    private static List<String> leafHashesOf(MerkleTree<?> tree) {
+    	List<MerkleNode> nodes = new ArrayList<MerkleNode>();
+    	nodes.add(tree.getRoot());
+
+    	while (!nodes.get(0).isLeaf()) {
+    		List<MerkleNode> children = new ArrayList<MerkleNode>();
+
+    		for (MerkleNode node : nodes) {
+    			children.add(node.getLeft());
+    			if (node.getRight() != null) children.add(node.getRight());
+    		}
+
+    		nodes = children;
+    	}
+
+    	List<String> hashes = new ArrayList<String>(nodes.size());
+
+    	for (MerkleNode node : nodes) hashes.add(node.getHash());
+
+    	return hashes;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,493 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A Merkle tree stored in a file written by {@link MerkleTreeFile}, for trees
+ * that do not fit in memory. The file is read and written in pages of
+ * {@value #PAGE_SIZE} bytes, and only a bounded number of them is kept in a
+ * buffer pool, so the memory used by the tree is fixed when it is opened and
+ * does not depend on its size.
+ *
+ * <p>
+ * Since the file stores the levels from the leaves up to the root, the upper
+ * levels of the tree occupy its last pages. These are read when the tree is
+ * opened and stay pinned in memory, up to a quarter of the pool, because every
+ * proof and every update goes through them. The other pages are evicted in
+ * least recently used order; modified pages are written back when they are
+ * evicted or when the tree is flushed. Scans of a whole level, such as the
+ * search of a leaf, read several consecutive pages at once.
+ *
+ * <p>
+ * Errors while reading or writing the file are reported as
+ * {@link UncheckedIOException}. The tree is not thread-safe.
+ *
+ * @param <T> the type of data on which the tree was built.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class PagedMerkleTree<T> implements AutoCloseable {
+
+    /**
+     * The size in bytes of a page, a multiple of the size of a digest.
+     */
+    public static final int PAGE_SIZE = 4096;
+
+    /**
+     * The number of pages read at once while scanning a level.
+     */
+    public static final int READ_AHEAD_PAGES = 8;
+
+    private final FileChannel channel;
+
+    private final MerkleTreeFile.Header header;
+
+    private final long fileSize;
+
+    private final int firstPinnedPage;
+
+    private final Map<Integer, Page> pinnedPages;
+
+    private final LinkedHashMap<Integer, Page> cachedPages;
+
+    private final int cacheCapacity;
+
+    /**
+     * A page of the file held in memory.
+     */
+    private static final class Page {
+    	final ByteBuffer buffer;
+
+    	boolean dirty;
+
+    	Page(int length) {
+    		this.buffer = ByteBuffer.allocate(length);
+    		this.dirty = false;
+    	}
+    }
+
+    private PagedMerkleTree(FileChannel channel, MerkleTreeFile.Header header,
+    		int poolPages) throws IOException {
+        this.channel = channel;
+        this.header = header;
+        this.fileSize = header.fileSize();
+
+        int totalPages = this.pageOf(this.fileSize - 1) + 1;
+        int pinnedBudget = poolPages / 4;
+        int firstPinned = totalPages;
+
+        for (int level = header.height; level >= 0; level--) {
+        	int first = this.pageOf(header.offsetOf(level, 0));
+
+        	if (totalPages - first > pinnedBudget) break;
+
+        	firstPinned = first;
+        }
+
+        this.firstPinnedPage = firstPinned;
+        this.pinnedPages = new HashMap<Integer, Page>();
+        this.cacheCapacity = poolPages - (totalPages - firstPinned);
+        this.cachedPages = new LinkedHashMap<Integer, Page>(16, 0.75f, true);
+
+        if (firstPinned < totalPages)
+        	this.load(firstPinned, totalPages - firstPinned, this.pinnedPages);
+    }
+
+    /**
+     * Opens a tree written by {@link MerkleTreeFile#write}, for reading and
+     * updating it.
+     *
+     * @param <T>  the type of data on which the tree was built.
+     * @param path  the file of the tree.
+     * @param memoryLimit  the maximum number of bytes of the file kept in
+     *                     memory, at least two pages.
+     * @return the tree stored in the file.
+     * @throws IOException if the file cannot be opened or is not a valid
+     *         Merkle tree file.
+     * @throws IllegalArgumentException if the path is null or the limit is
+     *         smaller than two pages.
+     */
+    public static <T> PagedMerkleTree<T> open(Path path, long memoryLimit)
+    		throws IOException {
+    	if (path == null || memoryLimit < 2L * PAGE_SIZE)
+    		throw new IllegalArgumentException();
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ,
+        		                               StandardOpenOption.WRITE);
+
+        try {
+        	return new PagedMerkleTree<T>(channel,
+        			MerkleTreeFile.Header.read(channel),
+        			(int) Math.min(Integer.MAX_VALUE, memoryLimit / PAGE_SIZE));
+        } catch (IOException | RuntimeException e) {
+        	channel.close();
+        	throw e;
+        }
+    }
+
+    /**
+     * Returns the width of the tree, that is the number of leaves.
+     *
+     * @return the width of the tree.
+     */
+    public int getWidth() {
+        return this.header.width;
+    }
+
+    /**
+     * Returns the height of the tree.
+     *
+     * @return the height of the tree.
+     */
+    public int getHeight() {
+        return this.header.height;
+    }
+
+    /**
+     * Returns the hash of the root of the tree.
+     *
+     * @return the hash of the root.
+     */
+    public String getRootHash() {
+        return this.getHash(this.header.height, 0);
+    }
+
+    /**
+     * Returns the hash of a node of the tree.
+     *
+     * @param level  the level of the node, 0 being the leaves.
+     * @param index  the position of the node in its level, from left to right.
+     * @return the hash of the node.
+     * @throws IndexOutOfBoundsException if the node does not exist.
+     */
+    public String getHash(int level, int index) {
+    	this.checkNode(level, index);
+
+        return this.readHash(level, index, false);
+    }
+
+    /**
+     * Returns the index of the leaf with the hash of the given data, scanning
+     * the leaves from left to right.
+     *
+     * @param data  the data to search.
+     * @return the index of the data among the leaves, -1 if it is not there.
+     * @throws IllegalArgumentException if the data is null.
+     */
+    public int getIndexOfData(T data) {
+    	if (data == null) throw new IllegalArgumentException();
+
+        String hash = HashUtil.dataToHash(data);
+
+        for (int i = 0; i < this.header.width; i++) {
+        	if (this.readHash(0, i, true).equals(hash)) return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the proof of the leaf in the given position, in the same format
+     * as the proofs of {@link MerkleTree}.
+     *
+     * @param index  the position of the leaf.
+     * @return the proof of the leaf.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public MerkleProof getMerkleProof(int index) {
+        this.checkNode(0, index);
+
+        MerkleProof proof = new MerkleProof(this.getRootHash(),
+        		                            this.header.height);
+
+        for (int level = 0; level < this.header.height; level++) {
+        	if (index % 2 == 1)
+        		proof.addHash(this.readHash(level, index - 1, false), true);
+        	else if (index + 1 < this.header.levelSize(level))
+        		proof.addHash(this.readHash(level, index + 1, false), false);
+        	else proof.addHash("", false);
+
+        	index /= 2;
+        }
+
+        return proof;
+    }
+
+    /**
+     * Replaces the data of a leaf and recomputes the hashes on its path to the
+     * root. The change reaches the file when the modified pages are evicted or
+     * the tree is flushed.
+     *
+     * @param index  the position of the leaf.
+     * @param data  the new data of the leaf.
+     * @throws IllegalArgumentException if the data is null.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public void setData(int index, T data) {
+    	if (data == null) throw new IllegalArgumentException();
+
+        this.setLeafHash(index, HashUtil.dataToHash(data));
+    }
+
+    /**
+     * Replaces the hash of a leaf and recomputes the hashes on its path to the
+     * root.
+     *
+     * @param index  the position of the leaf.
+     * @param hash  the new hash of the leaf.
+     * @throws IllegalArgumentException if the hash is not a valid MD5 hash.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public void setLeafHash(int index, String hash) {
+    	this.checkNode(0, index);
+
+        this.writeHash(0, index, hash);
+
+        for (int level = 0; level < this.header.height; level++) {
+        	int left = index & ~1;
+        	String leftHash = this.readHash(level, left, false);
+        	String rightHash = left + 1 < this.header.levelSize(level)
+        			           ? this.readHash(level, left + 1, false)
+        			           : null;
+
+        	index /= 2;
+        	this.writeHash(level + 1, index,
+        			       HashUtil.combineHashes(leftHash, rightHash));
+        }
+    }
+
+    /**
+     * Finds the indices of the leaves that differ from those of another tree
+     * with the same width, visiting only the subtrees whose roots differ.
+     *
+     * @param otherTree  the tree to compare with.
+     * @return the indices of the leaves that differ.
+     * @throws IllegalArgumentException if the other tree is null or has a
+     *         different width.
+     */
+    public Set<Integer> findInvalidDataIndices(PagedMerkleTree<T> otherTree) {
+        if (otherTree == null || otherTree.getWidth() != this.getWidth())
+            throw new IllegalArgumentException();
+
+        Set<Integer> invalidIndices = new HashSet<Integer>();
+
+        this.compareNodes(otherTree, this.header.height, 0, invalidIndices);
+
+        return invalidIndices;
+    }
+
+    private void compareNodes(PagedMerkleTree<T> otherTree, int level,
+    		int index, Set<Integer> invalidIndices) {
+    	if (this.readHash(level, index, false)
+    			.equals(otherTree.readHash(level, index, false)))
+    		return;
+
+    	if (level == 0) {
+    		invalidIndices.add(index);
+    		return;
+    	}
+
+    	this.compareNodes(otherTree, level - 1, index * 2, invalidIndices);
+
+    	if (index * 2 + 1 < this.header.levelSize(level - 1))
+    		this.compareNodes(otherTree, level - 1, index * 2 + 1,
+    				          invalidIndices);
+    }
+
+    /**
+     * Loads the whole tree in memory, without computing any hash.
+     *
+     * @return a {@link MerkleTree} with the same nodes.
+     */
+    public MerkleTree<T> toMerkleTree() {
+        List<List<String>> levels = new ArrayList<List<String>>();
+
+        for (int level = 0; level <= this.header.height; level++) {
+        	int size = this.header.levelSize(level);
+        	List<String> hashes = new ArrayList<String>(size);
+
+        	for (int i = 0; i < size; i++)
+        		hashes.add(this.readHash(level, i, true));
+
+        	levels.add(hashes);
+        }
+
+        return MerkleTree.fromLevels(levels);
+    }
+
+    /**
+     * Writes all the modified pages to the file and forces them to the
+     * storage device.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    public void flush() throws IOException {
+        for (Map.Entry<Integer, Page> entry : this.pinnedPages.entrySet())
+        	this.writeBack(entry.getKey(), entry.getValue());
+
+        for (Map.Entry<Integer, Page> entry : this.cachedPages.entrySet())
+        	this.writeBack(entry.getKey(), entry.getValue());
+
+        this.channel.force(false);
+    }
+
+    /**
+     * Flushes the tree and closes its file.
+     *
+     * @throws IOException if the file cannot be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+    	try {
+    		this.flush();
+    	} finally {
+    		this.channel.close();
+    	}
+    }
+
+    /**
+     * Returns the number of pages currently held in memory, pinned ones
+     * included.
+     *
+     * @return the number of pages in memory.
+     */
+    int getPagesInMemory() {
+        return this.pinnedPages.size() + this.cachedPages.size();
+    }
+
+    /**
+     * Returns the number of pages pinned in memory.
+     *
+     * @return the number of pinned pages.
+     */
+    int getPinnedPages() {
+        return this.pinnedPages.size();
+    }
+
+    private void checkNode(int level, int index) {
+    	if (level < 0 || level > this.header.height)
+    		throw new IndexOutOfBoundsException(level);
+
+    	if (index < 0 || index >= this.header.levelSize(level))
+    		throw new IndexOutOfBoundsException(index);
+    }
+
+    private int pageOf(long offset) {
+        return (int) (offset / PAGE_SIZE);
+    }
+
+    private String readHash(int level, int index, boolean scan) {
+        long offset = this.header.offsetOf(level, index);
+        Page page = this.page(this.pageOf(offset), scan);
+
+        return HashUtil.digestToHex(page.buffer.array(),
+        		                    (int) (offset % PAGE_SIZE));
+    }
+
+    private void writeHash(int level, int index, String hash) {
+        long offset = this.header.offsetOf(level, index);
+        Page page = this.page(this.pageOf(offset), false);
+
+        HashUtil.hexToDigest(hash, page.buffer.array(),
+        		             (int) (offset % PAGE_SIZE));
+        page.dirty = true;
+    }
+
+    /**
+     * Returns a page of the file, reading it if it is not in memory. When a
+     * level is being scanned, the following pages are read together with it.
+     */
+    private Page page(int number, boolean scan) {
+    	Page page = number >= this.firstPinnedPage
+    			    ? this.pinnedPages.get(number)
+    			    : this.cachedPages.get(number);
+
+    	if (page != null) return page;
+
+    	int count = 1;
+
+    	if (scan) {
+    		int limit = Math.min(this.firstPinnedPage - number,
+    				             Math.min(READ_AHEAD_PAGES, this.cacheCapacity));
+
+    		while (count < limit
+    			   && !this.cachedPages.containsKey(number + count))
+    			count++;
+    	}
+
+    	try {
+    		this.evict(count);
+    		this.load(number, count, this.cachedPages);
+    	} catch (IOException e) {
+    		throw new UncheckedIOException(e);
+    	}
+
+    	return this.cachedPages.get(number);
+    }
+
+    /**
+     * Evicts the least recently used pages until there is room for the given
+     * number of pages, writing back the modified ones.
+     */
+    private void evict(int count) throws IOException {
+    	Iterator<Map.Entry<Integer, Page>> iterator =
+    			this.cachedPages.entrySet().iterator();
+
+    	while (this.cachedPages.size() + count > this.cacheCapacity) {
+    		Map.Entry<Integer, Page> eldest = iterator.next();
+
+    		this.writeBack(eldest.getKey(), eldest.getValue());
+    		iterator.remove();
+    	}
+    }
+
+    /**
+     * Reads consecutive pages with a single read and stores them in the given
+     * map.
+     */
+    private void load(int first, int count, Map<Integer, Page> pages)
+    		throws IOException {
+    	long position = (long) first * PAGE_SIZE;
+    	int length = (int) Math.min((long) count * PAGE_SIZE,
+    			                    this.fileSize - position);
+    	ByteBuffer buffer = ByteBuffer.allocate(length);
+
+    	while (buffer.hasRemaining()) {
+    		if (this.channel.read(buffer, position + buffer.position()) < 0)
+    			throw new IOException("Truncated Merkle tree file");
+    	}
+
+    	for (int i = 0; i < count; i++) {
+    		int start = i * PAGE_SIZE;
+    		Page page = new Page(Math.min(PAGE_SIZE, length - start));
+
+    		page.buffer.put(buffer.array(), start, page.buffer.capacity());
+    		pages.put(first + i, page);
+    	}
+    }
+
+    private void writeBack(int number, Page page) throws IOException {
+    	if (!page.dirty) return;
+
+    	ByteBuffer buffer = ByteBuffer.wrap(page.buffer.array());
+    	long position = (long) number * PAGE_SIZE;
+
+    	while (buffer.hasRemaining())
+    		this.channel.write(buffer, position + buffer.position());
+
+    	page.dirty = false;
+    }
+}
\ No newline at end of file
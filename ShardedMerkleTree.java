@@ -0,0 +1,334 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A Merkle tree made of independent shards: each shard is the Merkle tree of
+ * a part of the data, and a top tree is built on the roots of the shards. The
+ * root of the top tree is the root of the whole tree.
+ *
+ * <p>
+ * Since the shards do not depend on each other, they can be built in
+ * parallel, or elsewhere and then attached with
+ * {@link #setShard(int, List)}, and only the top tree is computed on their
+ * roots. The proof of an element is the proof of the element in its shard
+ * followed by the proof of the root of the shard in the top tree, and is
+ * verified as any other {@link MerkleProof}. Updating an element rehashes its
+ * path in the shard and the path of the shard in the top tree only.
+ *
+ * <p>
+ * When all the shards have the same number of leaves, and this number is a
+ * power of two, the root is the same as the one of the {@link MerkleTree}
+ * built on all the data; otherwise the leaves of different shards may lie at
+ * different depths, and the root differs.
+ *
+ * <p>
+ * The tree is safe for use by several threads: reads share a lock and
+ * updates take it exclusively.
+ *
+ * @param <T> the type of data on which the tree is built.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class ShardedMerkleTree<T> {
+
+    private final List<MerkleLevels> shards;
+
+    private final MerkleLevels top;
+
+    private final ReentrantReadWriteLock lock;
+
+    private ShardedMerkleTree(List<MerkleLevels> shards) {
+    	List<String> roots = new ArrayList<String>(shards.size());
+
+    	for (MerkleLevels shard : shards) roots.add(shard.getRootHash());
+
+        this.shards = shards;
+        this.top = new MerkleLevels(roots);
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Constructs a sharded tree whose shards have the given leaf hashes.
+     *
+     * @param <T>  the type of data on which the tree is built.
+     * @param shardLeafHashes  the hashes of the leaves of each shard.
+     * @return the sharded tree.
+     * @throws IllegalArgumentException if there are no shards, or a shard is
+     *         null or empty or contains a null hash.
+     */
+    public static <T> ShardedMerkleTree<T> fromShards(
+    		List<? extends List<String>> shardLeafHashes) {
+    	if (shardLeafHashes == null || shardLeafHashes.isEmpty())
+    		throw new IllegalArgumentException();
+
+    	List<MerkleLevels> shards =
+    			new ArrayList<MerkleLevels>(shardLeafHashes.size());
+
+    	for (List<String> leafHashes : shardLeafHashes)
+    		shards.add(ShardedMerkleTree.shardOf(leafHashes));
+
+        return new ShardedMerkleTree<T>(shards);
+    }
+
+    /**
+     * Constructs a sharded tree on the given data, hashing and building each
+     * shard as a separate task of the given executor.
+     *
+     * @param <T>  the type of data on which the tree is built.
+     * @param shardData  the data of each shard.
+     * @param executor  the executor that builds the shards.
+     * @return the sharded tree.
+     * @throws IllegalArgumentException if the executor is null, if there are
+     *         no shards, or a shard is null or empty or contains null data.
+     */
+    public static <T> ShardedMerkleTree<T> build(
+    		List<? extends Collection<? extends T>> shardData,
+    		Executor executor) {
+    	if (shardData == null || shardData.isEmpty() || executor == null)
+    		throw new IllegalArgumentException();
+
+    	List<CompletableFuture<MerkleLevels>> futures =
+    			new ArrayList<CompletableFuture<MerkleLevels>>();
+
+    	for (Collection<? extends T> data : shardData) {
+    		futures.add(CompletableFuture.supplyAsync(
+    				() -> ShardedMerkleTree.shardOf(
+    						  ShardedMerkleTree.hashesOf(data)),
+    				executor));
+    	}
+
+    	List<MerkleLevels> shards = new ArrayList<MerkleLevels>(futures.size());
+
+    	try {
+    		for (CompletableFuture<MerkleLevels> future : futures)
+    			shards.add(future.join());
+    	} catch (CompletionException e) {
+    		if (e.getCause() instanceof RuntimeException)
+    			throw (RuntimeException) e.getCause();
+
+    		throw e;
+    	}
+
+        return new ShardedMerkleTree<T>(shards);
+    }
+
+    private static List<String> hashesOf(Collection<?> data) {
+    	if (data == null) throw new IllegalArgumentException();
+
+    	List<String> hashes = new ArrayList<String>(data.size());
+
+    	for (Object element : data) {
+    		if (element == null) throw new IllegalArgumentException();
+
+    		hashes.add(HashUtil.dataToHash(element));
+    	}
+
+    	return hashes;
+    }
+
+    private static MerkleLevels shardOf(List<String> leafHashes) {
+    	if (leafHashes == null || leafHashes.isEmpty())
+    		throw new IllegalArgumentException();
+
+    	for (String hash : leafHashes) {
+    		if (hash == null) throw new IllegalArgumentException();
+    	}
+
+    	return new MerkleLevels(leafHashes);
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the number of shards.
+     */
+    public int getShardCount() {
+        return this.shards.size();
+    }
+
+    /**
+     * Returns the number of leaves of a shard.
+     *
+     * @param shard  the index of the shard.
+     * @return the width of the shard.
+     * @throws IndexOutOfBoundsException if the shard does not exist.
+     */
+    public int getShardWidth(int shard) {
+    	this.lock.readLock().lock();
+
+    	try {
+    		return this.shards.get(shard).getWidth();
+    	} finally {
+    		this.lock.readLock().unlock();
+    	}
+    }
+
+    /**
+     * Returns the number of leaves of all the shards.
+     *
+     * @return the width of the tree.
+     */
+    public int getWidth() {
+    	this.lock.readLock().lock();
+
+    	try {
+    		int width = 0;
+
+    		for (MerkleLevels shard : this.shards) width += shard.getWidth();
+
+    		return width;
+    	} finally {
+    		this.lock.readLock().unlock();
+    	}
+    }
+
+    /**
+     * Returns the hash of the root of the tree.
+     *
+     * @return the hash of the root.
+     */
+    public String getRootHash() {
+    	this.lock.readLock().lock();
+
+    	try {
+    		return this.top.getRootHash();
+    	} finally {
+    		this.lock.readLock().unlock();
+    	}
+    }
+
+    /**
+     * Returns the hash of the root of a shard.
+     *
+     * @param shard  the index of the shard.
+     * @return the hash of the root of the shard.
+     * @throws IndexOutOfBoundsException if the shard does not exist.
+     */
+    public String getShardRootHash(int shard) {
+    	this.lock.readLock().lock();
+
+    	try {
+    		return this.shards.get(shard).getRootHash();
+    	} finally {
+    		this.lock.readLock().unlock();
+    	}
+    }
+
+    /**
+     * Returns the proof of an element: the proof of the element in its shard
+     * followed by the proof of the shard in the top tree.
+     *
+     * @param shard  the index of the shard.
+     * @param index  the position of the element in the shard.
+     * @return the proof of the element.
+     * @throws IndexOutOfBoundsException if the shard or the element does not
+     *         exist.
+     */
+    public MerkleProof getMerkleProof(int shard, int index) {
+    	this.lock.readLock().lock();
+
+    	try {
+    		MerkleLevels levels = this.shards.get(shard);
+
+    		if (index < 0 || index >= levels.getWidth())
+    			throw new IndexOutOfBoundsException(index);
+
+    		MerkleProof proof = new MerkleProof(
+    				this.top.getRootHash(),
+    				levels.getHeight() + this.top.getHeight());
+
+    		levels.addPath(proof, index);
+    		this.top.addPath(proof, shard);
+
+    		return proof;
+    	} finally {
+    		this.lock.readLock().unlock();
+    	}
+    }
+
+    /**
+     * Returns the proof of the root of a shard in the top tree, which can be
+     * verified with {@link MerkleProof#proveValidityOfBranch(MerkleNode)}.
+     *
+     * @param shard  the index of the shard.
+     * @return the proof of the shard.
+     * @throws IndexOutOfBoundsException if the shard does not exist.
+     */
+    public MerkleProof getShardProof(int shard) {
+    	this.lock.readLock().lock();
+
+    	try {
+    		return this.top.getMerkleProof(shard);
+    	} finally {
+    		this.lock.readLock().unlock();
+    	}
+    }
+
+    /**
+     * Replaces an element, rehashing only its path in the shard and the path
+     * of the shard in the top tree.
+     *
+     * @param shard  the index of the shard.
+     * @param index  the position of the element in the shard.
+     * @param data  the new element.
+     * @return the new hash of the root.
+     * @throws IllegalArgumentException if the data is null.
+     * @throws IndexOutOfBoundsException if the shard or the element does not
+     *         exist.
+     */
+    public String setData(int shard, int index, T data) {
+    	if (data == null) throw new IllegalArgumentException();
+
+    	String hash = HashUtil.dataToHash(data);
+
+    	this.lock.writeLock().lock();
+
+    	try {
+    		MerkleLevels levels = this.shards.get(shard);
+
+    		if (index < 0 || index >= levels.getWidth())
+    			throw new IndexOutOfBoundsException(index);
+
+    		levels.set(index, hash);
+    		this.top.set(shard, levels.getRootHash());
+
+    		return this.top.getRootHash();
+    	} finally {
+    		this.lock.writeLock().unlock();
+    	}
+    }
+
+    /**
+     * Replaces a whole shard with one built on the given leaf hashes, for
+     * example by another process, rehashing only the path of the shard in
+     * the top tree besides the new shard.
+     *
+     * @param shard  the index of the shard.
+     * @param leafHashes  the hashes of the leaves of the new shard.
+     * @return the new hash of the root.
+     * @throws IllegalArgumentException if the list is null or empty or
+     *         contains a null hash.
+     * @throws IndexOutOfBoundsException if the shard does not exist.
+     */
+    public String setShard(int shard, List<String> leafHashes) {
+    	MerkleLevels levels = ShardedMerkleTree.shardOf(leafHashes);
+
+    	this.lock.writeLock().lock();
+
+    	try {
+    		this.shards.set(shard, levels);
+    		this.top.set(shard, levels.getRootHash());
+
+    		return this.top.getRootHash();
+    	} finally {
+    		this.lock.writeLock().unlock();
+    	}
+    }
+}
\ No newline at end of file
@@ -0,0 +1,181 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link AsyncFileHasher} class. This class tests the
+ * pipeline that reads and hashes the chunks of a file.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testHashChunks()}: Verifies that the hashes of the chunks are
+ *     the same as those computed by {@link FileHasher}.</li>
+ *
+ * <li>{@link #testOrderWithSlowWorkers()}: Hashes chunks on workers with
+ *     random delays and verifies that the hashes are still delivered in
+ *     order.</li>
+ *
+ * <li>{@link #testHashFile()}: Verifies that the root computed while reading
+ *     the file matches the root of the tree of its chunks.</li>
+ *
+ * <li>{@link #testBufferReuse()}: Verifies that no more buffers than the
+ *     queue depth are allocated, even across several files.</li>
+ *
+ * <li>{@link #testStalledChunk()}: Stalls the hashing of a chunk and verifies
+ *     that the chunks that follow it are not read beyond the queue depth,
+ *     then that all the hashes are delivered once it resumes.</li>
+ *
+ * <li>{@link #testEmptyAndMissingFile()}: Verifies that an empty file has a
+ *     single empty chunk and that a missing file is reported with an
+ *     {@code IOException}.</li>
+ * </ul>
+ */
+class AsyncFileHasherTest {
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+    	byte[] content = new byte[100000];
+    	new Random(3).nextBytes(content);
+
+    	this.file = Files.createTempFile("merkle", ".bin");
+    	Files.write(this.file, content);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+    	Files.deleteIfExists(this.file);
+    }
+
+    @Test
+    void testHashChunks() throws IOException {
+        assertEquals(new FileHasher(4096).hashChunks(this.file),
+        		     new AsyncFileHasher(4096, 4).hashChunks(this.file),
+        		     "Gli hash dei blocchi non sono corretti.");
+    }
+
+    @Test
+    void testOrderWithSlowWorkers() throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+
+        try {
+        	AsyncFileHasher hasher = new AsyncFileHasher(1000, 8,
+        			task -> pool.execute(() -> {
+        		try {
+        			Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+        		} catch (InterruptedException e) {
+        			Thread.currentThread().interrupt();
+        		}
+
+        		task.run();
+        	}));
+
+        	assertEquals(new FileHasher(1000).hashChunks(this.file),
+        			     hasher.hashChunks(this.file),
+        			     "Gli hash dovrebbero essere consegnati in ordine.");
+        } finally {
+        	pool.shutdown();
+        }
+    }
+
+    @Test
+    void testHashFile() throws IOException {
+        AsyncFileHasher hasher = new AsyncFileHasher(3000, 3);
+
+        assertEquals(hasher.fileTree(this.file).getRoot().getHash(),
+        		     hasher.hashFile(this.file),
+        		     "La radice calcolata in lettura non è corretta.");
+        assertEquals(new FileHasher(3000).hashFile(this.file),
+        		     hasher.hashFile(this.file),
+        		     "La radice del file non è corretta.");
+    }
+
+    @Test
+    void testBufferReuse() throws IOException {
+        AsyncFileHasher hasher = new AsyncFileHasher(512, 4);
+
+        for (int i = 0; i < 3; i++) hasher.hashChunks(this.file);
+
+        assertTrue(hasher.getAllocatedBuffers() <= 4,
+        		   "I buffer allocati superano la profondità della coda.");
+    }
+
+    @Test
+    void testStalledChunk() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger submitted = new AtomicInteger();
+        AtomicReference<List<String>> hashes = new AtomicReference<>();
+
+        // The first chunk to be hashed, one of the first four, never finishes
+        // until it is released, so it can be at most four chunks behind the
+        // last one that is read.
+        AsyncFileHasher hasher = new AsyncFileHasher(1000, 4, task -> {
+        	boolean stall = submitted.getAndIncrement() == 0;
+
+        	new Thread(() -> {
+        		try {
+        			if (stall) release.await();
+        		} catch (InterruptedException e) {
+        			Thread.currentThread().interrupt();
+        		}
+
+        		task.run();
+        	}).start();
+        });
+
+        Thread reader = new Thread(() -> {
+        	try {
+        		hashes.set(hasher.hashChunks(this.file));
+        	} catch (IOException e) {
+        		throw new RuntimeException(e);
+        	}
+        });
+        reader.start();
+
+        try {
+        	Thread.sleep(300);
+
+        	assertTrue(submitted.get() <= 7,
+        			   "I blocchi letti dopo quello bloccato superano la "
+        			   + "profondità della coda.");
+        	assertTrue(reader.isAlive(),
+        			   "L'hash non può terminare prima del blocco fermo.");
+        } finally {
+        	release.countDown();
+        	reader.join(10000);
+        }
+
+        assertEquals(new FileHasher(1000).hashChunks(this.file), hashes.get(),
+        		     "Gli hash dovrebbero essere consegnati tutti, in ordine.");
+    }
+
+    @Test
+    void testEmptyAndMissingFile() throws IOException {
+    	AsyncFileHasher hasher = new AsyncFileHasher(512, 4);
+    	Files.write(this.file, new byte[0]);
+
+        assertEquals(List.of(HashUtil.computeMD5(new byte[0])),
+        		     hasher.hashChunks(this.file),
+        		     "Un file vuoto dovrebbe avere un solo blocco vuoto.");
+
+        Files.delete(this.file);
+
+        assertThrows(IOException.class, () -> hasher.hashChunks(this.file),
+                     "Un file inesistente dovrebbe lanciare IOException.");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,209 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link ConcurrentHashLinkedList} class. This class
+ * includes tests to verify the behavior of the thread-safe MD5-hashed linked
+ * list.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testAddAndIterate()}: Adds items to the head and tail and
+ *     verifies the order of the elements and their hashes.</li>
+ *
+ * <li>{@link #testRemove()}: Removes elements, including the last one, and
+ *     verifies that the list is updated correctly.</li>
+ *
+ * <li>{@link #testConcurrentAddAtTail()}: Adds elements from several threads
+ *     at the same time and verifies that none of them is lost and that the
+ *     elements of each thread keep their order.</li>
+ *
+ * <li>{@link #testSnapshotDuringAppends()}: Takes snapshots while other
+ *     threads append elements and verifies that each snapshot is a prefix of
+ *     the final content.</li>
+ *
+ * <li>{@link #testSnapshotToMerkleTree()}: Verifies that the tree built from
+ *     a snapshot is the same as the one built from a {@link HashLinkedList}
+ *     with the same elements.</li>
+ *
+ * <li>{@link #testWeaklyConsistentIterator()}: Verifies that the iterator does
+ *     not throw when the list is modified during iteration.</li>
+ * </ul>
+ */
+class ConcurrentHashLinkedListTest {
+
+    private ConcurrentHashLinkedList<String> list;
+
+    @BeforeEach
+    void setUp() {
+        this.list = new ConcurrentHashLinkedList<>();
+    }
+
+    @Test
+    void testAddAndIterate() {
+    	this.list.addAtTail("Bob paga Charlie");
+    	this.list.addAtHead("Alice paga Bob");
+    	this.list.addAtTail("Charlie paga Diana");
+
+        List<String> iteratorList = new ArrayList<String>();
+        for (String s : this.list) {
+        	iteratorList.add(s);
+        }
+
+        assertEquals(Arrays.asList("Alice paga Bob", "Bob paga Charlie",
+        		                   "Charlie paga Diana"), iteratorList,
+        		     "La lista generata dall'iteratore non è corretta.");
+        assertEquals(3, this.list.getSize(),
+                     "La lista dovrebbe contenere tre elementi.");
+        assertEquals(HashUtil.dataToHash("Alice paga Bob"),
+                     this.list.getAllHashes().get(0),
+                     "Gli hash della lista non corrispondono all'atteso.");
+    }
+
+    @Test
+    void testRemove() {
+    	this.list.addAtTail("Alice paga Bob");
+    	this.list.addAtTail("Bob paga Charlie");
+    	this.list.addAtTail("Charlie paga Diana");
+
+        assertTrue(this.list.remove("Charlie paga Diana"),
+                   "L'elemento 'Charlie paga Diana' doveva essere rimosso.");
+        assertTrue(this.list.remove("Alice paga Bob"),
+                   "L'elemento 'Alice paga Bob' doveva essere rimosso.");
+        assertFalse(this.list.remove("Alice paga Bob"),
+                    "L'elemento 'Alice paga Bob' non doveva più esistere.");
+
+        this.list.addAtTail("Diana paga Alice");
+
+        List<String> iteratorList = new ArrayList<String>();
+        for (String s : this.list.snapshot()) {
+        	iteratorList.add(s);
+        }
+
+        assertEquals(Arrays.asList("Bob paga Charlie", "Diana paga Alice"),
+                     iteratorList,
+                     "La lista non è corretta dopo le rimozioni.");
+        assertEquals(2, this.list.getSize(),
+                     "La lista dovrebbe contenere due elementi.");
+    }
+
+    @Test
+    void testConcurrentAddAtTail() throws Exception {
+        ConcurrentHashLinkedList<Integer> integers =
+        		new ConcurrentHashLinkedList<Integer>();
+        int threads = 8;
+        int perThread = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+
+        try {
+        	for (int t = 0; t < threads; t++) {
+        		int base = t * perThread;
+
+        		futures.add(executor.submit(() -> {
+        			start.await();
+        			for (int i = 0; i < perThread; i++) {
+        				integers.addAtTail(base + i);
+        			}
+        			return null;
+        		}));
+        	}
+
+        	start.countDown();
+        	for (Future<?> future : futures) future.get();
+        } finally {
+        	executor.shutdown();
+        }
+
+        int[] lastSeen = new int[threads];
+        Arrays.fill(lastSeen, -1);
+        int count = 0;
+
+        for (Integer value : integers) {
+        	int thread = value / perThread;
+
+        	assertTrue(value > lastSeen[thread],
+        			   "Gli elementi di ogni thread dovrebbero essere in "
+        			   + "ordine.");
+        	lastSeen[thread] = value;
+        	count++;
+        }
+
+        assertEquals(threads * perThread, count,
+        		     "Nessun elemento dovrebbe andare perso.");
+        assertEquals(threads * perThread, integers.getSize(),
+        		     "La dimensione della lista non è corretta.");
+    }
+
+    @Test
+    void testSnapshotDuringAppends() throws Exception {
+        ConcurrentHashLinkedList<Integer> integers =
+        		new ConcurrentHashLinkedList<Integer>();
+        List<ConcurrentHashLinkedList.Snapshot<Integer>> snapshots =
+        		new ArrayList<ConcurrentHashLinkedList.Snapshot<Integer>>();
+
+        Thread producer = new Thread(() -> {
+        	for (int i = 0; i < 20000; i++) integers.addAtTail(i);
+        });
+        producer.start();
+
+        while (producer.isAlive()) snapshots.add(integers.snapshot());
+        producer.join();
+
+        for (ConcurrentHashLinkedList.Snapshot<Integer> snapshot : snapshots) {
+        	int expected = 0;
+
+        	for (Integer value : snapshot) {
+        		assertEquals(Integer.valueOf(expected++), value,
+        				     "L'istantanea dovrebbe essere un prefisso della "
+        				     + "lista.");
+        	}
+
+        	assertEquals(expected, snapshot.getSize(),
+        			     "La dimensione dell'istantanea non è corretta.");
+        }
+    }
+
+    @Test
+    void testSnapshotToMerkleTree() {
+        HashLinkedList<String> hashList = new HashLinkedList<String>();
+
+        for (String s : Arrays.asList("Alice paga Bob", "Bob paga Charlie",
+        		                      "Charlie paga Diana")) {
+        	this.list.addAtTail(s);
+        	hashList.addAtTail(s);
+        }
+
+        MerkleTree<String> tree = this.list.snapshot().toMerkleTree();
+
+        assertEquals(new MerkleTree<String>(hashList).getRoot(), tree.getRoot(),
+        		     "La radice dovrebbe coincidere con quella costruita dalla "
+        		     + "lista.");
+        assertArrayEquals(hashList.getAllDigests(),
+        		          this.list.snapshot().getAllDigests(),
+        		          "I digest dell'istantanea non sono corretti.");
+    }
+
+    @Test
+    void testWeaklyConsistentIterator() {
+    	this.list.addAtTail("Alice paga Bob");
+    	this.list.addAtTail("Bob paga Charlie");
+
+        assertDoesNotThrow(() -> {
+        	for (String s : this.list) {
+        		this.list.addAtTail("Charlie paga Diana");
+        		this.list.remove("Bob paga Charlie");
+        		if (this.list.getSize() > 10) break;
+        	}
+        }, "L'iteratore non dovrebbe essere fail-fast.");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,210 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link ConcurrentMerkleTree} class. This class tests the
+ * tree alone and while it is read and updated by several threads.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testMatchesMerkleTree()}: Verifies that the root and the proofs
+ *     match those of the {@link MerkleTree} built on the same list.</li>
+ *
+ * <li>{@link #testMultiLeafProofs()}: Verifies that the proofs of several
+ *     leaves read together are valid and that repeated positions share the
+ *     same proof.</li>
+ *
+ * <li>{@link #testBatchUpdate()}: Applies a batch of updates and verifies the
+ *     new root, the version and the membership of the data.</li>
+ *
+ * <li>{@link #testSingleLeaf()}: Updates a tree with a single leaf.</li>
+ *
+ * <li>{@link #testConcurrentReadsAndWrites()}: Serves proofs from several
+ *     threads while another one applies batches of updates, and verifies that
+ *     every proof is consistent with the root it carries.</li>
+ *
+ * <li>{@link #testInvalidUpdates()}: Verifies that invalid updates are
+ *     rejected without changing the tree.</li>
+ * </ul>
+ */
+class ConcurrentMerkleTreeTest {
+
+    private HashLinkedList<Integer> hashList;
+
+    private ConcurrentMerkleTree<Integer> tree;
+
+    @BeforeEach
+    void setUp() {
+    	this.hashList = new HashLinkedList<Integer>();
+    	for (int i = 0; i < 1000; i++) this.hashList.addAtTail(i);
+
+    	this.tree = new ConcurrentMerkleTree<Integer>(this.hashList);
+    }
+
+    @Test
+    void testMatchesMerkleTree() {
+        MerkleTree<Integer> expected = new MerkleTree<Integer>(this.hashList);
+
+        assertEquals(expected.getRoot().getHash(), this.tree.getRootHash(),
+        		     "La radice dell'albero non è corretta.");
+        assertEquals(expected.getHeight(), this.tree.getHeight(),
+        		     "L'altezza dell'albero non è corretta.");
+        assertTrue(expected.validateTree(this.tree.toMerkleTree()),
+        		   "L'albero copiato non è corretto.");
+
+        for (int i = 0; i < 1000; i += 37) {
+        	assertTrue(this.tree.getMerkleProof(i).proveValidityOfData(i),
+        			   "La prova dell'elemento " + i + " non è valida.");
+        }
+
+        assertTrue(this.tree.getMerkleProof(999).proveValidityOfData(999),
+        		   "La prova dell'ultimo elemento non è valida.");
+    }
+
+    @Test
+    void testMultiLeafProofs() {
+        int[] indices = {999, 3, 500, 3, 0, 998, 501};
+        MerkleProof[] proofs = this.tree.getMerkleProofs(indices);
+
+        assertEquals(indices.length, proofs.length,
+        		     "Il numero di prove non è corretto.");
+
+        for (int i = 0; i < indices.length; i++) {
+        	assertTrue(proofs[i].proveValidityOfData(indices[i]),
+        			   "La prova dell'elemento " + indices[i]
+        			   + " non è valida.");
+        }
+
+        assertSame(proofs[1], proofs[3],
+        		   "Le posizioni ripetute dovrebbero condividere la prova.");
+        assertFalse(proofs[0].proveValidityOfData(998),
+        		    "La prova non dovrebbe valere per un altro elemento.");
+        assertThrows(IndexOutOfBoundsException.class,
+        		     () -> this.tree.getMerkleProofs(0, 1000),
+        		     "Dovrebbe lanciare IndexOutOfBoundsException.");
+    }
+
+    @Test
+    void testBatchUpdate() {
+    	List<String> hashes = this.hashList.getAllHashes();
+    	Map<Integer, Integer> updates = new HashMap<Integer, Integer>();
+
+    	for (int i = 0; i < 1000; i += 7) {
+    		updates.put(i, -i - 1);
+    		hashes.set(i, HashUtil.dataToHash(-i - 1));
+    	}
+
+        String root = this.tree.setAllData(updates);
+
+        assertEquals(MerkleTree.fromHashes(hashes).getRoot().getHash(), root,
+        		     "La radice dopo l'aggiornamento non è corretta.");
+        assertEquals(root, this.tree.getRootHash(),
+        		     "La radice restituita non è quella dell'albero.");
+        assertEquals(1, this.tree.getVersion(),
+        		     "Il lotto dovrebbe produrre una sola versione.");
+        assertTrue(this.tree.validateData(-8),
+        		   "Il nuovo dato dovrebbe essere nell'albero.");
+        assertFalse(this.tree.validateData(7),
+        		    "Il dato sostituito non dovrebbe essere nell'albero.");
+        assertTrue(this.tree.getMerkleProof(7).proveValidityOfData(-8),
+        		   "La prova del dato aggiornato non è valida.");
+    }
+
+    @Test
+    void testSingleLeaf() {
+        ConcurrentMerkleTree<String> single =
+        		ConcurrentMerkleTree.fromHashes(List.of(
+        				HashUtil.dataToHash("Alice paga Bob")));
+
+        single.setData(0, "Bob paga Charlie");
+
+        assertEquals(HashUtil.dataToHash("Bob paga Charlie"),
+        		     single.getRootHash(),
+        		     "La radice dovrebbe essere l'unica foglia.");
+        assertTrue(single.getMerkleProof(0)
+        		         .proveValidityOfData("Bob paga Charlie"),
+        		   "La prova dell'unica foglia non è valida.");
+        assertTrue(single.getMerkleProofs(0, 0)[1]
+        		         .proveValidityOfData("Bob paga Charlie"),
+        		   "La prova dell'unica foglia non è valida.");
+    }
+
+    @Test
+    void testConcurrentReadsAndWrites() throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger failures = new AtomicInteger();
+        AtomicInteger proofs = new AtomicInteger();
+        List<Thread> readers = new ArrayList<Thread>();
+
+        for (int t = 0; t < 4; t++) {
+        	readers.add(new Thread(() -> {
+        		while (running.get()) {
+        			int index = ThreadLocalRandom.current().nextInt(1000);
+        			MerkleProof proof = this.tree.getMerkleProof(index);
+
+        			// Each leaf holds either its index or its opposite.
+        			if (!proof.proveValidityOfData(index)
+        				&& !proof.proveValidityOfData(-index - 1))
+        				failures.incrementAndGet();
+
+        			proofs.incrementAndGet();
+        		}
+        	}));
+        }
+
+        for (Thread reader : readers) reader.start();
+
+        Random random = new Random(5);
+
+        for (int batch = 0; batch < 300; batch++) {
+        	Map<Integer, Integer> updates = new HashMap<Integer, Integer>();
+
+        	for (int i = 0; i < 10; i++) {
+        		int index = random.nextInt(1000);
+        		updates.put(index, random.nextBoolean() ? index : -index - 1);
+        	}
+
+        	this.tree.setAllData(updates);
+        }
+
+        running.set(false);
+        for (Thread reader : readers) reader.join();
+
+        assertEquals(0, failures.get(),
+        		     "Ogni prova dovrebbe essere coerente con la sua radice.");
+        assertTrue(proofs.get() > 0, "I lettori dovrebbero aver prodotto "
+        		   + "delle prove.");
+        assertEquals(300, this.tree.getVersion(),
+        		     "La versione dovrebbe contare i lotti applicati.");
+        assertEquals(this.tree.toMerkleTree().getRoot().getHash(),
+        		     this.tree.getRootHash(),
+        		     "La radice finale non è coerente con le foglie.");
+    }
+
+    @Test
+    void testInvalidUpdates() {
+    	String root = this.tree.getRootHash();
+
+        assertThrows(IndexOutOfBoundsException.class,
+                     () -> this.tree.setData(1000, 1),
+                     "Dovrebbe lanciare IndexOutOfBoundsException.");
+        assertThrows(IllegalArgumentException.class,
+                     () -> this.tree.setLeafHashes(Map.of(0, "abc")),
+                     "Un hash non valido dovrebbe essere rifiutato.");
+        assertEquals(root, this.tree.getRootHash(),
+        		     "L'albero non dovrebbe essere cambiato.");
+        assertEquals(0, this.tree.getVersion(),
+        		     "La versione non dovrebbe essere cambiata.");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,212 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link ContentDefinedChunker} class. This class tests the
+ * sizes of the chunks and how they change when the data is edited.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testChunkSizes()}: Verifies that every chunk is within the
+ *     minimum and maximum sizes, except the last one, and that the chunks
+ *     cover the data.</li>
+ *
+ * <li>{@link #testAverageSize()}: Verifies that the average size of the
+ *     chunks of random data is close to the requested one.</li>
+ *
+ * <li>{@link #testInsertionChangesFewChunks()}: Inserts a byte near the start
+ *     of the data and verifies that only a few chunks change.</li>
+ *
+ * <li>{@link #testHashChunks()}: Verifies that the hashes of the chunks of a
+ *     stream are those of the chunks found by
+ *     {@link ContentDefinedChunker#nextChunkLength(byte[], int, int)}.</li>
+ *
+ * <li>{@link #testFromFile()}: Verifies the tree of a file built with the
+ *     chunker and that an edit in place changes only one leaf.</li>
+ *
+ * <li>{@link #testFindMissingLeafIndices()}: Inserts data in the middle of a
+ *     file and verifies that matching the leaves by hash finds only the
+ *     chunks around the insertion, although the following chunks moved.</li>
+ *
+ * <li>{@link #testInvalidSizes()}: Verifies that invalid sizes are
+ *     rejected.</li>
+ * </ul>
+ */
+class ContentDefinedChunkerTest {
+
+    private final ContentDefinedChunker chunker =
+    		new ContentDefinedChunker(256, 1024, 8192);
+
+    private byte[] randomData(int length) {
+    	byte[] data = new byte[length];
+    	new Random(7).nextBytes(data);
+    	return data;
+    }
+
+    @Test
+    void testChunkSizes() {
+        byte[] data = this.randomData(200000);
+        int offset = 0;
+
+        while (offset < data.length) {
+        	int length = this.chunker.nextChunkLength(data, offset,
+        			                                  data.length - offset);
+
+        	assertTrue(length <= 8192,
+        			   "Un blocco supera la dimensione massima.");
+        	assertTrue(length >= 256 || offset + length == data.length,
+        			   "Un blocco è più piccolo della dimensione minima.");
+
+        	offset += length;
+        }
+
+        assertEquals(data.length, offset,
+        		     "I blocchi dovrebbero coprire tutti i dati.");
+    }
+
+    @Test
+    void testAverageSize() throws IOException {
+        List<String> hashes = this.chunker.hashChunks(
+        		new ByteArrayInputStream(this.randomData(1 << 20)));
+        double average = (double) (1 << 20) / hashes.size();
+
+        assertTrue(average > 512 && average < 2048,
+        		   "La dimensione media dei blocchi dovrebbe essere vicina "
+        		   + "a 1024, invece è " + average + ".");
+    }
+
+    @Test
+    void testInsertionChangesFewChunks() throws IOException {
+        byte[] data = this.randomData(200000);
+        byte[] edited = new byte[data.length + 1];
+        System.arraycopy(data, 0, edited, 0, 100);
+        edited[100] = 42;
+        System.arraycopy(data, 100, edited, 101, data.length - 100);
+
+        List<String> original =
+        		this.chunker.hashChunks(new ByteArrayInputStream(data));
+        Set<String> changed = new HashSet<String>(
+        		this.chunker.hashChunks(new ByteArrayInputStream(edited)));
+        changed.removeAll(original);
+
+        assertTrue(original.size() > 100,
+        		   "I dati dovrebbero essere divisi in molti blocchi.");
+        assertTrue(changed.size() <= 2,
+        		   "L'inserimento dovrebbe cambiare solo i blocchi vicini, "
+        		   + "invece ne ha cambiati " + changed.size() + ".");
+    }
+
+    @Test
+    void testHashChunks() throws IOException {
+        byte[] data = this.randomData(50000);
+        List<String> hashes =
+        		this.chunker.hashChunks(new ByteArrayInputStream(data));
+        int offset = 0;
+
+        for (String hash : hashes) {
+        	int length = this.chunker.nextChunkLength(data, offset,
+        			                                  data.length - offset);
+
+        	assertEquals(HashUtil.computeMD5(Arrays.copyOfRange(
+        			         data, offset, offset + length)), hash,
+        			     "L'hash del blocco non è corretto.");
+        	offset += length;
+        }
+
+        assertEquals(data.length, offset,
+        		     "I blocchi dovrebbero coprire tutti i dati.");
+        assertEquals(List.of(HashUtil.computeMD5(new byte[0])),
+        		     this.chunker.hashChunks(new ByteArrayInputStream(
+        		    		                 new byte[0])),
+        		     "Dati vuoti dovrebbero avere un solo blocco vuoto.");
+    }
+
+    @Test
+    void testFromFile() throws IOException {
+        byte[] data = this.randomData(100000);
+        Path file = Files.createTempFile("merkle", ".bin");
+
+        try {
+        	Files.write(file, data);
+        	MerkleTree<byte[]> tree = MerkleTree.fromFile(file, this.chunker);
+
+        	assertEquals(MerkleTree.fromHashes(this.chunker.hashChunks(file))
+        			               .getRoot().getHash(),
+        			     tree.getRoot().getHash(),
+        			     "La radice del file non è corretta.");
+
+        	data[50000]++;
+        	Files.write(file, data);
+        	MerkleTree<byte[]> edited = MerkleTree.fromFile(file, this.chunker);
+
+        	assertTrue(edited.findInvalidDataIndices(tree).size() <= 2,
+        			   "Una modifica dovrebbe cambiare solo le foglie "
+        			   + "vicine.");
+        } finally {
+        	Files.delete(file);
+        }
+    }
+
+    @Test
+    void testFindMissingLeafIndices() throws IOException {
+        byte[] data = this.randomData(200000);
+        byte[] edited = new byte[data.length + 1000];
+        System.arraycopy(data, 0, edited, 0, 100000);
+        byte[] inserted = new byte[1000];
+        new Random(11).nextBytes(inserted);
+        System.arraycopy(inserted, 0, edited, 100000, inserted.length);
+        System.arraycopy(data, 100000, edited, 101000, data.length - 100000);
+
+        List<String> originalHashes =
+        		this.chunker.hashChunks(new ByteArrayInputStream(data));
+        List<String> editedHashes =
+        		this.chunker.hashChunks(new ByteArrayInputStream(edited));
+        MerkleTree<byte[]> original = MerkleTree.fromHashes(originalHashes);
+        MerkleTree<byte[]> tree = MerkleTree.fromHashes(editedHashes);
+
+        Set<Integer> missing = tree.findMissingLeafIndices(original);
+
+        assertTrue(missing.size() <= 3,
+        		   "L'inserimento dovrebbe cambiare solo i blocchi vicini, "
+        		   + "invece ne ha cambiati " + missing.size() + ".");
+        assertFalse(missing.isEmpty(),
+        		    "I blocchi inseriti dovrebbero mancare all'altro albero.");
+
+        for (int i = 0; i < editedHashes.size(); i++) {
+        	assertEquals(!originalHashes.contains(editedHashes.get(i)),
+        			     missing.contains(i),
+        			     "La foglia " + i + " non è classificata "
+        			     + "correttamente.");
+        }
+
+        assertTrue(original.findMissingLeafIndices(original).isEmpty(),
+        		   "Un albero non dovrebbe mancare di nessuna foglia.");
+        assertThrows(IllegalArgumentException.class,
+                     () -> tree.findMissingLeafIndices(null),
+                     "Dovrebbe lanciare IllegalArgumentException.");
+    }
+
+    @Test
+    void testInvalidSizes() {
+        assertThrows(IllegalArgumentException.class,
+                     () -> new ContentDefinedChunker(0, 1024, 8192),
+                     "Una dimensione minima nulla dovrebbe essere rifiutata.");
+        assertThrows(IllegalArgumentException.class,
+                     () -> new ContentDefinedChunker(2048, 1024, 8192),
+                     "Le dimensioni dovrebbero essere crescenti.");
+        assertThrows(IllegalArgumentException.class,
+                     () -> new ContentDefinedChunker(256, 1024, 512),
+                     "Le dimensioni dovrebbero essere crescenti.");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,230 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link EpochCommitScheduler} class. This class tests how
+ * updates are grouped in epochs and how their commits are published.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testEpochBySize()}: Submits as many updates as the size of an
+ *     epoch and verifies that they are committed together.</li>
+ *
+ * <li>{@link #testEpochByTime()}: Verifies that a single update is committed
+ *     when the epoch expires.</li>
+ *
+ * <li>{@link #testSameLeafInEpoch()}: Updates a leaf twice in the same epoch
+ *     and verifies that the last update wins.</li>
+ *
+ * <li>{@link #testCommitsWithConcurrentWriter()}: Commits epochs while
+ *     another thread updates the tree, and verifies that every commit pairs
+ *     its root with the version of the same batch.</li>
+ *
+ * <li>{@link #testCloseCommitsPending()}: Verifies that closing the scheduler
+ *     commits the buffered updates and rejects new ones.</li>
+ *
+ * <li>{@link #testCloseWhenInterrupted()}: Closes the scheduler from an
+ *     interrupted thread and verifies that the interrupt status is kept and
+ *     the buffered updates are still committed.</li>
+ *
+ * <li>{@link #testInvalidUpdates()}: Verifies that invalid updates are
+ *     rejected when they are submitted.</li>
+ * </ul>
+ */
+class EpochCommitSchedulerTest {
+
+    private HashLinkedList<Integer> hashList;
+
+    private ConcurrentMerkleTree<Integer> tree;
+
+    @BeforeEach
+    void setUp() {
+    	this.hashList = new HashLinkedList<Integer>();
+    	for (int i = 0; i < 500; i++) this.hashList.addAtTail(i);
+
+    	this.tree = new ConcurrentMerkleTree<Integer>(this.hashList);
+    }
+
+    @Test
+    void testEpochBySize() throws Exception {
+    	List<String> hashes = this.hashList.getAllHashes();
+    	List<CompletableFuture<EpochCommitScheduler.Commit>> futures =
+    			new ArrayList<CompletableFuture<EpochCommitScheduler.Commit>>();
+
+        try (EpochCommitScheduler<Integer> scheduler =
+        		new EpochCommitScheduler<Integer>(this.tree, 60000, 100)) {
+        	for (int i = 0; i < 100; i++) {
+        		futures.add(scheduler.submit(i * 5, -i - 1));
+        		hashes.set(i * 5, HashUtil.dataToHash(-i - 1));
+        	}
+
+        	EpochCommitScheduler.Commit commit =
+        			futures.get(0).get(5, TimeUnit.SECONDS);
+
+        	for (CompletableFuture<EpochCommitScheduler.Commit> future
+        		 : futures)
+        		assertSame(commit, future.get(5, TimeUnit.SECONDS),
+        				   "Gli aggiornamenti dovrebbero essere nella stessa "
+        				   + "epoca.");
+
+        	assertEquals(100, commit.getUpdates(),
+        			     "L'epoca dovrebbe contenere 100 aggiornamenti.");
+        	assertEquals(1, commit.getVersion(),
+        			     "L'epoca dovrebbe produrre una sola versione.");
+        	assertEquals(MerkleTree.fromHashes(hashes).getRoot().getHash(),
+        			     commit.getRootHash(),
+        			     "La radice dell'epoca non è corretta.");
+        	assertSame(commit, scheduler.getLastCommit(),
+        			   "L'ultima epoca pubblicata non è corretta.");
+        }
+    }
+
+    @Test
+    void testEpochByTime() throws Exception {
+        try (EpochCommitScheduler<Integer> scheduler =
+        		new EpochCommitScheduler<Integer>(this.tree, 20, 1000)) {
+        	EpochCommitScheduler.Commit commit =
+        			scheduler.submit(42, -42).get(5, TimeUnit.SECONDS);
+
+        	assertEquals(1, commit.getUpdates(),
+        			     "L'epoca dovrebbe contenere un aggiornamento.");
+        	assertTrue(this.tree.getMerkleProof(42).proveValidityOfData(-42),
+        			   "La radice dovrebbe contenere l'aggiornamento.");
+        }
+    }
+
+    @Test
+    void testSameLeafInEpoch() throws Exception {
+        try (EpochCommitScheduler<Integer> scheduler =
+        		new EpochCommitScheduler<Integer>(this.tree, 60000, 2)) {
+        	CompletableFuture<EpochCommitScheduler.Commit> first =
+        			scheduler.submit(7, 1000);
+        	CompletableFuture<EpochCommitScheduler.Commit> second =
+        			scheduler.submit(7, 2000);
+        	CompletableFuture<EpochCommitScheduler.Commit> third =
+        			scheduler.submit(8, 3000);
+
+        	assertSame(first.get(5, TimeUnit.SECONDS),
+        			   third.get(5, TimeUnit.SECONDS),
+        			   "Gli aggiornamenti dovrebbero essere nella stessa "
+        			   + "epoca.");
+        	assertSame(first.get(), second.get(),
+        			   "Gli aggiornamenti dovrebbero essere nella stessa "
+        			   + "epoca.");
+        	assertEquals(2, first.get().getUpdates(),
+        			     "L'epoca dovrebbe aggiornare due foglie.");
+        	assertTrue(this.tree.validateData(2000),
+        			   "L'ultimo aggiornamento dovrebbe prevalere.");
+        	assertFalse(this.tree.validateData(1000),
+        			    "Il primo aggiornamento dovrebbe essere sostituito.");
+        }
+    }
+
+    @Test
+    void testCommitsWithConcurrentWriter() throws Exception {
+    	Map<Long, Object[]> batches = new TreeMap<Long, Object[]>();
+    	AtomicBoolean stop = new AtomicBoolean();
+    	List<Object[]> writerBatches = new ArrayList<Object[]>();
+
+    	Thread writer = new Thread(() -> {
+    		for (int i = 0; !stop.get(); i++) {
+    			String hash = HashUtil.dataToHash(-i);
+    			ConcurrentMerkleTree.VersionedRoot root =
+    					this.tree.updateLeafHashes(Map.of(i % 500, hash));
+    			writerBatches.add(new Object[] {root.getVersion(), i % 500,
+    					                        hash, root.getRootHash()});
+    		}
+    	});
+
+    	try (EpochCommitScheduler<Integer> scheduler =
+    			new EpochCommitScheduler<Integer>(this.tree, 60000, 1)) {
+    		writer.start();
+
+    		for (int i = 0; i < 300; i++) {
+    			String hash = HashUtil.dataToHash(i + 1000);
+    			EpochCommitScheduler.Commit commit =
+    					scheduler.submitHash(i, hash).get(10, TimeUnit.SECONDS);
+    			batches.put(commit.getVersion(), new Object[] {
+    					    commit.getVersion(), i, hash,
+    					    commit.getRootHash()});
+    		}
+    	} finally {
+    		stop.set(true);
+    		writer.join();
+    	}
+
+    	for (Object[] batch : writerBatches) batches.put((Long) batch[0], batch);
+
+    	ConcurrentMerkleTree<Integer> replay =
+    			new ConcurrentMerkleTree<Integer>(this.hashList);
+    	long version = 0;
+
+    	for (Object[] batch : batches.values()) {
+    		assertEquals(++version, (long) (Long) batch[0],
+    				     "Ogni versione dovrebbe appartenere a un solo "
+    				     + "gruppo.");
+    		assertEquals(batch[3], replay.setLeafHashes(
+    				Map.of((Integer) batch[1], (String) batch[2])),
+    				     "La radice della versione " + version
+    				     + " non è corretta.");
+    	}
+    }
+
+    @Test
+    void testCloseCommitsPending() throws Exception {
+    	EpochCommitScheduler<Integer> scheduler =
+    			new EpochCommitScheduler<Integer>(this.tree, 60000, 1000);
+    	CompletableFuture<EpochCommitScheduler.Commit> future =
+    			scheduler.submit(3, -3);
+
+    	scheduler.close();
+
+        assertTrue(future.isDone(),
+        		   "La chiusura dovrebbe confermare gli aggiornamenti.");
+        assertEquals(this.tree.getRootHash(), future.get().getRootHash(),
+        		     "La radice confermata non è quella dell'albero.");
+        assertThrows(IllegalStateException.class,
+                     () -> scheduler.submit(4, -4),
+                     "Non dovrebbe essere possibile aggiornare dopo la "
+                     + "chiusura.");
+    }
+
+    @Test
+    void testCloseWhenInterrupted() throws Exception {
+    	EpochCommitScheduler<Integer> scheduler =
+    			new EpochCommitScheduler<Integer>(this.tree, 60000, 1000);
+    	CompletableFuture<EpochCommitScheduler.Commit> future =
+    			scheduler.submit(3, -3);
+
+    	Thread.currentThread().interrupt();
+    	scheduler.close();
+
+        assertTrue(Thread.interrupted(),
+        		   "Lo stato di interruzione dovrebbe essere mantenuto.");
+        assertEquals(1, future.get(10, TimeUnit.SECONDS).getUpdates(),
+        		     "Gli aggiornamenti dovrebbero essere confermati.");
+    }
+
+    @Test
+    void testInvalidUpdates() throws Exception {
+        try (EpochCommitScheduler<Integer> scheduler =
+        		new EpochCommitScheduler<Integer>(this.tree, 60000, 10)) {
+        	assertThrows(IndexOutOfBoundsException.class,
+        			     () -> scheduler.submit(500, 1),
+        			     "Dovrebbe lanciare IndexOutOfBoundsException.");
+        	assertThrows(IllegalArgumentException.class,
+        			     () -> scheduler.submitHash(0, "abc"),
+        			     "Un hash non valido dovrebbe essere rifiutato.");
+        }
+    }
+}
\ No newline at end of file
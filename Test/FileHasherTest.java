@@ -0,0 +1,209 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link FileHasher} class. This class tests the trees
+ * built over the content of files and directories.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testHashChunks()}: Verifies that the hashes of the chunks of a
+ *     file are the MD5 hashes of their bytes, the last chunk being
+ *     shorter.</li>
+ *
+ * <li>{@link #testFromFile()}: Verifies that the tree of a file built by
+ *     {@link MerkleTree#fromFile(Path, int)} has the chunks as leaves.</li>
+ *
+ * <li>{@link #testEmptyFile()}: Verifies that an empty file has a single empty
+ *     chunk.</li>
+ *
+ * <li>{@link #testDirectory()}: Verifies the roots of the files of a directory
+ *     and the root of the directory, and that they change when a file is
+ *     modified or renamed.</li>
+ *
+ * <li>{@link #testBoundedChunksInFlight()}: Verifies that no more than the
+ *     given number of chunks is hashed at the same time.</li>
+ *
+ * <li>{@link #testMissingFile()}: Verifies that a missing file is reported
+ *     with an {@code IOException}.</li>
+ * </ul>
+ */
+class FileHasherTest {
+
+    private Path directory;
+
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() throws IOException {
+    	this.directory = Files.createTempDirectory("merkle-files");
+    	this.content = new byte[10000];
+    	new Random(42).nextBytes(this.content);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+    	try (Stream<Path> paths = Files.walk(this.directory)) {
+    		for (Path path : paths.sorted(Comparator.reverseOrder())
+    				              .collect(Collectors.toList()))
+    			Files.delete(path);
+    	}
+    }
+
+    private List<String> expectedChunks(byte[] bytes, int chunkSize) {
+    	List<String> hashes = new ArrayList<String>();
+
+    	for (int i = 0; i < bytes.length; i += chunkSize) {
+    		hashes.add(HashUtil.computeMD5(Arrays.copyOfRange(
+    				   bytes, i, Math.min(bytes.length, i + chunkSize))));
+    	}
+
+    	return hashes;
+    }
+
+    @Test
+    void testHashChunks() throws IOException {
+        Path file = Files.write(this.directory.resolve("dati.bin"),
+        		                this.content);
+
+        List<String> hashes = new FileHasher(1024).hashChunks(file);
+
+        assertEquals(10, hashes.size(),
+        		     "Il file dovrebbe essere diviso in 10 blocchi.");
+        assertEquals(this.expectedChunks(this.content, 1024), hashes,
+        		     "Gli hash dei blocchi non sono corretti.");
+    }
+
+    @Test
+    void testFromFile() throws IOException {
+        Path file = Files.write(this.directory.resolve("dati.bin"),
+        		                this.content);
+
+        MerkleTree<byte[]> tree = MerkleTree.fromFile(file, 700);
+
+        assertEquals(15, tree.getWidth(),
+        		     "L'albero dovrebbe avere 15 foglie.");
+        assertEquals(MerkleTree.fromHashes(this.expectedChunks(this.content,
+        		                                               700))
+        		               .getRoot().getHash(),
+        		     tree.getRoot().getHash(),
+        		     "La radice del file non è corretta.");
+        assertEquals(tree.getRoot().getHash(),
+        		     new FileHasher(700).hashFile(file),
+        		     "La radice calcolata senza albero non è corretta.");
+    }
+
+    @Test
+    void testEmptyFile() throws IOException {
+        Path file = Files.write(this.directory.resolve("vuoto.bin"),
+        		                new byte[0]);
+
+        assertEquals(List.of(HashUtil.computeMD5(new byte[0])),
+        		     new FileHasher(1024).hashChunks(file),
+        		     "Un file vuoto dovrebbe avere un solo blocco vuoto.");
+    }
+
+    @Test
+    void testDirectory() throws IOException {
+    	FileHasher hasher = new FileHasher(512);
+    	Files.createDirectory(this.directory.resolve("sub"));
+    	Path first = Files.write(this.directory.resolve("a.bin"),
+    			                 this.content);
+    	Path second = Files.write(this.directory.resolve("sub/b.bin"),
+    			                  Arrays.copyOf(this.content, 3000));
+
+    	SortedMap<String, String> roots = hasher.hashFiles(this.directory);
+
+    	assertEquals(List.of("a.bin", "sub/b.bin"),
+    			     new ArrayList<String>(roots.keySet()),
+    			     "I percorsi relativi dei file non sono corretti.");
+    	assertEquals(hasher.hashFile(second), roots.get("sub/b.bin"),
+    			     "La radice del secondo file non è corretta.");
+
+    	String root = hasher.hashDirectory(this.directory);
+
+    	assertEquals(MerkleTree.fromHashes(List.of(
+    			         FileHasher.fileLeafHash("a.bin", hasher.hashFile(first)),
+    			         FileHasher.fileLeafHash("sub/b.bin",
+    			        		                 roots.get("sub/b.bin"))))
+    			               .getRoot().getHash(),
+    			     root, "La radice della cartella non è corretta.");
+
+    	this.content[9999]++;
+    	Files.write(first, this.content);
+    	SortedMap<String, String> changed = hasher.hashFiles(this.directory);
+
+    	assertNotEquals(roots.get("a.bin"), changed.get("a.bin"),
+    			        "La radice del file modificato dovrebbe cambiare.");
+    	assertEquals(roots.get("sub/b.bin"), changed.get("sub/b.bin"),
+    			     "La radice del file non modificato non dovrebbe "
+    			     + "cambiare.");
+
+    	root = hasher.hashDirectory(this.directory);
+    	Files.move(first, this.directory.resolve("c.bin"));
+
+    	assertNotEquals(root, hasher.hashDirectory(this.directory),
+    			        "Rinominare un file dovrebbe cambiare la radice.");
+    }
+
+    @Test
+    void testBoundedChunksInFlight() throws IOException {
+        Path file = Files.write(this.directory.resolve("dati.bin"),
+        		                this.content);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        try {
+        	FileHasher hasher = new FileHasher(100, 2, task -> pool.execute(
+        			() -> {
+        		maxRunning.accumulateAndGet(running.incrementAndGet(),
+        				                    Math::max);
+        		// The task holds its permit until it runs.
+        		try {
+        			Thread.sleep(1);
+        		} catch (InterruptedException e) {
+        			Thread.currentThread().interrupt();
+        		} finally {
+        			running.decrementAndGet();
+        		}
+
+        		task.run();
+        	}));
+
+        	assertEquals(this.expectedChunks(this.content, 100),
+        			     hasher.hashChunks(file),
+        			     "Gli hash dei blocchi non sono corretti.");
+        	assertTrue(maxRunning.get() <= 2,
+        			   "I blocchi in elaborazione superano il limite.");
+        } finally {
+        	pool.shutdown();
+        }
+    }
+
+    @Test
+    void testMissingFile() {
+        assertThrows(IOException.class,
+                     () -> new FileHasher(1024).hashChunks(
+                    		 this.directory.resolve("mancante.bin")),
+                     "Un file inesistente dovrebbe lanciare IOException.");
+    }
+}
\ No newline at end of file
@@ -3,6 +3,10 @@ package it.unicam.cs.asdl2425.mp1;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -31,6 +35,31 @@ import static org.junit.jupiter.api.Assertions.*;
  * <li>{@link #testGetAllHashes()}: Verify that the {@code getAllHashes} method
  *     returns the correct hashes of the list elements.</li>
  * 
+ * <li>{@link #testGetAllHashesWithDuplicates()}: Verify that
+ *     {@code getAllHashes} returns one hash per node, in order, even when the
+ *     list contains duplicate elements.</li>
+ * 
+ * <li>{@link #testBuildNodesStringWithDuplicates()}: Verify that the text
+ *     representation contains one line per node when the list contains
+ *     duplicate elements.</li>
+ * 
+ * <li>{@link #testGetAllDigests()}: Verify that {@code getAllDigests} packs
+ *     the raw digests of the elements, in order, into a contiguous array.</li>
+ * 
+ * <li>{@link #testDeferredHashing()}: Verify that a list in deferred hashing
+ *     mode returns the same hashes as a list that hashes on insertion.</li>
+ * 
+ * <li>{@link #testDeferredHashingLargeBatch()}: Verify that a batch of pending
+ *     nodes large enough to be hashed in parallel gets the correct hashes, in
+ *     order.</li>
+ * 
+ * <li>{@link #testHashPendingAsync()}: Verify that the pending hashes handed
+ *     to an executor are computed in the background and read correctly.</li>
+ * 
+ * <li>{@link #testHashPendingAsyncFailure()}: Verify that a failed background
+ *     batch is reported once and that the list can be read again after the
+ *     element that caused the failure is removed.</li>
+ * 
  * <li>{@link #testRemoveHeadElement()}: Removes the leading element and
  *     verifies that the list is updated correctly.</li>
  * 
@@ -49,6 +78,18 @@ import static org.junit.jupiter.api.Assertions.*;
  * <li>{@link #testRemoveNonExistentElement()}: Attempts to remove a non-
  *     existent element and verifies that the method returns {@code false}.</li>
  * 
+ * <li>{@link #testRemoveDuplicateElements()}: Removes duplicate elements and
+ *     verifies that the first occurrence in the list is removed each time.</li>
+ * 
+ * <li>{@link #testGet()}: Verify that {@code get} returns the elements by
+ *     position, in both directions, and rejects invalid positions.</li>
+ * 
+ * <li>{@link #testRemoveAt()}: Removes elements by position and verifies the
+ *     returned elements and the remaining list.</li>
+ * 
+ * <li>{@link #testRandomOperations()}: Applies a random sequence of insertions
+ *     and removals and compares the list with a {@code LinkedList}.</li>
+ * 
  * <li>{@link #testIteratorHasNext1()}: Checks that the iterator has a next
  *     element when the list contains multiple elements.</li>
  * 
@@ -58,6 +99,18 @@ import static org.junit.jupiter.api.Assertions.*;
  * <li>{@link #testIterator()}: Verify that the iterator correctly traverses all
  *     elements of the list.</li>
  * 
+ * <li>{@link #testStream()}: Verify that the sequential stream returns the
+ *     elements of the list in order.</li>
+ * 
+ * <li>{@link #testParallelStream()}: Verify that a parallel stream over a
+ *     large list computes the hashes of all the elements, in order.</li>
+ * 
+ * <li>{@link #testSpliteratorSplit()}: Verify that the spliterator is sized
+ *     and that its parts cover all the elements exactly once.</li>
+ * 
+ * <li>{@link #testChangeListener()}: Verify that a registered listener is
+ *     notified of insertions and removals with the right positions.</li>
+ * 
  * <li>{@link #testFailFastIterator1()}: Check that the iterator is
  *     {@code fail-fast} by adding an element during iteration.</li>
  * 
@@ -157,6 +210,143 @@ class HashLinkedListTest {
                      "Gli hash della lista non corrispondono all'atteso.");
     }
 
+    @Test
+    void testGetAllHashesWithDuplicates() {
+    	this.list.addAtTail("Alice paga Bob");
+    	this.list.addAtTail("Bob paga Charlie");
+    	this.list.addAtTail("Alice paga Bob");
+
+        ArrayList<String> expectedHashes = new ArrayList<String>();
+        expectedHashes.add(HashUtil.dataToHash("Alice paga Bob"));
+        expectedHashes.add(HashUtil.dataToHash("Bob paga Charlie"));
+        expectedHashes.add(HashUtil.dataToHash("Alice paga Bob"));
+
+        assertEquals(expectedHashes, this.list.getAllHashes(),
+                     "Gli hash della lista non corrispondono all'atteso.");
+    }
+
+    @Test
+    void testBuildNodesStringWithDuplicates() {
+    	this.list.addAtTail("Alice paga Bob");
+    	this.list.addAtTail("Alice paga Bob");
+
+        String expected = "Dato: Alice paga Bob, Hash: "
+                          + HashUtil.dataToHash("Alice paga Bob") + "\n"
+                          + "Dato: Alice paga Bob, Hash: "
+                          + HashUtil.dataToHash("Alice paga Bob") + "\n";
+
+        assertEquals(expected, this.list.buildNodesString(),
+                     "La rappresentazione della lista non è corretta.");
+    }
+
+    @Test
+    void testGetAllDigests() {
+    	this.list.addAtTail("Alice paga Bob");
+    	this.list.addAtTail("Bob paga Charlie");
+
+        byte[] digests = this.list.getAllDigests();
+
+        assertEquals(2 * HashUtil.MD5_LENGTH, digests.length,
+                     "L'array dei digest non ha la lunghezza attesa.");
+        assertEquals(HashUtil.dataToHash("Alice paga Bob"),
+                     HashUtil.digestToHex(digests, 0),
+                     "Il primo digest non corrisponde all'atteso.");
+        assertEquals(HashUtil.dataToHash("Bob paga Charlie"),
+                     HashUtil.digestToHex(digests, HashUtil.MD5_LENGTH),
+                     "Il secondo digest non corrisponde all'atteso.");
+    }
+
+    @Test
+    void testDeferredHashing() {
+        HashLinkedList<String> deferred = new HashLinkedList<String>(true);
+        deferred.addAtTail("Bob paga Charlie");
+        deferred.addAtHead("Alice paga Bob");
+        this.list.addAtTail("Alice paga Bob");
+        this.list.addAtTail("Bob paga Charlie");
+
+        assertTrue(deferred.isHashingDeferred(),
+                   "La lista dovrebbe rimandare il calcolo degli hash.");
+        assertEquals(this.list.getAllHashes(), deferred.getAllHashes(),
+                     "Gli hash della lista non corrispondono all'atteso.");
+        assertEquals(this.list.buildNodesString(), deferred.buildNodesString(),
+                     "La rappresentazione della lista non è corretta.");
+    }
+
+    @Test
+    void testDeferredHashingLargeBatch() {
+        HashLinkedList<Integer> deferred = new HashLinkedList<Integer>(true);
+        ArrayList<String> expectedHashes = new ArrayList<String>();
+
+        for (int i = 0; i < 5000; i++) {
+        	deferred.addAtTail(i);
+        	expectedHashes.add(HashUtil.dataToHash(i));
+        }
+
+        assertEquals(expectedHashes, deferred.getAllHashes(),
+                     "Gli hash della lista non corrispondono all'atteso.");
+    }
+
+    @Test
+    void testHashPendingAsync() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        
+        try {
+        	HashLinkedList<String> deferred = new HashLinkedList<String>(true);
+        	deferred.addAtTail("Alice paga Bob");
+        	deferred.hashPendingAsync(executor);
+        	deferred.addAtTail("Bob paga Charlie");
+        	deferred.hashPendingAsync(executor).join();
+
+            ArrayList<String> expectedHashes = new ArrayList<String>();
+            expectedHashes.add(HashUtil.dataToHash("Alice paga Bob"));
+            expectedHashes.add(HashUtil.dataToHash("Bob paga Charlie"));
+
+            assertEquals(expectedHashes, deferred.getAllHashes(),
+                         "Gli hash della lista non corrispondono all'atteso.");
+        } finally {
+        	executor.shutdown();
+        }
+    }
+
+    @Test
+    void testHashPendingAsyncFailure() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        
+        try {
+        	HashLinkedList<Object> deferred = new HashLinkedList<Object>(true);
+        	Object faulty = new Object() {
+        		@Override
+        		public int hashCode() {
+        			throw new IllegalStateException();
+        		}
+        	};
+
+        	deferred.addAtTail("Alice paga Bob");
+        	deferred.addAtTail(faulty);
+        	deferred.addAtTail("Bob paga Charlie");
+        	deferred.hashPendingAsync(executor);
+
+        	assertThrows(CompletionException.class,
+        			     () -> deferred.getAllHashes(),
+        			     "Dovrebbe lanciare CompletionException.");
+        	assertThrows(IllegalStateException.class,
+        			     () -> deferred.getAllHashes(),
+        			     "L'elemento non valido dovrebbe essere ancora in "
+        			     + "attesa.");
+        	assertTrue(deferred.remove(faulty),
+        			   "L'elemento non valido doveva essere rimosso.");
+
+            ArrayList<String> expectedHashes = new ArrayList<String>();
+            expectedHashes.add(HashUtil.dataToHash("Alice paga Bob"));
+            expectedHashes.add(HashUtil.dataToHash("Bob paga Charlie"));
+
+            assertEquals(expectedHashes, deferred.getAllHashes(),
+                         "Gli hash della lista non corrispondono all'atteso.");
+        } finally {
+        	executor.shutdown();
+        }
+    }
+
     @Test
     void testRemoveHeadElement() {
     	this.list.addAtTail("Alice paga Bob");
@@ -250,6 +440,102 @@ class HashLinkedListTest {
                     + "inesistente.");
     }
 
+    @Test
+    void testRemoveDuplicateElements() {
+    	this.list.addAtTail("Alice paga Bob");
+    	this.list.addAtTail("Bob paga Charlie");
+    	this.list.addAtTail("Alice paga Bob");
+    	this.list.addAtHead("Bob paga Charlie");
+
+        assertTrue(this.list.remove("Bob paga Charlie"),
+                   "L'elemento 'Bob paga Charlie' doveva essere rimosso.");
+        assertTrue(this.list.remove("Alice paga Bob"),
+                   "L'elemento 'Alice paga Bob' doveva essere rimosso.");
+
+        assertEquals(Arrays.asList("Bob paga Charlie", "Alice paga Bob"),
+                     Arrays.asList(this.list.get(0), this.list.get(1)),
+                     "Dovrebbe essere rimossa la prima occorrenza.");
+    }
+
+    @Test
+    void testGet() {
+    	this.list.addAtTail("Bob paga Charlie");
+    	this.list.addAtTail("Charlie paga Diana");
+    	this.list.addAtHead("Alice paga Bob");
+
+        assertEquals("Charlie paga Diana", this.list.get(2),
+                     "L'elemento in posizione 2 non è corretto.");
+        assertEquals("Alice paga Bob", this.list.get(0),
+                     "L'elemento in posizione 0 non è corretto.");
+        assertEquals("Bob paga Charlie", this.list.get(1),
+                     "L'elemento in posizione 1 non è corretto.");
+        assertThrows(IndexOutOfBoundsException.class,
+                     () -> this.list.get(3),
+                     "Dovrebbe lanciare IndexOutOfBoundsException.");
+        assertThrows(IndexOutOfBoundsException.class,
+                     () -> this.list.get(-1),
+                     "Dovrebbe lanciare IndexOutOfBoundsException.");
+    }
+
+    @Test
+    void testRemoveAt() {
+    	this.list.addAtTail("Alice paga Bob");
+    	this.list.addAtTail("Bob paga Charlie");
+    	this.list.addAtTail("Charlie paga Diana");
+
+        assertEquals("Bob paga Charlie", this.list.removeAt(1),
+                     "L'elemento rimosso non è corretto.");
+        assertEquals("Charlie paga Diana", this.list.removeAt(1),
+                     "L'elemento rimosso non è corretto.");
+        assertEquals(1, this.list.getSize(),
+                     "La lista dovrebbe contenere un solo elemento.");
+        assertFalse(this.list.remove("Bob paga Charlie"),
+                    "L'elemento 'Bob paga Charlie' non doveva più esistere.");
+        assertEquals("Alice paga Bob", this.list.get(0),
+                     "L'elemento rimasto non è corretto.");
+    }
+
+    @Test
+    void testRandomOperations() {
+        HashLinkedList<Integer> integers = new HashLinkedList<Integer>();
+        LinkedList<Integer> expected = new LinkedList<Integer>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 2000; i++) {
+        	int value = random.nextInt(50);
+        	int operation = random.nextInt(4);
+
+        	if (operation == 0) {
+        		integers.addAtHead(value);
+        		expected.addFirst(value);
+        	}
+        	else if (operation == 1) {
+        		integers.addAtTail(value);
+        		expected.addLast(value);
+        	}
+        	else if (operation == 2) {
+        		assertEquals(expected.remove(Integer.valueOf(value)),
+        				     integers.remove(value),
+        				     "L'esito della rimozione non è corretto.");
+        	}
+        	else if (!expected.isEmpty()) {
+        		int index = random.nextInt(expected.size());
+        		assertEquals(expected.remove(index), integers.removeAt(index),
+        				     "L'elemento rimosso non è corretto.");
+        	}
+        }
+
+        List<Integer> iteratorList = new ArrayList<Integer>();
+        for (Integer value : integers) {
+        	iteratorList.add(value);
+        }
+
+        assertEquals(expected, iteratorList,
+                     "La lista non è corretta dopo le operazioni.");
+        assertEquals(expected.size(), integers.getSize(),
+                     "La dimensione della lista non è corretta.");
+    }
+
     @Test
     void testIteratorHasNext1() {
     	this.list.addAtTail("Alice paga Bob");
@@ -293,6 +579,75 @@ class HashLinkedListTest {
         		     "La lista generata dall'iteratore non è corretta.");
     }
 
+    @Test
+    void testStream() {
+    	this.list.addAtTail("Alice paga Bob");
+    	this.list.addAtTail("Bob paga Charlie");
+
+        assertEquals(Arrays.asList("Alice paga Bob", "Bob paga Charlie"),
+                     this.list.stream().collect(Collectors.toList()),
+                     "Lo stream della lista non è corretto.");
+    }
+
+    @Test
+    void testParallelStream() {
+        HashLinkedList<Integer> integers = new HashLinkedList<Integer>();
+        for (int i = 0; i < 10000; i++) integers.addAtTail(i);
+
+        List<String> hashes = integers.parallelStream()
+        		                      .map(HashUtil::dataToHash)
+        		                      .collect(Collectors.toList());
+
+        assertEquals(integers.getAllHashes(), hashes,
+                     "Gli hash calcolati in parallelo non sono corretti.");
+    }
+
+    @Test
+    void testSpliteratorSplit() {
+        HashLinkedList<Integer> integers = new HashLinkedList<Integer>();
+        for (int i = 0; i < 3000; i++) integers.addAtTail(i);
+
+        Spliterator<Integer> suffix = integers.spliterator();
+        assertEquals(3000, suffix.getExactSizeIfKnown(),
+                     "La dimensione dello spliterator non è corretta.");
+
+        Spliterator<Integer> prefix = suffix.trySplit();
+        List<Integer> elements = new ArrayList<Integer>();
+        prefix.forEachRemaining(elements::add);
+        suffix.forEachRemaining(elements::add);
+
+        assertEquals(integers.stream().collect(Collectors.toList()), elements,
+                     "Le parti dello spliterator non coprono la lista.");
+    }
+
+    @Test
+    void testChangeListener() {
+        List<String> events = new ArrayList<String>();
+        this.list.addChangeListener(new HashLinkedList.ChangeListener<String>() {
+        	@Override
+        	public void elementAdded(int index, String data, String hash) {
+        		events.add("+" + index + " " + data);
+        	}
+
+        	@Override
+        	public void elementRemoved(int index, String data) {
+        		events.add("-" + index + " " + data);
+        	}
+        });
+
+    	this.list.addAtTail("Bob paga Charlie");
+    	this.list.addAtHead("Alice paga Bob");
+    	this.list.addAtTail("Charlie paga Diana");
+    	this.list.remove("Charlie paga Diana");
+    	this.list.removeAt(0);
+
+        assertEquals(Arrays.asList("+0 Bob paga Charlie", "+0 Alice paga Bob",
+        		                   "+2 Charlie paga Diana",
+        		                   "-2 Charlie paga Diana",
+        		                   "-0 Alice paga Bob"), events,
+                     "Le notifiche ricevute non sono corrette.");
+    }
+
     @Test
     void testFailFastIterator1() {
     	this.list.addAtTail("Alice paga Bob");
@@ -1,6 +1,7 @@
 package it.unicam.cs.asdl2425.mp1;
 
 import org.junit.jupiter.api.Test;
+import java.nio.ByteBuffer;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -18,6 +19,22 @@ import static org.junit.jupiter.api.Assertions.*;
  * <li>{@link #testComputeMD5_nullInput()}: Ensure that the {@code computeMD5}
  *     method throws a {@code NullPointerException} when the input is
  *     {@code null}.</li>
+ * 
+ * <li>{@link #testDigestHexRoundTrip()}: Verify that a hash decoded with
+ *     {@code hexToDigest} is encoded back to the same string by
+ *     {@code digestToHex}.</li>
+ * 
+ * <li>{@link #testHexToDigest_invalidInput()}: Ensure that
+ *     {@code hexToDigest} throws an {@code IllegalArgumentException} for a
+ *     string that is not an MD5 hash.</li>
+ * 
+ * <li>{@link #testBufferToHash()}: Verify that the hash of the remaining
+ *     bytes of a direct buffer is the same as the one computed by
+ *     {@code computeMD5} on the same bytes.</li>
+ * 
+ * <li>{@link #testNewDigestArray()}: Verify the size of the arrays of packed
+ *     digests and that a number of digests that does not fit in an array is
+ *     rejected instead of overflowing.</li>
  * </ul>
  */
 class HashUtilTest {
@@ -54,4 +71,49 @@ class HashUtilTest {
                      "Dovrebbe lanciare NullPointerException se l'input è "
                      + "null.");
     }
+
+    @Test
+    void testDigestHexRoundTrip() {
+        String hash = "65a8e27d8879283831b664bd8b7f0ad4";
+        byte[] digests = new byte[HashUtil.MD5_LENGTH + 3];
+
+        HashUtil.hexToDigest(hash, digests, 3);
+
+        assertEquals(hash, HashUtil.digestToHex(digests, 3),
+        		     "La conversione del digest non è reversibile.");
+    }
+
+    @Test
+    void testHexToDigest_invalidInput() {
+        byte[] digests = new byte[HashUtil.MD5_LENGTH];
+
+        assertThrows(IllegalArgumentException.class,
+        		     () -> HashUtil.hexToDigest("hash123", digests, 0),
+                     "Dovrebbe lanciare IllegalArgumentException per un hash "
+                     + "non valido.");
+    }
+
+    @Test
+    void testBufferToHash() {
+        byte[] input = "Hello, World!".getBytes();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(input.length + 4);
+        buffer.put(new byte[4]).put(input).flip().position(4);
+
+        assertEquals(HashUtil.computeMD5(input), HashUtil.bufferToHash(buffer),
+                     "L'hash del buffer non è corretto.");
+        assertFalse(buffer.hasRemaining(),
+                    "Il buffer dovrebbe essere stato consumato.");
+    }
+
+    @Test
+    void testNewDigestArray() {
+        assertEquals(48, HashUtil.newDigestArray(3).length,
+                     "La dimensione dell'array non è corretta.");
+        assertEquals(0, HashUtil.newDigestArray(0).length,
+                     "L'array di zero digest dovrebbe essere vuoto.");
+        assertThrows(IllegalStateException.class,
+                     () -> HashUtil.newDigestArray(
+                    		 Integer.MAX_VALUE / HashUtil.MD5_LENGTH + 1),
+                     "Dovrebbe lanciare IllegalStateException.");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,225 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link IndexedHashLinkedList} class. This class includes
+ * tests to verify the indexed removals and the positional access of the list.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testSameAsHashLinkedList()}: Verify that the list holds the
+ *     same elements, hashes and representation as a {@link HashLinkedList}
+ *     built with the same insertions.</li>
+ *
+ * <li>{@link #testRemoveDuplicateElements()}: Removes duplicate elements and
+ *     verifies that the first occurrence in the list is removed each time.</li>
+ *
+ * <li>{@link #testGetAcrossChunks()}: Verify that {@code get} returns the
+ *     right element for every position of a list spanning many chunks, and
+ *     rejects invalid positions.</li>
+ *
+ * <li>{@link #testRemoveAt()}: Removes elements by position and verifies the
+ *     returned elements and the remaining list.</li>
+ *
+ * <li>{@link #testQueue()}: Uses the list as a queue, adding at the tail and
+ *     removing at the head, and verifies the elements read by position.</li>
+ *
+ * <li>{@link #testRandomOperations()}: Applies a random sequence of insertions,
+ *     removals and positional reads and compares the list with a
+ *     {@code LinkedList}.</li>
+ *
+ * <li>{@link #testFailFastIterator()}: Verify that the iterator is
+ *     {@code fail-fast} by removing an element during iteration.</li>
+ * </ul>
+ */
+class IndexedHashLinkedListTest {
+
+    private IndexedHashLinkedList<String> list;
+
+    @BeforeEach
+    void setUp() {
+        this.list = new IndexedHashLinkedList<>();
+    }
+
+    @Test
+    void testSameAsHashLinkedList() {
+        HashLinkedList<String> expected = new HashLinkedList<String>();
+
+        for (int i = 0; i < 300; i++) {
+        	if (i % 3 == 0) {
+        		this.list.addAtHead("Dato " + i);
+        		expected.addAtHead("Dato " + i);
+        	}
+        	else {
+        		this.list.addAtTail("Dato " + i);
+        		expected.addAtTail("Dato " + i);
+        	}
+        }
+
+        assertEquals(expected.stream().collect(Collectors.toList()),
+                     this.list.stream().collect(Collectors.toList()),
+                     "Gli elementi della lista non sono corretti.");
+        assertEquals(expected.getAllHashes(), this.list.getAllHashes(),
+                     "Gli hash della lista non corrispondono all'atteso.");
+        assertArrayEquals(expected.getAllDigests(), this.list.getAllDigests(),
+                          "I digest della lista non corrispondono all'atteso.");
+        assertEquals(expected.buildNodesString(), this.list.buildNodesString(),
+                     "La rappresentazione della lista non è corretta.");
+        assertEquals(300, this.list.getSize(),
+                     "La dimensione della lista non è corretta.");
+    }
+
+    @Test
+    void testRemoveDuplicateElements() {
+    	this.list.addAtTail("Alice paga Bob");
+    	this.list.addAtTail("Bob paga Charlie");
+    	this.list.addAtTail("Alice paga Bob");
+    	this.list.addAtHead("Bob paga Charlie");
+
+        assertTrue(this.list.remove("Bob paga Charlie"),
+                   "L'elemento 'Bob paga Charlie' doveva essere rimosso.");
+        assertTrue(this.list.remove("Alice paga Bob"),
+                   "L'elemento 'Alice paga Bob' doveva essere rimosso.");
+        assertFalse(this.list.remove("Charlie paga Diana"),
+                    "L'elemento 'Charlie paga Diana' non doveva esistere.");
+
+        assertEquals(Arrays.asList("Bob paga Charlie", "Alice paga Bob"),
+                     Arrays.asList(this.list.get(0), this.list.get(1)),
+                     "Dovrebbe essere rimossa la prima occorrenza.");
+    }
+
+    @Test
+    void testGetAcrossChunks() {
+        List<String> expected = new ArrayList<String>();
+
+        for (int i = 0; i < 1000; i++) {
+        	this.list.addAtTail("Coda " + i);
+        	expected.add("Coda " + i);
+        	this.list.addAtHead("Testa " + i);
+        	expected.add(0, "Testa " + i);
+        }
+
+        for (int i = 0; i < expected.size(); i++) {
+        	assertEquals(expected.get(i), this.list.get(i),
+        			     "L'elemento in posizione " + i + " non è corretto.");
+        }
+
+        assertThrows(IndexOutOfBoundsException.class,
+                     () -> this.list.get(2000),
+                     "Dovrebbe lanciare IndexOutOfBoundsException.");
+        assertThrows(IndexOutOfBoundsException.class,
+                     () -> this.list.get(-1),
+                     "Dovrebbe lanciare IndexOutOfBoundsException.");
+    }
+
+    @Test
+    void testRemoveAt() {
+    	this.list.addAtTail("Alice paga Bob");
+    	this.list.addAtTail("Bob paga Charlie");
+    	this.list.addAtTail("Charlie paga Diana");
+
+        assertEquals("Bob paga Charlie", this.list.removeAt(1),
+                     "L'elemento rimosso non è corretto.");
+        assertEquals("Charlie paga Diana", this.list.removeAt(1),
+                     "L'elemento rimosso non è corretto.");
+        assertEquals(1, this.list.getSize(),
+                     "La lista dovrebbe contenere un solo elemento.");
+        assertFalse(this.list.remove("Bob paga Charlie"),
+                    "L'elemento 'Bob paga Charlie' non doveva più esistere.");
+        assertEquals("Alice paga Bob", this.list.get(0),
+                     "L'elemento rimasto non è corretto.");
+    }
+
+    @Test
+    void testQueue() {
+        IndexedHashLinkedList<Integer> queue =
+        		new IndexedHashLinkedList<Integer>();
+        int next = 0;
+
+        for (int i = 0; i < 500; i++) queue.addAtTail(next++);
+
+        for (int i = 0; i < 100000; i++) {
+        	queue.addAtTail(next++);
+
+        	assertEquals(Integer.valueOf(i), queue.removeAt(0),
+        			     "L'elemento in testa non è corretto.");
+        	assertEquals(Integer.valueOf(i + 250), queue.get(249),
+        			     "L'elemento in mezzo non è corretto.");
+        }
+
+        assertEquals(500, queue.getSize(),
+                     "La dimensione della coda non è corretta.");
+    }
+
+    @Test
+    void testRandomOperations() {
+        IndexedHashLinkedList<Integer> integers =
+        		new IndexedHashLinkedList<Integer>();
+        LinkedList<Integer> expected = new LinkedList<Integer>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20000; i++) {
+        	int value = random.nextInt(500);
+        	int operation = random.nextInt(5);
+
+        	if (operation == 0) {
+        		integers.addAtHead(value);
+        		expected.addFirst(value);
+        	}
+        	else if (operation == 1) {
+        		integers.addAtTail(value);
+        		expected.addLast(value);
+        	}
+        	else if (operation == 2) {
+        		assertEquals(expected.remove(Integer.valueOf(value)),
+        				     integers.remove(value),
+        				     "L'esito della rimozione non è corretto.");
+        	}
+        	else if (!expected.isEmpty()) {
+        		int index = random.nextInt(expected.size());
+
+        		if (operation == 3) {
+        			assertEquals(expected.remove(index),
+        					     integers.removeAt(index),
+        					     "L'elemento rimosso non è corretto.");
+        		}
+        		else {
+        			assertEquals(expected.get(index), integers.get(index),
+        					     "L'elemento letto non è corretto.");
+        		}
+        	}
+        }
+
+        List<Integer> iteratorList = new ArrayList<Integer>();
+        for (Integer value : integers) {
+        	iteratorList.add(value);
+        }
+
+        assertEquals(expected, iteratorList,
+                     "La lista non è corretta dopo le operazioni.");
+        assertEquals(expected.size(), integers.getSize(),
+                     "La dimensione della lista non è corretta.");
+    }
+
+    @Test
+    void testFailFastIterator() {
+    	this.list.addAtTail("Alice paga Bob");
+    	this.list.addAtTail("Bob paga Charlie");
+    	this.list.addAtTail("Charlie paga Diana");
+
+        assertThrows(
+                ConcurrentModificationException.class,
+                () -> {
+                    for (String s : this.list) {
+                    	this.list.removeAt(1);
+                    }
+                },
+                "L'iteratore non è fail-fast."
+        );
+    }
+}
\ No newline at end of file
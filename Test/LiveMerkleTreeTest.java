@@ -0,0 +1,146 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link LiveMerkleTree} class. This class tests that the
+ * tree follows the changes of the list it is bound to.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testInitialRoot()}: Verifies that the root of a tree bound to a
+ *     list matches the root of the {@link MerkleTree} built from it.</li>
+ *
+ * <li>{@link #testEmptyList()}: Verifies that a tree bound to an empty list
+ *     has no root until an element is added.</li>
+ *
+ * <li>{@link #testFollowsChanges()}: Applies a random sequence of changes to
+ *     the list and verifies after each one that the root matches the one of a
+ *     tree rebuilt from scratch.</li>
+ *
+ * <li>{@link #testMerkleProof()}: Verifies that the proofs of the tree are
+ *     valid for the elements of the list.</li>
+ *
+ * <li>{@link #testToMerkleTree()}: Verifies that the tree obtained from the
+ *     bound tree is identical to the one built from the list.</li>
+ *
+ * <li>{@link #testClose()}: Verifies that a closed tree no longer follows the
+ *     changes of the list.</li>
+ * </ul>
+ */
+class LiveMerkleTreeTest {
+
+    private HashLinkedList<String> hashList;
+
+    @BeforeEach
+    void setUp() {
+    	this.hashList = new HashLinkedList<String>();
+    	this.hashList.addAtTail("Alice paga Bob");
+    	this.hashList.addAtTail("Bob paga Charlie");
+    	this.hashList.addAtTail("Charlie paga Diana");
+    }
+
+    @Test
+    void testInitialRoot() {
+        LiveMerkleTree<String> tree = new LiveMerkleTree<String>(this.hashList);
+
+        assertEquals(new MerkleTree<String>(this.hashList).getRoot().getHash(),
+        		     tree.getRootHash(),
+        		     "La radice dovrebbe coincidere con quella costruita dalla "
+        		     + "lista.");
+        assertEquals(3, tree.getWidth(), "La larghezza dell'albero dovrebbe "
+        		     + "essere 3.");
+        assertEquals(2, tree.getHeight(), "L'altezza dell'albero dovrebbe "
+        		     + "essere 2.");
+    }
+
+    @Test
+    void testEmptyList() {
+        HashLinkedList<String> emptyList = new HashLinkedList<String>();
+        LiveMerkleTree<String> tree = new LiveMerkleTree<String>(emptyList);
+
+        assertNull(tree.getRootHash(), "Un albero vuoto non dovrebbe avere "
+        		   + "radice.");
+
+        emptyList.addAtTail("Alice paga Bob");
+
+        assertEquals(HashUtil.dataToHash("Alice paga Bob"), tree.getRootHash(),
+        		     "La radice dovrebbe essere l'hash dell'unico dato.");
+    }
+
+    @Test
+    void testFollowsChanges() {
+        HashLinkedList<Integer> integers = new HashLinkedList<Integer>();
+        LiveMerkleTree<Integer> tree = new LiveMerkleTree<Integer>(integers);
+        Random random = new Random(7);
+
+        for (int i = 0; i < 300; i++) {
+        	int operation = random.nextInt(4);
+
+        	if (operation <= 1 || integers.getSize() == 0)
+        		integers.addAtTail(random.nextInt(40));
+        	else if (operation == 2) integers.addAtHead(random.nextInt(40));
+        	else if (random.nextBoolean())
+        		integers.remove(integers.get(random.nextInt(
+        				        integers.getSize())));
+        	else integers.removeAt(random.nextInt(integers.getSize()));
+
+        	if (integers.getSize() == 0) {
+        		assertNull(tree.getRootHash(), "Un albero vuoto non dovrebbe "
+        				   + "avere radice.");
+        		continue;
+        	}
+
+        	assertEquals(new MerkleTree<Integer>(integers).getRoot().getHash(),
+        			     tree.getRootHash(),
+        			     "La radice non è aggiornata dopo la modifica.");
+        }
+    }
+
+    @Test
+    void testMerkleProof() {
+        LiveMerkleTree<String> tree = new LiveMerkleTree<String>(this.hashList);
+        this.hashList.addAtTail("Diana paga Alice");
+        this.hashList.addAtTail("Eva paga Frank");
+
+        for (int i = 0; i < this.hashList.getSize(); i++) {
+        	assertTrue(tree.getMerkleProof(i)
+        			       .proveValidityOfData(this.hashList.get(i)),
+        			   "La prova di Merkle dovrebbe essere valida.");
+        }
+
+        assertFalse(tree.getMerkleProof(0).proveValidityOfData("Dato non "
+        		    + "presente"), "La prova di Merkle non dovrebbe essere "
+        		    + "valida.");
+    }
+
+    @Test
+    void testToMerkleTree() {
+        LiveMerkleTree<String> tree = new LiveMerkleTree<String>(this.hashList);
+        this.hashList.addAtHead("Diana paga Alice");
+
+        MerkleTree<String> expected = new MerkleTree<String>(this.hashList);
+        MerkleTree<String> actual = tree.toMerkleTree();
+
+        assertTrue(expected.validateTree(actual),
+        		   "L'albero dovrebbe coincidere con quello costruito dalla "
+        		   + "lista.");
+        assertEquals(expected.getHeight(), actual.getHeight(),
+        		     "L'altezza dell'albero non è corretta.");
+    }
+
+    @Test
+    void testClose() {
+        LiveMerkleTree<String> tree = new LiveMerkleTree<String>(this.hashList);
+        String root = tree.getRootHash();
+
+        tree.close();
+        this.hashList.addAtTail("Diana paga Alice");
+
+        assertEquals(root, tree.getRootHash(), "La radice non dovrebbe "
+        		     + "cambiare dopo la chiusura.");
+    }
+}
\ No newline at end of file
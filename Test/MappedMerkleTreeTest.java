@@ -0,0 +1,202 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link MappedMerkleTree} and {@link MerkleTreeFile}
+ * classes. This class tests that a tree written to a file is loaded back
+ * unchanged.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testRoundTrip()}: Writes a tree, opens it and verifies the root,
+ *     the width, the height and every node against the original tree.</li>
+ *
+ * <li>{@link #testFileSize()}: Verifies that the file contains the header and
+ *     one digest for each node.</li>
+ *
+ * <li>{@link #testMerkleProof()}: Verifies that the proofs of the mapped tree
+ *     are valid for their own leaf and only for it.</li>
+ *
+ * <li>{@link #testValidateData()}: Verifies that the data of the tree is found
+ *     among the leaves and that other data is not.</li>
+ *
+ * <li>{@link #testFindInvalidDataIndices()}: Compares two mapped trees that
+ *     differ in some leaves.</li>
+ *
+ * <li>{@link #testSingleLeaf()}: Writes and opens a tree with a single
+ *     leaf.</li>
+ *
+ * <li>{@link #testInvalidFile()}: Verifies that files which are not valid
+ *     Merkle tree files are rejected.</li>
+ * </ul>
+ */
+class MappedMerkleTreeTest {
+
+    private HashLinkedList<Integer> hashList;
+
+    private MerkleTree<Integer> tree;
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+    	this.hashList = new HashLinkedList<Integer>();
+    	for (int i = 0; i < 37; i++) this.hashList.addAtTail(i);
+
+    	this.tree = new MerkleTree<Integer>(this.hashList);
+    	this.file = Files.createTempFile("merkle", ".tree");
+    	MerkleTreeFile.write(this.tree, this.file);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+    	Files.deleteIfExists(this.file);
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        try (MappedMerkleTree<Integer> mapped =
+        		MappedMerkleTree.open(this.file)) {
+        	assertEquals(this.tree.getRoot().getHash(), mapped.getRootHash(),
+        			     "La radice dell'albero caricato non è corretta.");
+        	assertEquals(this.tree.getWidth(), mapped.getWidth(),
+        			     "La larghezza dell'albero caricato non è corretta.");
+        	assertEquals(this.tree.getHeight(), mapped.getHeight(),
+        			     "L'altezza dell'albero caricato non è corretta.");
+        	assertEquals(this.hashList.getAllHashes().get(20),
+        			     mapped.getHash(0, 20),
+        			     "Il ventesimo hash delle foglie non è corretto.");
+        	assertTrue(this.tree.validateTree(mapped.toMerkleTree()),
+        			   "L'albero caricato dovrebbe coincidere con l'originale.");
+        }
+    }
+
+    @Test
+    void testFileSize() throws IOException {
+    	// 37 + 19 + 10 + 5 + 3 + 2 + 1 nodi.
+        assertEquals(MerkleTreeFile.HEADER_SIZE + 77L * HashUtil.MD5_LENGTH,
+        		     Files.size(this.file),
+        		     "La dimensione del file non è corretta.");
+    }
+
+    @Test
+    void testMerkleProof() throws IOException {
+        try (MappedMerkleTree<Integer> mapped =
+        		MappedMerkleTree.open(this.file)) {
+        	for (int i = 0; i < 37; i++) {
+        		MerkleProof proof = mapped.getMerkleProof(i);
+
+        		assertEquals(this.tree.getHeight(), proof.getLength(),
+        				     "La lunghezza della prova non è corretta.");
+        		assertTrue(proof.proveValidityOfData(i),
+        				   "La prova dell'elemento " + i + " non è valida.");
+        		assertFalse(proof.proveValidityOfData(i + 1),
+        				    "La prova non dovrebbe valere per un altro "
+        				    + "elemento.");
+        	}
+
+        	assertThrows(IndexOutOfBoundsException.class,
+        			     () -> mapped.getMerkleProof(37),
+        			     "Dovrebbe lanciare IndexOutOfBoundsException.");
+        }
+    }
+
+    @Test
+    void testValidateData() throws IOException {
+        try (MappedMerkleTree<Integer> mapped =
+        		MappedMerkleTree.open(this.file)) {
+        	assertEquals(12, mapped.getIndexOfData(12),
+        			     "L'indice dell'elemento 12 non è corretto.");
+        	assertTrue(mapped.validateData(36),
+        			   "L'elemento 36 dovrebbe essere nell'albero.");
+        	assertFalse(mapped.validateData(37),
+        			    "L'elemento 37 non dovrebbe essere nell'albero.");
+        	assertNull(mapped.getMerkleProof(Integer.valueOf(37)),
+        			   "Non dovrebbe esistere una prova per l'elemento 37.");
+        }
+    }
+
+    @Test
+    void testFindInvalidDataIndices() throws IOException {
+    	this.hashList.removeAt(30);
+    	this.hashList.addAtTail(1000);
+    	this.hashList.removeAt(5);
+    	this.hashList.addAtHead(-1);
+
+    	Path otherFile = Files.createTempFile("merkle", ".tree");
+
+    	try {
+    		MerkleTreeFile.write(new MerkleTree<Integer>(this.hashList),
+    				             otherFile);
+
+    		try (MappedMerkleTree<Integer> mapped =
+    				MappedMerkleTree.open(this.file);
+    			 MappedMerkleTree<Integer> other =
+    			    MappedMerkleTree.open(otherFile)) {
+    			Set<Integer> invalid = mapped.findInvalidDataIndices(other);
+
+    			assertEquals(this.tree.findInvalidDataIndices(
+    					         other.toMerkleTree()), invalid,
+    					     "Gli indici non validi non sono corretti.");
+    			assertTrue(invalid.contains(36),
+    					   "L'ultimo elemento dovrebbe essere non valido.");
+    			assertTrue(mapped.findInvalidDataIndices(mapped).isEmpty(),
+    					   "Un albero non dovrebbe differire da se stesso.");
+    		}
+    	} finally {
+    		Files.delete(otherFile);
+    	}
+    }
+
+    @Test
+    void testSingleLeaf() throws IOException {
+        HashLinkedList<String> single = new HashLinkedList<String>();
+        single.addAtTail("Alice paga Bob");
+        MerkleTree<String> singleTree = new MerkleTree<String>(single);
+
+        MerkleTreeFile.write(singleTree, this.file);
+
+        try (MappedMerkleTree<String> mapped =
+        		MappedMerkleTree.open(this.file)) {
+        	assertEquals(singleTree.getRoot().getHash(), mapped.getRootHash(),
+        			     "La radice dell'albero caricato non è corretta.");
+        	assertEquals(0, mapped.getHeight(),
+        			     "L'altezza dell'albero dovrebbe essere 0.");
+        	assertTrue(mapped.getMerkleProof(0)
+        			         .proveValidityOfData("Alice paga Bob"),
+        			   "La prova dell'elemento non è valida.");
+        }
+    }
+
+    @Test
+    void testInvalidFile() throws IOException {
+    	byte[] content = Files.readAllBytes(this.file);
+
+    	Files.write(this.file, new byte[] { 1, 2, 3, 4 });
+        assertThrows(IOException.class,
+                     () -> MappedMerkleTree.open(this.file),
+                     "Un file troncato dovrebbe essere rifiutato.");
+
+        content[0] = 'X';
+        Files.write(this.file, content);
+        assertThrows(IOException.class,
+                     () -> MappedMerkleTree.open(this.file),
+                     "Un file senza numero magico dovrebbe essere rifiutato.");
+
+        content[0] = 'M';
+        Files.write(this.file, Arrays.copyOf(content,
+        		                            content.length - 1));
+        assertThrows(IOException.class,
+                     () -> MappedMerkleTree.open(this.file),
+                     "Un file di dimensione errata dovrebbe essere rifiutato.");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,329 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link MerkleBuildCoordinator} and
+ * {@link MerkleBuildWorker} classes. This class includes tests to verify the
+ * tree built by several workers, in the same process or through sockets.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testLocalBuild()}: Verify that the root and the tree built by
+ *     local workers are the same as those of the {@link MerkleTree} built on
+ *     all the data.</li>
+ *
+ * <li>{@link #testSocketBuild()}: Verify the root built by workers reached
+ *     through loopback sockets.</li>
+ *
+ * <li>{@link #testSmallWidths()}: Verify the roots of trees with fewer leaves
+ *     than a range.</li>
+ *
+ * <li>{@link #testFailingWorker()}: Verify that the ranges of a worker that
+ *     reports errors are handed out to the other workers.</li>
+ *
+ * <li>{@link #testCrashingWorker()}: Verify that the range of a worker that
+ *     stops during the build is handed out to the other workers.</li>
+ *
+ * <li>{@link #testHangingWorker()}: Verify that a local worker that does not
+ *     answer within the task timeout is dropped and its range is handed out
+ *     to the other workers.</li>
+ *
+ * <li>{@link #testAllWorkersFail()}: Verify that the build fails when no
+ *     worker is left.</li>
+ *
+ * <li>{@link #testFileSource()}: Verify that workers hashing the chunks of a
+ *     file build the same root as {@link FileHasher}.</li>
+ *
+ * <li>{@link #testInvalidArguments()}: Verify that invalid arguments are
+ *     rejected.</li>
+ * </ul>
+ */
+class MerkleBuildCoordinatorTest {
+
+    private List<Integer> data;
+
+    private MerkleTree<Integer> expected;
+
+    private List<MerkleBuildWorker> workers;
+
+    @BeforeEach
+    void setUp() {
+        HashLinkedList<Integer> list = new HashLinkedList<Integer>();
+        this.data = new ArrayList<Integer>();
+
+        for (int i = 0; i < 1000; i++) {
+        	list.addAtTail(i);
+        	this.data.add(i);
+        }
+
+        this.expected = new MerkleTree<Integer>(list);
+        this.workers = new ArrayList<MerkleBuildWorker>();
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (MerkleBuildWorker worker : this.workers) worker.close();
+    }
+
+    private MerkleBuildWorker worker(MerkleBuildWorker.LeafSource source) {
+        MerkleBuildWorker worker = new MerkleBuildWorker(source);
+        this.workers.add(worker);
+
+        return worker;
+    }
+
+    private List<MerkleBuildCoordinator.WorkerLink> localLinks(int count)
+    		throws IOException {
+        List<MerkleBuildCoordinator.WorkerLink> links =
+        		new ArrayList<MerkleBuildCoordinator.WorkerLink>();
+
+        for (int i = 0; i < count; i++) {
+        	links.add(this.worker(MerkleBuildWorker.LeafSource.ofList(
+        			  this.data)).connectLocal());
+        }
+
+        return links;
+    }
+
+    @Test
+    void testLocalBuild() throws Exception {
+        try (MerkleBuildCoordinator coordinator =
+        		new MerkleBuildCoordinator(this.localLinks(3), 64)) {
+        	assertEquals(this.expected.getRoot().getHash(),
+        			     coordinator.buildRoot(1000),
+        			     "La radice non è corretta.");
+
+        	MerkleTree<Integer> tree = coordinator.buildTree(1000);
+
+        	assertTrue(this.expected.validateTree(tree),
+        			   "L'albero costruito dai lavoratori non è corretto.");
+        	assertTrue(tree.getMerkleProof(999).proveValidityOfData(999),
+        			   "La prova dell'ultimo elemento non è valida.");
+        }
+    }
+
+    @Test
+    void testSocketBuild() throws Exception {
+        List<MerkleBuildCoordinator.WorkerLink> links =
+        		new ArrayList<MerkleBuildCoordinator.WorkerLink>();
+
+        for (int i = 0; i < 2; i++) {
+        	ServerSocket server = new ServerSocket(
+        			0, 0, InetAddress.getLoopbackAddress());
+        	this.worker(MerkleBuildWorker.LeafSource.ofList(this.data))
+        	    .listen(server);
+        	links.add(MerkleBuildCoordinator.WorkerLink.connect(
+        			  "localhost", server.getLocalPort(), 10000));
+        }
+
+        try (MerkleBuildCoordinator coordinator =
+        		new MerkleBuildCoordinator(links, 128)) {
+        	assertEquals(this.expected.getRoot().getHash(),
+        			     coordinator.buildRoot(1000),
+        			     "La radice non è corretta.");
+        }
+    }
+
+    @Test
+    void testSmallWidths() throws Exception {
+        try (MerkleBuildCoordinator coordinator =
+        		new MerkleBuildCoordinator(this.localLinks(2), 64)) {
+        	for (int width : new int[] {1, 2, 5, 64, 65}) {
+        		HashLinkedList<Integer> list = new HashLinkedList<Integer>();
+        		for (int i = 0; i < width; i++) list.addAtTail(i);
+
+        		assertEquals(new MerkleTree<Integer>(list).getRoot().getHash(),
+        				     coordinator.buildRoot(width),
+        				     "La radice di " + width + " foglie non è "
+        				     + "corretta.");
+        	}
+        }
+    }
+
+    @Test
+    void testFailingWorker() throws Exception {
+        List<MerkleBuildCoordinator.WorkerLink> links = this.localLinks(1);
+        links.add(0, this.worker((from, to) -> {
+        	throw new IOException("Disco non disponibile");
+        }).connectLocal());
+
+        try (MerkleBuildCoordinator coordinator =
+        		new MerkleBuildCoordinator(links, 32)) {
+        	assertEquals(this.expected.getRoot().getHash(),
+        			     coordinator.buildRoot(1000),
+        			     "La radice non è corretta.");
+        	assertEquals(1, coordinator.getWorkerCount(),
+        			     "Il lavoratore guasto dovrebbe essere escluso.");
+        }
+    }
+
+    @Test
+    void testCrashingWorker() throws Exception {
+        AtomicReference<MerkleBuildWorker> crashing =
+        		new AtomicReference<MerkleBuildWorker>();
+        MerkleBuildWorker.LeafSource source =
+        		MerkleBuildWorker.LeafSource.ofList(this.data);
+
+        crashing.set(this.worker((from, to) -> {
+        	crashing.get().close();
+        	return source.hashLeaves(from, to);
+        }));
+
+        List<MerkleBuildCoordinator.WorkerLink> links = this.localLinks(2);
+        links.add(0, crashing.get().connectLocal());
+
+        try (MerkleBuildCoordinator coordinator =
+        		new MerkleBuildCoordinator(links, 16)) {
+        	assertTrue(this.expected.validateTree(coordinator.buildTree(1000)),
+        			   "L'albero costruito dai lavoratori non è corretto.");
+        	assertEquals(2, coordinator.getWorkerCount(),
+        			     "Il lavoratore fermato dovrebbe essere escluso.");
+        }
+    }
+
+    @Test
+    void testHangingWorker() throws Exception {
+        CountDownLatch hung = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MerkleBuildWorker.LeafSource source =
+        		MerkleBuildWorker.LeafSource.ofList(this.data);
+        MerkleBuildWorker.LeafSource hanging = (from, to) -> {
+        	hung.countDown();
+        	try {
+        		release.await();
+        	} catch (InterruptedException e) {
+        		Thread.currentThread().interrupt();
+        	}
+        	throw new IOException("Released");
+        };
+
+        try {
+        	List<MerkleBuildCoordinator.WorkerLink> links =
+        			new ArrayList<MerkleBuildCoordinator.WorkerLink>();
+        	links.add(this.worker(hanging).connectLocal());
+
+        	// The other workers start once the first one holds a range.
+        	for (int i = 0; i < 2; i++) {
+        		links.add(this.worker((from, to) -> {
+        			try {
+        				hung.await();
+        			} catch (InterruptedException e) {
+        				throw new IOException(e);
+        			}
+        			return source.hashLeaves(from, to);
+        		}).connectLocal());
+        	}
+
+        	try (MerkleBuildCoordinator coordinator =
+        			new MerkleBuildCoordinator(links, 16, 200)) {
+        		assertTrue(this.expected.validateTree(
+        				   coordinator.buildTree(1000)),
+        				   "L'albero costruito dai lavoratori non è corretto.");
+        		assertEquals(2, coordinator.getWorkerCount(),
+        				     "Il lavoratore bloccato dovrebbe essere escluso.");
+        	}
+
+        	try (MerkleBuildCoordinator coordinator =
+        			new MerkleBuildCoordinator(
+        					Arrays.asList(this.worker(hanging).connectLocal()),
+        					64, 200)) {
+        		IOException e = assertThrows(IOException.class,
+        				                     () -> coordinator.buildRoot(1000),
+        				                     "Dovrebbe lanciare IOException.");
+
+        		assertTrue(e.getSuppressed()[0].getMessage()
+        				    .startsWith("No result within 200 ms"),
+        				   "Il guasto dovrebbe essere dovuto al tempo "
+        				   + "scaduto.");
+        	}
+        } finally {
+        	release.countDown();
+        }
+    }
+
+    @Test
+    void testAllWorkersFail() throws Exception {
+        List<MerkleBuildCoordinator.WorkerLink> links =
+        		new ArrayList<MerkleBuildCoordinator.WorkerLink>();
+
+        for (int i = 0; i < 2; i++) {
+        	links.add(this.worker((from, to) -> {
+        		throw new IllegalStateException();
+        	}).connectLocal());
+        }
+
+        try (MerkleBuildCoordinator coordinator =
+        		new MerkleBuildCoordinator(links, 64)) {
+        	IOException e = assertThrows(IOException.class,
+        			                     () -> coordinator.buildRoot(1000),
+        			                     "Dovrebbe lanciare IOException.");
+
+        	assertEquals(2, e.getSuppressed().length,
+        			     "Dovrebbero essere riportati entrambi i guasti.");
+        	assertEquals(0, coordinator.getWorkerCount(),
+        			     "Nessun lavoratore dovrebbe restare.");
+        }
+    }
+
+    @Test
+    void testFileSource() throws Exception {
+        Path file = Files.createTempFile("merkle", ".bin");
+
+        try {
+        	byte[] content = new byte[10050];
+        	new Random(7).nextBytes(content);
+        	Files.write(file, content);
+
+        	List<MerkleBuildCoordinator.WorkerLink> links =
+        			new ArrayList<MerkleBuildCoordinator.WorkerLink>();
+
+        	for (int i = 0; i < 2; i++) {
+        		links.add(this.worker(MerkleBuildWorker.LeafSource.ofFile(
+        				  file, 100)).connectLocal());
+        	}
+
+        	try (MerkleBuildCoordinator coordinator =
+        			new MerkleBuildCoordinator(links, 8)) {
+        		assertEquals(new FileHasher(100).hashFile(file),
+        				     coordinator.buildRoot(101),
+        				     "La radice del file non è corretta.");
+        	}
+        } finally {
+        	Files.delete(file);
+        }
+    }
+
+    @Test
+    void testInvalidArguments() throws Exception {
+        List<MerkleBuildCoordinator.WorkerLink> links = this.localLinks(1);
+
+        assertThrows(IllegalArgumentException.class,
+                     () -> new MerkleBuildCoordinator(links, 48),
+                     "Dovrebbe lanciare IllegalArgumentException.");
+        assertThrows(IllegalArgumentException.class,
+                     () -> new MerkleBuildCoordinator(List.of(), 64),
+                     "Dovrebbe lanciare IllegalArgumentException.");
+        assertThrows(IllegalArgumentException.class,
+                     () -> new MerkleBuildCoordinator(links, 64, -1),
+                     "Dovrebbe lanciare IllegalArgumentException.");
+
+        try (MerkleBuildCoordinator coordinator =
+        		new MerkleBuildCoordinator(links, 64)) {
+        	assertThrows(IllegalArgumentException.class,
+        			     () -> coordinator.buildRoot(0),
+        			     "Dovrebbe lanciare IllegalArgumentException.");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,291 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.ByteBuffer;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link MerkleLeafLog} class. This class tests the root
+ * of the log, its group commits and its recovery after a crash.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testRootMatchesTree()}: Verifies after every append that the
+ *     root of the log matches the root of the {@link MerkleTree} built on the
+ *     same leaves.</li>
+ *
+ * <li>{@link #testRecoveryAfterCheckpoint()}: Reopens a log that was not
+ *     closed and verifies that only the leaves after the last checkpoint are
+ *     replayed.</li>
+ *
+ * <li>{@link #testReopenAfterClose()}: Verifies that a closed log is reopened
+ *     without replaying any leaf and keeps growing.</li>
+ *
+ * <li>{@link #testTornWrite()}: Verifies that a leaf partially written before
+ *     a crash is discarded.</li>
+ *
+ * <li>{@link #testUnacknowledgedBatches()}: Appends batches that a crash left
+ *     zero-filled or with stale digests and verifies that they are discarded
+ *     instead of being replayed as leaves.</li>
+ *
+ * <li>{@link #testUnknownFormat()}: Verifies that a log file without the
+ *     header of the format is rejected.</li>
+ *
+ * <li>{@link #testCorruptCheckpoint()}: Verifies that a damaged checkpoint is
+ *     detected.</li>
+ *
+ * <li>{@link #testConcurrentAppends()}: Appends from several threads and
+ *     verifies that every leaf gets its own position and that the root matches
+ *     the leaves on disk.</li>
+ * </ul>
+ */
+class MerkleLeafLogTest {
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+    	this.directory = Files.createTempDirectory("merkle-log");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+    	try (Stream<Path> files = Files.list(this.directory)) {
+    		for (Path file : (Iterable<Path>) files::iterator)
+    			Files.delete(file);
+    	}
+
+    	Files.delete(this.directory);
+    }
+
+    @Test
+    void testRootMatchesTree() throws IOException {
+    	HashLinkedList<Integer> hashList = new HashLinkedList<Integer>();
+
+        try (MerkleLeafLog<Integer> log =
+        		MerkleLeafLog.open(this.directory, 50)) {
+        	assertNull(log.getRootHash(),
+        			   "Un log vuoto non dovrebbe avere una radice.");
+
+        	for (int i = 0; i < 140; i++) {
+        		assertEquals(i, log.append(i),
+        				     "La posizione della foglia non è corretta.");
+        		hashList.addAtTail(i);
+
+        		assertEquals(new MerkleTree<Integer>(hashList).getRoot()
+        				                                      .getHash(),
+        				     log.getRootHash(),
+        				     "La radice con " + (i + 1) + " foglie non è "
+        				     + "corretta.");
+        	}
+
+        	assertEquals(100, log.getCheckpointedSize(),
+        			     "L'ultimo checkpoint dovrebbe coprire 100 foglie.");
+        }
+    }
+
+    @Test
+    void testRecoveryAfterCheckpoint() throws IOException {
+        MerkleLeafLog<Integer> log = MerkleLeafLog.open(this.directory, 100);
+
+        try {
+        	for (int i = 0; i < 1050; i++) log.append(i);
+
+        	try (MerkleLeafLog<Integer> recovered =
+        			MerkleLeafLog.open(this.directory, 100)) {
+        		assertEquals(1050, recovered.getSize(),
+        				     "Il numero di foglie recuperate non è corretto.");
+        		assertEquals(50, recovered.getReplayedLeaves(),
+        				     "Dovrebbero essere rilette solo le foglie dopo "
+        				     + "l'ultimo checkpoint.");
+        		assertEquals(log.getRootHash(), recovered.getRootHash(),
+        				     "La radice recuperata non è corretta.");
+        		assertEquals(recovered.toMerkleTree().getRoot().getHash(),
+        				     recovered.getRootHash(),
+        				     "La radice non corrisponde alle foglie nel log.");
+        	}
+        } finally {
+        	log.close();
+        }
+    }
+
+    @Test
+    void testReopenAfterClose() throws IOException {
+    	HashLinkedList<String> hashList = new HashLinkedList<String>();
+
+        try (MerkleLeafLog<String> log =
+        		MerkleLeafLog.open(this.directory, 1000)) {
+        	for (int i = 0; i < 10; i++) {
+        		log.append("Transazione " + i);
+        		hashList.addAtTail("Transazione " + i);
+        	}
+        }
+
+        try (MerkleLeafLog<String> log =
+        		MerkleLeafLog.open(this.directory, 1000)) {
+        	assertEquals(0, log.getReplayedLeaves(),
+        			     "Nessuna foglia dovrebbe essere riletta.");
+
+        	log.append("Transazione 10");
+        	hashList.addAtTail("Transazione 10");
+
+        	assertEquals(new MerkleTree<String>(hashList).getRoot().getHash(),
+        			     log.getRootHash(),
+        			     "La radice dopo la riapertura non è corretta.");
+        }
+    }
+
+    @Test
+    void testTornWrite() throws IOException {
+    	String root;
+
+        try (MerkleLeafLog<Integer> log =
+        		MerkleLeafLog.open(this.directory, 4)) {
+        	for (int i = 0; i < 10; i++) log.append(i);
+
+        	root = log.getRootHash();
+        }
+
+        Path file = this.directory.resolve(MerkleLeafLog.LOG_FILE_NAME);
+        long size = Files.size(file);
+        Files.write(file, new byte[7], StandardOpenOption.APPEND);
+
+        try (MerkleLeafLog<Integer> log =
+        		MerkleLeafLog.open(this.directory, 4)) {
+        	assertEquals(10, log.getSize(),
+        			     "La foglia incompleta dovrebbe essere scartata.");
+        	assertEquals(root, log.getRootHash(),
+        			     "La radice recuperata non è corretta.");
+        	assertEquals(size, Files.size(file),
+        			     "Il log dovrebbe essere troncato.");
+        }
+    }
+
+    @Test
+    void testUnacknowledgedBatches() throws IOException {
+    	String root;
+
+        try (MerkleLeafLog<Integer> log =
+        		MerkleLeafLog.open(this.directory, 4)) {
+        	for (int i = 0; i < 10; i++) log.append(i);
+
+        	root = log.getRootHash();
+        }
+
+        Path file = this.directory.resolve(MerkleLeafLog.LOG_FILE_NAME);
+        long size = Files.size(file);
+        byte[] stale = new byte[8 + 3 * HashUtil.MD5_LENGTH];
+        new Random(3).nextBytes(stale);
+        ByteBuffer.wrap(stale).putInt(0, 3);
+
+        Files.write(file, new byte[8 + 5 * HashUtil.MD5_LENGTH],
+        		    StandardOpenOption.APPEND);
+
+        try (MerkleLeafLog<Integer> log =
+        		MerkleLeafLog.open(this.directory, 4)) {
+        	assertEquals(10, log.getSize(),
+        			     "Il blocco azzerato non dovrebbe essere riletto.");
+        	assertEquals(root, log.getRootHash(),
+        			     "La radice recuperata non è corretta.");
+        }
+
+        Files.write(file, stale, StandardOpenOption.APPEND);
+
+        try (MerkleLeafLog<Integer> log =
+        		MerkleLeafLog.open(this.directory, 4)) {
+        	assertEquals(10, log.getSize(),
+        			     "Il blocco con un CRC errato non dovrebbe essere "
+        			     + "riletto.");
+        	assertEquals(root, log.getRootHash(),
+        			     "La radice recuperata non è corretta.");
+        	assertEquals(size, Files.size(file),
+        			     "Il log dovrebbe essere troncato.");
+
+        	log.append(10);
+        	assertEquals(log.toMerkleTree().getRoot().getHash(),
+        			     log.getRootHash(),
+        			     "La radice non corrisponde alle foglie nel log.");
+        }
+    }
+
+    @Test
+    void testUnknownFormat() throws IOException {
+    	byte[] digests = new byte[4 * HashUtil.MD5_LENGTH];
+    	new Random(5).nextBytes(digests);
+    	Files.write(this.directory.resolve(MerkleLeafLog.LOG_FILE_NAME),
+    			    digests);
+
+        assertThrows(IOException.class,
+                     () -> MerkleLeafLog.open(this.directory, 4),
+                     "Un log senza intestazione dovrebbe essere rifiutato.");
+    }
+
+    @Test
+    void testCorruptCheckpoint() throws IOException {
+        try (MerkleLeafLog<Integer> log =
+        		MerkleLeafLog.open(this.directory, 4)) {
+        	for (int i = 0; i < 10; i++) log.append(i);
+        }
+
+        Path checkpoint =
+        		this.directory.resolve(MerkleLeafLog.CHECKPOINT_FILE_NAME);
+        byte[] content = Files.readAllBytes(checkpoint);
+        content[12] ^= 1;
+        Files.write(checkpoint, content);
+
+        assertThrows(IOException.class,
+                     () -> MerkleLeafLog.open(this.directory, 4),
+                     "Un checkpoint danneggiato dovrebbe essere rifiutato.");
+    }
+
+    @Test
+    void testConcurrentAppends() throws Exception {
+    	Set<Long> positions = new HashSet<Long>();
+
+        try (MerkleLeafLog<Integer> log =
+        		MerkleLeafLog.open(this.directory, 64)) {
+        	List<Thread> threads = new ArrayList<Thread>();
+
+        	for (int t = 0; t < 8; t++) {
+        		int base = t * 1000;
+
+        		threads.add(new Thread(() -> {
+        			for (int i = 0; i < 100; i++) {
+        				try {
+        					long position = log.append(base + i);
+
+        					synchronized (positions) {
+        						positions.add(position);
+        					}
+        				} catch (IOException e) {
+        					throw new RuntimeException(e);
+        				}
+        			}
+        		}));
+        	}
+
+        	for (Thread thread : threads) thread.start();
+        	for (Thread thread : threads) thread.join();
+
+        	assertEquals(800, log.getSize(),
+        			     "Il log dovrebbe contenere tutte le foglie.");
+        	assertEquals(800, positions.size(),
+        			     "Ogni foglia dovrebbe avere una posizione diversa.");
+        	assertEquals(log.toMerkleTree().getRoot().getHash(),
+        			     log.getRootHash(),
+        			     "La radice non corrisponde alle foglie nel log.");
+        }
+    }
+}
\ No newline at end of file
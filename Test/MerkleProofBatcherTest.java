@@ -0,0 +1,144 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link MerkleProofBatcher} class. This class includes
+ * tests to verify the asynchronous proofs answered in batches.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testProofs()}: Verify that the proofs of the requests are
+ *     valid.</li>
+ *
+ * <li>{@link #testCoalescing()}: Verify that the requests arriving within
+ *     the window are answered by a single batch.</li>
+ *
+ * <li>{@link #testDuplicatesShareResult()}: Verify that requests for the same
+ *     leaf share the same proof, and that cancelling one of them does not
+ *     affect the others.</li>
+ *
+ * <li>{@link #testFullBatch()}: Verify that a full batch is answered without
+ *     waiting for the window to end.</li>
+ *
+ * <li>{@link #testInvalidRequests()}: Verify that invalid arguments are
+ *     rejected.</li>
+ * </ul>
+ */
+class MerkleProofBatcherTest {
+
+    private ConcurrentMerkleTree<Integer> tree;
+
+    private AtomicInteger batches;
+
+    private Executor executor;
+
+    @BeforeEach
+    void setUp() {
+        HashLinkedList<Integer> list = new HashLinkedList<Integer>();
+        for (int i = 0; i < 1000; i++) list.addAtTail(i);
+
+        this.tree = new ConcurrentMerkleTree<Integer>(list);
+        this.batches = new AtomicInteger();
+        this.executor = task -> {
+        	this.batches.incrementAndGet();
+        	ForkJoinPool.commonPool().execute(task);
+        };
+    }
+
+    @Test
+    void testProofs() throws Exception {
+        MerkleProofBatcher<Integer> batcher =
+        		new MerkleProofBatcher<Integer>(this.tree);
+        List<CompletableFuture<MerkleProof>> proofs =
+        		new ArrayList<CompletableFuture<MerkleProof>>();
+
+        for (int i = 0; i < 1000; i += 3)
+        	proofs.add(batcher.getMerkleProofAsync(i));
+
+        for (int i = 0; i < proofs.size(); i++) {
+        	assertTrue(proofs.get(i).get(10, TimeUnit.SECONDS)
+        			             .proveValidityOfData(i * 3),
+        			   "La prova dell'elemento " + i * 3 + " non è valida.");
+        }
+    }
+
+    @Test
+    void testCoalescing() throws Exception {
+        MerkleProofBatcher<Integer> batcher = new MerkleProofBatcher<Integer>(
+        		this.tree, 100_000, 1024, this.executor);
+        List<CompletableFuture<MerkleProof>> proofs =
+        		new ArrayList<CompletableFuture<MerkleProof>>();
+
+        for (int i = 0; i < 200; i++)
+        	proofs.add(batcher.getMerkleProofAsync(i * 5));
+
+        CompletableFuture.allOf(proofs.toArray(new CompletableFuture<?>[0]))
+                         .get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, this.batches.get(),
+                     "Le richieste dovrebbero essere servite da un solo "
+                     + "lotto.");
+    }
+
+    @Test
+    void testDuplicatesShareResult() throws Exception {
+        MerkleProofBatcher<Integer> batcher = new MerkleProofBatcher<Integer>(
+        		this.tree, 50_000, 1024, this.executor);
+
+        CompletableFuture<MerkleProof> first = batcher.getMerkleProofAsync(42);
+        CompletableFuture<MerkleProof> second = batcher.getMerkleProofAsync(42);
+        CompletableFuture<MerkleProof> third = batcher.getMerkleProofAsync(42);
+
+        third.cancel(false);
+
+        assertSame(first.get(10, TimeUnit.SECONDS),
+                   second.get(10, TimeUnit.SECONDS),
+                   "Le richieste della stessa foglia dovrebbero condividere "
+                   + "la prova.");
+        assertTrue(first.get().proveValidityOfData(42),
+                   "La prova condivisa non è valida.");
+        assertTrue(third.isCancelled(),
+                   "La richiesta annullata dovrebbe restare annullata.");
+    }
+
+    @Test
+    void testFullBatch() throws Exception {
+        MerkleProofBatcher<Integer> batcher = new MerkleProofBatcher<Integer>(
+        		this.tree, TimeUnit.MINUTES.toMicros(10), 4, this.executor);
+        List<CompletableFuture<MerkleProof>> proofs =
+        		new ArrayList<CompletableFuture<MerkleProof>>();
+
+        for (int i = 0; i < 4; i++)
+        	proofs.add(batcher.getMerkleProofAsync(i * 100));
+
+        for (int i = 0; i < 4; i++) {
+        	assertTrue(proofs.get(i).get(10, TimeUnit.SECONDS)
+        			             .proveValidityOfData(i * 100),
+        			   "La prova dell'elemento " + i * 100
+        			   + " non è valida.");
+        }
+    }
+
+    @Test
+    void testInvalidRequests() {
+        MerkleProofBatcher<Integer> batcher =
+        		new MerkleProofBatcher<Integer>(this.tree);
+
+        assertThrows(IndexOutOfBoundsException.class,
+                     () -> batcher.getMerkleProofAsync(1000),
+                     "Dovrebbe lanciare IndexOutOfBoundsException.");
+        assertThrows(IllegalArgumentException.class,
+                     () -> new MerkleProofBatcher<Integer>(
+                    		 this.tree, 10, 0, this.executor),
+                     "Dovrebbe lanciare IllegalArgumentException.");
+        assertThrows(IllegalArgumentException.class,
+                     () -> new MerkleProofBatcher<Integer>(null),
+                     "Dovrebbe lanciare IllegalArgumentException.");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,309 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link MerkleProofServer} and {@link MerkleProofClient}
+ * classes. This class includes tests to verify the requests answered by the
+ * server on a persisted tree.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testRoot()}: Verify the root and the width answered by the
+ *     server.</li>
+ *
+ * <li>{@link #testProofs()}: Verify that the proofs answered by the server
+ *     are valid, including the one of the leaf without a sibling.</li>
+ *
+ * <li>{@link #testValidate()}: Verify the validation of data in the tree
+ *     and not in the tree.</li>
+ *
+ * <li>{@link #testInvalidIndex()}: Verify that a request for a missing leaf
+ *     fails without breaking the connection.</li>
+ *
+ * <li>{@link #testPipelining()}: Sends several requests in a single write
+ *     and verifies that the responses arrive in order.</li>
+ *
+ * <li>{@link #testLoadGenerator()}: Runs the load generator on several
+ *     connections and verifies its report.</li>
+ *
+ * <li>{@link #testLoadErrorResponse()}: Runs the load generator against a
+ *     server that answers a proof with an error and verifies that the run
+ *     fails instead of hanging.</li>
+ *
+ * <li>{@link #testLoadTimeout()}: Runs the load generator against a server
+ *     that stops answering and verifies that the run fails when the timeout
+ *     expires.</li>
+ *
+ * <li>{@link #testUnknownOperation()}: Verify that a client sending an
+ *     invalid request is disconnected, while the others are still
+ *     served.</li>
+ *
+ * <li>{@link #testResetConnections()}: Resets many connections with requests
+ *     in flight and verifies that the server keeps serving the other
+ *     clients.</li>
+ * </ul>
+ */
+class MerkleProofServerTest {
+
+    private MerkleTree<Integer> tree;
+
+    private Path file;
+
+    private MerkleProofServer server;
+
+    private MerkleProofClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+    	HashLinkedList<Integer> hashList = new HashLinkedList<Integer>();
+    	for (int i = 0; i < 1001; i++) hashList.addAtTail(i);
+
+    	this.tree = new MerkleTree<Integer>(hashList);
+    	this.file = Files.createTempFile("merkle", ".tree");
+    	MerkleTreeFile.write(this.tree, this.file);
+
+    	this.server = MerkleProofServer.start(this.file, new InetSocketAddress(
+    			InetAddress.getLoopbackAddress(), 0));
+    	this.client = MerkleProofClient.connect("localhost",
+    			                                this.server.getPort());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+    	this.client.close();
+    	this.server.close();
+    	Files.deleteIfExists(this.file);
+    }
+
+    @Test
+    void testRoot() throws IOException {
+        assertEquals(this.tree.getRoot().getHash(), this.client.getRootHash(),
+                     "La radice del server non è corretta.");
+        assertEquals(1001, this.client.getWidth(),
+                     "La larghezza del server non è corretta.");
+    }
+
+    @Test
+    void testProofs() throws IOException {
+        for (int i : new int[] {0, 1, 500, 999, 1000}) {
+        	assertTrue(this.client.getMerkleProof(i).proveValidityOfData(i),
+        			   "La prova dell'elemento " + i + " non è valida.");
+        }
+
+        assertFalse(this.client.getMerkleProof(7).proveValidityOfData(8),
+                    "La prova non dovrebbe valere per un altro elemento.");
+    }
+
+    @Test
+    void testValidate() throws IOException {
+        assertTrue(this.client.validateData(321),
+                   "Il dato dovrebbe essere nell'albero.");
+        assertEquals(1000, this.client.getIndexOfHash(
+        		                HashUtil.dataToHash(1000)),
+                     "La posizione del dato non è corretta.");
+        assertFalse(this.client.validateData(-1),
+                    "Il dato non dovrebbe essere nell'albero.");
+    }
+
+    @Test
+    void testInvalidIndex() throws IOException {
+        assertThrows(IndexOutOfBoundsException.class,
+                     () -> this.client.getMerkleProof(1001),
+                     "Dovrebbe lanciare IndexOutOfBoundsException.");
+        assertTrue(this.client.getMerkleProof(3).proveValidityOfData(3),
+                   "La connessione dovrebbe restare utilizzabile.");
+    }
+
+    @Test
+    void testPipelining() throws IOException {
+        try (Socket socket = new Socket("localhost", this.server.getPort())) {
+        	DataOutputStream out =
+        			new DataOutputStream(socket.getOutputStream());
+        	DataInputStream in = new DataInputStream(socket.getInputStream());
+        	ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        	DataOutputStream requests = new DataOutputStream(batch);
+
+        	for (int id = 0; id < 100; id++) {
+        		requests.writeByte(MerkleProofServer.VALIDATE);
+        		requests.writeInt(id);
+        		requests.write(HashUtil.dataToDigest(id * 10));
+        	}
+
+        	out.write(batch.toByteArray());
+        	out.flush();
+
+        	for (int id = 0; id < 100; id++) {
+        		assertEquals(MerkleProofServer.OK, in.readByte(),
+        				     "La risposta dovrebbe avere successo.");
+        		assertEquals(id, in.readInt(),
+        				     "Le risposte dovrebbero arrivare in ordine.");
+        		assertEquals(id * 10 <= 1000 ? id * 10 : -1, in.readInt(),
+        				     "La posizione del dato non è corretta.");
+        	}
+        }
+    }
+
+    @Test
+    void testLoadGenerator() throws Exception {
+        MerkleProofClient.LoadReport report = MerkleProofClient.runLoad(
+        		"localhost", this.server.getPort(), 4, 2000, 32);
+
+        assertEquals(8000, report.getRequests(),
+                     "Tutte le richieste dovrebbero ricevere risposta.");
+        assertTrue(report.getThroughput() > 0,
+                   "Il throughput dovrebbe essere positivo.");
+        assertTrue(report.getPercentileMicros(0.99)
+        		   >= report.getPercentileMicros(0.5),
+                   "Il 99-esimo percentile non può essere inferiore alla "
+                   + "mediana.");
+    }
+
+    /**
+     * Starts a fake server that answers the root requests with a tree of 1000
+     * leaves and, if requested, the first proof request of each connection
+     * with an error, leaving the other proof requests unanswered.
+     */
+    private static ServerSocket fakeServer(boolean answerError)
+    		throws IOException {
+        ServerSocket fake = new ServerSocket(0, 50,
+        		                             InetAddress.getLoopbackAddress());
+
+        Thread acceptor = new Thread(() -> {
+        	while (true) {
+        		Socket socket;
+
+        		try {
+        			socket = fake.accept();
+        		} catch (IOException e) {
+        			return;
+        		}
+
+        		Thread connection = new Thread(() -> {
+        			try (Socket open = socket) {
+        				DataInputStream in =
+        						new DataInputStream(open.getInputStream());
+        				DataOutputStream out =
+        						new DataOutputStream(open.getOutputStream());
+        				boolean answered = !answerError;
+
+        				while (true) {
+        					byte operation = in.readByte();
+        					int id = in.readInt();
+
+        					if (operation == MerkleProofServer.ROOT) {
+        						out.writeByte(MerkleProofServer.OK);
+        						out.writeInt(id);
+        						out.write(new byte[HashUtil.MD5_LENGTH]);
+        						out.writeInt(1000);
+        						out.writeInt(10);
+        					}
+        					else {
+        						in.readInt();
+
+        						if (!answered) {
+        							out.writeByte(MerkleProofServer.ERROR);
+        							out.writeInt(id);
+        							answered = true;
+        						}
+        					}
+        				}
+        			} catch (IOException e) {
+        				// The client closed the connection.
+        			}
+        		});
+
+        		connection.setDaemon(true);
+        		connection.start();
+        	}
+        });
+
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        return fake;
+    }
+
+    @Test
+    void testLoadErrorResponse() throws Exception {
+        try (ServerSocket fake = fakeServer(true)) {
+        	IOException e = assertThrows(IOException.class,
+        			                     () -> MerkleProofClient.runLoad(
+        			                    		 "localhost",
+        			                    		 fake.getLocalPort(), 2, 1000,
+        			                    		 8, 60000),
+        			                     "Dovrebbe lanciare IOException.");
+
+        	assertTrue(e.getCause() instanceof IndexOutOfBoundsException,
+        			   "La causa dell'errore non è corretta.");
+        }
+    }
+
+    @Test
+    void testLoadTimeout() throws Exception {
+        try (ServerSocket fake = fakeServer(false)) {
+        	long start = System.nanoTime();
+
+        	assertThrows(IOException.class,
+        			     () -> MerkleProofClient.runLoad(
+        			    		 "localhost", fake.getLocalPort(), 2, 1000, 8,
+        			    		 200),
+        			     "Dovrebbe lanciare IOException.");
+        	assertTrue(System.nanoTime() - start < 30_000_000_000L,
+        			   "Il generatore dovrebbe fermarsi allo scadere del "
+        			   + "tempo.");
+        }
+    }
+
+    @Test
+    void testUnknownOperation() throws IOException {
+        try (Socket socket = new Socket("localhost", this.server.getPort())) {
+        	socket.getOutputStream().write(new byte[] {9, 0, 0, 0, 0});
+
+        	assertEquals(-1, socket.getInputStream().read(),
+        			     "Il server dovrebbe chiudere la connessione.");
+        }
+
+        assertEquals(this.tree.getRoot().getHash(), this.client.getRootHash(),
+                     "Gli altri client dovrebbero essere ancora serviti.");
+    }
+
+    @Test
+    void testResetConnections() throws IOException {
+        for (int i = 0; i < 50; i++) {
+        	try (Socket socket = new Socket("localhost",
+        			                        this.server.getPort())) {
+        		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        		DataOutputStream requests = new DataOutputStream(bytes);
+
+        		for (int j = 0; j < 100; j++) {
+        			requests.writeByte(MerkleProofServer.PROOF);
+        			requests.writeInt(j);
+        			requests.writeInt(j);
+        		}
+
+        		socket.getOutputStream().write(bytes.toByteArray());
+        		socket.setSoLinger(true, 0);
+        	}
+        }
+
+        assertEquals(this.tree.getRoot().getHash(), this.client.getRootHash(),
+                     "Gli altri client dovrebbero essere ancora serviti.");
+        assertTrue(this.tree.getMerkleProof(7).proveValidityOfData(7)
+        		   && this.client.getMerkleProof(7).proveValidityOfData(7),
+                   "Le prove dovrebbero essere ancora valide.");
+    }
+}
\ No newline at end of file
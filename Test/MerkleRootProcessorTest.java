@@ -0,0 +1,289 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link MerkleRootProcessor} class. This class includes
+ * tests to verify the stream of roots computed from a stream of data.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testSnapshotsEveryLeaves()}: Verify that a snapshot is
+ *     published every given number of leaves, with the root of the
+ *     corresponding {@link MerkleTree}.</li>
+ *
+ * <li>{@link #testFinalSnapshot()}: Verify that a last snapshot with all the
+ *     data is published when the data ends.</li>
+ *
+ * <li>{@link #testBackpressure()}: Verify that the processor stops requesting
+ *     data while the subscriber does not request the due snapshot.</li>
+ *
+ * <li>{@link #testPeriodicSnapshots()}: Verify that a snapshot is published
+ *     after the given time even if the data does not end.</li>
+ *
+ * <li>{@link #testError()}: Verify that an error of the data is passed to the
+ *     subscriber.</li>
+ *
+ * <li>{@link #testInvalidRequests()}: Verify that a non-positive request and
+ *     a second subscriber are rejected.</li>
+ * </ul>
+ */
+class MerkleRootProcessorTest {
+
+    /**
+     * A publisher of the integers from 0 to the given count, which records
+     * how many of them were requested.
+     */
+    private static class RangePublisher implements Flow.Publisher<Integer> {
+
+        private final int count;
+
+        private final AtomicLong requested = new AtomicLong();
+
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private int next = 0;
+
+        RangePublisher(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super Integer> subscriber) {
+            AtomicLong demand = new AtomicLong();
+
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    requested.addAndGet(n);
+                    demand.addAndGet(n);
+
+                    if (wip.getAndIncrement() != 0) return;
+
+                    do {
+                    	while (demand.get() > 0 && next < count) {
+                    		demand.decrementAndGet();
+                    		subscriber.onNext(next++);
+                    	}
+
+                    	if (next == count) {
+                    		next++;
+                    		subscriber.onComplete();
+                    	}
+                    } while (wip.decrementAndGet() != 0);
+                }
+
+                @Override
+                public void cancel() { }
+            });
+        }
+    }
+
+    /**
+     * A subscriber that collects the snapshots, requesting the given number
+     * of them when it subscribes.
+     */
+    private static class Collector implements
+    		Flow.Subscriber<MerkleRootProcessor.Snapshot> {
+
+        final BlockingQueue<MerkleRootProcessor.Snapshot> snapshots =
+        		new LinkedBlockingQueue<MerkleRootProcessor.Snapshot>();
+
+        final CountDownLatch done = new CountDownLatch(1);
+
+        final AtomicReference<Throwable> error =
+        		new AtomicReference<Throwable>();
+
+        private final long initialRequest;
+
+        volatile Flow.Subscription subscription;
+
+        Collector(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(this.initialRequest);
+        }
+
+        @Override
+        public void onNext(MerkleRootProcessor.Snapshot item) {
+            this.snapshots.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.error.set(throwable);
+            this.done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            this.done.countDown();
+        }
+    }
+
+    private static String rootOf(int width) {
+        List<String> hashes = new ArrayList<String>();
+        for (int i = 0; i < width; i++) hashes.add(HashUtil.dataToHash(i));
+
+        return MerkleTree.fromHashes(hashes).getRoot().getHash();
+    }
+
+    @Test
+    void testSnapshotsEveryLeaves() throws Exception {
+        MerkleRootProcessor<Integer> processor =
+        		new MerkleRootProcessor<Integer>(10);
+        Collector collector = new Collector(Long.MAX_VALUE);
+
+        processor.subscribe(collector);
+        new RangePublisher(100).subscribe(processor);
+
+        assertTrue(collector.done.await(10, TimeUnit.SECONDS),
+                   "Il flusso dovrebbe terminare.");
+        assertNull(collector.error.get(), "Non dovrebbero esserci errori.");
+        assertEquals(10, collector.snapshots.size(),
+                     "Il numero di radici pubblicate non è corretto.");
+
+        long width = 10;
+        for (MerkleRootProcessor.Snapshot snapshot : collector.snapshots) {
+        	assertEquals(width, snapshot.getWidth(),
+        			     "La larghezza dell'albero non è corretta.");
+        	assertEquals(rootOf((int) width), snapshot.getRootHash(),
+        			     "La radice dell'albero non è corretta.");
+        	width += 10;
+        }
+    }
+
+    @Test
+    void testFinalSnapshot() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        MerkleRootProcessor<Integer> processor =
+        		new MerkleRootProcessor<Integer>(executor, 8, 50, 0);
+        Collector collector = new Collector(Long.MAX_VALUE);
+
+        processor.subscribe(collector);
+        new RangePublisher(123).subscribe(processor);
+
+        assertTrue(collector.done.await(10, TimeUnit.SECONDS),
+                   "Il flusso dovrebbe terminare.");
+
+        List<MerkleRootProcessor.Snapshot> snapshots =
+        		new ArrayList<MerkleRootProcessor.Snapshot>(
+        				collector.snapshots);
+        assertEquals(3, snapshots.size(),
+                     "Il numero di radici pubblicate non è corretto.");
+        assertEquals(123, snapshots.get(2).getWidth(),
+                     "L'ultima radice dovrebbe comprendere tutti i dati.");
+        assertEquals(rootOf(123), snapshots.get(2).getRootHash(),
+                     "L'ultima radice non è corretta.");
+
+        executor.shutdown();
+    }
+
+    @Test
+    void testBackpressure() throws Exception {
+        MerkleRootProcessor<Integer> processor =
+        		new MerkleRootProcessor<Integer>(
+        				ForkJoinPool.commonPool(), 4, 10, 0);
+        RangePublisher publisher = new RangePublisher(1000);
+        Collector collector = new Collector(1);
+
+        processor.subscribe(collector);
+        publisher.subscribe(processor);
+
+        assertEquals(10, collector.snapshots.poll(10, TimeUnit.SECONDS)
+        		                            .getWidth(),
+                     "La prima radice non è corretta.");
+        Thread.sleep(200);
+
+        assertEquals(24, publisher.requested.get(),
+                     "Senza richieste non dovrebbero essere chiesti altri "
+                     + "dati.");
+        assertTrue(collector.snapshots.isEmpty(),
+                   "Senza richieste non dovrebbero essere pubblicate radici.");
+
+        collector.subscription.request(Long.MAX_VALUE);
+
+        assertTrue(collector.done.await(10, TimeUnit.SECONDS),
+                   "Il flusso dovrebbe terminare.");
+        assertEquals(99, collector.snapshots.size(),
+                     "Il numero di radici pubblicate non è corretto.");
+    }
+
+    @Test
+    void testPeriodicSnapshots() throws Exception {
+        MerkleRootProcessor<Integer> processor =
+        		new MerkleRootProcessor<Integer>(
+        				ForkJoinPool.commonPool(), 16, 1000, 20);
+        SubmissionPublisher<Integer> publisher =
+        		new SubmissionPublisher<Integer>();
+        Collector collector = new Collector(Long.MAX_VALUE);
+
+        processor.subscribe(collector);
+        publisher.subscribe(processor);
+        for (int i = 0; i < 5; i++) publisher.submit(i);
+
+        MerkleRootProcessor.Snapshot snapshot;
+        do {
+        	snapshot = collector.snapshots.poll(10, TimeUnit.SECONDS);
+        	assertNotNull(snapshot, "Dovrebbe essere pubblicata una radice.");
+        } while (snapshot.getWidth() < 5);
+
+        assertEquals(rootOf(5), snapshot.getRootHash(),
+                     "La radice periodica non è corretta.");
+
+        publisher.close();
+        assertTrue(collector.done.await(10, TimeUnit.SECONDS),
+                   "Il flusso dovrebbe terminare.");
+    }
+
+    @Test
+    void testError() throws Exception {
+        MerkleRootProcessor<Integer> processor =
+        		new MerkleRootProcessor<Integer>(10);
+        SubmissionPublisher<Integer> publisher =
+        		new SubmissionPublisher<Integer>();
+        Collector collector = new Collector(Long.MAX_VALUE);
+
+        processor.subscribe(collector);
+        publisher.subscribe(processor);
+        publisher.submit(1);
+        publisher.closeExceptionally(new IllegalStateException());
+
+        assertTrue(collector.done.await(10, TimeUnit.SECONDS),
+                   "Il flusso dovrebbe terminare.");
+        assertTrue(collector.error.get() instanceof IllegalStateException,
+                   "L'errore dei dati dovrebbe essere passato.");
+    }
+
+    @Test
+    void testInvalidRequests() throws Exception {
+        MerkleRootProcessor<Integer> processor =
+        		new MerkleRootProcessor<Integer>(10);
+        Collector collector = new Collector(0);
+        Collector second = new Collector(1);
+
+        processor.subscribe(collector);
+        processor.subscribe(second);
+        new RangePublisher(10).subscribe(processor);
+
+        assertTrue(collector.done.await(10, TimeUnit.SECONDS),
+                   "Il flusso dovrebbe terminare.");
+        assertTrue(collector.error.get() instanceof IllegalArgumentException,
+                   "Dovrebbe ricevere IllegalArgumentException.");
+        assertTrue(second.error.get() instanceof IllegalStateException,
+                   "Dovrebbe ricevere IllegalStateException.");
+        assertThrows(IllegalArgumentException.class,
+                     () -> new MerkleRootProcessor<Integer>(0),
+                     "Dovrebbe lanciare IllegalArgumentException.");
+    }
+}
\ No newline at end of file
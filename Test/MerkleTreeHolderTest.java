@@ -0,0 +1,179 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link MerkleTreeHolder} class. This class tests the
+ * publication of new versions and the release of the old ones.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testRebuild()}: Rebuilds the tree from a list and verifies the
+ *     new version and its root.</li>
+ *
+ * <li>{@link #testReadersNotBlocked()}: Verifies that readers keep using the
+ *     current version while a rebuild is in progress.</li>
+ *
+ * <li>{@link #testReleaseAfterLeases()}: Verifies that an old version is
+ *     released only once its last lease is closed.</li>
+ *
+ * <li>{@link #testUpdatesInOrder()}: Requests several updates one after the
+ *     other and verifies that each is applied on the previous one.</li>
+ *
+ * <li>{@link #testFailedRebuild()}: Verifies that a failed rebuild keeps the
+ *     current version and does not prevent the following ones.</li>
+ * </ul>
+ */
+class MerkleTreeHolderTest {
+
+    private ExecutorService executor;
+
+    private HashLinkedList<Integer> hashList;
+
+    private List<MerkleTree<Integer>> released;
+
+    private MerkleTreeHolder<Integer> holder;
+
+    @BeforeEach
+    void setUp() {
+    	this.executor = Executors.newSingleThreadExecutor();
+    	this.hashList = new HashLinkedList<Integer>();
+    	for (int i = 0; i < 100; i++) this.hashList.addAtTail(i);
+
+    	this.released = new ArrayList<MerkleTree<Integer>>();
+    	this.holder = new MerkleTreeHolder<Integer>(
+    			new MerkleTree<Integer>(this.hashList), this.executor,
+    			tree -> {
+    				synchronized (this.released) {
+    					this.released.add(tree);
+    				}
+    			});
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+    	this.executor.shutdownNow();
+    	this.executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testRebuild() throws Exception {
+    	this.hashList.addAtTail(100);
+
+        assertEquals(Long.valueOf(1),
+        		     this.holder.rebuildAsync(this.hashList).get(),
+        		     "La nuova versione dovrebbe essere la prima.");
+        assertEquals(1, this.holder.getVersion(),
+        		     "La versione corrente non è corretta.");
+        assertEquals(new MerkleTree<Integer>(this.hashList).getRoot()
+        		                                           .getHash(),
+        		     this.holder.read(tree -> tree.getRoot().getHash()),
+        		     "La radice della nuova versione non è corretta.");
+    }
+
+    @Test
+    void testReadersNotBlocked() throws Exception {
+    	CountDownLatch started = new CountDownLatch(1);
+    	CountDownLatch finish = new CountDownLatch(1);
+    	String oldRoot = this.holder.read(tree -> tree.getRoot().getHash());
+
+    	CompletableFuture<Long> rebuild = this.holder.rebuildAsync(() -> {
+    		started.countDown();
+
+    		try {
+    			finish.await();
+    		} catch (InterruptedException e) {
+    			Thread.currentThread().interrupt();
+    		}
+
+    		return MerkleTree.fromHashes(List.of(HashUtil.dataToHash(1)));
+    	});
+
+    	assertTrue(started.await(5, TimeUnit.SECONDS),
+    			   "La ricostruzione dovrebbe essere iniziata.");
+
+    	for (int i = 0; i < 100; i++) {
+    		assertEquals(oldRoot,
+    				     this.holder.read(tree -> tree.getRoot().getHash()),
+    				     "I lettori dovrebbero usare la versione corrente.");
+    	}
+
+    	finish.countDown();
+    	rebuild.get();
+
+    	assertEquals(HashUtil.dataToHash(1),
+    			     this.holder.read(tree -> tree.getRoot().getHash()),
+    			     "I lettori dovrebbero vedere la nuova versione.");
+    }
+
+    @Test
+    void testReleaseAfterLeases() throws Exception {
+    	MerkleTreeHolder.Lease<Integer> lease = this.holder.acquire();
+    	MerkleTree<Integer> initial = lease.getTree();
+
+    	this.holder.rebuildAsync(this.hashList).get();
+
+    	assertEquals(0, lease.getVersion(),
+    			     "Il contratto dovrebbe restare sulla versione iniziale.");
+    	assertTrue(this.released.isEmpty(),
+    			   "La versione in uso non dovrebbe essere rilasciata.");
+
+    	lease.close();
+    	lease.close();
+
+    	assertEquals(List.of(initial), this.released,
+    			     "La versione iniziale dovrebbe essere rilasciata una "
+    			     + "sola volta.");
+
+    	this.holder.rebuildAsync(this.hashList).get();
+
+    	assertEquals(2, this.released.size(),
+    			     "Una versione senza lettori dovrebbe essere rilasciata "
+    			     + "subito.");
+    }
+
+    @Test
+    void testUpdatesInOrder() throws Exception {
+    	List<String> hashes = this.hashList.getAllHashes();
+    	CompletableFuture<Long> last = null;
+
+    	for (int i = 0; i < 10; i++) {
+    		hashes.set(i * 10, HashUtil.dataToHash(-i));
+    		last = this.holder.updateAsync(
+    				Map.of(i * 10, HashUtil.dataToHash(-i)));
+    	}
+
+    	assertEquals(Long.valueOf(10), last.get(),
+    			     "L'ultimo aggiornamento dovrebbe produrre la versione "
+    			     + "10.");
+    	assertEquals(MerkleTree.fromHashes(hashes).getRoot().getHash(),
+    			     this.holder.read(tree -> tree.getRoot().getHash()),
+    			     "Tutti gli aggiornamenti dovrebbero essere applicati.");
+    }
+
+    @Test
+    void testFailedRebuild() throws Exception {
+    	CompletableFuture<Long> failed =
+    			this.holder.updateAsync(Map.of(100, HashUtil.dataToHash(1)));
+
+        assertThrows(ExecutionException.class, () -> failed.get(),
+                     "Un aggiornamento fuori dai limiti dovrebbe fallire.");
+        assertEquals(0, this.holder.getVersion(),
+        		     "La versione corrente non dovrebbe cambiare.");
+        assertEquals(Long.valueOf(1),
+        		     this.holder.rebuildAsync(this.hashList).get(),
+        		     "Le ricostruzioni successive dovrebbero funzionare.");
+    }
+}
\ No newline at end of file
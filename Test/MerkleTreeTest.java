@@ -3,10 +3,19 @@ package it.unicam.cs.asdl2425.mp1;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BinaryOperator;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -89,6 +98,34 @@ import static org.junit.jupiter.api.Assertions.*;
  * <li>{@link #testSingleLeafTree()}: Tests the behavior of the MerkleTree for a
  *     single element, checking the width, height, and validity of the
  *     data.</li>
+ * 
+ * <li>{@link #testFromHashes()}: Verifies that a tree built from the cached
+ *     hashes of a list has the same root as the one built from the list.</li>
+ * 
+ * <li>{@link #testFromDigests()}, {@link #testFromLongDigests()}: They verify
+ *     that trees built from packed raw digests have the same root as the one
+ *     built from the list.</li>
+ * 
+ * <li>{@link #testFromDigestFile()}: Verifies that a tree built from a file
+ *     of raw digests has the same root as the one built from the list.</li>
+ * 
+ * <li>{@link #testFromDigestsInvalid()}: Ensures that an exception is thrown
+ *     for a digest array that is empty or not a multiple of 16 bytes.</li>
+ * 
+ * <li>{@link #testCollector()}: Verifies that a tree collected from a
+ *     sequential or parallel stream has the same root as the one built from
+ *     a list with the same elements.</li>
+ * 
+ * <li>{@link #testCollectorSplits()}: Verifies that a parallel stream is
+ *     collected in several parts joined by the combiner, and that the result
+ *     is the tree built from a list.</li>
+ * 
+ * <li>{@link #testCollectorUnevenParts()}: Combines parts of many different
+ *     sizes and verifies that the resulting tree has the same nodes as the
+ *     one built from the same hashes.</li>
+ * 
+ * <li>{@link #testCollectorInvalid()}: Ensures that an exception is thrown
+ *     when collecting an empty stream or a null element.</li>
  * </ul>
  */
 class MerkleTreeTest {
@@ -674,4 +711,194 @@ class MerkleTreeTest {
         assertTrue(singleTree.validateData("Alice paga Bob"), "Il dato "
         		   + "dovrebbe essere valido.");
     }
+
+    @Test
+    void testFromHashes() {
+        MerkleTree<Long> tree = MerkleTree.fromHashes(
+        		                this.hashList2.getAllHashes());
+
+        assertEquals(this.merkleTree2.getRoot(), tree.getRoot(),
+        		     "La radice dovrebbe coincidere con quella costruita dalla "
+        		     + "lista.");
+        assertEquals(13, tree.getWidth(), "La larghezza dell'albero dovrebbe "
+        		     + "essere 13.");
+    }
+
+    @Test
+    void testFromDigests() {
+        MerkleTree<Long> tree = MerkleTree.fromDigests(
+        		                this.hashList2.getAllDigests());
+
+        assertTrue(this.merkleTree2.validateTree(tree),
+        		   "L'albero dovrebbe coincidere con quello costruito dalla "
+        		   + "lista.");
+    }
+
+    @Test
+    void testFromLongDigests() {
+        byte[] bytes = this.hashList1.getAllDigests();
+        long[] digests = new long[bytes.length / 8];
+        
+        for (int i = 0; i < bytes.length; i++) {
+        	digests[i / 8] = (digests[i / 8] << 8) | (bytes[i] & 0xff);
+        }
+
+        MerkleTree<String> tree = MerkleTree.fromDigests(digests);
+
+        assertEquals(this.merkleTree1.getRoot(), tree.getRoot(),
+        		     "La radice dovrebbe coincidere con quella costruita dalla "
+        		     + "lista.");
+    }
+
+    @Test
+    void testFromDigestFile() throws Exception {
+        Path file = Files.createTempFile("merkle", ".digests");
+        
+        try {
+        	Files.write(file, this.hashList2.getAllDigests());
+
+            MerkleTree<Long> tree = MerkleTree.fromDigestFile(file);
+
+            assertEquals(this.merkleTree2.getRoot(), tree.getRoot(),
+            		     "La radice dovrebbe coincidere con quella costruita "
+            		     + "dalla lista.");
+        } finally {
+        	Files.delete(file);
+        }
+    }
+
+    @Test
+    void testFromDigestsInvalid() {
+        assertThrows(IllegalArgumentException.class,
+                     () -> MerkleTree.fromDigests(new byte[0]),
+                     "Dovrebbe lanciare IllegalArgumentException per un array "
+                     + "vuoto.");
+        assertThrows(IllegalArgumentException.class,
+                     () -> MerkleTree.fromDigests(new byte[17]),
+                     "Dovrebbe lanciare IllegalArgumentException per un array "
+                     + "di lunghezza non valida.");
+    }
+
+    @Test
+    void testCollector() {
+        HashLinkedList<Integer> list = new HashLinkedList<Integer>();
+        for (int i = 0; i < 10000; i++) list.addAtTail(i);
+
+        MerkleTree<Integer> expected = new MerkleTree<Integer>(list);
+        MerkleTree<Integer> parallel = IntStream.range(0, 10000).boxed()
+        		                       .parallel()
+        		                       .collect(MerkleTree.collector());
+        MerkleTree<Long> sequential = this.hashList2.stream()
+        		                      .collect(MerkleTree.collector());
+
+        assertEquals(expected.getRoot(), parallel.getRoot(),
+        		     "La radice dovrebbe coincidere con quella costruita dalla "
+        		     + "lista.");
+        assertEquals(10000, parallel.getWidth(),
+        		     "La larghezza dell'albero dovrebbe essere 10000.");
+        assertEquals(this.merkleTree2.getRoot(), sequential.getRoot(),
+        		     "La radice dovrebbe coincidere con quella costruita dalla "
+        		     + "lista.");
+    }
+
+    /**
+     * Returns a collector that behaves like the given one and counts the
+     * calls to its combiner.
+     */
+    private static <T, A, R> Collector<T, A, R> countingCombiner(
+    		Collector<T, A, R> collector, AtomicInteger combines) {
+        BinaryOperator<A> combiner = collector.combiner();
+
+        return Collector.of(collector.supplier(), collector.accumulator(),
+        		            (left, right) -> {
+        		            	combines.incrementAndGet();
+        		            	return combiner.apply(left, right);
+        		            },
+        		            collector.finisher());
+    }
+
+    /**
+     * Verifies that two subtrees have the same hashes and the same shape.
+     */
+    private static void assertSameNodes(MerkleNode expected, MerkleNode actual) {
+        if (expected == null) {
+        	assertNull(actual, "L'albero ha un nodo in più.");
+        	return;
+        }
+
+        assertNotNull(actual, "All'albero manca un nodo.");
+        assertEquals(expected.getHash(), actual.getHash(),
+                     "L'hash del nodo non è corretto.");
+        assertSameNodes(expected.getLeft(), actual.getLeft());
+        assertSameNodes(expected.getRight(), actual.getRight());
+    }
+
+    @Test
+    void testCollectorSplits() {
+        AtomicInteger combines = new AtomicInteger();
+        HashLinkedList<Integer> list = new HashLinkedList<Integer>();
+        for (int i = 0; i < 100000; i++) list.addAtTail(i);
+
+        MerkleTree<Integer> parallel = IntStream.range(0, 100000).boxed()
+        		                       .parallel()
+        		                       .collect(countingCombiner(
+        		                    		   MerkleTree.<Integer>collector(),
+        		                    		   combines));
+
+        assertTrue(combines.get() > 0,
+                   "Lo stream parallelo dovrebbe essere diviso in più parti.");
+        assertSameNodes(new MerkleTree<Integer>(list).getRoot(),
+                        parallel.getRoot());
+    }
+
+    @Test
+    void testCollectorUnevenParts() {
+        collectUnevenParts(MerkleTree.<Integer>collector());
+    }
+
+    /**
+     * Collects parts of many different sizes with the given collector,
+     * verifying the tree after each part is combined.
+     */
+    private static <A> void collectUnevenParts(
+    		Collector<Integer, A, MerkleTree<Integer>> collector) {
+        int[] sizes = {625, 1, 3, 1024, 7, 64, 65, 2, 1000, 31, 33, 128};
+        List<String> hashes = new ArrayList<String>();
+        A whole = collector.supplier().get();
+        int next = 0;
+
+        for (int size : sizes) {
+        	A part = collector.supplier().get();
+
+        	for (int i = 0; i < size; i++, next++) {
+        		collector.accumulator().accept(part, next);
+        		hashes.add(HashUtil.dataToHash(next));
+        	}
+
+        	whole = collector.combiner().apply(whole, part);
+
+        	MerkleTree<Integer> expected = MerkleTree.fromHashes(hashes);
+        	MerkleTree<Integer> collected = collector.finisher().apply(
+        			collector.combiner().apply(collector.supplier().get(),
+        					                   whole));
+
+        	assertEquals(expected.getWidth(), collected.getWidth(),
+        			     "La larghezza dell'albero non è corretta.");
+        	assertSameNodes(expected.getRoot(), collected.getRoot());
+        }
+    }
+
+    @Test
+    void testCollectorInvalid() {
+        assertThrows(IllegalArgumentException.class,
+                     () -> Stream.<String>empty()
+                    		     .collect(MerkleTree.collector()),
+                     "Dovrebbe lanciare IllegalArgumentException per uno "
+                     + "stream vuoto.");
+        assertThrows(IllegalArgumentException.class,
+                     () -> Arrays.asList("Alice paga Bob", null).stream()
+                    		     .collect(MerkleTree.collector()),
+                     "Dovrebbe lanciare IllegalArgumentException per un "
+                     + "elemento nullo.");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,185 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link PagedMerkleTree} class. This class tests a tree
+ * much larger than the memory it is allowed to use.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testRead()}: Verifies the root and the proofs of the paged tree
+ *     and that the pages in memory never exceed the limit.</li>
+ *
+ * <li>{@link #testPinnedUpperLevels()}: Verifies that the upper levels are
+ *     pinned within a quarter of the pool.</li>
+ *
+ * <li>{@link #testLevelScan()}: Scans the leaves and loads the whole tree,
+ *     verifying the result against the original tree.</li>
+ *
+ * <li>{@link #testSetData()}: Updates some leaves, verifies the new root and
+ *     that the changes are in the file after reopening it.</li>
+ *
+ * <li>{@link #testFindInvalidDataIndices()}: Compares two paged trees that
+ *     differ in some leaves.</li>
+ *
+ * <li>{@link #testInvalidArguments()}: Verifies that invalid limits and
+ *     positions are rejected.</li>
+ * </ul>
+ */
+class PagedMerkleTreeTest {
+
+    private static final long MEMORY_LIMIT = 8 * PagedMerkleTree.PAGE_SIZE;
+
+    private HashLinkedList<Integer> hashList;
+
+    private MerkleTree<Integer> tree;
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+    	this.hashList = new HashLinkedList<Integer>();
+    	for (int i = 0; i < 5000; i++) this.hashList.addAtTail(i);
+
+    	this.tree = new MerkleTree<Integer>(this.hashList);
+    	this.file = Files.createTempFile("merkle", ".tree");
+    	MerkleTreeFile.write(this.tree, this.file);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+    	Files.deleteIfExists(this.file);
+    }
+
+    @Test
+    void testRead() throws IOException {
+        try (PagedMerkleTree<Integer> paged =
+        		PagedMerkleTree.open(this.file, MEMORY_LIMIT)) {
+        	assertEquals(this.tree.getRoot().getHash(), paged.getRootHash(),
+        			     "La radice dell'albero non è corretta.");
+        	assertEquals(this.tree.getHeight(), paged.getHeight(),
+        			     "L'altezza dell'albero non è corretta.");
+
+        	for (int i = 0; i < 5000; i += 97) {
+        		assertTrue(paged.getMerkleProof(i).proveValidityOfData(i),
+        				   "La prova dell'elemento " + i + " non è valida.");
+        		assertTrue(paged.getPagesInMemory() <= 8,
+        				   "Le pagine in memoria superano il limite.");
+        	}
+        }
+    }
+
+    @Test
+    void testPinnedUpperLevels() throws IOException {
+        try (PagedMerkleTree<Integer> paged =
+        		PagedMerkleTree.open(this.file, MEMORY_LIMIT)) {
+        	assertTrue(paged.getPinnedPages() > 0,
+        			   "I livelli superiori dovrebbero essere fissati.");
+        	assertTrue(paged.getPinnedPages() <= 2,
+        			   "Le pagine fissate superano un quarto del limite.");
+        	assertEquals(paged.getPinnedPages(), paged.getPagesInMemory(),
+        			     "Solo le pagine fissate dovrebbero essere in memoria.");
+
+        	paged.getRootHash();
+
+        	assertEquals(paged.getPinnedPages(), paged.getPagesInMemory(),
+        			     "La radice dovrebbe essere in una pagina fissata.");
+        }
+    }
+
+    @Test
+    void testLevelScan() throws IOException {
+        try (PagedMerkleTree<Integer> paged =
+        		PagedMerkleTree.open(this.file, MEMORY_LIMIT)) {
+        	assertEquals(4999, paged.getIndexOfData(4999),
+        			     "L'indice dell'ultimo elemento non è corretto.");
+        	assertEquals(-1, paged.getIndexOfData(5000),
+        			     "L'elemento 5000 non dovrebbe essere nell'albero.");
+        	assertTrue(this.tree.validateTree(paged.toMerkleTree()),
+        			   "L'albero caricato dovrebbe coincidere con l'originale.");
+        	assertTrue(paged.getPagesInMemory() <= 8,
+        			   "Le pagine in memoria superano il limite.");
+        }
+    }
+
+    @Test
+    void testSetData() throws IOException {
+    	List<String> hashes = this.hashList.getAllHashes();
+
+        try (PagedMerkleTree<Integer> paged =
+        		PagedMerkleTree.open(this.file, MEMORY_LIMIT)) {
+        	for (int i = 0; i < 5000; i += 611) {
+        		paged.setData(i, -i - 1);
+        		hashes.set(i, HashUtil.dataToHash(-i - 1));
+        	}
+
+        	paged.setData(4999, -5000);
+        	hashes.set(4999, HashUtil.dataToHash(-5000));
+
+        	assertEquals(MerkleTree.fromHashes(hashes).getRoot().getHash(),
+        			     paged.getRootHash(),
+        			     "La radice dopo le modifiche non è corretta.");
+        	assertTrue(paged.getMerkleProof(611).proveValidityOfData(-612),
+        			   "La prova dell'elemento modificato non è valida.");
+        }
+
+        try (MappedMerkleTree<Integer> mapped =
+        		MappedMerkleTree.open(this.file)) {
+        	assertTrue(MerkleTree.<Integer>fromHashes(hashes)
+        			             .validateTree(mapped.toMerkleTree()),
+        			   "Le modifiche dovrebbero essere scritte nel file.");
+        }
+    }
+
+    @Test
+    void testFindInvalidDataIndices() throws IOException {
+    	Path otherFile = Files.createTempFile("merkle", ".tree");
+
+    	try {
+    		Files.copy(this.file, otherFile,
+    				   StandardCopyOption.REPLACE_EXISTING);
+
+    		try (PagedMerkleTree<Integer> paged =
+    				PagedMerkleTree.open(this.file, MEMORY_LIMIT);
+    			 PagedMerkleTree<Integer> other =
+    			    PagedMerkleTree.open(otherFile, MEMORY_LIMIT)) {
+    			other.setData(7, -7);
+    			other.setData(3000, -3000);
+
+    			assertEquals(Set.of(7, 3000),
+    					     paged.findInvalidDataIndices(other),
+    					     "Gli indici non validi non sono corretti.");
+    		}
+    	} finally {
+    		Files.delete(otherFile);
+    	}
+    }
+
+    @Test
+    void testInvalidArguments() throws IOException {
+        assertThrows(IllegalArgumentException.class,
+                     () -> PagedMerkleTree.open(this.file,
+                    		                    PagedMerkleTree.PAGE_SIZE),
+                     "Un limite di una pagina dovrebbe essere rifiutato.");
+
+        try (PagedMerkleTree<Integer> paged =
+        		PagedMerkleTree.open(this.file, MEMORY_LIMIT)) {
+        	assertThrows(IndexOutOfBoundsException.class,
+        			     () -> paged.setData(5000, 1),
+        			     "Dovrebbe lanciare IndexOutOfBoundsException.");
+        	assertThrows(IllegalArgumentException.class,
+        			     () -> paged.setLeafHash(0, "abc"),
+        			     "Un hash non valido dovrebbe essere rifiutato.");
+        }
+    }
+}
\ No newline at end of file
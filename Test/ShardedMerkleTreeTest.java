@@ -0,0 +1,183 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link ShardedMerkleTree} class. This class includes
+ * tests to verify the tree built on independent shards.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testMatchesMerkleTree()}: Verify that shards of the same power
+ *     of two width give the root of the {@link MerkleTree} built on all the
+ *     data.</li>
+ *
+ * <li>{@link #testProofs()}: Verify that the proofs of the elements of
+ *     shards of different widths, and the proofs of the shards, are
+ *     valid.</li>
+ *
+ * <li>{@link #testParallelBuild()}: Verify that the shards built in parallel
+ *     give the same tree as the ones built from their hashes.</li>
+ *
+ * <li>{@link #testSetData()}: Replaces an element and verifies the new root
+ *     and the new proof.</li>
+ *
+ * <li>{@link #testSetShard()}: Replaces a whole shard and verifies the new
+ *     root.</li>
+ *
+ * <li>{@link #testInvalidArguments()}: Verify that invalid shards and
+ *     positions are rejected.</li>
+ * </ul>
+ */
+class ShardedMerkleTreeTest {
+
+    private List<List<Integer>> data;
+
+    private ShardedMerkleTree<Integer> tree;
+
+    @BeforeEach
+    void setUp() {
+        this.data = new ArrayList<List<Integer>>();
+        int next = 0;
+
+        for (int width : new int[] {5, 13, 1, 8}) {
+        	List<Integer> shard = new ArrayList<Integer>();
+        	for (int i = 0; i < width; i++) shard.add(next++);
+
+        	this.data.add(shard);
+        }
+
+        this.tree = ShardedMerkleTree.fromShards(hashesOf(this.data));
+    }
+
+    private static List<List<String>> hashesOf(List<List<Integer>> data) {
+        List<List<String>> hashes = new ArrayList<List<String>>();
+
+        for (List<Integer> shard : data) {
+        	List<String> shardHashes = new ArrayList<String>();
+        	for (Integer element : shard)
+        		shardHashes.add(HashUtil.dataToHash(element));
+
+        	hashes.add(shardHashes);
+        }
+
+        return hashes;
+    }
+
+    @Test
+    void testMatchesMerkleTree() {
+        HashLinkedList<Integer> list = new HashLinkedList<Integer>();
+        List<List<Integer>> shards = new ArrayList<List<Integer>>();
+
+        for (int i = 0; i < 32; i++) {
+        	if (i % 8 == 0) shards.add(new ArrayList<Integer>());
+
+        	shards.get(i / 8).add(i);
+        	list.addAtTail(i);
+        }
+
+        ShardedMerkleTree<Integer> sharded =
+        		ShardedMerkleTree.fromShards(hashesOf(shards));
+
+        assertEquals(new MerkleTree<Integer>(list).getRoot().getHash(),
+                     sharded.getRootHash(),
+                     "La radice dovrebbe coincidere con quella dell'albero "
+                     + "costruito su tutti i dati.");
+        assertEquals(32, sharded.getWidth(),
+                     "La larghezza dell'albero non è corretta.");
+    }
+
+    @Test
+    void testProofs() {
+        for (int shard = 0; shard < this.data.size(); shard++) {
+        	for (int i = 0; i < this.data.get(shard).size(); i++) {
+        		assertTrue(this.tree.getMerkleProof(shard, i)
+        				       .proveValidityOfData(this.data.get(shard).get(i)),
+        				   "La prova dell'elemento " + i + " del frammento "
+        				   + shard + " non è valida.");
+        	}
+
+        	assertTrue(this.tree.getShardProof(shard).proveValidityOfBranch(
+        			new MerkleNode(this.tree.getShardRootHash(shard))),
+        			   "La prova del frammento " + shard + " non è valida.");
+        }
+
+        assertFalse(this.tree.getMerkleProof(1, 0).proveValidityOfData(0),
+                    "La prova non dovrebbe valere per un altro elemento.");
+    }
+
+    @Test
+    void testParallelBuild() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+        	ShardedMerkleTree<Integer> built =
+        			ShardedMerkleTree.build(this.data, executor);
+
+        	assertEquals(this.tree.getRootHash(), built.getRootHash(),
+        			     "La radice costruita in parallelo non è corretta.");
+        	assertEquals(27, built.getWidth(),
+        			     "La larghezza dell'albero non è corretta.");
+        } finally {
+        	executor.shutdown();
+        }
+    }
+
+    @Test
+    void testSetData() {
+        String root = this.tree.setData(1, 7, -1);
+
+        this.data.get(1).set(7, -1);
+
+        assertEquals(ShardedMerkleTree.fromShards(hashesOf(this.data))
+        		                      .getRootHash(), root,
+                     "La radice dopo l'aggiornamento non è corretta.");
+        assertEquals(root, this.tree.getRootHash(),
+                     "La radice restituita non è quella dell'albero.");
+        assertTrue(this.tree.getMerkleProof(1, 7).proveValidityOfData(-1),
+                   "La prova dell'elemento aggiornato non è valida.");
+        assertTrue(this.tree.getMerkleProof(3, 2)
+        		       .proveValidityOfData(this.data.get(3).get(2)),
+                   "La prova di un altro frammento non è valida.");
+    }
+
+    @Test
+    void testSetShard() {
+        List<Integer> replacement = Arrays.asList(100, 200, 300);
+        this.data.set(2, replacement);
+
+        String root = this.tree.setShard(
+        		2, hashesOf(List.of(replacement)).get(0));
+
+        assertEquals(ShardedMerkleTree.fromShards(hashesOf(this.data))
+        		                      .getRootHash(), root,
+                     "La radice dopo la sostituzione non è corretta.");
+        assertEquals(3, this.tree.getShardWidth(2),
+                     "La larghezza del frammento non è corretta.");
+        assertTrue(this.tree.getMerkleProof(2, 2).proveValidityOfData(300),
+                   "La prova del nuovo frammento non è valida.");
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class,
+                     () -> ShardedMerkleTree.fromShards(List.of()),
+                     "Dovrebbe lanciare IllegalArgumentException.");
+        assertThrows(IllegalArgumentException.class,
+                     () -> ShardedMerkleTree.fromShards(
+                    		 List.of(List.of(HashUtil.dataToHash(1)),
+                    				 List.of())),
+                     "Dovrebbe lanciare IllegalArgumentException.");
+        assertThrows(IndexOutOfBoundsException.class,
+                     () -> this.tree.getMerkleProof(0, 5),
+                     "Dovrebbe lanciare IndexOutOfBoundsException.");
+        assertThrows(IndexOutOfBoundsException.class,
+                     () -> this.tree.setData(4, 0, 1),
+                     "Dovrebbe lanciare IndexOutOfBoundsException.");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,230 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link UnrolledHashLinkedList} class. This class includes
+ * tests to verify the behavior of the chunked MD5-hashed linked list.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testIsEmpty()}: Verify that a newly created list is empty.</li>
+ *
+ * <li>{@link #testBuildNodesString()}: Adds items to the head and tail, then
+ *     verifies the text representation of the list.</li>
+ *
+ * <li>{@link #testHashesMatchHashLinkedList()}: Verify that the hashes and
+ *     the digests of the list are the same as those of a
+ *     {@link HashLinkedList} with the same elements, across several
+ *     chunks.</li>
+ *
+ * <li>{@link #testGetAndRemoveAt()}: Verify that elements spread over several
+ *     chunks are accessed and removed correctly by position.</li>
+ *
+ * <li>{@link #testRemoveNonExistentElement()}: Attempts to remove a non-
+ *     existent element and verifies that the method returns {@code false}.</li>
+ *
+ * <li>{@link #testRandomOperations()}: Applies a random sequence of insertions
+ *     and removals and compares the list with a {@code LinkedList}.</li>
+ *
+ * <li>{@link #testParallelStream()}: Verify that a parallel stream over a
+ *     list of many chunks computes the hashes of all the elements, in
+ *     order.</li>
+ *
+ * <li>{@link #testSpliteratorSplit()}: Verify that the parts of a split
+ *     spliterator know their exact size and cover all the elements.</li>
+ *
+ * <li>{@link #testFailFastIterator()}: Verify that the iterator is
+ *     {@code fail-fast} by removing an element during iteration.</li>
+ * </ul>
+ */
+class UnrolledHashLinkedListTest {
+
+    private UnrolledHashLinkedList<String> list;
+
+    @BeforeEach
+    void setUp() {
+        this.list = new UnrolledHashLinkedList<>();
+    }
+
+    @Test
+    void testIsEmpty() {
+        assertEquals(0, this.list.getSize(),
+                     "La lista non dovrebbe contenere elementi inizialmente.");
+        assertFalse(this.list.iterator().hasNext(),
+                    "L'iteratore non dovrebbe avere un prossimo elemento.");
+    }
+
+    @Test
+    void testBuildNodesString() {
+    	this.list.addAtHead("Alice paga Bob");
+    	this.list.addAtTail("Bob paga Charlie");
+
+        String expected = "Dato: Alice paga Bob, Hash: "
+                          + HashUtil.dataToHash("Alice paga Bob") + "\n"
+                          + "Dato: Bob paga Charlie, Hash: "
+                          + HashUtil.dataToHash("Bob paga Charlie") + "\n";
+
+        assertEquals(expected, this.list.buildNodesString(),
+                     "La rappresentazione della lista non è corretta.");
+    }
+
+    @Test
+    void testHashesMatchHashLinkedList() {
+        UnrolledHashLinkedList<Integer> unrolled =
+        		new UnrolledHashLinkedList<Integer>();
+        HashLinkedList<Integer> linked = new HashLinkedList<Integer>();
+
+        for (int i = 0; i < 300; i++) {
+        	if (i % 3 == 0) {
+        		unrolled.addAtHead(i);
+        		linked.addAtHead(i);
+        	}
+        	else {
+        		unrolled.addAtTail(i);
+        		linked.addAtTail(i);
+        	}
+        }
+
+        assertEquals(linked.getAllHashes(), unrolled.getAllHashes(),
+                     "Gli hash della lista non corrispondono all'atteso.");
+        assertArrayEquals(linked.getAllDigests(), unrolled.getAllDigests(),
+                          "I digest della lista non corrispondono all'atteso.");
+    }
+
+    @Test
+    void testGetAndRemoveAt() {
+        UnrolledHashLinkedList<Integer> integers =
+        		new UnrolledHashLinkedList<Integer>();
+
+        for (int i = 0; i < 200; i++) integers.addAtTail(i);
+
+        assertEquals(Integer.valueOf(150), integers.get(150),
+                     "L'elemento in posizione 150 non è corretto.");
+        assertEquals(Integer.valueOf(3), integers.get(3),
+                     "L'elemento in posizione 3 non è corretto.");
+        assertEquals(Integer.valueOf(70), integers.removeAt(70),
+                     "L'elemento rimosso non è corretto.");
+        assertEquals(Integer.valueOf(71), integers.get(70),
+                     "L'elemento in posizione 70 non è corretto.");
+        assertEquals(199, integers.getSize(),
+                     "La dimensione della lista non è corretta.");
+        assertThrows(IndexOutOfBoundsException.class,
+                     () -> integers.get(199),
+                     "Dovrebbe lanciare IndexOutOfBoundsException.");
+    }
+
+    @Test
+    void testRemoveNonExistentElement() {
+    	this.list.addAtTail("Alice paga Bob");
+    	this.list.addAtTail("Bob paga Charlie");
+
+        assertFalse(this.list.remove("Charlie paga Diana"),
+                    "Non dovrebbe essere possibile rimuovere un elemento "
+                    + "inesistente.");
+        assertTrue(this.list.remove("Alice paga Bob"),
+                   "L'elemento 'Alice paga Bob' doveva essere rimosso.");
+        assertEquals(1, this.list.getSize(),
+                     "La lista dovrebbe contenere un solo elemento.");
+    }
+
+    @Test
+    void testRandomOperations() {
+        UnrolledHashLinkedList<Integer> integers =
+        		new UnrolledHashLinkedList<Integer>();
+        LinkedList<Integer> expected = new LinkedList<Integer>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 5000; i++) {
+        	int value = random.nextInt(100);
+        	int operation = random.nextInt(5);
+
+        	if (operation <= 1) {
+        		integers.addAtTail(value);
+        		expected.addLast(value);
+        	}
+        	else if (operation == 2) {
+        		integers.addAtHead(value);
+        		expected.addFirst(value);
+        	}
+        	else if (operation == 3) {
+        		assertEquals(expected.remove(Integer.valueOf(value)),
+        				     integers.remove(value),
+        				     "L'esito della rimozione non è corretto.");
+        	}
+        	else if (!expected.isEmpty()) {
+        		int index = random.nextInt(expected.size());
+        		assertEquals(expected.remove(index), integers.removeAt(index),
+        				     "L'elemento rimosso non è corretto.");
+        	}
+        }
+
+        List<Integer> iteratorList = new ArrayList<Integer>();
+        for (Integer value : integers) {
+        	iteratorList.add(value);
+        }
+
+        assertEquals(expected, iteratorList,
+                     "La lista non è corretta dopo le operazioni.");
+        assertEquals(expected.size(), integers.getSize(),
+                     "La dimensione della lista non è corretta.");
+    }
+
+    @Test
+    void testParallelStream() {
+        UnrolledHashLinkedList<Integer> integers =
+        		new UnrolledHashLinkedList<Integer>();
+        for (int i = 0; i < 10000; i++) integers.addAtTail(i);
+        integers.removeAt(500);
+
+        List<String> hashes = integers.parallelStream()
+        		                      .map(HashUtil::dataToHash)
+        		                      .collect(Collectors.toList());
+
+        assertEquals(integers.getAllHashes(), hashes,
+                     "Gli hash calcolati in parallelo non sono corretti.");
+    }
+
+    @Test
+    void testSpliteratorSplit() {
+        UnrolledHashLinkedList<Integer> integers =
+        		new UnrolledHashLinkedList<Integer>();
+        for (int i = 0; i < 1000; i++) integers.addAtHead(i);
+
+        Spliterator<Integer> suffix = integers.spliterator();
+        suffix.tryAdvance(value -> { });
+        Spliterator<Integer> prefix = suffix.trySplit();
+
+        assertEquals(999, prefix.getExactSizeIfKnown()
+        		          + suffix.getExactSizeIfKnown(),
+                     "Le dimensioni delle parti non sono corrette.");
+
+        List<Integer> elements = new ArrayList<Integer>();
+        prefix.forEachRemaining(elements::add);
+        suffix.forEachRemaining(elements::add);
+
+        assertEquals(integers.stream().skip(1).collect(Collectors.toList()),
+                     elements,
+                     "Le parti dello spliterator non coprono la lista.");
+    }
+
+    @Test
+    void testFailFastIterator() {
+    	this.list.addAtTail("Alice paga Bob");
+    	this.list.addAtTail("Bob paga Charlie");
+
+        assertThrows(
+                ConcurrentModificationException.class,
+                () -> {
+                    for (String s : this.list) {
+                    	this.list.remove("Bob paga Charlie");
+                    }
+                },
+                "L'iteratore non è fail-fast."
+        );
+    }
+}
\ No newline at end of file
@@ -0,0 +1,310 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link VerificationService} class. This class includes
+ * tests to verify the concurrent verification of data against Merkle proofs.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testVerifications()}: Verify that valid data is accepted and
+ *     that data not matching its proof is rejected.</li>
+ *
+ * <li>{@link #testManyVerifications()}: Submits many blocking verifications
+ *     and verifies that all of them complete correctly.</li>
+ *
+ * <li>{@link #testBoundedConcurrency()}: Verify that no more than the
+ *     maximum number of verifications run at the same time.</li>
+ *
+ * <li>{@link #testTrySubmitWhenFull()}: Verify that {@code trySubmit} gives
+ *     up when the limit is reached and that the slots are given back.</li>
+ *
+ * <li>{@link #testCancellation()}: Verify that cancelling a running
+ *     verification interrupts it and gives back its slot.</li>
+ *
+ * <li>{@link #testCancelledVerificationKeepsSlot()}: Verify that a cancelled
+ *     verification that ignores the interrupt keeps its slot until it
+ *     returns.</li>
+ *
+ * <li>{@link #testCancellationBeforeStart()}: Verify that a verification
+ *     cancelled while waiting for a thread gives back its slot.</li>
+ *
+ * <li>{@link #testFailingLoader()}: Verify that the failure of a loader
+ *     completes the future exceptionally.</li>
+ *
+ * <li>{@link #testClosedService()}: Verify that a closed service rejects new
+ *     verifications.</li>
+ *
+ * <li>{@link #testCloseWhenInterrupted()}: Closes the service from an
+ *     interrupted thread and verifies that the interrupt status is kept and
+ *     the verifications in progress are cancelled.</li>
+ * </ul>
+ */
+class VerificationServiceTest {
+
+    private MerkleTree<Integer> tree;
+
+    private VerificationService service;
+
+    @BeforeEach
+    void setUp() {
+        HashLinkedList<Integer> list = new HashLinkedList<Integer>();
+        for (int i = 0; i < 64; i++) list.addAtTail(i);
+
+        this.tree = new MerkleTree<Integer>(list);
+        this.service = VerificationService.create(16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.service.shutdownNow();
+    }
+
+    /**
+     * Waits until the service has the given number of free slots.
+     */
+    private static void awaitSlots(VerificationService service, int slots)
+    		throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+        while (service.getAvailableSlots() != slots
+        	   && System.nanoTime() < end) {
+        	Thread.sleep(1);
+        }
+
+        assertEquals(slots, service.getAvailableSlots(),
+                     "Il numero di posti liberi non è corretto.");
+    }
+
+    @Test
+    void testVerifications() throws Exception {
+        Future<Boolean> valid = this.service.submit(
+        		() -> 5, () -> this.tree.getMerkleProof(5));
+        Future<Boolean> invalid = this.service.submit(
+        		() -> 6, () -> this.tree.getMerkleProof(5));
+
+        assertTrue(valid.get(),
+                   "Il dato dovrebbe essere verificato dalla sua prova.");
+        assertFalse(invalid.get(),
+                    "Il dato non dovrebbe essere verificato da un'altra "
+                    + "prova.");
+    }
+
+    @Test
+    void testManyVerifications() throws Exception {
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+
+        for (int i = 0; i < 2000; i++) {
+        	int index = i % 64;
+
+        	results.add(this.service.submit(() -> {
+        		Thread.sleep(1);
+        		return index;
+        	}, () -> this.tree.getMerkleProof(index)));
+        }
+
+        for (Future<Boolean> result : results) {
+        	assertTrue(result.get(),
+        			   "Tutte le verifiche dovrebbero avere successo.");
+        }
+    }
+
+    @Test
+    void testBoundedConcurrency() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+
+        for (int i = 0; i < 200; i++) {
+        	results.add(this.service.submit(() -> {
+        		maxRunning.accumulateAndGet(running.incrementAndGet(),
+        				                    Math::max);
+        		Thread.sleep(2);
+        		running.decrementAndGet();
+        		return 1;
+        	}, () -> this.tree.getMerkleProof(1)));
+        }
+
+        for (Future<Boolean> result : results) result.get();
+
+        assertTrue(maxRunning.get() <= 16,
+                   "Le verifiche in corso non dovrebbero superare il "
+                   + "limite.");
+        assertEquals(16, this.service.getAvailableSlots(),
+                     "Tutti i posti dovrebbero essere liberi.");
+    }
+
+    @Test
+    void testTrySubmitWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+
+        for (int i = 0; i < 16; i++) {
+        	results.add(this.service.trySubmit(() -> {
+        		release.await();
+        		return 2;
+        	}, () -> this.tree.getMerkleProof(2)));
+        }
+
+        assertNull(this.service.trySubmit(() -> 2,
+        		                          () -> this.tree.getMerkleProof(2)),
+                   "Non dovrebbe essere possibile superare il limite.");
+
+        release.countDown();
+        for (Future<Boolean> result : results) assertTrue(result.get());
+
+        assertNotNull(this.service.trySubmit(() -> 2,
+        		                             () -> this.tree.getMerkleProof(2)),
+                      "Dopo il completamento dovrebbe esserci posto.");
+    }
+
+    @Test
+    void testCancellation() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        Future<Boolean> result = this.service.submit(() -> {
+        	started.countDown();
+        	try {
+        		Thread.sleep(60000);
+        	} catch (InterruptedException e) {
+        		interrupted.countDown();
+        		throw e;
+        	}
+        	return 3;
+        }, () -> this.tree.getMerkleProof(3));
+
+        started.await();
+        assertTrue(result.cancel(true),
+                   "La verifica dovrebbe essere annullata.");
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS),
+                   "La verifica annullata dovrebbe essere interrotta.");
+        assertThrows(CancellationException.class, () -> result.get(),
+                     "Dovrebbe lanciare CancellationException.");
+        awaitSlots(this.service, 16);
+    }
+
+    @Test
+    void testCancelledVerificationKeepsSlot() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Boolean> result = this.service.submit(() -> {
+        	started.countDown();
+        	while (true) {
+        		try {
+        			release.await();
+        			return 3;
+        		} catch (InterruptedException e) {
+        			// Ignores the cancellation.
+        		}
+        	}
+        }, () -> this.tree.getMerkleProof(3));
+
+        started.await();
+        assertTrue(result.cancel(true),
+                   "La verifica dovrebbe essere annullata.");
+        Thread.sleep(50);
+
+        assertEquals(15, this.service.getAvailableSlots(),
+                     "La verifica ancora in corso dovrebbe tenere il suo "
+                     + "posto.");
+
+        release.countDown();
+        awaitSlots(this.service, 16);
+    }
+
+    @Test
+    void testCancellationBeforeStart() throws Exception {
+        VerificationService pool = VerificationService.withPlatformThreads(
+        		2, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        try {
+        	Future<Boolean> first = pool.submit(() -> {
+        		release.await();
+        		return 1;
+        	}, () -> this.tree.getMerkleProof(1));
+        	Future<Boolean> second = pool.submit(() -> {
+        		calls.incrementAndGet();
+        		return 2;
+        	}, () -> this.tree.getMerkleProof(2));
+
+        	assertTrue(second.cancel(true),
+        			   "La verifica in attesa dovrebbe essere annullata.");
+        	release.countDown();
+
+        	assertTrue(first.get(), "La prima verifica dovrebbe riuscire.");
+        	awaitSlots(pool, 2);
+        	assertEquals(0, calls.get(),
+        			     "La verifica annullata non dovrebbe essere "
+        			     + "eseguita.");
+        } finally {
+        	pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFailingLoader() {
+        Future<Boolean> result = this.service.trySubmit(() -> {
+        	throw new IllegalStateException();
+        }, () -> this.tree.getMerkleProof(4));
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+        		                             () -> result.get(),
+        		                             "Dovrebbe lanciare "
+        		                             + "ExecutionException.");
+        assertTrue(e.getCause() instanceof IllegalStateException,
+                   "La causa dell'errore non è corretta.");
+        assertThrows(IllegalArgumentException.class,
+                     () -> this.service.trySubmit(null,
+                    		 () -> this.tree.getMerkleProof(4)),
+                     "Dovrebbe lanciare IllegalArgumentException.");
+    }
+
+    @Test
+    void testCloseWhenInterrupted() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+
+        Future<Boolean> result = this.service.submit(() -> {
+        	started.countDown();
+        	Thread.sleep(60000);
+        	return 1;
+        }, () -> this.tree.getMerkleProof(1));
+
+        started.await();
+        Thread.currentThread().interrupt();
+        this.service.close();
+
+        assertTrue(Thread.interrupted(),
+                   "Lo stato di interruzione dovrebbe essere mantenuto.");
+        ExecutionException e = assertThrows(ExecutionException.class,
+        		                             () -> result.get(10,
+        		                            		 TimeUnit.SECONDS),
+        		                             "La verifica in corso dovrebbe "
+        		                             + "essere interrotta.");
+        assertTrue(e.getCause() instanceof InterruptedException,
+                   "La causa dell'errore non è corretta.");
+    }
+
+    @Test
+    void testClosedService() throws Exception {
+        this.service.close();
+
+        assertThrows(RejectedExecutionException.class,
+                     () -> this.service.submit(
+                    		 () -> 1, () -> this.tree.getMerkleProof(1)),
+                     "Dovrebbe lanciare RejectedExecutionException.");
+        assertEquals(16, this.service.getAvailableSlots(),
+                     "Il posto della verifica rifiutata dovrebbe essere "
+                     + "libero.");
+    }
+}
\ No newline at end of file
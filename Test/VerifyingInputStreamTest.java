@@ -0,0 +1,211 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link VerifyingInputStream} class. This class tests
+ * that content is returned only once verified against its root.
+ * Below is a list of the included tests with a brief description:
+ *
+ * <ul>
+ * <li>{@link #testRoundTrip()}: Encodes a file and verifies that its content
+ *     is read back unchanged and that the root depends on the size of the
+ *     chunks.</li>
+ *
+ * <li>{@link #testCorruptedChunk()}: Corrupts a chunk and verifies that the
+ *     previous chunks are returned and the corrupted one is rejected.</li>
+ *
+ * <li>{@link #testWrongRoot()}: Verifies that no byte is returned when the
+ *     root is not the one of the content.</li>
+ *
+ * <li>{@link #testTruncatedContent()}: Verifies that a shorter length in the
+ *     header and a truncated stream are both detected.</li>
+ *
+ * <li>{@link #testRewrittenHeader()}: Verifies that a stream whose header
+ *     claims another size of the chunks is rejected, also when its only chunk
+ *     is made of the hashes of the children of the root of the file.</li>
+ *
+ * <li>{@link #testEmptyFile()}: Encodes and reads an empty file.</li>
+ * </ul>
+ */
+class VerifyingInputStreamTest {
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private byte[] content;
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+    	this.content = new byte[100000];
+    	new Random(11).nextBytes(this.content);
+
+    	this.file = Files.createTempFile("merkle", ".bin");
+    	Files.write(this.file, this.content);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+    	Files.deleteIfExists(this.file);
+    }
+
+    private byte[] encode(String[] root) throws IOException {
+    	ByteArrayOutputStream out = new ByteArrayOutputStream();
+    	root[0] = VerifyingInputStream.encode(this.file, out, CHUNK_SIZE);
+    	return out.toByteArray();
+    }
+
+    private int indexOf(byte[] array, byte[] target) {
+    	for (int i = 0; i + target.length <= array.length; i++) {
+    		if (Arrays.equals(array, i, i + target.length,
+    				          target, 0, target.length))
+    			return i;
+    	}
+
+    	return -1;
+    }
+
+    private int readUntilFailure(InputStream in, ByteArrayOutputStream out) {
+    	byte[] buffer = new byte[1000];
+
+    	try {
+    		for (int read; (read = in.read(buffer)) != -1;)
+    			out.write(buffer, 0, read);
+    	} catch (IOException e) {
+    		return out.size();
+    	}
+
+    	return -1;
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+    	String[] root = new String[1];
+    	byte[] encoded = this.encode(root);
+
+        assertEquals(root[0], VerifyingInputStream.encode(this.file,
+        		new ByteArrayOutputStream(), CHUNK_SIZE),
+        		     "La radice del contenuto dovrebbe essere sempre la "
+        		     + "stessa.");
+        assertNotEquals(root[0], VerifyingInputStream.encode(this.file,
+        		new ByteArrayOutputStream(), CHUNK_SIZE * 2),
+        		        "La radice dovrebbe dipendere dalla dimensione dei "
+        		        + "blocchi.");
+
+        try (InputStream in = new VerifyingInputStream(
+        		new ByteArrayInputStream(encoded), root[0])) {
+        	assertArrayEquals(this.content, in.readAllBytes(),
+        			          "Il contenuto letto non è corretto.");
+        }
+    }
+
+    @Test
+    void testCorruptedChunk() throws IOException {
+    	String[] root = new String[1];
+    	byte[] encoded = this.encode(root);
+    	int position = this.indexOf(encoded, Arrays.copyOfRange(
+    			this.content, 10 * CHUNK_SIZE, 10 * CHUNK_SIZE + 32));
+    	encoded[position + 100] ^= 1;
+
+    	ByteArrayOutputStream out = new ByteArrayOutputStream();
+    	InputStream in = new VerifyingInputStream(
+    			new ByteArrayInputStream(encoded), root[0]);
+
+        assertEquals(10 * CHUNK_SIZE, this.readUntilFailure(in, out),
+        		     "Dovrebbero essere restituiti solo i blocchi validi.");
+        assertArrayEquals(Arrays.copyOf(this.content, 10 * CHUNK_SIZE),
+        		          out.toByteArray(),
+        		          "I blocchi restituiti non sono corretti.");
+        assertThrows(IOException.class, () -> in.read(),
+                     "Il flusso dovrebbe restare in errore.");
+    }
+
+    @Test
+    void testWrongRoot() throws IOException {
+    	String[] root = new String[1];
+    	byte[] encoded = this.encode(root);
+
+        assertEquals(0, this.readUntilFailure(new VerifyingInputStream(
+        		new ByteArrayInputStream(encoded), HashUtil.dataToHash(1)),
+        		new ByteArrayOutputStream()),
+        		     "Nessun byte dovrebbe essere restituito.");
+    }
+
+    @Test
+    void testTruncatedContent() throws IOException {
+    	String[] root = new String[1];
+    	byte[] encoded = this.encode(root);
+    	byte[] shorter = encoded.clone();
+    	ByteBuffer.wrap(shorter).putLong(8, 10 * CHUNK_SIZE);
+
+        assertEquals(0, this.readUntilFailure(new VerifyingInputStream(
+        		new ByteArrayInputStream(shorter), root[0]),
+        		new ByteArrayOutputStream()),
+        		     "Una lunghezza diversa dovrebbe essere rilevata.");
+
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 10);
+
+        assertEquals(24 * CHUNK_SIZE, this.readUntilFailure(
+        		new VerifyingInputStream(new ByteArrayInputStream(truncated),
+        				                 root[0]),
+        		new ByteArrayOutputStream()),
+        		     "Un flusso troncato dovrebbe essere rilevato "
+        		     + "all'ultimo blocco.");
+    }
+
+    @Test
+    void testRewrittenHeader() throws IOException {
+    	String[] root = new String[1];
+    	byte[] encoded = this.encode(root);
+    	byte[] rewritten = encoded.clone();
+    	ByteBuffer.wrap(rewritten).putInt(4, CHUNK_SIZE * 2);
+
+        assertEquals(0, this.readUntilFailure(new VerifyingInputStream(
+        		new ByteArrayInputStream(rewritten), root[0]),
+        		new ByteArrayOutputStream()),
+        		     "Una dimensione dei blocchi diversa dovrebbe essere "
+        		     + "rilevata.");
+
+        MerkleNode treeRoot = MerkleTree.fromFile(this.file, CHUNK_SIZE)
+        		                        .getRoot();
+        byte[] children = (treeRoot.getLeft().getHash()
+        		           + treeRoot.getRight().getHash()).getBytes();
+        ByteBuffer forged = ByteBuffer.allocate(16 + children.length);
+        forged.putInt(VerifyingInputStream.MAGIC).putInt(children.length)
+              .putLong(children.length).put(children);
+
+        for (String expected : new String[] {root[0], treeRoot.getHash()}) {
+        	assertEquals(0, this.readUntilFailure(new VerifyingInputStream(
+        			new ByteArrayInputStream(forged.array()), expected),
+        			new ByteArrayOutputStream()),
+        			     "Un blocco fatto degli hash dei figli della radice "
+        			     + "dovrebbe essere rifiutato.");
+        }
+    }
+
+    @Test
+    void testEmptyFile() throws IOException {
+    	Files.write(this.file, new byte[0]);
+    	String[] root = new String[1];
+    	byte[] encoded = this.encode(root);
+
+        try (InputStream in = new VerifyingInputStream(
+        		new ByteArrayInputStream(encoded), root[0])) {
+        	assertEquals(-1, in.read(),
+        			     "Il contenuto dovrebbe essere vuoto.");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,598 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Spliterator;
+
+import java.util.NoSuchElementException;
+import java.util.ConcurrentModificationException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A linked list with MD5 hashes computed for each element, offering the same
+ * operations as {@link HashLinkedList} but storing the elements in an unrolled
+ * layout: the list is a doubly linked sequence of chunks, each of which holds
+ * up to {@value #CHUNK_CAPACITY} elements in an array, together with their
+ * digests packed as pairs of longs in a primitive array.
+ *
+ * <p>
+ * Compared to a list with one node object (and one hash string) per element,
+ * this layout needs only a few bytes per element beyond the reference to the
+ * data and the 16 bytes of its digest, and iterating over the list reads
+ * contiguous memory. Positional access walks the chunks rather than the
+ * single elements, so it costs O(n / {@value #CHUNK_CAPACITY}), and scanning
+ * the list by index costs constant time per element.
+ *
+ * <p>
+ * Removing an element based on data scans the chunks, so it takes linear time;
+ * when removals based on data dominate, {@link IndexedHashLinkedList} is the
+ * better choice.
+ *
+ * @param <T> the generic type of data contained in the list.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class UnrolledHashLinkedList<T> implements Iterable<T> {
+
+    /**
+     * The maximum number of elements held by a chunk.
+     */
+    public static final int CHUNK_CAPACITY = 64;
+
+    private Chunk head;
+    private Chunk tail;
+    private int size;
+    private int numberChanges;
+    private Chunk cursor;
+    private int cursorFirst;
+    private int cursorChanges;
+
+    public UnrolledHashLinkedList() {
+        this.head = null;
+        this.tail = null;
+        this.size = 0;
+        this.numberChanges = 0;
+        this.cursor = null;
+    }
+
+    /**
+     * Returns the current number of elements in the list.
+     *
+     * @return the number of elements in the list.
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Represents a chunk of the list. The elements of the chunk occupy the
+     * positions from {@code start} (inclusive) to {@code end} (exclusive) of
+     * the data array, and the digest of the element in position i is stored
+     * in positions {@code 2 * i} and {@code 2 * i + 1} of the digests array.
+     * Leaving room on both sides allows insertions at the head and at the tail
+     * of the list without shifting any element.
+     */
+    private static class Chunk {
+        final Object[] data;
+
+        final long[] digests;
+
+        int start;
+
+        int end;
+
+        Chunk next;
+
+        Chunk prev;
+
+        Chunk(int position) {
+            this.data = new Object[CHUNK_CAPACITY];
+            this.digests = new long[CHUNK_CAPACITY * 2];
+            this.start = position;
+            this.end = position;
+            this.next = null;
+            this.prev = null;
+        }
+
+        int count() {
+            return this.end - this.start;
+        }
+
+        void set(int position, Object value) {
+            byte[] digest = HashUtil.dataToDigest(value);
+
+            this.data[position] = value;
+            this.digests[position * 2] = HashUtil.bytesToLong(digest, 0);
+            this.digests[position * 2 + 1] = HashUtil.bytesToLong(digest, 8);
+        }
+
+        void move(int from, int to, int length) {
+            System.arraycopy(this.data, from, this.data, to, length);
+            System.arraycopy(this.digests, from * 2, this.digests, to * 2,
+            		         length * 2);
+        }
+
+        String hash(int position) {
+            return HashUtil.digestToHex(this.digests[position * 2],
+            		                    this.digests[position * 2 + 1]);
+        }
+    }
+
+    /**
+     * Adds a new item to the head of the list.
+     *
+     * @param data  the data to be added.
+     */
+    public void addAtHead(T data) {
+    	if (data == null) throw new NullPointerException();
+
+    	if (this.head == null || this.head.start == 0) {
+    		Chunk chunk = new Chunk(CHUNK_CAPACITY);
+
+    		chunk.next = this.head;
+    		if (this.head != null) this.head.prev = chunk;
+    		this.head = chunk;
+    		if (this.tail == null) this.tail = chunk;
+    	}
+
+    	this.head.start--;
+    	this.head.set(this.head.start, data);
+
+        this.size++;
+        this.numberChanges++;
+    }
+
+    /**
+     * Adds a new item to the tail of the list.
+     *
+     * @param data  the data to be added.
+     */
+    public void addAtTail(T data) {
+    	if (data == null) throw new NullPointerException();
+
+    	if (this.tail == null || this.tail.end == CHUNK_CAPACITY) {
+    		Chunk chunk = new Chunk(0);
+
+    		chunk.prev = this.tail;
+    		if (this.tail != null) this.tail.next = chunk;
+    		this.tail = chunk;
+    		if (this.head == null) this.head = chunk;
+    	}
+
+    	this.tail.set(this.tail.end, data);
+    	this.tail.end++;
+
+        this.size++;
+        this.numberChanges++;
+    }
+
+    /**
+     * Returns an ArrayList containing all the hashes in the list in sorted
+     * order.
+     *
+     * @return a list with all the hashes of the list.
+     */
+    public ArrayList<String> getAllHashes() {
+    	ArrayList<String> hashList = new ArrayList<String>(this.size);
+
+    	for (Chunk chunk = this.head; chunk != null; chunk = chunk.next) {
+    		for (int i = chunk.start; i < chunk.end; i++) {
+    			hashList.add(chunk.hash(i));
+    		}
+    	}
+
+        return hashList;
+    }
+
+    /**
+     * Returns the raw MD5 digests of all the elements of the list, in list
+     * order, packed into a single array of {@code getSize() * 16} bytes, in the
+     * same format as {@link HashLinkedList#getAllDigests()}.
+     *
+     * @return a contiguous array with the digests of all the elements.
+     * @throws IllegalStateException if the digests do not fit in an array,
+     *         that is with more than {@code Integer.MAX_VALUE / 16} elements.
+     */
+    public byte[] getAllDigests() {
+        byte[] digests = HashUtil.newDigestArray(this.size);
+        int offset = 0;
+
+    	for (Chunk chunk = this.head; chunk != null; chunk = chunk.next) {
+    		for (int i = chunk.start * 2; i < chunk.end * 2; i++) {
+    			HashUtil.longToBytes(chunk.digests[i], digests, offset);
+    			offset += 8;
+    		}
+    	}
+
+        return digests;
+    }
+
+    /**
+     * Builds a string containing all the elements in the list, including data
+     * and hashes, in the same format as
+     * {@link HashLinkedList#buildNodesString()}.
+     *
+     * @return a text representation of all the elements in the list.
+     */
+    public String buildNodesString() {
+    	StringBuilder sb = new StringBuilder();
+
+    	for (Chunk chunk = this.head; chunk != null; chunk = chunk.next) {
+    		for (int i = chunk.start; i < chunk.end; i++) {
+                sb.append("Dato: ").append(chunk.data[i])
+                  .append(", Hash: ").append(chunk.hash(i))
+                  .append("\n");
+    		}
+    	}
+
+        return sb.toString();
+    }
+
+    /**
+     * Removes the first element in the list that contains the specified data.
+     *
+     * @param data  the data to be removed.
+     * @return true if the item was found and removed, false otherwise.
+     */
+	public boolean remove(T data) {
+		if (data == null) throw new NullPointerException();
+
+    	for (Chunk chunk = this.head; chunk != null; chunk = chunk.next) {
+    		for (int i = chunk.start; i < chunk.end; i++) {
+    			if (data.equals(chunk.data[i])) {
+    				this.removeFrom(chunk, i);
+    				return true;
+    			}
+    		}
+    	}
+
+	    return false;
+    }
+
+    /**
+     * Returns the element at the given position of the list.
+     *
+     * @param index  the position of the element, starting from 0.
+     * @return the element at the given position.
+     * @throws IndexOutOfBoundsException if the index is negative or not less
+     *         than the size of the list.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+    	Chunk chunk = this.chunkAt(index);
+
+    	return (T) chunk.data[chunk.start + index - this.cursorFirst];
+    }
+
+    /**
+     * Removes the element at the given position of the list.
+     *
+     * @param index  the position of the element, starting from 0.
+     * @return the removed element.
+     * @throws IndexOutOfBoundsException if the index is negative or not less
+     *         than the size of the list.
+     */
+    @SuppressWarnings("unchecked")
+    public T removeAt(int index) {
+    	Chunk chunk = this.chunkAt(index);
+    	int position = chunk.start + index - this.cursorFirst;
+    	T data = (T) chunk.data[position];
+
+    	this.removeFrom(chunk, position);
+
+    	return data;
+    }
+
+    /**
+     * Returns the chunk containing the element at the given position, walking
+     * the chunks from the closest among the head, the tail and the chunk
+     * accessed last (if the list has not changed since). The chunk found and
+     * the position of its first element are remembered as the new starting
+     * point.
+     *
+     * @param index  the position of the element.
+     * @return the chunk containing the element.
+     * @throws IndexOutOfBoundsException if the index is out of bounds.
+     */
+    private Chunk chunkAt(int index) {
+    	if (index < 0 || index >= this.size)
+    		throw new IndexOutOfBoundsException(index);
+
+    	Chunk chunk = this.head;
+    	int first = 0;
+
+    	if (index >= this.size / 2) {
+    		chunk = this.tail;
+    		first = this.size - chunk.count();
+    	}
+
+    	if (this.cursor != null && this.cursorChanges == this.numberChanges
+    		&& Math.abs(this.cursorFirst - index) < Math.abs(first - index)) {
+    		chunk = this.cursor;
+    		first = this.cursorFirst;
+    	}
+
+    	while (first + chunk.count() <= index) {
+    		first += chunk.count();
+    		chunk = chunk.next;
+    	}
+
+    	while (first > index) {
+    		chunk = chunk.prev;
+    		first -= chunk.count();
+    	}
+
+    	this.cursor = chunk;
+    	this.cursorFirst = first;
+    	this.cursorChanges = this.numberChanges;
+
+    	return chunk;
+    }
+
+    /**
+     * Removes the element in the given position of a chunk, shifting the
+     * shorter side of the chunk to fill the gap. A chunk left empty is
+     * unlinked, while a chunk left less than half full is merged with the
+     * following one when their elements fit in a single chunk.
+     *
+     * @param chunk  the chunk containing the element.
+     * @param position  the position of the element in the chunk arrays.
+     */
+    private void removeFrom(Chunk chunk, int position) {
+    	if (position - chunk.start < chunk.end - 1 - position) {
+    		chunk.move(chunk.start, chunk.start + 1, position - chunk.start);
+    		chunk.data[chunk.start] = null;
+    		chunk.start++;
+    	}
+    	else {
+    		chunk.move(position + 1, position, chunk.end - 1 - position);
+    		chunk.end--;
+    		chunk.data[chunk.end] = null;
+    	}
+
+    	if (chunk.count() == 0) this.unlink(chunk);
+    	else if (chunk.count() < CHUNK_CAPACITY / 2 && chunk.next != null
+    			 && chunk.count() + chunk.next.count() <= CHUNK_CAPACITY)
+    		this.mergeWithNext(chunk);
+
+        this.size--;
+        this.numberChanges++;
+    }
+
+    /**
+     * Moves all the elements of the chunk following the given one into it,
+     * compacting the given chunk to the start of its arrays if needed, and
+     * unlinks the emptied chunk.
+     *
+     * @param chunk  the chunk that absorbs its successor.
+     */
+    private void mergeWithNext(Chunk chunk) {
+    	Chunk next = chunk.next;
+    	int count = chunk.count();
+
+    	if (chunk.start + count + next.count() > CHUNK_CAPACITY) {
+    		chunk.move(chunk.start, 0, count);
+    		Arrays.fill(chunk.data, count, chunk.end, null);
+    		chunk.start = 0;
+    		chunk.end = count;
+    	}
+
+    	System.arraycopy(next.data, next.start, chunk.data, chunk.end,
+    			         next.count());
+    	System.arraycopy(next.digests, next.start * 2, chunk.digests,
+    			         chunk.end * 2, next.count() * 2);
+    	chunk.end += next.count();
+
+    	this.unlink(next);
+    }
+
+    /**
+     * Unlinks a chunk from the list of chunks.
+     *
+     * @param chunk  the chunk to unlink.
+     */
+    private void unlink(Chunk chunk) {
+    	if (chunk.prev == null) this.head = chunk.next;
+    	else chunk.prev.next = chunk.next;
+
+    	if (chunk.next == null) this.tail = chunk.prev;
+    	else chunk.next.prev = chunk.prev;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Itr();
+    }
+
+    /**
+     * Returns a sequential stream over the elements of the list.
+     *
+     * @return a sequential stream over the elements of the list.
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel stream over the elements of the list, which splits
+     * the list into runs of chunks processed by different threads.
+     *
+     * @return a parallel stream over the elements of the list.
+     */
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(this.spliterator(), true);
+    }
+
+    /**
+     * Returns a fail-fast spliterator over the elements of the list. The list
+     * is split at chunk boundaries, halving the run of chunks covered by the
+     * spliterator each time, and every part knows exactly how many elements it
+     * covers.
+     *
+     * @return a spliterator over the elements of the list.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+    	int chunks = 0;
+
+    	for (Chunk chunk = this.head; chunk != null; chunk = chunk.next) {
+    		chunks++;
+    	}
+
+        return new Split(this.head, this.head != null ? this.head.start : 0,
+        		         chunks, this.size, this.numberChanges);
+    }
+
+    /**
+     * A class that implements a fail-fast spliterator for
+     * UnrolledHashLinkedList, covering a run of consecutive chunks starting
+     * from a given position of the first one.
+     */
+    private class Split implements Spliterator<T> {
+    	private Chunk chunk;
+    	private int position;
+    	private int chunks;
+    	private int remaining;
+        private final int numExpectedChanges;
+
+        private Split(Chunk chunk, int position, int chunks, int remaining,
+        		      int numExpectedChanges) {
+        	this.chunk = chunk;
+        	this.position = position;
+        	this.chunks = chunks;
+        	this.remaining = remaining;
+            this.numExpectedChanges = numExpectedChanges;
+        }
+
+        private void checkChanges() {
+        	if(this.numExpectedChanges != numberChanges)
+        		throw new ConcurrentModificationException();
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+        	if (this.chunks < 2) return null;
+
+        	this.checkChanges();
+
+        	int half = this.chunks / 2;
+        	Chunk first = this.chunk;
+        	int firstPosition = this.position;
+        	int count = this.chunk.end - this.position;
+
+        	for (int i = 1; i < half; i++) {
+        		this.chunk = this.chunk.next;
+        		count += this.chunk.count();
+        	}
+
+        	this.chunk = this.chunk.next;
+        	this.position = this.chunk.start;
+        	this.chunks -= half;
+        	this.remaining -= count;
+
+        	return new Split(first, firstPosition, half, count,
+        			         this.numExpectedChanges);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super T> action) {
+        	if (action == null) throw new NullPointerException();
+
+        	this.checkChanges();
+
+        	if (this.remaining <= 0) return false;
+
+        	T data = (T) this.chunk.data[this.position++];
+        	this.remaining--;
+
+        	if (this.position == this.chunk.end && this.remaining > 0) {
+        		this.chunk = this.chunk.next;
+        		this.position = this.chunk.start;
+        		this.chunks--;
+        	}
+
+        	action.accept(data);
+
+        	return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super T> action) {
+        	if (action == null) throw new NullPointerException();
+
+        	while (this.remaining > 0) {
+        		int last = Math.min(this.chunk.end,
+        				            this.position + this.remaining);
+
+        		for (int i = this.position; i < last; i++) {
+        			action.accept((T) this.chunk.data[i]);
+        		}
+
+        		this.remaining -= last - this.position;
+        		this.position = last;
+
+        		if (this.remaining > 0) {
+        			this.chunk = this.chunk.next;
+        			this.position = this.chunk.start;
+        			this.chunks--;
+        		}
+        	}
+
+        	this.checkChanges();
+        }
+
+        @Override
+        public long estimateSize() {
+        	return this.remaining;
+        }
+
+        @Override
+        public int characteristics() {
+        	return Spliterator.ORDERED | Spliterator.SIZED
+        		   | Spliterator.SUBSIZED | Spliterator.NONNULL;
+        }
+    }
+
+    /**
+     * A class that implements a fail-fast iterator for UnrolledHashLinkedList.
+     */
+    private class Itr implements Iterator<T> {
+    	private Chunk chunk;
+    	private int position;
+        private final int numExpectedChanges;
+
+        private Itr() {
+        	this.chunk = head;
+        	this.position = head != null ? head.start : 0;
+            this.numExpectedChanges = numberChanges;
+        }
+
+        @Override
+        public boolean hasNext() {
+        	if(this.numExpectedChanges != numberChanges)
+        		throw new ConcurrentModificationException();
+
+            return this.chunk != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+        	if(!hasNext()) throw new NoSuchElementException();
+
+            T data = (T) this.chunk.data[this.position++];
+
+            if (this.position == this.chunk.end) {
+            	this.chunk = this.chunk.next;
+            	if (this.chunk != null) this.position = this.chunk.start;
+            }
+
+            return data;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,256 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A service that runs many small verifications at the same time, each made of
+ * blocking steps: loading the data, fetching its {@link MerkleProof} and
+ * checking the data against the root of the proof.
+ *
+ * <p>
+ * When the runtime supports virtual threads, each verification runs on its own
+ * virtual thread, so that a blocked verification does not hold a platform
+ * thread and hundreds of thousands of them can wait at the same time. The
+ * executor is looked up at runtime, so the service also works on runtimes
+ * without virtual threads, where it falls back to a pool of platform threads
+ * created on demand.
+ *
+ * <p>
+ * The number of verifications in progress is bounded: {@link #submit} blocks
+ * while the limit is reached, which slows down producers that are faster than
+ * the verifications, while {@link #trySubmit} gives up instead. A submitted
+ * verification can be cancelled through its {@link Future}, which interrupts
+ * it if it is running. The slot of a verification is only given back by the
+ * thread that runs it, once it has stopped: a cancelled verification that
+ * ignores the interrupt keeps its slot until it returns, and one cancelled
+ * before it started gives it back when the executor reaches it.
+ *
+ * <p>
+ * {@link VerificationServiceBenchmark} submits 100000 and 200000
+ * verifications at once, each waiting 100 milliseconds before checking its
+ * proof. Measured on Java 17 with 1 CPU, where {@link #create} falls back to
+ * platform threads created on demand:
+ * <ul>
+ * <li>a fixed pool of 200 platform threads completes about 2000
+ *     verifications per second, bounded by 200 waits of 100 milliseconds at
+ *     a time: 50 seconds for 100000 verifications and 101 for 200000;</li>
+ * <li>the fallback of {@link #create} completes about 11800 per second,
+ *     8.5 seconds for 100000 verifications and 17 for 200000, with about 3500
+ *     platform threads alive at once: creating the threads, not the waits,
+ *     is the bound, so the limit of concurrent verifications should stay in
+ *     the thousands on such runtimes.</li>
+ * </ul>
+ * Virtual threads were not measured, as the runtime does not provide them;
+ * on runtimes that do, the same benchmark reports them on its last line.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class VerificationService implements AutoCloseable {
+
+    private final ExecutorService executor;
+
+    private final Semaphore permits;
+
+    private final boolean virtualThreads;
+
+    private VerificationService(ExecutorService executor, int maxConcurrent,
+    		boolean virtualThreads) {
+    	if (maxConcurrent < 1) throw new IllegalArgumentException();
+
+        this.executor = executor;
+        this.permits = new Semaphore(maxConcurrent);
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Creates a service that runs each verification on a virtual thread, if
+     * the runtime supports them, or on a platform thread otherwise.
+     *
+     * @param maxConcurrent  the maximum number of verifications in progress.
+     * @return the new service.
+     * @throws IllegalArgumentException if the limit is not positive.
+     */
+    public static VerificationService create(int maxConcurrent) {
+    	ExecutorService executor = VerificationService.virtualThreadExecutor();
+
+    	if (executor == null)
+    		return new VerificationService(Executors.newCachedThreadPool(),
+    				                       maxConcurrent, false);
+
+        return new VerificationService(executor, maxConcurrent, true);
+    }
+
+    /**
+     * Creates a service that runs the verifications on a fixed pool of
+     * platform threads.
+     *
+     * @param maxConcurrent  the maximum number of verifications in progress.
+     * @param threads  the number of threads of the pool.
+     * @return the new service.
+     * @throws IllegalArgumentException if the limit or the number of threads
+     *         is not positive.
+     */
+    public static VerificationService withPlatformThreads(int maxConcurrent,
+    		int threads) {
+    	if (threads < 1) throw new IllegalArgumentException();
+
+        return new VerificationService(Executors.newFixedThreadPool(threads),
+        		                       maxConcurrent, false);
+    }
+
+    /**
+     * Returns the executor that starts a new virtual thread for each task, or
+     * null if the runtime does not support virtual threads.
+     */
+    private static ExecutorService virtualThreadExecutor() {
+    	try {
+    		return (ExecutorService) Executors.class
+    				.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    	} catch (ReflectiveOperationException e) {
+    		return null;
+    	}
+    }
+
+    /**
+     * Returns whether the verifications run on virtual threads.
+     *
+     * @return true if the service uses virtual threads.
+     */
+    public boolean usesVirtualThreads() {
+        return this.virtualThreads;
+    }
+
+    /**
+     * Returns the number of verifications that can still be submitted without
+     * waiting.
+     *
+     * @return the number of free slots.
+     */
+    public int getAvailableSlots() {
+        return this.permits.availablePermits();
+    }
+
+    /**
+     * Submits a verification, waiting while the maximum number of
+     * verifications is in progress. The data and the proof are loaded by the
+     * thread of the verification.
+     *
+     * @param data  the loader of the data to verify.
+     * @param proof  the loader of the proof of the data.
+     * @return a future completed with the result of the verification, or
+     *         exceptionally if a loader fails.
+     * @throws IllegalArgumentException if a loader is null.
+     * @throws InterruptedException if the calling thread is interrupted while
+     *         waiting.
+     * @throws RejectedExecutionException if the service is closed.
+     */
+    public Future<Boolean> submit(Callable<?> data,
+    		Callable<MerkleProof> proof) throws InterruptedException {
+    	if (data == null || proof == null) throw new IllegalArgumentException();
+
+    	this.permits.acquire();
+
+        return this.start(data, proof);
+    }
+
+    /**
+     * Submits a verification if fewer than the maximum number of
+     * verifications are in progress.
+     *
+     * @param data  the loader of the data to verify.
+     * @param proof  the loader of the proof of the data.
+     * @return a future completed with the result of the verification, or null
+     *         if the limit is reached.
+     * @throws IllegalArgumentException if a loader is null.
+     * @throws RejectedExecutionException if the service is closed.
+     */
+    public Future<Boolean> trySubmit(Callable<?> data,
+    		Callable<MerkleProof> proof) {
+    	if (data == null || proof == null) throw new IllegalArgumentException();
+
+    	if (!this.permits.tryAcquire()) return null;
+
+        return this.start(data, proof);
+    }
+
+    /**
+     * Starts a verification whose permit has been acquired. The permit is
+     * given back by the thread of the verification when it completes, fails
+     * or is cancelled, even if it never started.
+     */
+    private Future<Boolean> start(Callable<?> data,
+    		Callable<MerkleProof> proof) {
+    	AtomicBoolean released = new AtomicBoolean();
+    	Runnable release = () -> {
+    		if (released.compareAndSet(false, true)) this.permits.release();
+    	};
+
+    	// The permit is given back before the result is published, so that a
+    	// caller that sees the result also sees the free slot. A cancellation
+    	// publishes the result while the verification may still be running, so
+    	// the permit is never given back by the cancelling thread: the outer
+    	// finally covers the verifications cancelled before they started,
+    	// which the task skips without calling the verification.
+    	FutureTask<Boolean> task = new FutureTask<Boolean>(() -> {
+    		try {
+    			Object loadedData = data.call();
+    			MerkleProof loadedProof = proof.call();
+
+    			return loadedData != null && loadedProof != null
+    				   && loadedProof.proveValidityOfData(loadedData);
+    		} finally {
+    			release.run();
+    		}
+    	});
+
+    	try {
+    		this.executor.execute(() -> {
+    			try {
+    				task.run();
+    			} finally {
+    				release.run();
+    			}
+    		});
+    	} catch (RejectedExecutionException e) {
+    		release.run();
+    		throw e;
+    	}
+
+        return task;
+    }
+
+    /**
+     * Stops accepting verifications and waits for those in progress to
+     * complete. If the calling thread is interrupted while waiting, the
+     * verifications in progress are cancelled, as ExecutorService.close()
+     * does, and the interrupt status of the thread is restored.
+     */
+    @Override
+    public void close() {
+        this.executor.shutdown();
+
+        try {
+        	while (!this.executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        		// Keeps waiting, as ExecutorService.close() does.
+        	}
+        } catch (InterruptedException e) {
+        	this.executor.shutdownNow();
+        	Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops accepting verifications and cancels those in progress.
+     */
+    public void shutdownNow() {
+        this.executor.shutdownNow();
+    }
+}
\ No newline at end of file
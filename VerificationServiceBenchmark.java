@@ -0,0 +1,109 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * A benchmark of {@link VerificationService} with many verifications blocked
+ * at the same time: each verification waits the given time, as if it loaded
+ * its data from a remote store, before checking a proof of a tree of 1024
+ * leaves. All the verifications are submitted at once, with a limit that
+ * admits all of them, and each run reports the verifications completed per
+ * second, the time to the last result and the threads alive at the end of
+ * the submissions. The service is run on a fixed pool of platform threads and
+ * on the threads of {@link VerificationService#create}, which are virtual
+ * threads when the runtime supports them and a pool of platform threads
+ * created on demand otherwise.
+ *
+ * <p>
+ * Run it with
+ * {@code java it.unicam.cs.asdl2425.mp1.VerificationServiceBenchmark
+ * [verifications] [milliseconds] [pool threads]}; the defaults are 100000
+ * verifications, 100 milliseconds of waiting each and a pool of 200 threads.
+ * The results are documented in {@link VerificationService}.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+final class VerificationServiceBenchmark {
+
+    private VerificationServiceBenchmark() { }
+
+    /**
+     * Runs the benchmark and prints one line per service.
+     *
+     * @param args  the number of verifications, the milliseconds each of them
+     *              waits and the number of threads of the fixed pool.
+     * @throws Exception if a verification fails or the benchmark is
+     *         interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+    	int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    	long millis = args.length > 1 ? Long.parseLong(args[1]) : 100;
+    	int threads = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+    	List<String> hashes = new ArrayList<String>();
+    	for (int i = 0; i < 1024; i++) hashes.add(HashUtil.dataToHash(i));
+
+    	MerkleTree<Integer> tree = MerkleTree.fromHashes(hashes);
+    	List<MerkleProof> proofs = new ArrayList<MerkleProof>();
+    	for (int i = 0; i < 1024; i++) proofs.add(tree.getMerkleProof(i));
+
+    	System.out.printf("%d verifications, %d ms each, %d CPUs, Java %s%n",
+    			          count, millis,
+    			          Runtime.getRuntime().availableProcessors(),
+    			          System.getProperty("java.version"));
+
+    	try (VerificationService warmUp =
+    			VerificationService.withPlatformThreads(count, threads)) {
+    		VerificationServiceBenchmark.run(warmUp, proofs, count / 10, 1);
+    	}
+
+    	try (VerificationService pool =
+    			VerificationService.withPlatformThreads(count, threads)) {
+    		System.out.println("fixed pool of " + threads + " threads: "
+    				           + VerificationServiceBenchmark.run(
+    				        		   pool, proofs, count, millis));
+    	}
+
+    	try (VerificationService created = VerificationService.create(count)) {
+    		System.out.println((created.usesVirtualThreads()
+    				            ? "virtual threads: "
+    				            : "threads created on demand: ")
+    				           + VerificationServiceBenchmark.run(
+    				        		   created, proofs, count, millis));
+    	}
+    }
+
+    /**
+     * Submits the verifications, waits for all of them and returns a
+     * description of the throughput.
+     */
+    private static String run(VerificationService service,
+    		                  List<MerkleProof> proofs, int count, long millis)
+    		throws Exception {
+    	List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(count);
+    	long start = System.nanoTime();
+
+    	for (int i = 0; i < count; i++) {
+    		int index = i % proofs.size();
+
+    		results.add(service.submit(() -> {
+    			Thread.sleep(millis);
+    			return index;
+    		}, () -> proofs.get(index)));
+    	}
+
+    	int alive = Thread.activeCount();
+
+    	for (Future<Boolean> result : results) {
+    		if (!result.get()) throw new IllegalStateException();
+    	}
+
+    	double elapsed = (System.nanoTime() - start) / 1e9;
+
+    	return String.format("%.0f verifications/s, %.2f s to the last "
+    			             + "result, %d threads alive", count / elapsed,
+    			             elapsed, alive);
+    }
+}
\ No newline at end of file
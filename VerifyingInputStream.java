@@ -0,0 +1,423 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An input stream that verifies content against the known root of its Merkle
+ * tree while it is being read, so that a large download can be trusted chunk
+ * by chunk instead of only once it is complete.
+ *
+ * <p>
+ * The content is split in chunks of a fixed size as in {@link FileHasher},
+ * which are the leaves of a Merkle tree shaped as a {@link MerkleTree}. The
+ * nodes are hashed with a prefix that tells them apart: a leaf is hashed as
+ * the MD5 of the byte {@value #LEAF_PREFIX} followed by its chunk, an internal
+ * node as the MD5 of the byte {@value #NODE_PREFIX} followed by the digests of
+ * its children, so a chunk can never pass for an internal node. The root
+ * given to the readers is the MD5 of the byte {@value #ROOT_PREFIX} followed
+ * by the header of the stream and the digest of the root of the tree, so the
+ * size of the chunks and the length of the content cannot be changed without
+ * changing the root either. The verified stream, written
+ * by {@link #encode(Path, OutputStream, int)}, interleaves each chunk with
+ * its proof:
+ * <ul>
+ * <li>a header with the magic number {@code MRKS}, the size of a chunk (int)
+ *     and the length of the content (long);</li>
+ * <li>for each chunk, one entry per level of the tree, from the leaves up,
+ *     made of a flag byte ({@value #LEFT} for a sibling on the left,
+ *     {@value #RIGHT} for a sibling on the right, {@value #MISSING} for a node
+ *     without sibling) followed by the 16 bytes of the digest of the sibling,
+ *     if there is one;</li>
+ * <li>then the bytes of the chunk.</li>
+ * </ul>
+ *
+ * <p>
+ * Every chunk is verified against the root with its proof before any of its
+ * bytes is returned, so corrupted data is detected within one chunk and
+ * reported with an {@link IOException}. The flags of each proof must also
+ * match the position of the chunk in a tree as large as the header says, so
+ * that chunks cannot be reordered and the content cannot be truncated. Only
+ * one chunk and one proof are kept in memory, that is O(log n) hashes.
+ *
+ * @author Leonardo Castignani @UNICAM
+ */
+public class VerifyingInputStream extends InputStream {
+
+    /**
+     * The magic number at the start of a verified stream.
+     */
+    public static final int MAGIC = 0x4d524b53;
+
+    /**
+     * The largest chunk size accepted, 64 MB.
+     */
+    public static final int MAX_CHUNK_SIZE = 1 << 26;
+
+    static final int RIGHT = 0;
+
+    static final int LEFT = 1;
+
+    static final int MISSING = 2;
+
+    static final int LEAF_PREFIX = 0;
+
+    static final int NODE_PREFIX = 1;
+
+    static final int ROOT_PREFIX = 2;
+
+    private final DataInputStream in;
+
+    private final MessageDigest md;
+
+    private final String rootHash;
+
+    private boolean headerRead;
+
+    private int chunkSize;
+
+    private long length;
+
+    private long chunkCount;
+
+    private int height;
+
+    private long nextChunk;
+
+    private byte[] chunk;
+
+    private int chunkPosition;
+
+    private int chunkLength;
+
+    private IOException failure;
+
+    /**
+     * Constructs a stream that reads a verified stream and returns its content
+     * once verified against the given root.
+     *
+     * @param in  the verified stream.
+     * @param rootHash  the expected root of the content, as returned by
+     *                  {@link #encode(Path, OutputStream, int)}.
+     * @throws IllegalArgumentException if the stream or the root is null.
+     */
+    public VerifyingInputStream(InputStream in, String rootHash) {
+    	if (in == null || rootHash == null) throw new IllegalArgumentException();
+
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        this.md = VerifyingInputStream.newDigest();
+        this.rootHash = rootHash;
+        this.headerRead = false;
+        this.chunkPosition = 0;
+        this.chunkLength = 0;
+    }
+
+    /**
+     * Writes the verified stream of a file, whose content is split in chunks
+     * of the given size. The file is read twice: once to hash its chunks and
+     * once to write them together with their proofs.
+     *
+     * @param file  the file to encode.
+     * @param out  the destination of the verified stream, which is not closed.
+     * @param chunkSize  the size of a chunk in bytes.
+     * @return the root of the content, to be given to the readers.
+     * @throws IOException if the file cannot be read or the stream cannot be
+     *         written.
+     * @throws IllegalArgumentException if the file or the stream is null, or
+     *         the chunk size is not positive or too large.
+     */
+    public static String encode(Path file, OutputStream out, int chunkSize)
+    		throws IOException {
+    	if (file == null || out == null || chunkSize < 1
+    		|| chunkSize > MAX_CHUNK_SIZE)
+    		throw new IllegalArgumentException();
+
+    	MessageDigest md = VerifyingInputStream.newDigest();
+    	DataOutputStream data = new DataOutputStream(out);
+    	byte[] chunk = new byte[chunkSize];
+    	long length = Files.size(file);
+    	int chunkCount = Math.toIntExact(
+    			Math.max(1, (length + chunkSize - 1) / chunkSize));
+    	List<byte[][]> levels = new ArrayList<byte[][]>();
+    	byte[][] leaves = new byte[chunkCount][];
+
+    	try (InputStream content = Files.newInputStream(file)) {
+    		for (int i = 0; i < chunkCount; i++) {
+    			int chunkLength = content.readNBytes(chunk, 0, chunkSize);
+    			leaves[i] = VerifyingInputStream.leafDigest(md, chunk,
+    					                                    chunkLength);
+    		}
+    	}
+
+    	levels.add(leaves);
+
+    	while (levels.get(levels.size() - 1).length > 1) {
+    		byte[][] children = levels.get(levels.size() - 1);
+    		byte[][] parents = new byte[(children.length + 1) / 2][];
+
+    		for (int i = 0; i < parents.length; i++) {
+    			parents[i] = VerifyingInputStream.nodeDigest(md,
+    					children[2 * i],
+    					2 * i + 1 < children.length ? children[2 * i + 1]
+    					                            : null);
+    		}
+
+    		levels.add(parents);
+    	}
+
+    	try (InputStream content = Files.newInputStream(file)) {
+    		data.writeInt(MAGIC);
+    		data.writeInt(chunkSize);
+    		data.writeLong(length);
+
+    		for (int i = 0; i < chunkCount; i++) {
+    			int index = i;
+
+    			for (int level = 0; level < levels.size() - 1; level++) {
+    				byte[][] hashes = levels.get(level);
+    				int sibling = index ^ 1;
+
+    				if (sibling >= hashes.length) data.writeByte(MISSING);
+    				else {
+    					data.writeByte(sibling < index ? LEFT : RIGHT);
+    					data.write(hashes[sibling]);
+    				}
+
+    				index /= 2;
+    			}
+
+    			int chunkLength = (int) Math.min(chunkSize,
+    					length - (long) i * chunkSize);
+
+    			if (content.readNBytes(chunk, 0, chunkLength) != chunkLength)
+    				throw new IOException("The file was truncated while it "
+    						              + "was being encoded");
+
+    			data.write(chunk, 0, chunkLength);
+    		}
+    	}
+
+    	data.flush();
+
+    	return VerifyingInputStream.rootHash(md, chunkSize, length,
+    			                             levels.get(levels.size() - 1)[0]);
+    }
+
+    /**
+     * Returns a new MD5 message digest.
+     *
+     * @return a new MD5 message digest.
+     * @throws RuntimeException if the hashing algorithm is not available.
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("MD5 algorithm not found", e);
+        }
+    }
+
+    /**
+     * Computes the digest of a leaf of the tree of the content.
+     *
+     * @param md  the message digest to use.
+     * @param chunk  the array holding the chunk of the leaf.
+     * @param length  the length of the chunk.
+     * @return the digest of the leaf.
+     */
+    private static byte[] leafDigest(MessageDigest md, byte[] chunk,
+    		                         int length) {
+    	md.update((byte) LEAF_PREFIX);
+    	md.update(chunk, 0, length);
+
+    	return md.digest();
+    }
+
+    /**
+     * Computes the digest of an internal node of the tree of the content.
+     *
+     * @param md  the message digest to use.
+     * @param left  the digest of the left child.
+     * @param right  the digest of the right child, or null if there is none.
+     * @return the digest of the node.
+     */
+    private static byte[] nodeDigest(MessageDigest md, byte[] left,
+    		                         byte[] right) {
+    	md.update((byte) NODE_PREFIX);
+    	md.update(left);
+    	if (right != null) md.update(right);
+
+    	return md.digest();
+    }
+
+    /**
+     * Computes the root given to the readers, which commits to the header of
+     * the stream and to the root of the tree of the content.
+     *
+     * @param md  the message digest to use.
+     * @param chunkSize  the size of a chunk.
+     * @param length  the length of the content.
+     * @param treeRoot  the digest of the root of the tree.
+     * @return the root of the stream, as a hexadecimal string.
+     */
+    private static String rootHash(MessageDigest md, int chunkSize,
+    		                       long length, byte[] treeRoot) {
+    	byte[] header = new byte[16];
+    	HashUtil.longToBytes(((long) MAGIC << 32) | chunkSize, header, 0);
+    	HashUtil.longToBytes(length, header, 8);
+
+    	md.update((byte) ROOT_PREFIX);
+    	md.update(header);
+    	md.update(treeRoot);
+
+    	return HashUtil.digestToHex(md.digest(), 0);
+    }
+
+    @Override
+    public int read() throws IOException {
+    	if (!this.ensureChunk()) return -1;
+
+        return this.chunk[this.chunkPosition++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+    	if (off < 0 || len < 0 || len > b.length - off)
+    		throw new IndexOutOfBoundsException();
+
+    	if (len == 0) return 0;
+
+    	if (!this.ensureChunk()) return -1;
+
+        int count = Math.min(len, this.chunkLength - this.chunkPosition);
+        System.arraycopy(this.chunk, this.chunkPosition, b, off, count);
+        this.chunkPosition += count;
+
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return this.chunkLength - this.chunkPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+
+    /**
+     * Makes sure that the current chunk has bytes left, reading and verifying
+     * the next one if needed.
+     *
+     * @return false if the content is over.
+     */
+    private boolean ensureChunk() throws IOException {
+    	if (this.failure != null) throw this.failure;
+
+    	try {
+    		while (this.chunkPosition == this.chunkLength) {
+    			if (!this.headerRead) this.readHeader();
+
+    			if (this.nextChunk == this.chunkCount) {
+    				if (this.in.read() != -1)
+    					throw new IOException("Unexpected data after the last "
+    							              + "chunk");
+    				return false;
+    			}
+
+    			this.readChunk();
+    		}
+
+    		return true;
+    	} catch (IOException e) {
+    		this.failure = e;
+    		throw e;
+    	}
+    }
+
+    private void readHeader() throws IOException {
+    	if (this.in.readInt() != MAGIC)
+    		throw new IOException("Not a verified stream");
+
+    	this.chunkSize = this.in.readInt();
+    	this.length = this.in.readLong();
+
+    	if (this.chunkSize < 1 || this.chunkSize > MAX_CHUNK_SIZE
+    		|| this.length < 0)
+    		throw new IOException("Invalid verified stream header");
+
+    	this.chunkCount = Math.max(1, (this.length + this.chunkSize - 1)
+    			                      / this.chunkSize);
+    	this.height = 0;
+
+    	for (long size = this.chunkCount; size > 1; size = (size + 1) / 2)
+    		this.height++;
+
+    	this.chunk = new byte[(int) Math.min(this.chunkSize, this.length)];
+    	this.nextChunk = 0;
+    	this.headerRead = true;
+    }
+
+    /**
+     * Reads the next chunk and its proof, and verifies the chunk against the
+     * root.
+     */
+    private void readChunk() throws IOException {
+    	int length = (int) Math.min(this.chunkSize,
+    			                    this.length - this.nextChunk
+    			                                  * this.chunkSize);
+    	byte[][] siblings = new byte[this.height][];
+    	long index = this.nextChunk;
+    	long size = this.chunkCount;
+
+    	for (int level = 0; level < this.height; level++) {
+    		int expected = index % 2 == 1 ? LEFT
+    				       : index + 1 < size ? RIGHT : MISSING;
+
+    		if (this.in.readUnsignedByte() != expected)
+    			throw new IOException("The proof of chunk " + this.nextChunk
+    					              + " does not match its position");
+
+    		if (expected != MISSING) {
+    			siblings[level] = new byte[HashUtil.MD5_LENGTH];
+    			this.in.readFully(siblings[level]);
+    		}
+
+    		index /= 2;
+    		size = (size + 1) / 2;
+    	}
+
+    	this.in.readFully(this.chunk, 0, length);
+
+    	byte[] digest = VerifyingInputStream.leafDigest(this.md, this.chunk,
+    			                                        length);
+    	index = this.nextChunk;
+
+    	for (byte[] sibling : siblings) {
+    		digest = index % 2 == 1
+    				 ? VerifyingInputStream.nodeDigest(this.md, sibling, digest)
+    				 : VerifyingInputStream.nodeDigest(this.md, digest, sibling);
+    		index /= 2;
+    	}
+
+    	if (!VerifyingInputStream.rootHash(this.md, this.chunkSize, this.length,
+    			                           digest).equals(this.rootHash))
+    		throw new IOException("Chunk " + this.nextChunk
+    				              + " does not match the root");
+
+    	this.nextChunk++;
+    	this.chunkPosition = 0;
+    	this.chunkLength = length;
+    }
+}
\ No newline at end of file